@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.Collections;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DataSeries} of long values that keeps the samples of a streaming data series, e.g. the data of a profiling session queried
+ * from the transport, in a {@link MinMaxPyramidDataSeries}. Each query only fetches the samples after the last cached one from the
+ * delegate, and returns a view over the cache instead of a copy.
+ * <p>
+ * The delegate must return its samples in increasing x order, and a sample must not change once it has been returned. The cache starts at
+ * the min of the first queried range, a query that starts before it drops the cache and starts over from there.
+ */
+public final class CachedLongDataSeries implements DataSeries<Long> {
+  @NotNull private final DataSeries<Long> myDelegate;
+  @NotNull private MinMaxPyramidDataSeries myCache = new MinMaxPyramidDataSeries();
+  private double myCacheStart = Double.NaN;
+
+  public CachedLongDataSeries(@NotNull DataSeries<Long> delegate) {
+    myDelegate = delegate;
+  }
+
+  @NotNull
+  @Override
+  public synchronized List<SeriesData<Long>> getDataForRange(@NotNull Range range) {
+    if (range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    update(range);
+    if (myCache.size() == 0) {
+      return Collections.emptyList();
+    }
+    return myCache.getDataForIndexRange(getFromIndex(range), getToIndex(range));
+  }
+
+  /**
+   * Like {@link #getDataForRange(Range)}, reduced to about {@code maxPoints} points with the pyramid of the cache, see
+   * {@link MinMaxPyramidDataSeries#getDataForRange(Range, int)}. The pyramid is updated as new samples are fetched, so the cost of a query
+   * depends on {@code maxPoints} and the number of new samples rather than the number of samples in range.
+   */
+  @NotNull
+  public synchronized List<SeriesData<Long>> getDataForRange(@NotNull Range range, int maxPoints) {
+    if (range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    update(range);
+    if (myCache.size() == 0) {
+      return Collections.emptyList();
+    }
+    return myCache.getDataForIndexRange(getFromIndex(range), getToIndex(range), maxPoints);
+  }
+
+  private int getFromIndex(@NotNull Range range) {
+    return myCache.getNearestXIndex((long)Math.ceil(range.getMin()));
+  }
+
+  /**
+   * Like the data series of the transport, the result ends with the first sample at or after the range's max, so that a line can be drawn
+   * up to the end of the range. The returned index is exclusive.
+   */
+  private int getToIndex(@NotNull Range range) {
+    int index = myCache.getNearestXIndex((long)Math.floor(range.getMax()));
+    return myCache.getX(index) < range.getMax() && index + 1 < myCache.size() ? index + 2 : index + 1;
+  }
+
+  private void update(@NotNull Range range) {
+    if (Double.isNaN(myCacheStart) || range.getMin() < myCacheStart) {
+      myCache = new MinMaxPyramidDataSeries();
+      myCacheStart = range.getMin();
+    }
+    long lastX = myCache.size() == 0 ? Long.MIN_VALUE : myCache.getX(myCache.size() - 1);
+    if (myCache.size() > 0 && range.getMax() <= lastX) {
+      return;
+    }
+    // The last cached sample is fetched again, so that a series that derives each sample from the previous one, like the CPU usage, can
+    // still produce the sample after it.
+    double from = myCache.size() == 0 ? myCacheStart : lastX;
+    for (SeriesData<Long> data : myDelegate.getDataForRange(new Range(from, range.getMax()))) {
+      if (data.x > lastX) {
+        myCache.add(data.x, data.value);
+        lastX = data.x;
+      }
+    }
+  }
+}
@@ -16,12 +16,8 @@
 package com.android.tools.adtui.model;
 
 
-import com.intellij.util.containers.ContainerUtil;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 
 public final class DefaultDataSeries<E> implements DataSeries<E> {
@@ -30,7 +26,9 @@ public final class DefaultDataSeries<E> implements DataSeries<E> {
 
   @NotNull
   private List<SeriesData<E>> getDataSubList(final int fromIndex, final int toIndex) {
-    return IntStream.range(fromIndex, toIndex).mapToObj(index -> mSeriesList.get(index)).collect(Collectors.toList());
+    // Callers may hold on to the result while data is being added, so hand out a copy instead of a sub list view.
+    // See LongObjectDataSeries for a series that can return views.
+    return new ArrayList<>(mSeriesList.subList(fromIndex, toIndex));
   }
 
   @Override
@@ -76,7 +74,7 @@ public final class DefaultDataSeries<E> implements DataSeries<E> {
   }
 
   public int getNearestXIndex(long x) {
-    int index = Collections.binarySearch(ContainerUtil.map(mSeriesList, data -> data.x), x);
+    int index = binarySearchX(x);
 
     if (index < 0) {
       // No exact match, returns position to the left of the insertion point.
@@ -89,5 +87,27 @@ public final class DefaultDataSeries<E> implements DataSeries<E> {
 
     return Math.max(0, Math.min(index, size() - 1));
   }
+
+  /**
+   * Same contract as {@link java.util.Collections#binarySearch(List, Object)} on the x values, without mapping the data to a list of them.
+   */
+  private int binarySearchX(long x) {
+    int low = 0;
+    int high = mSeriesList.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midX = mSeriesList.get(mid).x;
+      if (midX < x) {
+        low = mid + 1;
+      }
+      else if (midX > x) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
 }
 
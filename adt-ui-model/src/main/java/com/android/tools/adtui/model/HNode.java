@@ -53,4 +53,12 @@ public interface HNode<N extends HNode<N>> {
   default N getLastChild() {
     return getChildCount() == 0 ? null : getChildAt(getChildCount() - 1);
   }
+
+  /**
+   * Whether the children are sorted by start time and do not overlap, which lets a chart find the children within a range with a binary
+   * search instead of visiting all of them.
+   */
+  default boolean hasSequentialChildren() {
+    return false;
+  }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Base class for append-only data series that keep their x values in a growable {@code long[]}, see {@link LongLongDataSeries} and
+ * {@link LongObjectDataSeries}. Data must be added in increasing x order.
+ * <p>
+ * Lookups are binary searches over the primitive array, and {@link #getDataForRange(Range)} returns a view over the matching indices
+ * instead of a copy. Since data is only ever appended, a view stays valid while more data is added to the series.
+ */
+public abstract class LongKeyedDataSeries<E> implements DataSeries<E> {
+  protected static final int INITIAL_CAPACITY = 16;
+
+  @NotNull private long[] myXs = new long[INITIAL_CAPACITY];
+  private int mySize;
+
+  /**
+   * Same semantics as {@link DefaultDataSeries#getDataForRange(Range)}: returns the data from the nearest x at or before the range's min
+   * to the nearest x at or before the range's max, both inclusive.
+   */
+  @NotNull
+  @Override
+  public List<SeriesData<E>> getDataForRange(@NotNull Range range) {
+    if (mySize == 0 || range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    int fromIndex = getNearestXIndex((long)Math.ceil(range.getMin()));
+    int toIndex = getNearestXIndex((long)Math.floor(range.getMax()));
+    return getDataForIndexRange(fromIndex, toIndex + 1);
+  }
+
+  @NotNull
+  public List<SeriesData<E>> getAllData() {
+    return mySize == 0 ? Collections.emptyList() : getDataForIndexRange(0, mySize);
+  }
+
+  /**
+   * Returns a view over the data from {@code fromIndex}, inclusive, to {@code toIndex}, exclusive.
+   */
+  @NotNull
+  public List<SeriesData<E>> getDataForIndexRange(int fromIndex, int toIndex) {
+    checkIndexRange(fromIndex, toIndex);
+    return new RangeView(fromIndex, toIndex);
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public long getX(int index) {
+    checkIndex(index);
+    return myXs[index];
+  }
+
+  /**
+   * @return the boxed value at the given index.
+   */
+  protected abstract E getValue(int index);
+
+  /**
+   * Grows the value storage of the subclass so it can hold at least {@code capacity} values.
+   */
+  protected abstract void ensureValueCapacity(int capacity);
+
+  /**
+   * Returns the index of the last x less than or equal to the given one, clamped to the valid indices of the series.
+   */
+  public int getNearestXIndex(long x) {
+    int low = 0;
+    int high = mySize - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midX = myXs[mid];
+      if (midX < x) {
+        low = mid + 1;
+      }
+      else if (midX > x) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    // No exact match, step to the left of the insertion point, see DefaultDataSeries#getNearestXIndex.
+    return Math.max(0, Math.min(low - 1, mySize - 1));
+  }
+
+  /**
+   * Appends x and returns the index at which the subclass should store the matching value.
+   */
+  protected int appendX(long x) {
+    if (mySize == myXs.length) {
+      int capacity = mySize + (mySize >> 1);
+      myXs = Arrays.copyOf(myXs, capacity);
+      ensureValueCapacity(capacity);
+    }
+    myXs[mySize] = x;
+    return mySize;
+  }
+
+  /**
+   * Publishes the value stored by the subclass at the index returned by {@link #appendX(long)}.
+   */
+  protected void commitAppend() {
+    mySize++;
+  }
+
+  protected void checkIndex(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    }
+  }
+
+  protected void checkIndexRange(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > mySize || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + mySize);
+    }
+  }
+
+  /**
+   * A view over a range of indices of the series. {@link #get(int)} allocates a {@link SeriesData}, subclasses with primitive values
+   * extend it with accessors that do not.
+   */
+  protected class RangeView extends AbstractList<SeriesData<E>> implements RandomAccess {
+    private final int myFromIndex;
+    private final int myToIndex;
+
+    protected RangeView(int fromIndex, int toIndex) {
+      myFromIndex = fromIndex;
+      myToIndex = toIndex;
+    }
+
+    public long getX(int index) {
+      return myXs[toSeriesIndex(index)];
+    }
+
+    protected int toSeriesIndex(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+      }
+      return myFromIndex + index;
+    }
+
+    @Override
+    public SeriesData<E> get(int index) {
+      int seriesIndex = toSeriesIndex(index);
+      return new SeriesData<>(myXs[seriesIndex], getValue(seriesIndex));
+    }
+
+    @Override
+    public int size() {
+      return myToIndex - myFromIndex;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link LongKeyedDataSeries} of long values stored in a {@code long[]}, for monitors that keep appending samples for the whole session.
+ * Its views are {@link LongSeriesDataList}s, so consumers such as line charts read the samples without allocating or boxing.
+ */
+public class LongLongDataSeries extends LongKeyedDataSeries<Long> {
+  @NotNull private long[] myYs = new long[INITIAL_CAPACITY];
+
+  public void add(long x, long y) {
+    int index = appendX(x);
+    myYs[index] = y;
+    commitAppend();
+  }
+
+  public long getY(int index) {
+    checkIndex(index);
+    return myYs[index];
+  }
+
+  @NotNull
+  @Override
+  public LongSeriesDataList getDataForIndexRange(int fromIndex, int toIndex) {
+    checkIndexRange(fromIndex, toIndex);
+    return new LongRangeView(fromIndex, toIndex);
+  }
+
+  @Override
+  protected Long getValue(int index) {
+    return myYs[index];
+  }
+
+  @Override
+  protected void ensureValueCapacity(int capacity) {
+    if (myYs.length < capacity) {
+      myYs = Arrays.copyOf(myYs, capacity);
+    }
+  }
+
+  private final class LongRangeView extends RangeView implements LongSeriesDataList {
+    private LongRangeView(int fromIndex, int toIndex) {
+      super(fromIndex, toIndex);
+    }
+
+    @Override
+    public long getY(int index) {
+      return myYs[toSeriesIndex(index)];
+    }
+  }
+}
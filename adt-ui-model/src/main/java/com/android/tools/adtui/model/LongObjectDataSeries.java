@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link LongKeyedDataSeries} of arbitrary values, drop-in replacement for {@link DefaultDataSeries} that avoids keeping a
+ * {@link SeriesData} per sample and copying the data on every range query.
+ */
+public final class LongObjectDataSeries<E> extends LongKeyedDataSeries<E> {
+  @NotNull private Object[] myValues = new Object[INITIAL_CAPACITY];
+
+  public void add(long x, E y) {
+    int index = appendX(x);
+    myValues[index] = y;
+    commitAppend();
+  }
+
+  public E getY(int index) {
+    checkIndex(index);
+    return getValue(index);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  protected E getValue(int index) {
+    return (E)myValues[index];
+  }
+
+  @Override
+  protected void ensureValueCapacity(int capacity) {
+    if (myValues.length < capacity) {
+      myValues = Arrays.copyOf(myValues, capacity);
+    }
+  }
+}
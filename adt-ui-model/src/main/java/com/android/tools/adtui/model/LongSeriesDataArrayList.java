@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A growable {@link LongSeriesDataList} stored in two primitive arrays, for results that are built point by point such as reduced data.
+ * {@link #get(int)} allocates a new {@link SeriesData} on every call.
+ */
+public final class LongSeriesDataArrayList extends AbstractList<SeriesData<Long>> implements LongSeriesDataList {
+  @NotNull private long[] myXs;
+  @NotNull private long[] myYs;
+  private int mySize;
+
+  public LongSeriesDataArrayList(int capacity) {
+    myXs = new long[Math.max(capacity, 1)];
+    myYs = new long[myXs.length];
+  }
+
+  public void add(long x, long y) {
+    if (mySize == myXs.length) {
+      myXs = Arrays.copyOf(myXs, mySize * 2);
+      myYs = Arrays.copyOf(myYs, mySize * 2);
+    }
+    myXs[mySize] = x;
+    myYs[mySize] = y;
+    mySize++;
+    modCount++;
+  }
+
+  @Override
+  public long getX(int index) {
+    checkIndex(index);
+    return myXs[index];
+  }
+
+  @Override
+  public long getY(int index) {
+    checkIndex(index);
+    return myYs[index];
+  }
+
+  @Override
+  public SeriesData<Long> get(int index) {
+    checkIndex(index);
+    return new SeriesData<>(myXs[index], myYs[index]);
+  }
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A list of long-valued {@link SeriesData} whose points can also be read with {@link #getX(int)} and {@link #getY(int)}, which neither
+ * allocate a {@link SeriesData} nor box the value. Hot paths such as line chart rendering should read the points that way.
+ * <p>
+ * Data series only return lists that do not change afterwards, either views over append-only data such as the ones of
+ * {@link LongLongDataSeries}, or lists that are owned by the caller.
+ */
+public interface LongSeriesDataList extends List<SeriesData<Long>>, RandomAccess {
+  long getX(int index);
+
+  long getY(int index);
+
+  /**
+   * Returns the given list if it is a {@link LongSeriesDataList}, or a view that reads the points of the list otherwise.
+   */
+  @NotNull
+  static LongSeriesDataList of(@NotNull List<SeriesData<Long>> data) {
+    if (data instanceof LongSeriesDataList) {
+      return (LongSeriesDataList)data;
+    }
+    return new ListView(data);
+  }
+
+  final class ListView extends AbstractList<SeriesData<Long>> implements LongSeriesDataList {
+    @NotNull private final List<SeriesData<Long>> myData;
+
+    private ListView(@NotNull List<SeriesData<Long>> data) {
+      myData = data;
+    }
+
+    @Override
+    public long getX(int index) {
+      return myData.get(index).x;
+    }
+
+    @Override
+    public long getY(int index) {
+      return myData.get(index).value;
+    }
+
+    @Override
+    public SeriesData<Long> get(int index) {
+      return myData.get(index);
+    }
+
+    @Override
+    public int size() {
+      return myData.size();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link LongLongDataSeries} that also maintains a min/max pyramid of its samples, so that a chart can fetch a bounded number of points
+ * for any range via {@link #getDataForRange(Range, int)}.
+ * <p>
+ * Level k of the pyramid holds, for each bucket of 2^k consecutive samples, the indices of its minimum and maximum samples. Levels are
+ * updated as samples are appended: completing a bucket at level k-1 every other time completes a bucket at level k. Only sample indices
+ * are stored, so the whole pyramid takes about two ints per sample.
+ */
+public final class MinMaxPyramidDataSeries extends LongLongDataSeries {
+  /**
+   * myLevels.get(k - 1) is level k, level 0 being the raw samples.
+   */
+  @NotNull private final List<Level> myLevels = new ArrayList<>();
+
+  @Override
+  public void add(long x, long y) {
+    super.add(x, y);
+    int index = size() - 1;
+
+    // Every odd sample completes a level 1 bucket, which in turn may complete a bucket on each level above it.
+    int count = index + 1;
+    for (int level = 1; (count & ((1 << level) - 1)) == 0; level++) {
+      if (myLevels.size() < level) {
+        myLevels.add(new Level());
+      }
+      Level target = myLevels.get(level - 1);
+      if (level == 1) {
+        int first = index - 1;
+        boolean firstIsMin = getY(first) <= getY(index);
+        target.add(firstIsMin ? first : index, firstIsMin ? index : first);
+      }
+      else {
+        Level source = myLevels.get(level - 2);
+        int left = source.mySize - 2;
+        int right = source.mySize - 1;
+        int min = getY(source.myMin[left]) <= getY(source.myMin[right]) ? source.myMin[left] : source.myMin[right];
+        int max = getY(source.myMax[left]) >= getY(source.myMax[right]) ? source.myMax[left] : source.myMax[right];
+        target.add(min, max);
+      }
+    }
+  }
+
+  /**
+   * Returns the data for the given range, reduced to at most about {@code maxPoints} points by using the finest pyramid level that has at
+   * most {@code maxPoints / 2} buckets in the range, i.e. between {@code maxPoints / 4} and {@code maxPoints / 2} buckets once the range
+   * spans enough samples. Each bucket contributes its min and max samples, in x order. The result covers the same samples as
+   * {@link #getDataForRange(Range)}, extended to the bounds of the first and last buckets.
+   */
+  @NotNull
+  public LongSeriesDataList getDataForRange(@NotNull Range range, int maxPoints) {
+    if (size() == 0 || range.isEmpty()) {
+      return new LongSeriesDataArrayList(0);
+    }
+    int fromIndex = getNearestXIndex((long)Math.ceil(range.getMin()));
+    int toIndex = getNearestXIndex((long)Math.floor(range.getMax()));
+    return getDataForIndexRange(fromIndex, toIndex + 1, maxPoints);
+  }
+
+  /**
+   * Same as {@link #getDataForRange(Range, int)} for the samples from {@code fromIndex}, inclusive, to {@code toIndex}, exclusive. Ranges
+   * that fit in {@code maxPoints / 2} samples are returned as a view over the samples, others are copied into a
+   * {@link LongSeriesDataArrayList} of at most about {@code maxPoints} points.
+   */
+  @NotNull
+  public LongSeriesDataList getDataForIndexRange(int fromIndex, int toIndex, int maxPoints) {
+    checkIndexRange(fromIndex, toIndex);
+    int sampleCount = toIndex - fromIndex;
+
+    int level = 0;
+    int maxBuckets = Math.max(1, maxPoints / 2);
+    while (level < myLevels.size() && (sampleCount >> level) > maxBuckets) {
+      level++;
+    }
+    if (level == 0) {
+      return getDataForIndexRange(fromIndex, toIndex);
+    }
+
+    LongSeriesDataArrayList result = new LongSeriesDataArrayList(maxPoints + 2 * level);
+    // Walk the range with the coarsest level, then finish the incomplete buckets at the end of the series with the finer ones.
+    int position = (fromIndex >> level) << level;
+    for (int current = level; current > 0; current--) {
+      Level buckets = myLevels.get(current - 1);
+      while (position < toIndex && (position >> current) < buckets.mySize) {
+        int bucket = position >> current;
+        int min = buckets.myMin[bucket];
+        int max = buckets.myMax[bucket];
+        addSample(result, Math.min(min, max));
+        if (min != max) {
+          addSample(result, Math.max(min, max));
+        }
+        position += 1 << current;
+      }
+    }
+    for (; position < toIndex; position++) {
+      addSample(result, position);
+    }
+    return result;
+  }
+
+  private void addSample(@NotNull LongSeriesDataArrayList result, int index) {
+    result.add(getX(index), getY(index));
+  }
+
+  private static final class Level {
+    @NotNull private int[] myMin = new int[INITIAL_CAPACITY];
+    @NotNull private int[] myMax = new int[INITIAL_CAPACITY];
+    private int mySize;
+
+    private void add(int min, int max) {
+      if (mySize == myMin.length) {
+        myMin = Arrays.copyOf(myMin, mySize * 2);
+        myMax = Arrays.copyOf(myMax, mySize * 2);
+      }
+      myMin[mySize] = min;
+      myMax[mySize] = max;
+      mySize++;
+    }
+  }
+}
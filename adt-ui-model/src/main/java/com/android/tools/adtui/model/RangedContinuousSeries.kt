@@ -22,6 +22,39 @@ package com.android.tools.adtui.model
 class RangedContinuousSeries @JvmOverloads constructor(val name: String,
                                                        xRange: Range,
                                                        val yRange: Range,
-                                                       series: DataSeries<Long>,
+                                                       private val dataSeries: DataSeries<Long>,
                                                        intersectRange: Range = Range(-Double.MAX_VALUE, Double.MAX_VALUE))
-  : RangedSeries<Long>(xRange, series, intersectRange)
\ No newline at end of file
+  : RangedSeries<Long>(xRange, dataSeries, intersectRange) {
+
+  private var lastReducedRange = Range()
+  private var lastReducedMaxPoints = 0
+  private var lastReducedSeries = emptyList<SeriesData<Long>>()
+
+  /**
+   * Like [series], but reduced to about [maxPoints] points when the underlying data series keeps a [MinMaxPyramidDataSeries] of its
+   * samples, either directly or through a [CachedLongDataSeries]. Other data series return all their points. Like [series], the last
+   * result is reused while the query range does not change.
+   */
+  fun getSeries(maxPoints: Int): List<SeriesData<Long>> {
+    if (dataSeries !is MinMaxPyramidDataSeries && dataSeries !is CachedLongDataSeries) {
+      return series
+    }
+    val queryRange = intersection
+    if (isStreaming(queryRange)) {
+      return getReducedSeries(queryRange, maxPoints)
+    }
+    if (!lastReducedRange.isSameAs(queryRange) || lastReducedMaxPoints != maxPoints) {
+      // The reduced data does not change once returned, see LongSeriesDataList, so it is kept without a copy.
+      lastReducedSeries = getReducedSeries(queryRange, maxPoints)
+      lastReducedRange = queryRange
+      lastReducedMaxPoints = maxPoints
+    }
+    return lastReducedSeries
+  }
+
+  private fun getReducedSeries(range: Range, maxPoints: Int): List<SeriesData<Long>> = when (dataSeries) {
+    is MinMaxPyramidDataSeries -> dataSeries.getDataForRange(range, maxPoints)
+    is CachedLongDataSeries -> dataSeries.getDataForRange(range, maxPoints)
+    else -> getSeriesForRange(range)
+  }
+}
\ No newline at end of file
@@ -59,7 +59,7 @@ open class RangedSeries<E>
   private fun getValuesInRange(): List<SeriesData<E>> {
     val queryRange = xRange.getIntersection(intersectRange)
 
-    if (queryRange.max in maxEndPoints) {
+    if (isStreaming(queryRange)) {
       return _series.getDataForRange(queryRange)
     }
 
@@ -67,12 +67,19 @@ open class RangedSeries<E>
       val queriedSeries = _series.getDataForRange(queryRange)
 
       lastQueriedRange = queryRange
-      lastQueriedSeries = queriedSeries.toList() // Make a copy to allow the underlying series to change freely
+      // Make a copy to allow the underlying series to change freely. A LongSeriesDataList does not change once returned, and copying it
+      // would allocate a SeriesData per point.
+      lastQueriedSeries = if (queriedSeries is LongSeriesDataList) queriedSeries else queriedSeries.toList()
     }
 
     return lastQueriedSeries
   }
 
+  /**
+   * Whether results for the given query range may still change as data streams in, in which case they should not be cached.
+   */
+  protected fun isStreaming(queryRange: Range) = queryRange.max in maxEndPoints
+
   /**
    * @param range The range to which the data will be scoped.
    * @return A new, immutable [SeriesDataList] that allows the caller to get items in the DataStore scoped to the given range.
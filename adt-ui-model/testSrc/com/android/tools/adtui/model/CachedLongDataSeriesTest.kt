@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class CachedLongDataSeriesTest {
+  private val delegate = object : DataSeries<Long> {
+    val data = DefaultDataSeries<Long>()
+    val queries = mutableListOf<Range>()
+
+    override fun getDataForRange(range: Range): List<SeriesData<Long>> {
+      queries.add(Range(range))
+      return data.getDataForRange(range)
+    }
+  }
+  private val series = CachedLongDataSeries(delegate)
+
+  @Test
+  fun `only fetches samples after the last cached one`() {
+    for (x in 0L..10L) {
+      delegate.data.add(x * 10, x)
+    }
+    assertThat(series.getDataForRange(Range(0.0, 100.0)).map { it.value }).containsExactlyElementsIn(0L..10L).inOrder()
+
+    delegate.data.add(110, 11)
+    assertThat(series.getDataForRange(Range(50.0, 110.0)).map { it.value }).containsExactlyElementsIn(5L..11L).inOrder()
+    assertThat(delegate.queries.last().min).isEqualTo(100.0)
+
+    // Nothing is fetched for a range that is already cached.
+    series.getDataForRange(Range(20.0, 60.0))
+    assertThat(delegate.queries).hasSize(2)
+  }
+
+  @Test
+  fun `ends with the first sample after the range`() {
+    for (x in 0L..10L) {
+      delegate.data.add(x * 10, x)
+    }
+    series.getDataForRange(Range(0.0, 100.0))
+    assertThat(series.getDataForRange(Range(15.0, 45.0)).map { it.x }).containsExactly(10L, 20L, 30L, 40L, 50L).inOrder()
+  }
+
+  @Test
+  fun `starts over for a range before the cache`() {
+    for (x in 0L..10L) {
+      delegate.data.add(x * 10, x)
+    }
+    series.getDataForRange(Range(50.0, 100.0))
+    assertThat(series.getDataForRange(Range(0.0, 20.0)).map { it.x }).containsExactly(0L, 10L, 20L).inOrder()
+    assertThat(delegate.queries.last().min).isEqualTo(0.0)
+  }
+
+  @Test
+  fun `result is read without boxing`() {
+    delegate.data.add(10, 1)
+    delegate.data.add(20, 2)
+    val result = series.getDataForRange(Range(0.0, 20.0)) as LongSeriesDataList
+    assertThat(result.getX(1)).isEqualTo(20L)
+    assertThat(result.getY(1)).isEqualTo(2L)
+  }
+
+  @Test
+  fun `ranged series reduces samples with the pyramid of the cache`() {
+    for (x in 0L until 10000L) {
+      delegate.data.add(x, x % 100)
+    }
+    val ranged = RangedContinuousSeries("test", Range(0.0, 10000.0), Range(0.0, 100.0), series)
+    val reduced = ranged.getSeries(400)
+    assertThat(reduced.size).isAtMost(400)
+    assertThat(reduced.maxOf { it.value }).isEqualTo(99L)
+    assertThat(reduced.minOf { it.value }).isEqualTo(0L)
+
+    // New samples are added to the pyramid as they are fetched.
+    delegate.data.add(10000, 500)
+    ranged.xRange.set(0.0, 10001.0)
+    assertThat(ranged.getSeries(400).maxOf { it.value }).isEqualTo(500L)
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class LongKeyedDataSeriesTest {
+  private val data = listOf(
+    SeriesData(0, "A"),
+    SeriesData(1, "B"),
+    SeriesData(2, "C"),
+    SeriesData(3, "D"),
+  )
+
+  private fun objectSeries() = LongObjectDataSeries<String>().apply { data.forEach { add(it.x, it.value) } }
+
+  @Test
+  fun `returns empty list for empty series`() {
+    assertThat(LongObjectDataSeries<String>().getDataForRange(Range(0.0, 3.0))).isEmpty()
+    assertThat(LongLongDataSeries().getDataForRange(Range(0.0, 3.0))).isEmpty()
+  }
+
+  @Test
+  fun `returns empty list for empty range`() {
+    assertThat(objectSeries().getDataForRange(Range(2.0, 1.0))).isEmpty()
+  }
+
+  @Test
+  fun `returns same data as DefaultDataSeries`() {
+    val defaultSeries = DefaultDataSeries<String>().apply { data.forEach { add(it.x, it.value) } }
+    val series = objectSeries()
+    for (range in listOf(Range(1.0, 2.0), Range(0.5, 2.5), Range(0.0, 3.0), Range(0.0, 6.0), Range(-3.0, 3.0), Range(2.0, 2.0),
+                         Range(10.0, 20.0))) {
+      assertThat(series.getDataForRange(range)).containsExactlyElementsIn(defaultSeries.getDataForRange(range)).inOrder()
+    }
+  }
+
+  @Test
+  fun `range view is not affected by later additions`() {
+    val series = objectSeries()
+    val view = series.getDataForRange(Range(0.0, 10.0))
+    // Enough data to force the backing arrays to grow.
+    for (x in 4L until 100L) {
+      series.add(x, x.toString())
+    }
+    assertThat(view).containsExactlyElementsIn(data).inOrder()
+    assertThat(series.getDataForRange(Range(0.0, 10.0))).hasSize(11)
+  }
+
+  @Test
+  fun `long series stores primitive values`() {
+    val series = LongLongDataSeries()
+    for (x in 0L until 1000L) {
+      series.add(x * 10, x / 2)
+    }
+    assertThat(series.size()).isEqualTo(1000)
+    assertThat(series.getNearestXIndex(55)).isEqualTo(5)
+    assertThat(series.getX(999)).isEqualTo(9990L)
+    assertThat(series.getY(999)).isEqualTo(499L)
+    assertThat(series.getDataForRange(Range(20.0, 40.0))).containsExactly(SeriesData(20, 1L), SeriesData(30, 1L), SeriesData(40, 2L))
+      .inOrder()
+  }
+
+  @Test
+  fun `long series views read primitive values`() {
+    val series = LongLongDataSeries()
+    for (x in 0L until 100L) {
+      series.add(x, x * 2)
+    }
+    val view = series.getDataForRange(Range(10.0, 20.0)) as LongSeriesDataList
+    assertThat(view).hasSize(11)
+    assertThat(view.getX(0)).isEqualTo(10L)
+    assertThat(view.getY(10)).isEqualTo(40L)
+  }
+}
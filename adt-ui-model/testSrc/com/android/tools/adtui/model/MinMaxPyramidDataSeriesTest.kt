@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.random.Random
+
+class MinMaxPyramidDataSeriesTest {
+  @Test
+  fun `small ranges return raw samples`() {
+    val series = MinMaxPyramidDataSeries()
+    for (x in 0L until 10L) {
+      series.add(x, x * x)
+    }
+    assertThat(series.getDataForRange(Range(2.0, 5.0), 100)).isEqualTo(series.getDataForRange(Range(2.0, 5.0)))
+  }
+
+  @Test
+  fun `large ranges are reduced and keep extremes`() {
+    val random = Random(1)
+    val values = LongArray(100_003) { random.nextLong(1000) }
+    val series = MinMaxPyramidDataSeries()
+    values.forEachIndexed { index, value -> series.add(index * 10L, value) }
+
+    val reduced = series.getDataForRange(Range(0.0, values.size * 10.0), 400)
+    assertThat(reduced.size).isAtMost(400 + 2 * 17)
+    assertThat(reduced.map { it.x }).isInStrictOrder()
+    assertThat(reduced.minOf { it.value }).isEqualTo(values.minOrNull())
+    assertThat(reduced.maxOf { it.value }).isEqualTo(values.maxOrNull())
+    // The incomplete buckets at the end of the series are still covered.
+    assertThat(reduced.last().x).isEqualTo((values.size - 1) * 10L)
+  }
+
+  @Test
+  fun `uses the finest level with at most half as many buckets as points`() {
+    val series = MinMaxPyramidDataSeries()
+    for (x in 0L until 1024L) {
+      series.add(x, x % 7)
+    }
+    // 1024 samples and up to 50 buckets: level 5 has 32 buckets of 32 samples, each contributing its min and max.
+    val reduced = series.getDataForRange(Range(0.0, 1023.0), 100)
+    assertThat(reduced).hasSize(64)
+    assertThat(reduced).isInstanceOf(LongSeriesDataArrayList::class.java)
+  }
+
+  @Test
+  fun `bucket keeps min and max in x order`() {
+    val series = MinMaxPyramidDataSeries()
+    listOf(5L, 9L, 1L, 4L, 7L, 3L, 8L, 2L).forEachIndexed { index, value -> series.add(index.toLong(), value) }
+    // A single bucket of all 8 samples: the max (9 at x = 1) comes before the min (1 at x = 2).
+    assertThat(series.getDataForRange(Range(0.0, 7.0), 2)).containsExactly(SeriesData(1, 9L), SeriesData(2, 1L)).inOrder()
+  }
+}
@@ -225,8 +225,12 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     var head = 0
     while (head < nodes.size) {
       val curNode = nodes[head++]
-      for (i in 0 until curNode.childCount) {
+      val sequential = curNode.hasSequentialChildren()
+      for (i in (if (sequential) firstChildEndingAfter(curNode, xRange.min) else 0) until curNode.childCount) {
         val child = curNode.getChildAt(i)
+        if (sequential && child.start > xRange.max) {
+          break
+        }
         if (inRange(child)) {
           nodes.add(child)
           rectangles.add(createRectangle(child))
@@ -241,6 +245,19 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
 
   private fun inRange(node: N) = node.start <= xRange.max && node.end >= xRange.min
 
+  /**
+   * Returns the index of the first child of a node with [HNode.hasSequentialChildren] that ends at or after the given time.
+   */
+  private fun firstChildEndingAfter(node: N, time: Double): Int {
+    var low = 0
+    var high = node.childCount
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (node.getChildAt(mid).end < time) low = mid + 1 else high = mid
+    }
+    return low
+  }
+
   private fun createRectangle(node: N): Rectangle2D.Float {
     val left = ((node.start - xRange.min) / xRange.length).toFloat()
     val right = ((node.end - xRange.min) / xRange.length).toFloat()
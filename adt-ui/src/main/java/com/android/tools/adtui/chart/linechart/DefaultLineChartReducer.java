@@ -15,6 +15,9 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongSeriesDataArrayList;
+import com.android.tools.adtui.model.LongSeriesDataList;
+import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.adtui.model.SeriesData;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
@@ -25,11 +28,30 @@ import org.jetbrains.annotations.NotNull;
 class DefaultLineChartReducer implements LineChartReducer {
   private static final float EPS  = 1e-6f;
 
+  /**
+   * {@link #reducePath(Path2D, LineConfig)} keeps up to 4 points per pixel, the pyramid buckets contribute 2 points each.
+   */
+  private static final int POINTS_PER_PIXEL = 4;
+
   /**
    * Number 6 is needed by {@link PathIterator#currentSegment(float[])}.
    */
   private static int PATH_ITERATOR_COORDS_COUNT = 6;
 
+  /**
+   * Picks the pyramid level of series backed by a {@link com.android.tools.adtui.model.MinMaxPyramidDataSeries}, e.g. the monitor series
+   * cached in a {@link com.android.tools.adtui.model.CachedLongDataSeries}, so that there are one to two min/max buckets per pixel. This
+   * keeps the cost of a repaint proportional to the width of the chart instead of the number of samples in range.
+   */
+  @Override
+  public List<SeriesData<Long>> getData(@NotNull RangedContinuousSeries series, @NotNull LineConfig config, int pixelWidth) {
+    if (config.getDataBucketInterval() > 0 || config.isStacked() || pixelWidth <= 0) {
+      // Bars need every point, and stacked lines are added up point by point so they need aligned samples.
+      return series.getSeries();
+    }
+    return series.getSeries(pixelWidth * POINTS_PER_PIXEL);
+  }
+
   /**
    * A simple reducer which reduces when,
    * 1. When the data is for a stepped line and if two consecutive values are equal (except for the last two points),
@@ -46,6 +68,9 @@ class DefaultLineChartReducer implements LineChartReducer {
       // TODO(b/73784793): Remove this code once we refactor a new BarChart class
       return dataList;
     }
+    if (dataList instanceof LongSeriesDataList) {
+      return reduceData((LongSeriesDataList)dataList, config);
+    }
 
     List<SeriesData<Long>> reduced = new ArrayList<>();
     for (SeriesData<Long> data: dataList) {
@@ -65,6 +90,25 @@ class DefaultLineChartReducer implements LineChartReducer {
     return reduced;
   }
 
+  /**
+   * Same reduction as {@link #reduceData(List, LineConfig)}, reading and writing primitive values. Instead of removing the last kept point
+   * when the next one arrives, each point is kept or dropped by looking ahead at the next one, which gives the same result.
+   */
+  @NotNull
+  private static LongSeriesDataList reduceData(@NotNull LongSeriesDataList dataList, @NotNull LineConfig config) {
+    int size = dataList.size();
+    LongSeriesDataArrayList reduced = new LongSeriesDataArrayList(size);
+    for (int i = 0; i < size; i++) {
+      long value = dataList.getY(i);
+      if (i > 0 && i < size - 1 && reduced.getY(reduced.size() - 1) == value &&
+          (config.isStepped() || value == dataList.getY(i + 1))) {
+        continue;
+      }
+      reduced.add(dataList.getX(i), value);
+    }
+    return reduced;
+  }
+
   /**
   * The basic idea behind this algorithm is to reduce number of points to available pixels.
   * For every pixel it draws 4 points: the first point, the last point,
@@ -21,6 +21,7 @@ import static java.awt.BasicStroke.JOIN_MITER;
 
 import com.android.tools.adtui.AnimatedComponent;
 import com.android.tools.adtui.model.LineChartModel;
+import com.android.tools.adtui.model.LongSeriesDataList;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.adtui.model.SeriesData;
 import com.google.common.annotations.VisibleForTesting;
@@ -194,7 +195,7 @@ public class LineChart extends AnimatedComponent {
       }
       final LineConfig config = getLineConfig(ranged);
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      List<SeriesData<Long>> seriesList = myReducer.getData(ranged, config, dim.width);
       if (config.isStacked()) {
         if (lastStackedSeries == null) {
           // Create a new list of SeriesData to prevent modifying the backing data series, which could be cached.
@@ -224,19 +225,19 @@ public class LineChart extends AnimatedComponent {
       double firstXd = 0f;
       // Actual value of first point
       double firstX = 0;
-      seriesList = myReducer.reduceData(seriesList, config);
+      // Read the points by index, which does not allocate a SeriesData per point for lists of primitive points.
+      LongSeriesDataList points = LongSeriesDataList.of(myReducer.reduceData(seriesList, config));
       double xBucketInterval = config.getDataBucketInterval() / xLength;
       double xBucketBarWidth = xBucketInterval * BUCKET_BAR_PERCENTAGE;
       // If we are a stepped chart or bar chart, we don't need to worry about start and end points' Y value.
       boolean optimizeYZooming = !config.isStepped() && xBucketInterval == 0;
-      for (int i = 0; i < seriesList.size(); i++) {
-        SeriesData<Long> data = seriesList.get(i);
-        SeriesData<Long> dataNext = seriesList.get(i + 1 == seriesList.size() ? i : i + 1);
-        SeriesData<Long> dataPrev = seriesList.get(i - 1 < 0 ? i : i - 1);
+      for (int i = 0; i < points.size(); i++) {
+        int next = i + 1 == points.size() ? i : i + 1;
+        int prev = i - 1 < 0 ? i : i - 1;
         // TODO: refactor to allow different types (e.g. double)
-        double xd = (data.x - xMin) / xLength;
+        double xd = (points.getX(i) - xMin) / xLength;
         // Swing's (0, 0) coordinate is in top-left. As we use bottom-left (0, 0), we need to adjust the y coordinate.
-        double yd = 1 - (data.value - yMin) / yLength;
+        double yd = 1 - (points.getY(i) - yMin) / yLength;
 
         // This change significantly speeds up drawing when zoomed into the chart. Without this change a line could extend
         // a few thousand pixels off the screen in both directions. The fill/draw function would then spend a lot of time
@@ -253,10 +254,10 @@ public class LineChart extends AnimatedComponent {
 
         double originalXd = xd;
         if (xd < 0) {
-          double xdNext = (dataNext.x - xMin) / xLength;
+          double xdNext = (points.getX(next) - xMin) / xLength;
           // If our next point is also offscreen then ignore this point and continue.
           if (xdNext < 0) {
-            if (data == dataNext) {
+            if (i == next) {
               // The last point is still off screen, we should add a point at (0, y) to avoid drawing nothing.
               //     |   |
               // *-->*----
@@ -268,7 +269,7 @@ public class LineChart extends AnimatedComponent {
           }
 
           //Get the Y offset of our next point.
-          double ydNext = 1 - (dataNext.value - yMin) / yLength;
+          double ydNext = 1 - (points.getY(next) - yMin) / yLength;
 
           // If we are a dash line we get the closest normalized point to are graph otherwise we just set our point to 0.
           double newPosition = 0;
@@ -284,13 +285,13 @@ public class LineChart extends AnimatedComponent {
           xd = newPosition;
         }
         else if (xd > 1) {
-          double xdPrev = (dataPrev.x - xMin) / xLength;
+          double xdPrev = (points.getX(prev) - xMin) / xLength;
           if (xdPrev > 1) {
             break;
           }
           if (optimizeYZooming) {
             double ratio = (1 - xdPrev) / (xd - xdPrev);
-            double ydPrev = 1 - (dataPrev.value - yMin) / yLength;
+            double ydPrev = 1 - (points.getY(prev) - yMin) / yLength;
             yd = (1 - ratio) * ydPrev + (ratio * yd);
           }
           xd = 1;
@@ -298,7 +299,7 @@ public class LineChart extends AnimatedComponent {
 
         if (path.getCurrentPoint() == null) {
           firstXd = xd;
-          firstX = data.x;
+          firstX = points.getX(i);
           // If for bucket data, because the previous ending x value is next data point's starting
           // x value, i.e. (xd + interval, 1), move the path start point to (xd, 1).
           // Otherwise, move the path start point to (xd, yd).
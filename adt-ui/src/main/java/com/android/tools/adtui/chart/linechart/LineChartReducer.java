@@ -15,15 +15,25 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.adtui.model.SeriesData;
 import java.awt.geom.Path2D;
 import java.util.List;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * This interface is used by {@link LineChart} component to be able
  * to render faster by reducing its data before drawing.
  */
 public interface LineChartReducer {
+  /**
+   * Fetches the data of a line that is going to be drawn across {@code pixelWidth} pixels. Reducers can use this to fetch data at a
+   * resolution matching the pixel density, instead of all the samples in range.
+   */
+  default List<SeriesData<Long>> getData(@NotNull RangedContinuousSeries series, @NotNull LineConfig config, int pixelWidth) {
+    return series.getSeries();
+  }
+
   /**
    * Reduces data used to represent a line.
    * The result shouldn't affect the looking of the line when it's drawn.
@@ -17,6 +17,10 @@ package com.android.tools.adtui.chart.linechart;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.android.tools.adtui.model.LongSeriesDataList;
+import com.android.tools.adtui.model.MinMaxPyramidDataSeries;
+import com.android.tools.adtui.model.Range;
+import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.adtui.model.SeriesData;
 import com.google.common.collect.ImmutableList;
 import java.awt.Color;
@@ -43,6 +47,20 @@ public class DefaultLineChartReducerTest {
     myConfig = new LineConfig(Color.RED);
   }
 
+  @Test
+  public void getDataUsesPyramidLevelMatchingPixelWidth() {
+    MinMaxPyramidDataSeries data = new MinMaxPyramidDataSeries();
+    for (int i = 0; i < 10000; i++) {
+      data.add(i, i % 100);
+    }
+    RangedContinuousSeries series = new RangedContinuousSeries("test", new Range(0, 10000), new Range(0, 100), data);
+    assertThat(myReducer.getData(series, myConfig, 100).size()).isAtMost(4 * 100);
+
+    // Stacked lines need all their samples.
+    myConfig.setStacked(true);
+    assertThat(myReducer.getData(series, myConfig, 100)).hasSize(10000);
+  }
+
   @Test
   public void reduceData() {
     List<SeriesData<Long>> data = new ImmutableList.Builder<SeriesData<Long>>()
@@ -63,6 +81,7 @@ public class DefaultLineChartReducerTest {
       .add(new SeriesData<>(7, 5L)).build();
     List<SeriesData<Long>> result = myReducer.reduceData(data, myConfig);
     assertSeriesEquals(expected, result);
+    assertSeriesEquals(expected, myReducer.reduceData(LongSeriesDataList.of(data), myConfig));
   }
 
   @Test
@@ -86,6 +105,7 @@ public class DefaultLineChartReducerTest {
     myConfig.setStepped(true);
     List<SeriesData<Long>> result = myReducer.reduceData(data, myConfig);
     assertSeriesEquals(expected, result);
+    assertSeriesEquals(expected, myReducer.reduceData(LongSeriesDataList.of(data), myConfig));
   }
 
   @Test
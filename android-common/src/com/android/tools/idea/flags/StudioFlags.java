@@ -124,6 +124,22 @@ public final class StudioFlags {
     "Allow exporting entries in the views for heap dump and native/JVM recordings in CSV format.",
     false);
 
+  public static final Flag<Boolean> PROFILER_MEMORY_MAPPED_HPROF_LOADING = Flag.create(
+    PROFILER, "memory.mapped.hprof", "Load heap dumps through a memory-mapped file",
+    "Spool heap dumps to a temporary file and parse them through a memory mapping instead of keeping the whole dump on the IDE heap.",
+    true);
+
+  public static final Flag<Boolean> PROFILER_PARALLEL_ART_TRACE_PARSING = Flag.create(
+    PROFILER, "parallel.art.trace.parsing", "Build ART trace call trees in parallel",
+    "Record the method events of ART traces per thread and build the call trees of the different threads concurrently.",
+    true);
+
+  public static final Flag<Integer> PROFILER_BYTES_CACHE_MEMORY_BUDGET_MB = Flag.create(
+    PROFILER, "bytes.cache.memory.budget", "Memory budget of the transport bytes caches",
+    "Set the number of megabytes of payloads (traces, heap dumps, network bodies) each transport bytes cache keeps in memory. " +
+    "Least recently used payloads beyond it are spilled to temporary files.",
+    256);
+
   public static final Flag<Boolean> PROFILER_PERFORMANCE_MONITORING = Flag.create(
     PROFILER, "performance.monitoring", "Enable Profiler Performance Monitoring Options",
     "Toggles if profiler performance metrics options are enabled.",
@@ -685,6 +701,14 @@ public final class StudioFlags {
     1000
   );
 
+  public static final Flag<Integer> LOGCAT_FILTER_PARTITION_SIZE = Flag.create(
+    LOGCAT,
+    "logcat.filter.partition.size",
+    "Set the number of messages that are filtered together on a worker thread",
+    "Set the number of messages that are filtered together on a worker thread. Larger batches are split and filtered in parallel.",
+    500
+  );
+
   public static final Flag<Boolean> LOGCAT_PANEL_MEMORY_SAVER = Flag.create(
     LOGCAT,
     "logcat.panel.memory.saver",
@@ -932,6 +956,10 @@ public final class StudioFlags {
     EMBEDDED_EMULATOR, "screenshot.statistics.interval", "Aggregation Interval for Screenshot Statistics",
     "Aggregation interval in seconds for statistics of received Emulator screenshots",
     120);
+  public static final Flag<Boolean> EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS = Flag.create(
+    EMBEDDED_EMULATOR, "screenshot.shared.memory", "Receive Emulator Screenshots through Shared Memory",
+    "Makes the Emulator write screenshots into a memory-mapped file instead of sending their pixels over gRPC",
+    false);
   public static final Flag<Boolean> EMBEDDED_EMULATOR_TRACE_GRPC_CALLS = Flag.create(
     EMBEDDED_EMULATOR, "trace.grpc.calls", "Enable Emulator gRPC Tracing",
     "Enables tracing of most Emulator gRPC calls",
@@ -980,6 +1008,14 @@ public final class StudioFlags {
     DEVICE_MIRRORING, "video.codec", "Video Codec Used for Mirroring of Physical Devices",
     "The name of a video codec, e.g. \"vp8\" or \"vp9\"",
     "vp8");
+  public static final Flag<Boolean> DEVICE_MIRRORING_FRAME_THREADED_DECODING = Flag.create(
+    DEVICE_MIRRORING, "frame.threaded.decoding", "Decode Video Frames of Mirrored Physical Devices in Parallel",
+    "Decodes several video frames in parallel. Increases throughput at the cost of a delay of a few frames",
+    false);
+  public static final Flag<Boolean> DEVICE_MIRRORING_ADAPTIVE_FRAME_RATE = Flag.create(
+    DEVICE_MIRRORING, "adaptive.frame.rate", "Adapt Frame Rate of Mirrored Physical Devices to Display Speed",
+    "Asks the device to lower the frame rate and bit rate of the video stream when not all frames can be displayed",
+    false);
   //endregion
 
   //region Refactorings
@@ -26,7 +26,6 @@ import com.android.tools.idea.io.grpc.ServerBuilder;
 import com.android.tools.idea.io.grpc.inprocess.InProcessServerBuilder;
 import com.android.tools.idea.io.grpc.stub.StreamObserver;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.CountDownLatch;
@@ -61,7 +60,7 @@ public class EventStreamServer implements Disposable {
 
   @NotNull private final String myServerName;
   @NotNull private final BlockingDeque<Common.Event> myEventQueue = new LinkedBlockingDeque<Common.Event>();
-  @NotNull private final Map<String, ByteString> myByteCache = new HashMap<>();
+  @NotNull private final SpillingBytesCache myByteCache = new SpillingBytesCache();
 
   @NotNull private final Object myServerLock = new Object();
   @GuardedBy("myServerLock") private Server myServer;
@@ -114,6 +113,8 @@ public class EventStreamServer implements Disposable {
       myTransportService.shutDownAndWait();
       myServer.shutdownNow();
     }
+    // Deletes the payloads spilled to disk that were never requested.
+    myByteCache.clear();
   }
 
   private class StreamTransportService extends TransportServiceGrpc.TransportServiceImplBase {
@@ -156,9 +157,9 @@ public class EventStreamServer implements Disposable {
 
     @Override
     public void getBytes(Transport.BytesRequest request, StreamObserver<Transport.BytesResponse> responseObserver) {
-      if (myByteCache.containsKey(request.getId())) {
-        responseObserver.onNext(Transport.BytesResponse.newBuilder().setContents(myByteCache.get(request.getId())).build());
-        myByteCache.remove(request.getId());
+      ByteString contents = myByteCache.remove(request.getId());
+      if (contents != null) {
+        responseObserver.onNext(Transport.BytesResponse.newBuilder().setContents(contents).build());
       }
       else {
         responseObserver.onNext(Transport.BytesResponse.getDefaultInstance());
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport;
+
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.protobuf.ByteString;
+import com.android.tools.idea.protobuf.UnsafeByteOperations;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.ShutDownTracker;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A thread-safe map of byte payloads keyed by id, which keeps at most a given number of bytes in memory. When the budget is exceeded, the
+ * least recently used payloads are written to temporary files, and they are memory-mapped when they are requested again. A spilled file is
+ * deleted when its payload is removed from the cache, which is what the transport pipeline does once the datastore has fetched it, or when
+ * the cache is cleared. The spill directories of all the caches are deleted at shutdown.
+ * <p>
+ * All the methods synchronize on the cache itself, so callers can also synchronize on it to perform several operations atomically. The
+ * files are written after {@link #put(String, ByteString)} has released the lock though, so the payloads being written are kept in memory
+ * until they are on disk.
+ */
+public final class SpillingBytesCache extends AbstractMap<String, ByteString> {
+  private static final Logger LOG = Logger.getInstance(SpillingBytesCache.class);
+
+  @GuardedBy("SpillingBytesCache.class") @Nullable private static Path ourSpillRoot;
+
+  private final long myMemoryBudget;
+
+  /** The payloads kept in memory, from the least to the most recently used. */
+  @GuardedBy("this") private final LinkedHashMap<String, ByteString> myInMemory = new LinkedHashMap<>(16, 0.75f, true);
+  /** The payloads that were evicted from memory and are being written to disk. */
+  @GuardedBy("this") private final Map<String, ByteString> mySpilling = new HashMap<>();
+  @GuardedBy("this") private final Map<String, Path> mySpilled = new HashMap<>();
+  @GuardedBy("this") private long myInMemoryByteCount;
+  @GuardedBy("this") @Nullable private Path mySpillDirectory;
+
+  private final AtomicLong mySpillCount = new AtomicLong();
+  private final AtomicLong mySpilledByteCount = new AtomicLong();
+  private final AtomicLong myDiskReadCount = new AtomicLong();
+
+  public SpillingBytesCache() {
+    this(StudioFlags.PROFILER_BYTES_CACHE_MEMORY_BUDGET_MB.get() * 1024L * 1024L);
+  }
+
+  public SpillingBytesCache(long memoryBudget) {
+    myMemoryBudget = memoryBudget;
+  }
+
+  @Override
+  public synchronized int size() {
+    return myInMemory.size() + mySpilling.size() + mySpilled.size();
+  }
+
+  @Override
+  public synchronized boolean containsKey(Object key) {
+    return myInMemory.containsKey(key) || mySpilling.containsKey(key) || mySpilled.containsKey(key);
+  }
+
+  @Override
+  @Nullable
+  public synchronized ByteString get(Object key) {
+    ByteString bytes = myInMemory.get(key);
+    if (bytes == null) {
+      bytes = mySpilling.get(key);
+    }
+    if (bytes != null) {
+      return bytes;
+    }
+    Path file = mySpilled.get(key);
+    return file == null ? null : readSpilled(file);
+  }
+
+  @Override
+  @Nullable
+  public ByteString put(@NotNull String key, @NotNull ByteString bytes) {
+    ByteString previous;
+    Map<String, ByteString> toSpill;
+    synchronized (this) {
+      previous = remove(key);
+      myInMemory.put(key, bytes);
+      myInMemoryByteCount += bytes.size();
+      toSpill = takeOverBudget();
+    }
+    if (!toSpill.isEmpty()) {
+      spill(toSpill);
+    }
+    return previous;
+  }
+
+  @Override
+  @Nullable
+  public synchronized ByteString remove(Object key) {
+    ByteString bytes = myInMemory.remove(key);
+    if (bytes != null) {
+      myInMemoryByteCount -= bytes.size();
+      return bytes;
+    }
+    // The thread writing the payload deletes its file once it notices the payload is gone.
+    bytes = mySpilling.remove(key);
+    if (bytes != null) {
+      return bytes;
+    }
+    Path file = mySpilled.remove(key);
+    if (file == null) {
+      return null;
+    }
+    bytes = readSpilled(file);
+    deleteSpilled(file);
+    return bytes;
+  }
+
+  @Override
+  public synchronized void clear() {
+    myInMemory.clear();
+    myInMemoryByteCount = 0;
+    mySpilling.clear();
+    mySpilled.values().forEach(SpillingBytesCache::deleteSpilled);
+    mySpilled.clear();
+    if (mySpillDirectory != null) {
+      try {
+        Files.deleteIfExists(mySpillDirectory);
+        mySpillDirectory = null;
+      }
+      catch (IOException e) {
+        // Some files are still mapped or being written, they are deleted at shutdown together with the directory.
+      }
+    }
+  }
+
+  /**
+   * Returns a view of the entries, whose payloads are read when they are iterated over.
+   */
+  @Override
+  @NotNull
+  public Set<Entry<String, ByteString>> entrySet() {
+    return new AbstractSet<Entry<String, ByteString>>() {
+      @Override
+      public int size() {
+        return SpillingBytesCache.this.size();
+      }
+
+      @Override
+      @NotNull
+      public Iterator<Entry<String, ByteString>> iterator() {
+        List<String> keys;
+        synchronized (SpillingBytesCache.this) {
+          keys = new ArrayList<>(size());
+          keys.addAll(myInMemory.keySet());
+          keys.addAll(mySpilling.keySet());
+          keys.addAll(mySpilled.keySet());
+        }
+        Iterator<String> keyIterator = keys.iterator();
+        return new Iterator<Entry<String, ByteString>>() {
+          @Nullable private String myLastKey;
+
+          @Override
+          public boolean hasNext() {
+            return keyIterator.hasNext();
+          }
+
+          @Override
+          public Entry<String, ByteString> next() {
+            myLastKey = keyIterator.next();
+            return new SimpleImmutableEntry<>(myLastKey, get(myLastKey));
+          }
+
+          @Override
+          public void remove() {
+            if (myLastKey == null) {
+              throw new IllegalStateException();
+            }
+            SpillingBytesCache.this.remove(myLastKey);
+            myLastKey = null;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns the number of bytes of the payloads held in memory.
+   */
+  public synchronized long getInMemoryByteCount() {
+    return myInMemoryByteCount;
+  }
+
+  /**
+   * Returns the number of payloads that were written to disk to stay within the memory budget.
+   */
+  public long getSpillCount() {
+    return mySpillCount.get();
+  }
+
+  /**
+   * Returns the total size of the payloads that were written to disk to stay within the memory budget.
+   */
+  public long getSpilledByteCount() {
+    return mySpilledByteCount.get();
+  }
+
+  /**
+   * Returns the number of times a spilled payload was read back from disk.
+   */
+  public long getDiskReadCount() {
+    return myDiskReadCount.get();
+  }
+
+  /**
+   * Moves the least recently used payloads that don't fit in the memory budget to {@link #mySpilling}, and returns them.
+   */
+  @GuardedBy("this")
+  @NotNull
+  private Map<String, ByteString> takeOverBudget() {
+    Map<String, ByteString> toSpill = new LinkedHashMap<>();
+    Iterator<Entry<String, ByteString>> iterator = myInMemory.entrySet().iterator();
+    while (myInMemoryByteCount > myMemoryBudget && iterator.hasNext()) {
+      Entry<String, ByteString> eldest = iterator.next();
+      iterator.remove();
+      myInMemoryByteCount -= eldest.getValue().size();
+      mySpilling.put(eldest.getKey(), eldest.getValue());
+      toSpill.put(eldest.getKey(), eldest.getValue());
+    }
+    return toSpill;
+  }
+
+  /**
+   * Writes the payloads taken by {@link #takeOverBudget()} to disk, without holding the lock.
+   */
+  private void spill(@NotNull Map<String, ByteString> toSpill) {
+    Path directory;
+    try {
+      directory = getSpillDirectory();
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to create a directory to spill bytes to", e);
+      directory = null;
+    }
+    for (Entry<String, ByteString> entry : toSpill.entrySet()) {
+      String key = entry.getKey();
+      ByteString bytes = entry.getValue();
+      Path file = null;
+      if (directory != null) {
+        try {
+          file = writeSpilled(directory, bytes);
+        }
+        catch (IOException e) {
+          LOG.warn("Failed to spill " + bytes.size() + " bytes to disk", e);
+        }
+      }
+      synchronized (this) {
+        if (mySpilling.get(key) != bytes) {
+          // The payload was removed or replaced while it was written.
+          if (file != null) {
+            deleteSpilled(file);
+          }
+          continue;
+        }
+        mySpilling.remove(key);
+        if (file == null) {
+          // Keep the payload in memory rather than losing it.
+          myInMemory.put(key, bytes);
+          myInMemoryByteCount += bytes.size();
+          continue;
+        }
+        mySpilled.put(key, file);
+      }
+      mySpillCount.incrementAndGet();
+      mySpilledByteCount.addAndGet(bytes.size());
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("Spilled %d bytes for id %s, %d payloads (%d bytes) spilled so far",
+                                bytes.size(), key, mySpillCount.get(), mySpilledByteCount.get()));
+      }
+    }
+  }
+
+  @NotNull
+  private synchronized Path getSpillDirectory() throws IOException {
+    if (mySpillDirectory == null) {
+      mySpillDirectory = Files.createTempDirectory(getSpillRoot(), "cache");
+    }
+    return mySpillDirectory;
+  }
+
+  /**
+   * Returns the directory shared by the spill directories of all the caches, which is deleted at shutdown.
+   */
+  @NotNull
+  private static synchronized Path getSpillRoot() throws IOException {
+    if (ourSpillRoot == null) {
+      Path root = Files.createTempDirectory("transport-bytes");
+      ShutDownTracker.getInstance().registerShutdownTask(() -> {
+        try {
+          FileUtil.delete(root);
+        }
+        catch (IOException e) {
+          LOG.warn("Failed to delete " + root, e);
+        }
+      });
+      ourSpillRoot = root;
+    }
+    return ourSpillRoot;
+  }
+
+  @NotNull
+  private static Path writeSpilled(@NotNull Path directory, @NotNull ByteString bytes) throws IOException {
+    Path file = Files.createTempFile(directory, "bytes", ".bin");
+    try (OutputStream out = Files.newOutputStream(file)) {
+      bytes.writeTo(out);
+    }
+    catch (IOException e) {
+      deleteSpilled(file);
+      throw e;
+    }
+    return file;
+  }
+
+  @Nullable
+  private ByteString readSpilled(@NotNull Path file) {
+    myDiskReadCount.incrementAndGet();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      // The mapping stays valid after the channel is closed and the file is deleted.
+      return size == 0 ? ByteString.EMPTY : UnsafeByteOperations.unsafeWrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to read spilled bytes from " + file, e);
+      return null;
+    }
+  }
+
+  private static void deleteSpilled(@NotNull Path file) {
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException e) {
+      // A file that is still mapped cannot be deleted on Windows, it is deleted at shutdown together with the spill directory.
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport
+
+import com.android.tools.idea.protobuf.ByteString
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class SpillingBytesCacheTest {
+  private val cache = SpillingBytesCache(100)
+
+  @Test
+  fun payloadsWithinBudgetStayInMemory() {
+    cache["a"] = bytes(40, 'a')
+    cache["b"] = bytes(60, 'b')
+
+    assertThat(cache.inMemoryByteCount).isEqualTo(100)
+    assertThat(cache.spillCount).isEqualTo(0)
+    assertThat(cache["a"]).isEqualTo(bytes(40, 'a'))
+  }
+
+  @Test
+  fun leastRecentlyUsedPayloadsAreSpilled() {
+    cache["a"] = bytes(40, 'a')
+    cache["b"] = bytes(40, 'b')
+    cache["a"]
+    cache["c"] = bytes(40, 'c')
+
+    // "b" was used less recently than "a".
+    assertThat(cache.spillCount).isEqualTo(1)
+    assertThat(cache.spilledByteCount).isEqualTo(40)
+    assertThat(cache.inMemoryByteCount).isEqualTo(80)
+    assertThat(cache).hasSize(3)
+    assertThat(cache.diskReadCount).isEqualTo(0)
+    assertThat(cache["b"]).isEqualTo(bytes(40, 'b'))
+    assertThat(cache.diskReadCount).isEqualTo(1)
+  }
+
+  @Test
+  fun payloadLargerThanBudgetIsSpilled() {
+    cache["big"] = bytes(1000, 'x')
+
+    assertThat(cache.inMemoryByteCount).isEqualTo(0)
+    assertThat(cache.containsKey("big")).isTrue()
+    assertThat(cache.remove("big")).isEqualTo(bytes(1000, 'x'))
+    assertThat(cache.containsKey("big")).isFalse()
+    assertThat(cache.remove("big")).isNull()
+  }
+
+  @Test
+  fun putReplacesSpilledPayload() {
+    cache["a"] = bytes(200, 'a')
+    assertThat(cache.put("a", bytes(10, 'b'))).isEqualTo(bytes(200, 'a'))
+
+    assertThat(cache).containsExactly("a", bytes(10, 'b'))
+    assertThat(cache.inMemoryByteCount).isEqualTo(10)
+  }
+
+  @Test
+  fun mapOperationsSeeBothTiers() {
+    val payloads = (0 until 10).associate { "$it" to bytes(30, 'a' + it) }
+    cache.putAll(payloads)
+
+    assertThat(cache).containsExactlyEntriesIn(payloads)
+    cache.entries.removeIf { it.key.toInt() % 2 == 0 }
+    assertThat(cache.keys).containsExactly("1", "3", "5", "7", "9")
+
+    cache.clear()
+    assertThat(cache).isEmpty()
+    assertThat(cache.inMemoryByteCount).isEqualTo(0)
+  }
+
+  private fun bytes(size: Int, value: Char) = ByteString.copyFrom(ByteArray(size) { value.code.toByte() })
+}
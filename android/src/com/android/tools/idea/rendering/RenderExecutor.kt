@@ -24,6 +24,7 @@ import java.util.Queue
 import java.util.concurrent.Callable
 import java.util.concurrent.CancellationException
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.PriorityBlockingQueue
 import java.util.concurrent.ScheduledExecutorService
@@ -33,9 +34,7 @@ import java.util.concurrent.ThreadFactory
 import java.util.concurrent.ThreadPoolExecutor
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
-import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
-import java.util.concurrent.atomic.AtomicReference
 import java.util.concurrent.atomic.LongAdder
 import java.util.concurrent.locks.Lock
 import java.util.concurrent.locks.ReentrantLock
@@ -44,34 +43,54 @@ import kotlin.concurrent.withLock
 /** Max number of tasks that can be waiting to execute  */
 private val DEFAULT_MAX_QUEUED_TASKS = Integer.getInteger("layoutlib.thread.max.queued", 50)
 
-private fun singleThreadExecutor(factory: ThreadFactory): ExecutorService = ThreadPoolExecutor(1, 1,
-                                                                                               0, TimeUnit.MILLISECONDS,
-                                                                                               PriorityBlockingQueue(),
-                                                                                               factory)
+/** Number of render threads. Render actions only run concurrently when this is set to more than 1. */
+private val DEFAULT_RENDER_THREADS = Integer.getInteger("layoutlib.thread.count", 1).coerceAtLeast(1)
+
+private fun renderThreadPool(threads: Int): (ThreadFactory) -> ExecutorService = { factory ->
+  ThreadPoolExecutor(threads, threads,
+                     0, TimeUnit.MILLISECONDS,
+                     PriorityBlockingQueue(),
+                     factory)
+}
 
 /**
  * Intended to be used for executing render tasks of layoutlib [RenderSession].
- * Currently, all calls to the layoutlib should be done from the same thread.
- * This executor guarantees that unit of work passed to [runAction] or [runAsyncAction]
- * will be executed sequentially from the same thread.
+ * By default, all calls to the layoutlib are done from the same thread and this executor guarantees
+ * that unit of work passed to [runAction] or [runAsyncAction] will be executed sequentially from that thread.
+ *
+ * When created with more than one render thread, the actions are run by a pool of threads that share a single
+ * priority queue, so higher priority actions are still picked first by whichever thread becomes available.
+ * Layoutlib guards its global state with its own lock, so only the work done around the layoutlib calls (class
+ * loading, resource resolution, image processing) actually runs in parallel.
  *
  * @param maxQueueingTasks max number of tasks that can be queueing waiting for a task to complete.
+ * @param renderThreads number of threads created by the [ExecutorService], used to name them.
  * @param executorProvider a provider of the [ExecutorService] using the given [ThreadFactory].
  * @param timeoutExecutorProvider a [ScheduledExecutorService] to keep track of the task timeout.
  */
 class RenderExecutor private constructor(private val maxQueueingTasks: Int,
+                                         private val renderThreads: Int,
                                          executorProvider: (ThreadFactory) -> ExecutorService,
                                          timeoutExecutorProvider: () -> ScheduledExecutorService) : RenderAsyncActionExecutor {
-  private val renderingThread = AtomicReference<Thread?>()
+  private val renderingThreads: MutableSet<Thread> = ConcurrentHashMap.newKeySet()
+  private val createdThreads = AtomicInteger(0)
 
   /**
-   * The thread factory allows us controlling when the new thread is created to we can keep track of it. This allows us
+   * The thread factory allows us controlling when the new threads are created to we can keep track of them. This allows us
    * to capture the stack trace later.
    */
-  private val threadFactory = ThreadFactory {
-    val newThread = Thread(null, it, "Layoutlib Render Thread")
+  private val threadFactory = ThreadFactory { runnable ->
+    val name = if (renderThreads > 1) "Layoutlib Render Thread ${createdThreads.incrementAndGet()}" else "Layoutlib Render Thread"
+    val newThread = Thread(null, {
+      try {
+        runnable.run()
+      }
+      finally {
+        renderingThreads.remove(Thread.currentThread())
+      }
+    }, name)
       .apply { isDaemon = true }
-    renderingThread.set(newThread)
+    renderingThreads.add(newThread)
     newThread
   }
   private val pendingActionsQueueLock: Lock = ReentrantLock()
@@ -81,21 +100,30 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
   private val renderingExecutor: ExecutorService = executorProvider(threadFactory)
   private val timeoutExecutor: ScheduledExecutorService = timeoutExecutorProvider()
   private val accumulatedTimeoutExceptions = AtomicInteger(0)
-  private val isBusy = AtomicBoolean(false)
+  private val busyThreads = AtomicInteger(0)
   private val executedRenderActions = LongAdder()
+  private val queueWaitTimeNs = LongAdder()
+  private val renderTimeNs = LongAdder()
 
-  fun interrupt() = renderingThread.get()?.interrupt()
+  /**
+   * Interrupts all the render threads.
+   */
+  fun interrupt() = renderingThreads.forEach { it.interrupt() }
 
   fun shutdown() {
     timeoutExecutor.shutdownNow()
     renderingExecutor.shutdownNow()
-    val currentThread = renderingThread.getAndSet(null)
-    currentThread?.interrupt()
+    renderingThreads.forEach { it.interrupt() }
+    renderingThreads.clear()
   }
 
-  private fun createRenderTimeoutException(message: String): TimeoutException {
+  /**
+   * Creates a [TimeoutException] with the stack trace of the given [thread]. When no thread is given, the stack trace
+   * of one of the render threads is used instead.
+   */
+  private fun createRenderTimeoutException(message: String, thread: Thread? = renderingThreads.firstOrNull()): TimeoutException {
     val timeoutException = TimeoutException(message)
-    renderingThread.get()?.let {
+    thread?.let {
       timeoutException.stackTrace = it.stackTrace
     }
 
@@ -139,10 +167,11 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
     val future = object : PriorityCompletableFuture<T>(priority) {
       override fun cancel(mayInterruptIfRunning: Boolean): Boolean = super.cancel(mayInterruptIfRunning).also {
         if (mayInterruptIfRunning && it) {
-          interrupt()
+          executingThread?.interrupt()
         }
       }
     }
+    val queuedAtNs = System.nanoTime()
 
     val queueTimeoutFuture = if (queueingTimeout > 0) {
       scheduleTimeoutAction(queueingTimeout, queueingTimeoutUnit) {
@@ -176,7 +205,7 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
       executedRenderActions.increment()
       // Clear the interrupted state
       Thread.interrupted()
-      isBusy.set(true)
+      busyThreads.incrementAndGet()
       try {
         queueTimeoutFuture?.cancel(false)
         val isPending = pendingActionsQueueLock.withLock {
@@ -184,27 +213,36 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
         }
 
         if (!isPending || future.isDone) return@PriorityRunnable
+        queueWaitTimeNs.add(System.nanoTime() - queuedAtNs)
 
+        val renderThread = Thread.currentThread()
         val actionTimeoutFuture = scheduleTimeoutAction(actionTimeout, actionTimeoutUnit) {
           if (!future.isDone) {
-            interrupt()
+            renderThread.interrupt()
           }
           future.completeExceptionally(
-            createRenderTimeoutException("The render action was too slow to execute (${actionTimeoutUnit.toMillis(actionTimeout)}ms)"))
+            createRenderTimeoutException("The render action was too slow to execute (${actionTimeoutUnit.toMillis(actionTimeout)}ms)",
+                                         renderThread))
         }
         future.whenComplete { _, _ -> actionTimeoutFuture.cancel(false) }
 
         // The request got called, so reset the timeout counter.
         accumulatedTimeoutExceptions.set(0)
+        future.executingThread = renderThread
+        val renderStartNs = System.nanoTime()
         try {
           future.complete(callable.call())
         }
         catch (t: Throwable) {
           future.completeExceptionally(t)
         }
+        finally {
+          future.executingThread = null
+          renderTimeNs.add(System.nanoTime() - renderStartNs)
+        }
       }
       finally {
-        isBusy.set(false)
+        busyThreads.decrementAndGet()
       }
     })
     return future
@@ -249,9 +287,21 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
   }
 
   /**
-   * Returns true if the current thread is the render thread managed by this executor.
+   * Returns true if the current thread is one of the render threads managed by this executor.
+   */
+  fun isCurrentThreadARenderThread() = renderingThreads.contains(Thread.currentThread())
+
+  /**
+   * Total time, in milliseconds, that the executed actions spent waiting in the queue for a render thread.
    */
-  fun isCurrentThreadARenderThread() = Thread.currentThread() == renderingThread.get()
+  val totalQueueWaitTimeMs: Long
+    get() = TimeUnit.NANOSECONDS.toMillis(queueWaitTimeNs.sum())
+
+  /**
+   * Total time, in milliseconds, that the render threads spent running actions.
+   */
+  val totalRenderTimeMs: Long
+    get() = TimeUnit.NANOSECONDS.toMillis(renderTimeNs.sum())
 
   @get:TestOnly
   val accumulatedTimeouts: Int
@@ -262,14 +312,19 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
     get() = pendingActionsQueue.size
 
   /**
-   * Returns true if the render thread is busy running some code, false otherwise.
+   * Returns true if any of the render threads is busy running some code, false otherwise.
    */
-  fun isBusy() = isBusy.get()
+  fun isBusy() = busyThreads.get() > 0
 
   companion object {
+    /**
+     * Creates a [RenderExecutor] running the actions on [renderThreads] threads. By default, a single thread is used unless
+     * the `layoutlib.thread.count` system property says otherwise.
+     */
     @JvmStatic
-    fun create(): RenderExecutor =
-      RenderExecutor(DEFAULT_MAX_QUEUED_TASKS, ::singleThreadExecutor) {
+    @JvmOverloads
+    fun create(renderThreads: Int = DEFAULT_RENDER_THREADS): RenderExecutor =
+      RenderExecutor(DEFAULT_MAX_QUEUED_TASKS, renderThreads, renderThreadPool(renderThreads)) {
         ScheduledThreadPoolExecutor(1).also {
           it.removeOnCancelPolicy = true
         }
@@ -278,7 +333,7 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
     @TestOnly
     fun createForTests(executorProvider: (ThreadFactory) -> ExecutorService,
                        timeoutExecutorProvider: () -> ScheduledExecutorService) =
-      RenderExecutor(DEFAULT_MAX_QUEUED_TASKS, executorProvider, timeoutExecutorProvider)
+      RenderExecutor(DEFAULT_MAX_QUEUED_TASKS, 1, executorProvider, timeoutExecutorProvider)
   }
 
   /**
@@ -321,6 +376,10 @@ class RenderExecutor private constructor(private val maxQueueingTasks: Int,
 
     private val creationTime = System.currentTimeMillis()
 
+    /** The render thread running this action, or null if the action is not running. */
+    @Volatile
+    var executingThread: Thread? = null
+
     override fun compareTo(other: PriorityCompletableFuture<Any?>): Int {
       // Plus sign as we want the lowest priority first to be removed from the wait list when reaching max
       val priorityComparison = renderingPriority.priority.compareTo(other.renderingPriority.priority)
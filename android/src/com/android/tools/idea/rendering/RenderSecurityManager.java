@@ -34,6 +34,7 @@ import java.security.Permission;
 import java.util.Arrays;
 import java.util.PropertyPermission;
 import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -82,6 +83,16 @@ public class RenderSecurityManager extends SecurityManager {
    * Secret which must be provided by callers wishing to deactivate the security manager
    */
   private static Object sCredential;
+  /**
+   * The security manager is installed globally, so only one render thread at a time can have an active
+   * {@linkplain RenderSecurityManager}. Other render threads activating one wait until it is disposed. Renders run in the sandbox are
+   * therefore serialized, even when the {@link RenderExecutor} has more than one thread.
+   */
+  private static final ReentrantLock sActivationLock = new ReentrantLock();
+  /**
+   * Whether this security manager is holding {@link #sActivationLock}, i.e. whether it is installed as the security manager.
+   */
+  private boolean mHoldsActivationLock;
   /**
    * For debugging purposes
    */
@@ -195,58 +206,79 @@ public class RenderSecurityManager extends SecurityManager {
    *                   credential passed in to the earlier activation call
    */
   public void setActive(boolean active, @Nullable Object credential) {
+    if (active && !mHoldsActivationLock) {
+      sActivationLock.lock();
+      mHoldsActivationLock = true;
+    }
     SecurityManager current = System.getSecurityManager();
     boolean isActive = current == this;
-    if (active == isActive) {
-      return;
-    }
-
-    if (active) {
-      // Enable
-      assert !(current instanceof RenderSecurityManager);
-      myPreviousSecurityManager = current;
-      sIsRenderThread.set(true);
-      mDisabled = false;
-      System.setSecurityManager(this);
-      //noinspection AssignmentToStaticFieldFromInstanceMethod
-      sCredential = credential;
-    }
-    else {
-      if (credential != sCredential) {
+    try {
+      if (active == isActive) {
+        return;
+      }
+      if (!active && credential != sCredential) {
+        // Checked before anything changes: the security manager stays installed, and so keeps the activation lock until it is
+        // disposed with the right credential.
         throw RenderSecurityException.create("Invalid credential");
       }
 
-      // Disable
-      mAllowSetSecurityManager = true;
-      // Don't set mDisabled and clear sInRenderThread yet: the call
-      // to revert to the previous security manager below will trigger
-      // a check permission, and in that code we need to distinguish between
-      // this call (isRelevant() should return true) and other threads calling
-      // it outside the scope of the security manager
-      try {
-        // Only reset the security manager if it hasn't already been set to
-        // something else. If other threads try to do the same thing we could have
-        // a problem; if they sampled the render security manager while it was globally
-        // active, replaced it with their own, and sometime in the future try to
-        // set it back, it will be active when we didn't intend for it to be. That's
-        // why there is also the {@code mDisabled} flag, used to ignore any requests
-        // later on.
-        if (current instanceof RenderSecurityManager) {
-          System.setSecurityManager(myPreviousSecurityManager);
+      if (active) {
+        // Enable
+        assert !(current instanceof RenderSecurityManager);
+        myPreviousSecurityManager = current;
+        sIsRenderThread.set(true);
+        mDisabled = false;
+        System.setSecurityManager(this);
+        //noinspection AssignmentToStaticFieldFromInstanceMethod
+        sCredential = credential;
+      }
+      else {
+        // Disable
+        mAllowSetSecurityManager = true;
+        // Don't set mDisabled and clear sInRenderThread yet: the call
+        // to revert to the previous security manager below will trigger
+        // a check permission, and in that code we need to distinguish between
+        // this call (isRelevant() should return true) and other threads calling
+        // it outside the scope of the security manager
+        try {
+          // Only reset the security manager if it hasn't already been set to
+          // something else. If other threads try to do the same thing we could have
+          // a problem; if they sampled the render security manager while it was globally
+          // active, replaced it with their own, and sometime in the future try to
+          // set it back, it will be active when we didn't intend for it to be. That's
+          // why there is also the {@code mDisabled} flag, used to ignore any requests
+          // later on.
+          if (current instanceof RenderSecurityManager) {
+            System.setSecurityManager(myPreviousSecurityManager);
+          }
+          else if (mLogger != null) {
+            sIsRenderThread.set(false);
+            mLogger.warning("Security manager was changed behind the scenes: ", current);
+          }
         }
-        else if (mLogger != null) {
+        finally {
+          mDisabled = true;
+          mAllowSetSecurityManager = false;
           sIsRenderThread.set(false);
-          mLogger.warning("Security manager was changed behind the scenes: ", current);
         }
       }
-      finally {
-        mDisabled = true;
-        mAllowSetSecurityManager = false;
-        sIsRenderThread.set(false);
+    }
+    finally {
+      // The activation lock is held exactly while this security manager is installed, so it is also released when the activation
+      // failed, or when the security manager was replaced behind the scenes.
+      if (System.getSecurityManager() != this) {
+        releaseActivationLock();
       }
     }
   }
 
+  private void releaseActivationLock() {
+    if (mHoldsActivationLock) {
+      mHoldsActivationLock = false;
+      sActivationLock.unlock();
+    }
+  }
+
   private boolean isRelevant() {
     return sEnabled && !mDisabled && sIsRenderThread.get();
   }
@@ -114,6 +114,11 @@ public interface ImagePool {
      * Returns the number of times we had an image that was returned to this bucket.
      */
     long imageWasReturned();
+
+    /**
+     * Returns the number of images in this bucket that were reclaimed by the GC before they could be reused.
+     */
+    long bucketEvictions();
   }
 
   interface Stats {
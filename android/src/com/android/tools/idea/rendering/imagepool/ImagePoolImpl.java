@@ -25,6 +25,7 @@ import com.google.common.collect.EvictingQueue;
 import com.google.common.collect.ForwardingQueue;
 import com.google.common.collect.Sets;
 import com.intellij.openapi.diagnostic.Logger;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.awt.AlphaComposite;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
@@ -34,12 +35,14 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.IdentityHashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
@@ -61,13 +64,30 @@ class ImagePoolImpl implements ImagePool {
   private static final Logger LOG = Logger.getInstance(ImagePoolImpl.class);
 
   private static final Bucket NULL_BUCKET = new Bucket();
+  /**
+   * Number of independently locked shards the buckets are distributed into. Must be a power of 2.
+   */
+  private static final int SHARD_COUNT_BITS = 4;
   private final int[] myBucketSizes;
-  private final HashMap<String, Bucket> myPool = new HashMap<>();
-  private final IdentityHashMap<Bucket, BucketStatsImpl> myBucketStats = new IdentityHashMap<>();
+  private final Shard[] myShards = new Shard[1 << SHARD_COUNT_BITS];
+  /**
+   * Per thread cache of the last bucket looked up. Render threads tend to request the same image size over and over, this avoids going
+   * through the sizing policy and the shards for those.
+   */
+  private final ThreadLocal<LastBucketLookup> myLastBucketLookup = ThreadLocal.withInitial(this::newLastBucketLookup);
+  /**
+   * Every thread's {@link #myLastBucketLookup}, so they can be cleared when the pool is disposed. Held weakly so the lookups of threads
+   * that have terminated can be collected.
+   */
+  private final Set<LastBucketLookup> myLastBucketLookups = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
   private final BiFunction<Integer, Integer, Function<Integer, Integer>> myBucketSizingPolicy;
   @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
   private final FinalizableReferenceQueue myFinalizableReferenceQueue = new FinalizableReferenceQueue();
-  private final Set<Reference<?>> myReferences = Sets.newConcurrentHashSet();
+  /**
+   * References to the images that are not pooled, i.e. from the {@link #NULL_BUCKET}. References to pooled images are kept by their
+   * bucket, see {@link Bucket#myReferences}.
+   */
+  private final Set<Reference<?>> myUnpooledReferences = Sets.newConcurrentHashSet();
 
   private final LongAdder myTotalAllocatedBytes = new LongAdder();
   private final LongAdder myTotalInUseBytes = new LongAdder();
@@ -85,8 +105,17 @@ class ImagePoolImpl implements ImagePool {
 
     @Override
     public BucketStats[] getBucketStats() {
-      return myBucketStats.values().stream()
-        .toArray(BucketStats[]::new);
+      List<BucketStats> stats = new ArrayList<>();
+      for (Shard shard : myShards) {
+        synchronized (shard) {
+          for (Bucket bucket : shard.myBuckets.values()) {
+            if (bucket.myStats != null) {
+              stats.add(bucket.myStats);
+            }
+          }
+        }
+      }
+      return stats.toArray(new BucketStats[0]);
     }
   };
 
@@ -109,22 +138,25 @@ class ImagePoolImpl implements ImagePool {
     myBucketSizes = bucketSizes;
     Arrays.sort(myBucketSizes);
     myBucketSizingPolicy = bucketSizingPolicy;
+    for (int i = 0; i < myShards.length; i++) {
+      myShards[i] = new Shard();
+    }
   }
 
   private boolean isDisposed = false;
 
   /**
-   * Returns the key to be used for indexing the {@link EvictingQueue}.
+   * Returns the key to be used for indexing the buckets. The bucket width and height are packed in 24 bits each, the type in 16 bits.
    */
+  @VisibleForTesting
+  static long getPoolKey(int w, int h, int type) {
+    assert w >= 0 && w < (1 << 24) && h >= 0 && h < (1 << 24) && type >= 0 && type < (1 << 16);
+    return ((long)w << 40) | ((long)h << 16) | type;
+  }
+
   @NotNull
-  private static String getPoolKey(int w, int h, int type) {
-    return new StringBuilder()
-      .append(w)
-      .append('x')
-      .append(h)
-      .append('-')
-      .append(type)
-      .toString();
+  private Shard getShard(long poolKey) {
+    return myShards[(Long.hashCode(poolKey) * 0x9E3779B9) >>> (Integer.SIZE - SHARD_COUNT_BITS)];
   }
 
   /**
@@ -134,6 +166,27 @@ class ImagePoolImpl implements ImagePool {
    */
   @NotNull
   private Bucket getTypeBucket(int w, int h, int type) {
+    LastBucketLookup lastLookup = myLastBucketLookup.get();
+    if (lastLookup.myBucket != null && lastLookup.myWidth == w && lastLookup.myHeight == h && lastLookup.myType == type) {
+      return lastLookup.myBucket;
+    }
+    Bucket bucket = findTypeBucket(w, h, type);
+    lastLookup.myWidth = w;
+    lastLookup.myHeight = h;
+    lastLookup.myType = type;
+    lastLookup.myBucket = bucket;
+    return bucket;
+  }
+
+  @NotNull
+  private LastBucketLookup newLastBucketLookup() {
+    LastBucketLookup lookup = new LastBucketLookup();
+    myLastBucketLookups.add(lookup);
+    return lookup;
+  }
+
+  @NotNull
+  private Bucket findTypeBucket(int w, int h, int type) {
     if (myBucketSizingPolicy.apply(w, h).apply(type) == 0) {
       // Do not cache
       return NULL_BUCKET;
@@ -164,23 +217,18 @@ class ImagePoolImpl implements ImagePool {
       return NULL_BUCKET;
     }
 
-    String poolKey = getPoolKey(widthBucket, heightBucket, type);
-
-    int finalWidthBucket = widthBucket;
-    int finalHeightBucket = heightBucket;
-    return myPool.computeIfAbsent(poolKey, (k) -> {
-      int size = myBucketSizingPolicy.apply(finalWidthBucket, finalHeightBucket).apply(type);
-
-      if (size == 0) {
-        // For size 0, do not allocate extra memory for a new EvictingQueue.
-        return NULL_BUCKET;
+    long poolKey = getPoolKey(widthBucket, heightBucket, type);
+    Shard shard = getShard(poolKey);
+    synchronized (shard) {
+      Bucket bucket = shard.myBuckets.get(poolKey);
+      if (bucket == null) {
+        int size = myBucketSizingPolicy.apply(widthBucket, heightBucket).apply(type);
+        // For size 0, do not allocate extra memory for a new queue.
+        bucket = size == 0 ? NULL_BUCKET : new Bucket(widthBucket, heightBucket, size);
+        shard.myBuckets.put(poolKey, bucket);
       }
-
-      Bucket newBucket = new Bucket(finalWidthBucket, finalHeightBucket, size);
-      myBucketStats.put(newBucket, new BucketStatsImpl(newBucket));
-
-      return newBucket;
-    });
+      return bucket;
+    }
   }
 
   @VisibleForTesting
@@ -190,7 +238,8 @@ class ImagePoolImpl implements ImagePool {
 
     // To avoid creating a large number of EvictingQueues, we distribute the images in buckets and use that
     Bucket bucket = getTypeBucket(w, h, type);
-    BucketStatsImpl bucketStats = myBucketStats.get(bucket);
+    BucketStatsImpl bucketStats = bucket.myStats;
+    Set<Reference<?>> references = bucket == NULL_BUCKET ? myUnpooledReferences : bucket.myReferences;
     if (LOG.isDebugEnabled()) {
       LOG.debug(String.format("create(%dx%d-%d) in bucket (%dx%d) hasStats=%b\n", w, h, type, bucket.myMinWidth, bucket.myMinHeight,
                               bucketStats != null));
@@ -201,6 +250,10 @@ class ImagePoolImpl implements ImagePool {
     try {
       element = bucket.remove();
       while ((image = element.get()) == null) {
+        // The image was reclaimed by the GC while sitting in the pool.
+        if (bucketStats != null) {
+          bucketStats.imageEvicted();
+        }
         myTotalAllocatedBytes.add(-element.getImageEstimatedSize());
         element = bucket.remove();
       }
@@ -255,7 +308,7 @@ class ImagePoolImpl implements ImagePool {
       @Override
       public void finalizeReferent() {
         // This method might be called twice if the user has manually called the free() method. The second call will have no effect.
-        if (myReferences.remove(this)) {
+        if (references.remove(this)) {
           Bucket.Element element = new Bucket.Element(imagePointer);
           boolean accepted = bucket.offer(element);
           if (bucketStats != null) {
@@ -283,7 +336,7 @@ class ImagePoolImpl implements ImagePool {
       }
     };
     pooledImage.myOwnReference = reference;
-    myReferences.add(reference);
+    references.add(reference);
 
     return pooledImage;
   }
@@ -295,6 +348,7 @@ class ImagePoolImpl implements ImagePool {
     private final AtomicLong myBucketHit = new AtomicLong(0);
     private final AtomicLong myBucketFull = new AtomicLong(0);
     private final AtomicLong myBucketHadSpace = new AtomicLong(0);
+    private final AtomicLong myBucketEvictions = new AtomicLong(0);
 
     BucketStatsImpl(@NotNull Bucket bucket) {
       myBucket = bucket;
@@ -340,6 +394,11 @@ class ImagePoolImpl implements ImagePool {
       return myBucketHadSpace.get();
     }
 
+    @Override
+    public long bucketEvictions() {
+      return myBucketEvictions.get();
+    }
+
     void bucketHit() {
       myLastAccessMs.set(System.currentTimeMillis());
       myBucketHit.incrementAndGet();
@@ -357,6 +416,24 @@ class ImagePoolImpl implements ImagePool {
     void returnedImageRejected() {
       myBucketFull.incrementAndGet();
     }
+
+    void imageEvicted() {
+      myBucketEvictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * A group of buckets guarded by the shard's monitor.
+   */
+  private static final class Shard {
+    private final Long2ObjectOpenHashMap<Bucket> myBuckets = new Long2ObjectOpenHashMap<>();
+  }
+
+  private static final class LastBucketLookup {
+    private int myWidth;
+    private int myHeight;
+    private int myType;
+    @Nullable private Bucket myBucket;
   }
 
   private static class Bucket extends ForwardingQueue<Bucket.Element> {
@@ -390,6 +467,11 @@ class ImagePoolImpl implements ImagePool {
     private final int myMinWidth;
     private final int myMinHeight;
     private final int myMaxSize;
+    @Nullable private final BucketStatsImpl myStats;
+    /**
+     * References to the images allocated from this bucket that have not been freed yet.
+     */
+    private final Set<Reference<?>> myReferences;
 
     Bucket(int minWidth, int minHeight, int maxSize) {
       Preconditions.checkArgument(maxSize > 0);
@@ -397,6 +479,8 @@ class ImagePoolImpl implements ImagePool {
       myMinHeight = minHeight;
       myMaxSize = maxSize;
       myDelegate = new ArrayBlockingQueue<>(maxSize);
+      myStats = new BucketStatsImpl(this);
+      myReferences = Sets.newConcurrentHashSet();
     }
 
     Bucket() {
@@ -404,6 +488,8 @@ class ImagePoolImpl implements ImagePool {
       myMinHeight = 0;
       myMaxSize = 0;
       myDelegate = EvictingQueue.create(0);
+      myStats = null;
+      myReferences = Collections.emptySet();
     }
 
     @Override
@@ -455,8 +541,22 @@ class ImagePoolImpl implements ImagePool {
   public void dispose() {
     isDisposed = true;
     myFinalizableReferenceQueue.close();
-    myReferences.clear();
-    myPool.clear();
+    myUnpooledReferences.clear();
+    synchronized (myLastBucketLookups) {
+      for (LastBucketLookup lookup : myLastBucketLookups) {
+        lookup.myBucket = null;
+      }
+      myLastBucketLookups.clear();
+    }
+    myLastBucketLookup.remove();
+    for (Shard shard : myShards) {
+      synchronized (shard) {
+        for (Bucket bucket : shard.myBuckets.values()) {
+          bucket.myReferences.clear();
+        }
+        shard.myBuckets.clear();
+      }
+    }
   }
 
   static class ImageImpl implements ImagePool.Image, DisposableImage {
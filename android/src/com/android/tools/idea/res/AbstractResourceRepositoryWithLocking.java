@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -36,18 +37,22 @@ import org.jetbrains.annotations.Nullable;
  * <ul>
  *   <li>May compute cells in the table on-demand.
  *   <li>May change in the background, if underlying files or other sources of data have changed.
- *       Because of that access should be synchronized on the {@code ITEM_MAP_LOCK} object.
+ *       Because of that access should be guarded by the {@code ITEM_MAP_LOCK} read/write lock.
  * </ul>
  */
 public abstract class AbstractResourceRepositoryWithLocking extends AbstractResourceRepository {
   /**
-   * The lock used to protect map access.
+   * The lock used to protect map access. Lookups only need the read lock, so they don't block each
+   * other; any change to a repository, including invalidation of the caches of its parents, needs
+   * the write lock. The read lock cannot be upgraded, so code holding it must not call methods that
+   * modify repositories. Repositories that compute data lazily on lookup have to guard that data
+   * with a lock of their own.
    *
    * <p>In the IDE, this needs to be obtained <b>AFTER</b> the IDE read/write lock, to avoid
    * deadlocks (most readers of the repository system execute in a read action, so obtaining the
    * locks in opposite order results in deadlocks).
    */
-  public static final Object ITEM_MAP_LOCK = new Object();
+  public static final ReentrantReadWriteLock ITEM_MAP_LOCK = new ReentrantReadWriteLock();
 
   @SuppressWarnings("InstanceGuardedByStatic")
   @GuardedBy("ITEM_MAP_LOCK")
@@ -70,9 +75,13 @@ public abstract class AbstractResourceRepositoryWithLocking extends AbstractReso
   public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                          @NotNull ResourceType resourceType,
                                          @NotNull String resourceName) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return super.getResources(namespace, resourceType, resourceName);
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
@@ -80,47 +89,71 @@ public abstract class AbstractResourceRepositoryWithLocking extends AbstractReso
   public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                          @NotNull ResourceType resourceType,
                                          @NotNull Predicate<ResourceItem> filter) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return super.getResources(namespace, resourceType, filter);
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
   @NotNull
   public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return super.getResources(namespace, resourceType);
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
   @NotNull
   public Set<String> getResourceNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       ListMultimap<String, ResourceItem> map = getMap(namespace, resourceType);
       return map == null ? ImmutableSet.of() : ImmutableSet.copyOf(map.keySet());
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
   public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType, @NotNull String resourceName) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return super.hasResources(namespace, resourceType, resourceName);
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
   public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return super.hasResources(namespace, resourceType);
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
   @NotNull
   public Set<ResourceType> getResourceTypes(@NotNull ResourceNamespace namespace) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return super.getResourceTypes(namespace);
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 }
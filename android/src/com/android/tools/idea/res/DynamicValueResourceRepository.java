@@ -107,18 +107,26 @@ public class DynamicValueResourceRepository extends LocalResourceRepository impl
                                                              @NotNull ResourceNamespace namespace,
                                                              @NotNull Map<String, DynamicResourceValue> values) {
     DynamicValueResourceRepository repository = new DynamicValueResourceRepository(facet, namespace);
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       repository.addValues(values);
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
     Disposer.register(facet, repository);
     return repository;
   }
 
   private void notifyProjectSynced() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       myResourceTable.clear(); // Computed lazily in getMap.
       invalidateParentCaches(this, ResourceType.values());
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   @SuppressWarnings("InstanceGuardedByStatic")
@@ -165,11 +173,17 @@ public class DynamicValueResourceRepository extends LocalResourceRepository impl
   @NotNull
   public ResourceVisitor.VisitResult accept(@NotNull ResourceVisitor visitor) {
     if (visitor.shouldVisitNamespace(myNamespace)) {
-      synchronized (ITEM_MAP_LOCK) {
-        if (acceptByResources(myResourceTable, visitor) == ResourceVisitor.VisitResult.ABORT) {
-          return ResourceVisitor.VisitResult.ABORT;
+      ITEM_MAP_LOCK.readLock().lock();
+      try {
+        synchronized (myResourceTable) {
+          if (acceptByResources(myResourceTable, visitor) == ResourceVisitor.VisitResult.ABORT) {
+            return ResourceVisitor.VisitResult.ABORT;
+          }
         }
       }
+      finally {
+        ITEM_MAP_LOCK.readLock().unlock();
+      }
     }
 
     return ResourceVisitor.VisitResult.CONTINUE;
@@ -179,10 +193,13 @@ public class DynamicValueResourceRepository extends LocalResourceRepository impl
   @GuardedBy("ITEM_MAP_LOCK")
   @NotNull
   private Map<ResourceType, ListMultimap<String, ResourceItem>> getResourceTable() {
-    if (myResourceTable.isEmpty()) {
-      AndroidModel androidModel = AndroidModel.get(myFacet.getModule());
-      if (androidModel != null) {
-        addValues(androidModel.getResValues());
+    // The table is filled lazily by readers that may be holding only the read lock.
+    synchronized (myResourceTable) {
+      if (myResourceTable.isEmpty()) {
+        AndroidModel androidModel = AndroidModel.get(myFacet.getModule());
+        if (androidModel != null) {
+          addValues(androidModel.getResValues());
+        }
       }
     }
 
@@ -152,20 +152,28 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
   }
 
   public void addParent(@NotNull MultiResourceRepository parent) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       if (myParents == null) {
         myParents = new ArrayList<>(2); // Don't expect many parents
       }
       myParents.add(parent);
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   public void removeParent(@NotNull MultiResourceRepository parent) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       if (myParents != null) {
         myParents.remove(parent);
       }
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   @GuardedBy("ITEM_MAP_LOCK")
@@ -238,13 +246,17 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     synchronized (RESOURCE_DIRS_LOCK) {
       myResourceDirs = null;
     }
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       if (myParents != null) {
         for (LocalResourceRepository parent : myParents) {
           parent.invalidateResourceDirs();
         }
       }
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
@@ -97,19 +97,25 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @NotNull private ResourceItemComparator myResourceComparator =
       new ResourceItemComparator(new ResourcePriorityComparator(ImmutableList.of()));
 
-  @GuardedBy("ITEM_MAP_LOCK")
+  /**
+   * Guards the lazily computed data below. Unlike the rest of the state, this data is updated by readers holding only the read lock
+   * of {@link #ITEM_MAP_LOCK}, so concurrent lookups in the same repository have to be serialized.
+   */
+  private final Object myCacheLock = new Object();
+
+  @GuardedBy("myCacheLock")
   private long[] myModificationCounts;
 
-  @GuardedBy("ITEM_MAP_LOCK")
+  @GuardedBy("myCacheLock")
   private final ResourceTable myCachedMaps = new ResourceTable();
 
   /** Names of resources from local leaf repositories. */
-  @GuardedBy("ITEM_MAP_LOCK")
+  @GuardedBy("myCacheLock")
   private final Table<SingleNamespaceResourceRepository, ResourceType, Set<String>> myResourceNames =
       Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
 
   /** Describes groups of resources that are out of date in {@link #myCachedMaps}. */
-  @GuardedBy("ITEM_MAP_LOCK")
+  @GuardedBy("myCacheLock")
   private final Table<ResourceNamespace, ResourceType, Set<SingleNamespaceResourceRepository>> myUnreconciledResources =
       Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
 
@@ -125,7 +131,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     ResourceUpdateTracer.logDirect(() ->
         TraceUtils.getSimpleId(this) + ".setChildren([" + TraceUtils.getSimpleIds(localResources) + "], ...)");
 
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       for (LocalResourceRepository child : myLocalResources) {
         child.removeParent(this);
       }
@@ -146,22 +153,27 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
       myResourceComparator = new ResourceItemComparator(new ResourcePriorityComparator(myLeafsByNamespace.values()));
 
-      myModificationCounts = new long[localResources.size()];
       if (localResources.size() == 1) {
         // Make sure that the modification count of the child and the parent are same. This is
         // done so that we can return child's modification count, instead of ours.
         LocalResourceRepository child = localResources.get(0);
         child.setModificationCount(getModificationCount());
       }
-      int i = 0;
-      for (LocalResourceRepository child : myLocalResources) {
-        child.addParent(this);
-        myModificationCounts[i++] = child.getModificationCount();
+      synchronized (myCacheLock) {
+        myModificationCounts = new long[localResources.size()];
+        int i = 0;
+        for (LocalResourceRepository child : myLocalResources) {
+          child.addParent(this);
+          myModificationCounts[i++] = child.getModificationCount();
+        }
+        myCachedMaps.clear();
       }
-      myCachedMaps.clear();
 
       invalidateParentCaches();
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   @GuardedBy("ITEM_MAP_LOCK")
@@ -195,22 +207,34 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   }
 
   public ImmutableList<LocalResourceRepository> getLocalResources() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return myLocalResources;
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   public ImmutableList<AarResourceRepository> getLibraryResources() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return myLibraryResources;
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @NotNull
   public final List<ResourceRepository> getChildren() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return myChildren;
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   /**
@@ -223,49 +247,64 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
    */
   @NotNull
   public final List<SingleNamespaceResourceRepository> getRepositoriesForNamespace(@NotNull ResourceNamespace namespace) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return myRepositoriesByNamespace.get(namespace);
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
   public long getModificationCount() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       if (myLocalResources.size() == 1) {
         return myLocalResources.get(0).getModificationCount();
       }
 
-      // See if any of the delegates have changed.
-      boolean changed = false;
-      for (int i = 0; i < myLocalResources.size(); i++) {
-        LocalResourceRepository child = myLocalResources.get(i);
-        long rev = child.getModificationCount();
-        if (rev != myModificationCounts[i]) {
-          myModificationCounts[i] = rev;
-          changed = true;
+      synchronized (myCacheLock) {
+        // See if any of the delegates have changed.
+        boolean changed = false;
+        for (int i = 0; i < myLocalResources.size(); i++) {
+          LocalResourceRepository child = myLocalResources.get(i);
+          long rev = child.getModificationCount();
+          if (rev != myModificationCounts[i]) {
+            myModificationCounts[i] = rev;
+            changed = true;
+          }
         }
-      }
 
-      if (changed) {
-        setModificationCount(ourModificationCounter.incrementAndGet());
-      }
+        if (changed) {
+          setModificationCount(ourModificationCounter.incrementAndGet());
+        }
 
-      return super.getModificationCount();
+        return super.getModificationCount();
+      }
+    }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
     }
   }
 
   @Override
   @NotNull
   public Set<ResourceNamespace> getNamespaces() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return myRepositoriesByNamespace.keySet();
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
   @NotNull
   public ResourceVisitor.VisitResult accept(@NotNull ResourceVisitor visitor) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       for (ResourceNamespace namespace : getNamespaces()) {
         if (visitor.shouldVisitNamespace(namespace)) {
           for (ResourceType type : ResourceType.values()) {
@@ -283,6 +322,9 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
         }
       }
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
 
     return ResourceVisitor.VisitResult.CONTINUE;
   }
@@ -297,6 +339,15 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       return getResourcesUnderLock(repository, namespace, type);
     }
 
+    synchronized (myCacheLock) {
+      return getMergedMap(namespace, type, repositoriesForNamespace);
+    }
+  }
+
+  @GuardedBy("myCacheLock")
+  @Nullable
+  private ListMultimap<String, ResourceItem> getMergedMap(@NotNull ResourceNamespace namespace, @NotNull ResourceType type,
+                                                          @NotNull List<SingleNamespaceResourceRepository> repositoriesForNamespace) {
     ListMultimap<String, ResourceItem> map = myCachedMaps.get(namespace, type);
     Set<SingleNamespaceResourceRepository> unreconciledRepositories = null;
     if (map != null) {
@@ -392,11 +443,15 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
   @Override
   public void dispose() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       for (LocalResourceRepository child : myLocalResources) {
         child.removeParent(this);
       }
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   /**
@@ -412,15 +467,21 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
   @GuardedBy("ITEM_MAP_LOCK")
   private void clearCachedData() {
-    myCachedMaps.clear();
-    myResourceNames.clear();
-    myUnreconciledResources.clear();
+    synchronized (myCacheLock) {
+      myCachedMaps.clear();
+      myResourceNames.clear();
+      myUnreconciledResources.clear();
+    }
   }
 
   private void onLowMemory() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       clearCachedData();
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
     LOG.warn(getDisplayName() + ": Cached data cleared due to low memory");
   }
 
@@ -439,14 +500,16 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     if (leafs.contains(repository)) {
       // Update myUnreconciledResources only if myCachedMaps is used for this namespace.
       if (leafs.size() != 1) {
-        for (ResourceType type : types) {
-          if (myCachedMaps.get(namespace, type) != null) {
-            Set<SingleNamespaceResourceRepository> repositories = myUnreconciledResources.get(namespace, type);
-            if (repositories == null) {
-              repositories = new HashSet<>();
-              myUnreconciledResources.put(namespace, type, repositories);
+        synchronized (myCacheLock) {
+          for (ResourceType type : types) {
+            if (myCachedMaps.get(namespace, type) != null) {
+              Set<SingleNamespaceResourceRepository> repositories = myUnreconciledResources.get(namespace, type);
+              if (repositories == null) {
+                repositories = new HashSet<>();
+                myUnreconciledResources.put(namespace, type, repositories);
+              }
+              repositories.add(repository);
             }
-            repositories.add(repository);
           }
         }
 
@@ -473,33 +536,45 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @Override
   @NotNull
   protected Set<VirtualFile> computeResourceDirs() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       Set<VirtualFile> result = new HashSet<>();
       for (LocalResourceRepository resourceRepository : myLocalResources) {
         result.addAll(resourceRepository.computeResourceDirs());
       }
       return result;
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Override
   @NotNull
   public Collection<SingleNamespaceResourceRepository> getLeafResourceRepositories() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return myLeafsByNamespace.values();
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @VisibleForTesting
   @Override
   public int getFileRescans() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       int count = 0;
       for (LocalResourceRepository resourceRepository : myLocalResources) {
         count += resourceRepository.getFileRescans();
       }
       return count;
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   private static class ResourcePriorityComparator implements Comparator<ResourceItem> {
@@ -360,15 +360,19 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    */
   private void commitToRepository(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> itemsByType) {
     if (!itemsByType.isEmpty()) {
-      synchronized (ITEM_MAP_LOCK) {
+      ITEM_MAP_LOCK.writeLock().lock();
+      try {
         commitToRepositoryWithoutLock(itemsByType);
       }
+      finally {
+        ITEM_MAP_LOCK.writeLock().unlock();
+      }
     }
   }
 
   /**
    * Inserts the given resources into this repository without acquiring any locks. Safe to call only while
-   * holding {@link #ITEM_MAP_LOCK} or during construction of ResourceFolderRepository.
+   * holding the write lock of {@link #ITEM_MAP_LOCK} or during construction of ResourceFolderRepository.
    */
   @SuppressWarnings("GuardedBy")
   private void commitToRepositoryWithoutLock(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> itemsByType) {
@@ -469,11 +473,15 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   @NotNull
   public ResourceVisitor.VisitResult accept(@NotNull ResourceVisitor visitor) {
     if (visitor.shouldVisitNamespace(myNamespace)) {
-      synchronized (ITEM_MAP_LOCK) {
+      ITEM_MAP_LOCK.readLock().lock();
+      try {
         if (acceptByResources(myResourceTable, visitor) == ResourceVisitor.VisitResult.ABORT) {
           return ResourceVisitor.VisitResult.ABORT;
         }
       }
+      finally {
+        ITEM_MAP_LOCK.readLock().unlock();
+      }
     }
 
     return ResourceVisitor.VisitResult.CONTINUE;
@@ -875,7 +883,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
           // file itself (e.g. @layout/foo from layout-land/foo.xml). However, we may have
           // to update the id's:
           Set<String> idsBefore = new HashSet<>();
-          synchronized (ITEM_MAP_LOCK) {
+          ITEM_MAP_LOCK.writeLock().lock();
+          try {
             ListMultimap<String, ResourceItem> idMultimap = myResourceTable.get(ResourceType.ID);
             if (idMultimap != null) {
               List<PsiResourceItem> idItems = new ArrayList<>();
@@ -908,6 +917,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
               }
             }
           }
+          finally {
+            ITEM_MAP_LOCK.writeLock().unlock();
+          }
 
           // Add items for this file.
           List<PsiResourceItem> idItems = new ArrayList<>();
@@ -1007,7 +1019,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                                     @NotNull ResourceType resourceType) {
     boolean changed = false;
 
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       for (Iterator<PsiResourceItem> sourceIter = source.iterator(); sourceIter.hasNext();) {
         PsiResourceItem item = sourceIter.next();
         if (item.wasTag(xmlTag)) {
@@ -1027,6 +1040,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
       return changed;
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   /**
@@ -1037,7 +1053,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   private boolean removeItemsFromSource(@NotNull ResourceItemSource<?> source) {
     boolean changed = false;
 
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       for (ResourceItem item : source) {
         ListMultimap<String, ResourceItem> map = myResourceTable.get(item.getType());
         List<ResourceItem> items = map.get(item.getName());
@@ -1054,6 +1071,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         }
       }
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
     return changed;
   }
 
@@ -1159,12 +1179,16 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         }
                         if (type != null) {
                           PsiResourceItem item = PsiResourceItem.forXmlTag(name, type, ResourceFolderRepository.this, tag);
-                          synchronized (ITEM_MAP_LOCK) {
+                          ITEM_MAP_LOCK.writeLock().lock();
+                          try {
                             getOrCreateMap(type).put(name, item);
                             psiResourceFile.addItem(item);
                             setModificationCount(ourModificationCounter.incrementAndGet());
                             invalidateParentCaches(ResourceFolderRepository.this, type);
                           }
+                          finally {
+                            ITEM_MAP_LOCK.writeLock().unlock();
+                          }
 
                           return;
                         }
@@ -1261,7 +1285,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                       }
                       PsiResourceItem newIdResource =
                           PsiResourceItem.forXmlTag(id, ResourceType.ID, ResourceFolderRepository.this, attribute.getParent());
-                      synchronized (ITEM_MAP_LOCK) {
+                      ITEM_MAP_LOCK.writeLock().lock();
+                      try {
                         ResourceItemSource<?> resourceFile = mySources.get(psiFile.getVirtualFile());
                         if (resourceFile != null) {
                           assert resourceFile instanceof PsiResourceFile;
@@ -1273,6 +1298,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                           invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
                         }
                       }
+                      finally {
+                        ITEM_MAP_LOCK.writeLock().unlock();
+                      }
                     });
 
                     return;
@@ -1377,13 +1405,17 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                     if (name != null) {
                       ResourceType type = getResourceTypeForResourceTag(tag);
                       if (type != null) {
-                        synchronized (ITEM_MAP_LOCK) {
+                        ITEM_MAP_LOCK.writeLock().lock();
+                        try {
                           boolean removed = removeItemsForTag(resourceFile, tag, type);
                           if (removed) {
                             setModificationCount(ourModificationCounter.incrementAndGet());
                             invalidateParentCaches(ResourceFolderRepository.this, type);
                           }
                         }
+                        finally {
+                          ITEM_MAP_LOCK.writeLock().unlock();
+                        }
                       }
                     }
                   });
@@ -1497,7 +1529,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         Map<ResourceType, ListMultimap<String, ResourceItem>> result = new HashMap<>();
                         ArrayList<PsiResourceItem> items = new ArrayList<>();
                         addIds(xmlTag, items, result);
-                        synchronized (ITEM_MAP_LOCK) {
+                        ITEM_MAP_LOCK.writeLock().lock();
+                        try {
                           PsiResourceFile psiResourceFile = (PsiResourceFile)resourceFile;
                           removeItemsForTag(psiResourceFile, xmlTag, ResourceType.ID);
                           for (PsiResourceItem item : items) {
@@ -1506,6 +1539,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                           commitToRepositoryWithoutLock(result);
                           setModificationCount(ourModificationCounter.incrementAndGet());
                         }
+                        finally {
+                          ITEM_MAP_LOCK.writeLock().unlock();
+                        }
                       });
 
                       return;
@@ -1550,7 +1586,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                       Map<ResourceType, ListMultimap<String, ResourceItem>> result = new HashMap<>();
                       ArrayList<PsiResourceItem> items = new ArrayList<>();
                       addIds(xmlTag, items, result);
-                      synchronized (ITEM_MAP_LOCK) {
+                      ITEM_MAP_LOCK.writeLock().lock();
+                      try {
                         PsiResourceFile psiResourceFile = (PsiResourceFile)resourceFile;
                         removeItemsForTag(psiResourceFile, xmlTag, ResourceType.ID);
                         commitToRepository(result);
@@ -1560,6 +1597,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         setModificationCount(ourModificationCounter.incrementAndGet());
                         invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
                       }
+                      finally {
+                        ITEM_MAP_LOCK.writeLock().unlock();
+                      }
                     });
 
                     return;
@@ -1672,7 +1712,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                           return;
                         }
 
-                        synchronized (ITEM_MAP_LOCK) {
+                        ITEM_MAP_LOCK.writeLock().lock();
+                        try {
                           ListMultimap<String, ResourceItem> items = myResourceTable.get(type);
                           if (items == null) {
                             scan(psiFile, folderType);
@@ -1702,6 +1743,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                           setModificationCount(ourModificationCounter.incrementAndGet());
                           invalidateParentCaches(ResourceFolderRepository.this, type);
                         }
+                        finally {
+                          ITEM_MAP_LOCK.writeLock().unlock();
+                        }
 
                         // Invalidate surrounding declare styleable if any.
                         if (type == ResourceType.ATTR) {
@@ -2050,9 +2094,13 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       return null;
     }
     String name = tag.getAttributeValue(ATTR_NAME);
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       return name != null ? findValueResourceItem(tag, file, name) : null;
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
   }
 
   @Nullable
@@ -2070,7 +2118,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     // Do IO work before obtaining the lock:
     File ioFile = VfsUtilCore.virtualToIoFile(file.getVirtualFile());
 
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.readLock().lock();
+    try {
       ListMultimap<String, ResourceItem> map = myResourceTable.get(type);
       if (map == null) {
         return null;
@@ -2104,6 +2153,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         }
       }
     }
+    finally {
+      ITEM_MAP_LOCK.readLock().unlock();
+    }
 
     return null;
   }
@@ -2215,16 +2267,24 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
   @Override
   protected void invalidateParentCaches() {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       super.invalidateParentCaches();
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   @Override
   protected void invalidateParentCaches(@NotNull SingleNamespaceResourceRepository repository, @NotNull ResourceType... types) {
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       super.invalidateParentCaches(repository, types);
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   /**
@@ -136,11 +136,15 @@ public class SampleDataResourceRepository extends LocalResourceRepository implem
   @NotNull
   public ResourceVisitor.VisitResult accept(@NotNull ResourceVisitor visitor) {
     if (visitor.shouldVisitNamespace(myNamespace)) {
-      synchronized (ITEM_MAP_LOCK) {
+      ITEM_MAP_LOCK.readLock().lock();
+      try {
         if (acceptByResources(myResourceTable, visitor) == ResourceVisitor.VisitResult.ABORT) {
           return ResourceVisitor.VisitResult.ABORT;
         }
       }
+      finally {
+        ITEM_MAP_LOCK.readLock().unlock();
+      }
     }
 
     return ResourceVisitor.VisitResult.CONTINUE;
@@ -181,7 +185,8 @@ public class SampleDataResourceRepository extends LocalResourceRepository implem
       .flatMap((psiElement) -> loadItemsFromFile(psiElement).stream())
       .collect(Collectors.toUnmodifiableList());
 
-    synchronized (ITEM_MAP_LOCK) {
+    ITEM_MAP_LOCK.writeLock().lock();
+    try {
       myResourceTable.clear();
       if (!items.isEmpty()) {
         HashSet<String> alreadyParsedItems = new HashSet<>();
@@ -197,6 +202,9 @@ public class SampleDataResourceRepository extends LocalResourceRepository implem
       setModificationCount(ourModificationCounter.incrementAndGet());
       invalidateParentCaches(this, ResourceType.SAMPLE_DATA);
     }
+    finally {
+      ITEM_MAP_LOCK.writeLock().unlock();
+    }
   }
 
   @NotNull
@@ -86,6 +86,34 @@ class RenderExecutorTest {
     }
   }
 
+  @Test
+  fun testMultipleRenderThreads() {
+    val executor = RenderExecutor.create(4)
+    val allRunningLatch = CountDownLatch(4)
+    val completeActionLatch = CountDownLatch(1)
+    try {
+      val futures = (1..4).map {
+        executor.runAsyncActionWithTestDefault(actionTimeout = 10) {
+          assertTrue(executor.isCurrentThreadARenderThread())
+          allRunningLatch.countDown()
+          completeActionLatch.await()
+        }
+      }
+      // All the actions are running at the same time, each one in its own thread
+      assertTrue(allRunningLatch.await(5, TimeUnit.SECONDS))
+      assertTrue(executor.isBusy())
+      assertFalse(executor.isCurrentThreadARenderThread())
+
+      completeActionLatch.countDown()
+      CompletableFuture.allOf(*futures.toTypedArray()).get(5, TimeUnit.SECONDS)
+      assertEquals(4, executor.executedRenderActionCount)
+    }
+    finally {
+      completeActionLatch.countDown()
+      executor.shutdown()
+    }
+  }
+
   @Test
   fun testTimeout() {
     val actionExecutor = OnDemandExecutorService()
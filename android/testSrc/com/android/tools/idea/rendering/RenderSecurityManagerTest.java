@@ -43,7 +43,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -1093,5 +1095,64 @@ public class RenderSecurityManagerTest {
     }
   }
 
+  @Test
+  public void testConcurrentActivation() throws InterruptedException {
+    RenderSecurityManager manager1 = new RenderSecurityManager(null, null, false);
+    RenderSecurityManager manager2 = new RenderSecurityManager(null, null, false);
+    CountDownLatch activatedLatch = new CountDownLatch(1);
+    // Created before activating the first manager so it does not inherit its constraints
+    Thread otherRenderThread = new Thread(() -> {
+      manager2.setActive(true, myCredential);
+      activatedLatch.countDown();
+      manager2.dispose(myCredential);
+    }, "other render");
+
+    manager1.setActive(true, myCredential);
+    try {
+      otherRenderThread.start();
+      // The second manager can not be activated while the first one is installed
+      assertFalse(activatedLatch.await(500, TimeUnit.MILLISECONDS));
+      assertSame(manager1, System.getSecurityManager());
+    }
+    finally {
+      manager1.dispose(myCredential);
+    }
+    assertTrue(activatedLatch.await(5, TimeUnit.SECONDS));
+    otherRenderThread.join();
+    assertNull(System.getSecurityManager());
+  }
+
+  @Test
+  public void testInvalidCredentialKeepsActivation() throws InterruptedException {
+    RenderSecurityManager manager1 = new RenderSecurityManager(null, null, false);
+    RenderSecurityManager manager2 = new RenderSecurityManager(null, null, false);
+    CountDownLatch activatedLatch = new CountDownLatch(1);
+    Thread otherRenderThread = new Thread(() -> {
+      manager2.setActive(true, myCredential);
+      activatedLatch.countDown();
+      manager2.dispose(myCredential);
+    }, "other render");
+
+    manager1.setActive(true, myCredential);
+    try {
+      try {
+        manager1.dispose(new Object());
+        fail("Expected to throw RenderSecurityException");
+      }
+      catch (RenderSecurityException ignore) {
+      }
+      // The first manager is still installed, so the second one still has to wait for it
+      assertSame(manager1, System.getSecurityManager());
+      otherRenderThread.start();
+      assertFalse(activatedLatch.await(500, TimeUnit.MILLISECONDS));
+    }
+    finally {
+      manager1.dispose(myCredential);
+    }
+    assertTrue(activatedLatch.await(5, TimeUnit.SECONDS));
+    otherRenderThread.join();
+    assertNull(System.getSecurityManager());
+  }
+
   private static class TestException extends Throwable { }
 }
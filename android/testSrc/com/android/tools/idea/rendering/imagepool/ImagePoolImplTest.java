@@ -159,6 +159,54 @@ public class ImagePoolImplTest {
     gc();
   }
 
+  @Test
+  public void testConcurrentCreate() throws InterruptedException {
+    int threadCount = 8;
+    int imagesPerThread = 50;
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(threadCount);
+    AtomicBoolean failed = new AtomicBoolean(false);
+    for (int i = 0; i < threadCount; i++) {
+      int size = 50 + 10 * (i % 4);
+      new Thread(() -> {
+        try {
+          start.await();
+          for (int j = 0; j < imagesPerThread; j++) {
+            ImagePoolImpl.ImageImpl image = myPool.create(size, size, BufferedImage.TYPE_INT_ARGB, null);
+            if (image.getWidth() != size || image.getHeight() != size) {
+              failed.set(true);
+            }
+            ImagePoolImageDisposer.disposeImage(image);
+          }
+        }
+        catch (Throwable t) {
+          failed.set(true);
+        }
+        finally {
+          done.countDown();
+        }
+      }).start();
+    }
+    start.countDown();
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    assertFalse(failed.get());
+
+    // All the requested sizes fall into the same 500x500 bucket.
+    ImagePool.Stats stats = myPool.getStats();
+    assertNotNull(stats);
+    ImagePool.BucketStats[] bucketStats = stats.getBucketStats();
+    assertEquals(1, bucketStats.length);
+    assertEquals(threadCount * imagesPerThread, bucketStats[0].bucketHits() + bucketStats[0].bucketMisses());
+  }
+
+  @Test
+  public void testPoolKey() {
+    assertNotEquals(ImagePoolImpl.getPoolKey(500, 50, BufferedImage.TYPE_INT_ARGB),
+                    ImagePoolImpl.getPoolKey(50, 500, BufferedImage.TYPE_INT_ARGB));
+    assertNotEquals(ImagePoolImpl.getPoolKey(500, 500, BufferedImage.TYPE_INT_ARGB),
+                    ImagePoolImpl.getPoolKey(500, 500, BufferedImage.TYPE_INT_ARGB_PRE));
+  }
+
   @Test
   public void testDefaultPooling() throws InterruptedException {
     // Small images won't be pooled
@@ -24,7 +24,10 @@ import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.Collection;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.jetbrains.android.AndroidTestCase;
 
 public class LocalResourceRepositoryTest extends AndroidTestCase {
@@ -98,4 +101,21 @@ public class LocalResourceRepositoryTest extends AndroidTestCase {
     assertEquals(generation + 1, resources.getModificationCount());
     */
   }
+
+  public void testConcurrentLookups() throws Exception {
+    myFixture.copyFileToProject(TEST_FILE, "res/layout/layout1.xml");
+    LocalResourceRepository resources = StudioResourceRepositoryManager.getAppResources(myModule);
+    assertNotNull(resources);
+
+    // A lookup on another thread must not be blocked by a reader on this thread.
+    AbstractResourceRepositoryWithLocking.ITEM_MAP_LOCK.readLock().lock();
+    try {
+      Future<Boolean> lookup =
+        AppExecutorUtil.getAppExecutorService().submit(() -> resources.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout1"));
+      assertTrue(lookup.get(10, TimeUnit.SECONDS));
+    }
+    finally {
+      AbstractResourceRepositoryWithLocking.ITEM_MAP_LOCK.readLock().unlock();
+    }
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.dom.attrs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.android.ide.common.rendering.api.AttributeFormat;
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.rendering.api.ResourceReference;
+import com.android.resources.aar.CachingData;
+import com.android.tools.dom.attrs.AttributeDefinition;
+import com.android.tools.dom.attrs.AttributeDefinitions;
+import com.android.tools.dom.attrs.AttributeDefinitionsImpl;
+import com.android.tools.dom.attrs.StyleableDefinition;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for loading framework attribute definitions from their binary snapshot.
+ */
+public class AttributeDefinitionsSnapshotTest {
+  private static final String ATTRS =
+    "<resources>\n" +
+    "  <!-- Generic styles -->\n" +
+    "  <eat-comment />\n" +
+    "  <!-- Default color of foreground imagery. -->\n" +
+    "  <attr name=\"colorForeground\" format=\"color\" />\n" +
+    "  <declare-styleable name=\"View\">\n" +
+    "    <!-- Controls the initial visibility of the view. -->\n" +
+    "    <attr name=\"visibility\">\n" +
+    "      <!-- Visible on screen; the default value. -->\n" +
+    "      <enum name=\"visible\" value=\"0\" />\n" +
+    "      <enum name=\"invisible\" value=\"1\" />\n" +
+    "      <enum name=\"gone\" value=\"0x2\" />\n" +
+    "    </attr>\n" +
+    "    <attr name=\"colorForeground\" />\n" +
+    "  </declare-styleable>\n" +
+    "</resources>\n";
+
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void snapshotMatchesParsedFiles() throws IOException {
+    File attrsFile = myTemporaryFolder.newFile("attrs.xml");
+    Files.write(attrsFile.toPath(), ATTRS.getBytes(StandardCharsets.UTF_8));
+    Path cacheFile = myTemporaryFolder.getRoot().toPath().resolve("cache").resolve("attrs.dat");
+    CachingData cachingData = new CachingData(cacheFile, "content", "code", directExecutor());
+
+    AttributeDefinitions parsed = AttributeDefinitionsImpl.loadFrameworkFiles(cachingData, attrsFile);
+    assertThat(Files.exists(cacheFile)).isTrue();
+    // Loading from the snapshot does not need the XML file.
+    assertThat(attrsFile.delete()).isTrue();
+    AttributeDefinitions loaded = AttributeDefinitionsImpl.loadFrameworkFiles(cachingData, attrsFile);
+
+    assertThat(loaded).isNotSameAs(parsed);
+    assertThat(loaded.getAttrs()).containsExactlyElementsIn(parsed.getAttrs());
+    assertThat(attrDef(loaded, "visibility").getValues()).isEqualTo(attrDef(parsed, "visibility").getValues());
+    for (AttributeDefinitions definitions : new AttributeDefinitions[] { parsed, loaded }) {
+      ResourceReference viewRef = ResourceReference.styleable(ResourceNamespace.ANDROID, "View");
+      AttributeDefinition visibility = attrDef(definitions, "visibility");
+      assertThat(visibility.getFormats()).isEqualTo(EnumSet.of(AttributeFormat.ENUM));
+      assertThat(visibility.getValues()).asList().containsExactly("visible", "invisible", "gone");
+      assertThat(visibility.getValueMapping("gone")).isEqualTo(2);
+      assertThat(visibility.getValueDescription("visible")).isEqualTo("Visible on screen; the default value.");
+      assertThat(visibility.getDescription(viewRef)).isEqualTo("Controls the initial visibility of the view.");
+
+      AttributeDefinition colorForeground = attrDef(definitions, "colorForeground");
+      assertThat(colorForeground.getFormats()).isEqualTo(EnumSet.of(AttributeFormat.COLOR));
+      assertThat(colorForeground.getGroupName()).isEqualTo("Generic styles");
+      assertThat(colorForeground.getDescription(null)).isEqualTo("Default color of foreground imagery.");
+
+      StyleableDefinition view = definitions.getStyleableDefinition(viewRef);
+      assertThat(view.getAttributes()).containsExactly(visibility, colorForeground).inOrder();
+    }
+  }
+
+  @Test
+  public void snapshotOfDifferentContentIsIgnored() throws IOException {
+    File attrsFile = myTemporaryFolder.newFile("attrs.xml");
+    Files.write(attrsFile.toPath(), ATTRS.getBytes(StandardCharsets.UTF_8));
+    Path cacheFile = myTemporaryFolder.getRoot().toPath().resolve("attrs.dat");
+    AttributeDefinitionsImpl.loadFrameworkFiles(new CachingData(cacheFile, "content", "code", directExecutor()), attrsFile);
+
+    Files.write(attrsFile.toPath(), "<resources><attr name=\"other\" format=\"string\" /></resources>".getBytes(StandardCharsets.UTF_8));
+    AttributeDefinitions loaded =
+      AttributeDefinitionsImpl.loadFrameworkFiles(new CachingData(cacheFile, "new content", "code", directExecutor()), attrsFile);
+    assertThat(loaded.getAttrs()).containsExactly(ResourceReference.attr(ResourceNamespace.ANDROID, "other"));
+  }
+
+  @Test
+  public void corruptSnapshotIsIgnored() throws IOException {
+    File attrsFile = myTemporaryFolder.newFile("attrs.xml");
+    Files.write(attrsFile.toPath(), ATTRS.getBytes(StandardCharsets.UTF_8));
+    Path cacheFile = myTemporaryFolder.getRoot().toPath().resolve("attrs.dat");
+    CachingData cachingData = new CachingData(cacheFile, "content", "code", directExecutor());
+    AttributeDefinitions parsed = AttributeDefinitionsImpl.loadFrameworkFiles(cachingData, attrsFile);
+
+    // Replace the number of strings, which follows the magic number, the format version and the two version strings, by a negative one.
+    byte[] contents = Files.readAllBytes(cacheFile);
+    ByteBuffer.wrap(contents).putInt(4 + 4 + (4 + "code".length()) + (4 + "content".length()), -1);
+    Files.write(cacheFile, contents);
+    AttributeDefinitions loaded = AttributeDefinitionsImpl.loadFrameworkFiles(cachingData, attrsFile);
+
+    assertThat(loaded.getAttrs()).containsExactlyElementsIn(parsed.getAttrs());
+  }
+
+  @NotNull
+  private static AttributeDefinition attrDef(@NotNull AttributeDefinitions definitions, @NotNull String name) {
+    AttributeDefinition attr = definitions.getAttrDefinition(ResourceReference.attr(ResourceNamespace.ANDROID, name));
+    assertThat(attr).isNotNull();
+    return attr;
+  }
+}
@@ -43,6 +43,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
@@ -54,13 +55,15 @@ public class ApkParser {
   private final ApkSizeCalculator myApkSizeCalculator;
 
   @Nullable private ListenableFuture<ArchiveNode> myTreeStructure;
+  @Nullable private ListenableFuture<Map<String, Long>> myDownloadSizePerFile;
   @Nullable private ListenableFuture<ArchiveNode> myTreeStructureWithDownloadSizes;
   @Nullable private ListenableFuture<Long> myRawFullApkSize;
   @Nullable private ListenableFuture<Long> myCompressedFullApkSize;
 
   public ApkParser(@NotNull ArchiveContext archiveContext, @NotNull ApkSizeCalculator sizeCalculator) {
     myArchiveContext = archiveContext;
-    myApkSizeCalculator = sizeCalculator;
+    // Sizes are shared between parsers of archives with the same content, e.g. when an APK is reopened.
+    myApkSizeCalculator = new CachingApkSizeCalculator(sizeCalculator);
   }
 
   @NotNull
@@ -71,6 +74,7 @@ public class ApkParser {
   public synchronized void cancelAll(){
     ListenableFuture[] futures = {
       myTreeStructureWithDownloadSizes,
+      myDownloadSizePerFile,
       myTreeStructure,
       myRawFullApkSize,
       myCompressedFullApkSize
@@ -94,7 +98,13 @@ public class ApkParser {
   @NotNull
   public synchronized ListenableFuture<ArchiveNode> updateTreeWithDownloadSizes() {
     if (myTreeStructureWithDownloadSizes == null) {
-      myTreeStructureWithDownloadSizes = Futures.transform(constructTreeStructure(), input -> {
+      // Compress the entries while the tree is being built rather than after it. Once both are done, applying the sizes is
+      // a lookup in the memoized per-file map.
+      ListenableFuture<ArchiveNode> treeStructure = constructTreeStructure();
+      myDownloadSizePerFile =
+        ourExecutorService.submit(() -> myApkSizeCalculator.getDownloadSizePerFile(myArchiveContext.getArchive().getPath()));
+      myTreeStructureWithDownloadSizes = Futures.whenAllSucceed(treeStructure, myDownloadSizePerFile).call(() -> {
+        ArchiveNode input = Futures.getDone(treeStructure);
         ArchiveTreeStructure.updateDownloadFileSizes(input, myApkSizeCalculator);
         return input;
       }, PooledThreadExecutor.INSTANCE);
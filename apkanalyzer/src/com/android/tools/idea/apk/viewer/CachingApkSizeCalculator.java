@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer;
+
+import com.android.annotations.NonNull;
+import com.android.tools.apk.analyzer.ApkSizeCalculator;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An {@link ApkSizeCalculator} that computes each size of an archive at most once and shares the results between all archives with the
+ * same content, so that reopening an APK, which the editor does through a fresh temporary copy, does not recompute its sizes.
+ * <p>
+ * Archives are identified by a fingerprint of their zip central directory, which lists the name, the sizes and the CRC of every entry.
+ * Only the end of the archive and its central directory are read, not the entries. Archives without a readable central directory are
+ * not cached.
+ */
+final class CachingApkSizeCalculator implements ApkSizeCalculator {
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_MIN_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private static final Cache<ArchiveFingerprint, ArchiveSizes> ourCache = CacheBuilder.newBuilder().maximumSize(16).softValues().build();
+
+  @NotNull private final ApkSizeCalculator myDelegate;
+  @NotNull private final Map<Path, ArchiveSizes> mySizes = new ConcurrentHashMap<>();
+
+  CachingApkSizeCalculator(@NotNull ApkSizeCalculator delegate) {
+    myDelegate = delegate;
+  }
+
+  @Override
+  public long getFullApkDownloadSize(@NonNull Path apk) {
+    return getSizes(apk).myFullDownloadSize.get(() -> myDelegate.getFullApkDownloadSize(apk));
+  }
+
+  @Override
+  public long getFullApkRawSize(@NonNull Path apk) {
+    return getSizes(apk).myFullRawSize.get(() -> myDelegate.getFullApkRawSize(apk));
+  }
+
+  @NonNull
+  @Override
+  public Map<String, Long> getDownloadSizePerFile(@NonNull Path apk) {
+    return getSizes(apk).myDownloadSizePerFile.get(() -> myDelegate.getDownloadSizePerFile(apk));
+  }
+
+  @NonNull
+  @Override
+  public Map<String, Long> getRawSizePerFile(@NonNull Path apk) {
+    return getSizes(apk).myRawSizePerFile.get(() -> myDelegate.getRawSizePerFile(apk));
+  }
+
+  @NotNull
+  private ArchiveSizes getSizes(@NotNull Path apk) {
+    return mySizes.computeIfAbsent(apk, path -> {
+      ArchiveFingerprint fingerprint = computeFingerprint(path);
+      if (fingerprint == null) {
+        return new ArchiveSizes();
+      }
+      try {
+        return ourCache.get(fingerprint, ArchiveSizes::new);
+      }
+      catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    });
+  }
+
+  @VisibleForTesting
+  static void clearCache() {
+    ourCache.invalidateAll();
+  }
+
+  /**
+   * Returns the fingerprint of the given zip archive, or null if the archive is not a regular file, cannot be read, or its central
+   * directory cannot be located.
+   */
+  @VisibleForTesting
+  @Nullable
+  static ArchiveFingerprint computeFingerprint(@NotNull Path archive) {
+    // Read into heap buffers rather than through a memory mapping, which would keep the file from being deleted on Windows until the
+    // mapping is garbage collected.
+    try (SeekableByteChannel channel = Files.newByteChannel(archive, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      if (fileSize < END_OF_CENTRAL_DIRECTORY_MIN_SIZE) {
+        return null;
+      }
+      int tailSize = (int)Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_MIN_SIZE + MAX_COMMENT_SIZE);
+      ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+      if (!readFully(channel, fileSize - tailSize, tail)) {
+        return null;
+      }
+      // The end of central directory record is followed by a comment of variable size, so search for its signature backwards.
+      for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_MIN_SIZE; i >= 0; i--) {
+        if (tail.getInt(i) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+          continue;
+        }
+        long directorySize = tail.getInt(i + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(i + 16) & 0xFFFFFFFFL;
+        if (directoryOffset + directorySize > fileSize - tailSize + i) {
+          continue; // Not a real end of central directory record.
+        }
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(directorySize, READ_BUFFER_SIZE));
+        for (long position = directoryOffset; position < directoryOffset + directorySize; position += buffer.limit()) {
+          buffer.clear();
+          buffer.limit((int)Math.min(buffer.capacity(), directoryOffset + directorySize - position));
+          if (!readFully(channel, position, buffer)) {
+            return null;
+          }
+          buffer.flip();
+          digest.update(buffer);
+        }
+        return new ArchiveFingerprint(fileSize, digest.digest());
+      }
+      return null;
+    }
+    catch (IOException | NoSuchAlgorithmException e) {
+      Logger.getInstance(CachingApkSizeCalculator.class).warn("Unable to fingerprint " + archive, e);
+      return null;
+    }
+  }
+
+  /**
+   * Fills the remaining space of the buffer with the bytes of the channel starting at the given position. Returns false if the channel
+   * ends before.
+   */
+  private static boolean readFully(@NotNull SeekableByteChannel channel, long position, @NotNull ByteBuffer buffer) throws IOException {
+    channel.position(position);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @VisibleForTesting
+  static final class ArchiveFingerprint {
+    private final long myFileSize;
+    @NotNull private final byte[] myCentralDirectoryDigest;
+
+    private ArchiveFingerprint(long fileSize, @NotNull byte[] centralDirectoryDigest) {
+      myFileSize = fileSize;
+      myCentralDirectoryDigest = centralDirectoryDigest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ArchiveFingerprint)) {
+        return false;
+      }
+      ArchiveFingerprint other = (ArchiveFingerprint)o;
+      return myFileSize == other.myFileSize && Arrays.equals(myCentralDirectoryDigest, other.myCentralDirectoryDigest);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(myFileSize) + Arrays.hashCode(myCentralDirectoryDigest);
+    }
+  }
+
+  private static final class ArchiveSizes {
+    @NotNull final Memo<Long> myFullDownloadSize = new Memo<>();
+    @NotNull final Memo<Long> myFullRawSize = new Memo<>();
+    @NotNull final Memo<Map<String, Long>> myDownloadSizePerFile = new Memo<>();
+    @NotNull final Memo<Map<String, Long>> myRawSizePerFile = new Memo<>();
+  }
+
+  /**
+   * A value computed by the first caller. Each value has its own lock so different sizes of the same archive are computed in parallel.
+   */
+  private static final class Memo<T> {
+    @Nullable private volatile T myValue;
+
+    @NotNull
+    T get(@NotNull Supplier<T> supplier) {
+      T value = myValue;
+      if (value == null) {
+        synchronized (this) {
+          value = myValue;
+          if (value == null) {
+            value = supplier.get();
+            myValue = value;
+          }
+        }
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.android.annotations.NonNull;
+import com.android.testutils.TestResources;
+import com.android.tools.apk.analyzer.ApkSizeCalculator;
+import com.android.tools.apk.analyzer.internal.GzipSizeCalculator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachingApkSizeCalculatorTest {
+  @Rule public final TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    CachingApkSizeCalculator.clearCache();
+  }
+
+  @Test
+  public void sizesAreSharedBetweenCopiesOfTheSameArchive() throws Exception {
+    Path original = TestResources.getFile("/test.apk").toPath();
+    Path copy = myTemporaryFolder.getRoot().toPath().resolve("copy.apk");
+    Files.copy(original, copy);
+
+    CountingSizeCalculator delegate = new CountingSizeCalculator();
+    Map<String, Long> originalSizes = new CachingApkSizeCalculator(delegate).getDownloadSizePerFile(original);
+    Map<String, Long> copySizes = new CachingApkSizeCalculator(delegate).getDownloadSizePerFile(copy);
+
+    assertSame(originalSizes, copySizes);
+    assertEquals(1, delegate.myCallCount.get());
+  }
+
+  @Test
+  public void differentArchivesHaveDifferentFingerprints() {
+    Path apk = TestResources.getFile("/test.apk").toPath();
+    Path bundle = TestResources.getFile("/bundle.aab").toPath();
+
+    assertNotNull(CachingApkSizeCalculator.computeFingerprint(apk));
+    assertEquals(CachingApkSizeCalculator.computeFingerprint(apk), CachingApkSizeCalculator.computeFingerprint(apk));
+    assertNotEquals(CachingApkSizeCalculator.computeFingerprint(apk), CachingApkSizeCalculator.computeFingerprint(bundle));
+  }
+
+  @Test
+  public void nonZipFilesAreNotFingerprinted() throws Exception {
+    Path file = myTemporaryFolder.newFile("not-a-zip.apk").toPath();
+    Files.write(file, new byte[100]);
+
+    assertNull(CachingApkSizeCalculator.computeFingerprint(file));
+  }
+
+  private static class CountingSizeCalculator implements ApkSizeCalculator {
+    private final ApkSizeCalculator myDelegate = new GzipSizeCalculator();
+    private final AtomicInteger myCallCount = new AtomicInteger();
+
+    @Override
+    public long getFullApkDownloadSize(@NonNull Path apk) {
+      myCallCount.incrementAndGet();
+      return myDelegate.getFullApkDownloadSize(apk);
+    }
+
+    @Override
+    public long getFullApkRawSize(@NonNull Path apk) {
+      myCallCount.incrementAndGet();
+      return myDelegate.getFullApkRawSize(apk);
+    }
+
+    @NonNull
+    @Override
+    public Map<String, Long> getDownloadSizePerFile(@NonNull Path apk) {
+      myCallCount.incrementAndGet();
+      return myDelegate.getDownloadSizePerFile(apk);
+    }
+
+    @NonNull
+    @Override
+    public Map<String, Long> getRawSizePerFile(@NonNull Path apk) {
+      myCallCount.incrementAndGet();
+      return myDelegate.getRawSizePerFile(apk);
+    }
+  }
+}
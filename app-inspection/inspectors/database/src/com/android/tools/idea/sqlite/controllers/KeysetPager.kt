@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.sqlite.controllers
+
+import com.android.annotations.concurrency.UiThread
+import com.android.tools.idea.concurrency.addCallback
+import com.android.tools.idea.sqlite.databaseConnection.SqliteResultSet
+import com.android.tools.idea.sqlite.model.SqliteRow
+import com.android.tools.idea.sqlite.model.SqliteValue
+import com.google.common.util.concurrent.Futures
+import com.google.common.util.concurrent.ListenableFuture
+import java.util.TreeMap
+import java.util.concurrent.Executor
+import kotlin.math.min
+
+private const val MAX_CACHED_BATCHES = 16
+private const val MAX_READ_AHEAD_BATCHES = 4
+
+/**
+ * Fetches batches of [rowBatchSize] rows from [resultSet] ordered by [keyColumnName], using the key
+ * of the last row of a batch already fetched as the starting point of the following batches. This
+ * way the database seeks to the requested rows instead of stepping over all the rows before them,
+ * so that the cost of fetching a batch doesn't depend on how deep in the table it is.
+ *
+ * The most recently used batches are kept in memory, and the batches next to the one requested are
+ * fetched in advance in the direction the user is paging through the table. The more batches are
+ * requested one after the other in the same direction, the more batches are read ahead.
+ *
+ * The cached rows become stale when the data of the table changes, a new [KeysetPager] has to be
+ * created in that case. If [resultSet] doesn't support keyset pagination, the batches are fetched
+ * with [SqliteResultSet.getRowBatch] instead.
+ */
+@UiThread
+internal class KeysetPager(
+  private val resultSet: SqliteResultSet,
+  private val keyColumnName: String,
+  private val rowBatchSize: Int,
+  private val edtExecutor: Executor
+) {
+  /** Key of the row that comes right before an offset, for the offsets following fetched batches. */
+  private val anchors = TreeMap<Int, Long>()
+
+  /** Fetched and pending batches by offset, from the least to the most recently used. */
+  private val batches = LinkedHashMap<Int, ListenableFuture<List<SqliteRow>>>(16, 0.75f, true)
+
+  private var lastRowOffset: Int? = null
+  private var readAheadDirection = 1
+  private var readAheadBatches = 1
+  private var discarded = false
+
+  val totalRowCount: ListenableFuture<Int> by lazy {
+    Futures.nonCancellationPropagating(resultSet.totalRowCount)
+  }
+
+  /** Returns the batch starting at [rowOffset], and reads ahead the batches next to it. */
+  fun getRowBatch(rowOffset: Int): ListenableFuture<List<SqliteRow>> {
+    val previousRowOffset = lastRowOffset
+    lastRowOffset = rowOffset
+    val future = fetch(rowOffset)
+    when (previousRowOffset) {
+      rowOffset - rowBatchSize -> readAheadSequential(rowOffset, 1)
+      rowOffset + rowBatchSize -> readAheadSequential(rowOffset, -1)
+      rowOffset -> Unit
+      else -> {
+        // After a jump, the user can go either way.
+        readAheadBatches = 1
+        readAhead(rowOffset, 1, 1)
+        readAhead(rowOffset, -1, 1)
+      }
+    }
+    return Futures.nonCancellationPropagating(future)
+  }
+
+  /** Stops reading ahead. Pending batches are still completed. */
+  fun discard() {
+    discarded = true
+    batches.clear()
+    anchors.clear()
+  }
+
+  private fun readAheadSequential(rowOffset: Int, direction: Int) {
+    readAheadBatches =
+      if (direction == readAheadDirection) min(readAheadBatches * 2, MAX_READ_AHEAD_BATCHES)
+      else 1
+    readAheadDirection = direction
+    readAhead(rowOffset, direction, readAheadBatches)
+  }
+
+  /**
+   * Fetches [count] batches after (or before, depending on [direction]) the one at [rowOffset].
+   * Each batch is fetched once the previous one is available, so that its key can be used.
+   */
+  private fun readAhead(rowOffset: Int, direction: Int, count: Int) {
+    if (count == 0 || discarded) return
+    val future = batches[rowOffset] ?: return
+    future.addCallback(
+      edtExecutor,
+      success = { rows ->
+        val nextRowOffset = rowOffset + direction * rowBatchSize
+        val hasMoreRows = if (direction > 0) rows?.size == rowBatchSize else nextRowOffset >= 0
+        if (!discarded && hasMoreRows) {
+          fetch(nextRowOffset)
+          readAhead(nextRowOffset, direction, count - 1)
+        }
+      },
+      failure = {}
+    )
+  }
+
+  private fun fetch(rowOffset: Int): ListenableFuture<List<SqliteRow>> {
+    batches[rowOffset]?.let {
+      return it
+    }
+
+    val anchor = anchors.floorEntry(rowOffset)
+    val future =
+      if (resultSet.supportsKeysetPagination) {
+        resultSet.getRowBatchAfterKey(
+          keyColumnName,
+          anchor?.value,
+          rowOffset - (anchor?.key ?: 0),
+          rowBatchSize
+        )
+      } else {
+        // The batches are still cached and read ahead, but fetched by offset.
+        resultSet.getRowBatch(rowOffset, rowBatchSize)
+      }
+    batches[rowOffset] = future
+    if (batches.size > MAX_CACHED_BATCHES) {
+      batches.remove(batches.keys.first())
+    }
+
+    future.addCallback(
+      edtExecutor,
+      success = { rows ->
+        if (!discarded && !rows.isNullOrEmpty()) {
+          rows.last().getKey()?.let { anchors[rowOffset + rows.size] = it }
+        }
+      },
+      failure = { batches.remove(rowOffset, future) }
+    )
+    return future
+  }
+
+  private fun SqliteRow.getKey(): Long? {
+    val value = values.firstOrNull { it.columnName == keyColumnName }?.value
+    return (value as? SqliteValue.StringValue)?.value?.toLongOrNull()
+  }
+}
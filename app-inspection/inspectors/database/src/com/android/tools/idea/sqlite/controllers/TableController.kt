@@ -28,6 +28,7 @@ import com.android.tools.idea.sqlite.model.ExportDialogParams
 import com.android.tools.idea.sqlite.model.ExportDialogParams.ExportQueryResultsDialogParams
 import com.android.tools.idea.sqlite.model.ExportDialogParams.ExportTableDialogParams
 import com.android.tools.idea.sqlite.model.ResultSetSqliteColumn
+import com.android.tools.idea.sqlite.model.SqliteAffinity
 import com.android.tools.idea.sqlite.model.SqliteDatabaseId
 import com.android.tools.idea.sqlite.model.SqliteRow
 import com.android.tools.idea.sqlite.model.SqliteStatement
@@ -81,6 +82,11 @@ class TableController(
   private var orderBy: OrderBy = OrderBy.NotOrdered
   private var rowOffset = 0
 
+  /**
+   * Used instead of [resultSet] to fetch rows when they can be paged by key, see [resetKeysetPager].
+   */
+  private var keysetPager: KeysetPager? = null
+
   private val databaseInspectorAnalyticsTracker =
     DatabaseInspectorAnalyticsTracker.getInstance(project)
 
@@ -155,6 +161,7 @@ class TableController(
             currentRows = emptyList()
           }
           currentCols = columns
+          resetKeysetPager()
 
           val table = tableSupplier()
           view.showTableColumns(
@@ -183,8 +190,9 @@ class TableController(
     view.setFetchPreviousRowsButtonState(false)
     view.setFetchNextRowsButtonState(false)
 
+    val pager = keysetPager
     return fetchAndDisplayRows()
-      .transformAsync(taskExecutor) { resultSet.totalRowCount }
+      .transformAsync(taskExecutor) { pager?.totalRowCount ?: resultSet.totalRowCount }
       .transform(edtExecutor) { rowCount ->
         view.setFetchPreviousRowsButtonState(rowOffset > 0)
         view.setFetchNextRowsButtonState(rowOffset + rowBatchSize < rowCount)
@@ -210,8 +218,7 @@ class TableController(
    * keyboard we don't want to lose the navigation each time the data has to be updated.
    */
   private fun fetchAndDisplayRows(): ListenableFuture<Unit> {
-    return resultSet
-      .getRowBatch(rowOffset, rowBatchSize)
+    return (keysetPager?.getRowBatch(rowOffset) ?: resultSet.getRowBatch(rowOffset, rowBatchSize))
       .transform(edtExecutor) { newRows ->
         val rowDiffOperations = mutableListOf<RowDiffOperation>()
 
@@ -272,6 +279,31 @@ class TableController(
     return future
   }
 
+  /**
+   * Replaces [keysetPager], dropping the rows it cached. Rows are paged by key when the result set
+   * contains all the rows of a table in their natural order and the table has an integer key,
+   * either its rowid or an `INTEGER PRIMARY KEY`, since other results have no column that can be
+   * used as a unique and ordered cursor.
+   */
+  private fun resetKeysetPager() {
+    keysetPager?.discard()
+    keysetPager =
+      getKeyColumnName()?.let { KeysetPager(resultSet, it, rowBatchSize, edtExecutor) }
+  }
+
+  private fun getKeyColumnName(): String? {
+    if (orderBy != OrderBy.NotOrdered || !resultSet.supportsKeysetPagination) return null
+    val table = tableSupplier() ?: return null
+    if (table.isView) return null
+    val keyColumnName =
+      table.rowIdName?.stringName
+        ?: table.columns
+          .singleOrNull { it.inPrimaryKey }
+          ?.takeIf { it.affinity == SqliteAffinity.INTEGER }
+          ?.name
+    return keyColumnName?.takeIf { name -> currentCols.any { it.name == name } }
+  }
+
   private fun isEditable() =
     tableSupplier() != null &&
       !liveUpdatesEnabled &&
@@ -330,6 +362,7 @@ class TableController(
         }
 
         rowBatchSize = intRowCount
+        resetKeysetPager()
         updateDataAndButtonsWithLoadingScreens()
       } catch (e: NumberFormatException) {
         view.reportError(errorMessage, null)
@@ -352,7 +385,8 @@ class TableController(
     }
 
     override fun loadLastRowsInvoked() {
-      resultSet.totalRowCount.transformAsync(edtExecutor) { rowCount ->
+      (keysetPager?.totalRowCount ?: resultSet.totalRowCount).transformAsync(edtExecutor) {
+        rowCount ->
         rowOffset = (rowCount / rowBatchSize) * rowBatchSize
 
         if (rowOffset == rowCount) rowOffset -= rowBatchSize
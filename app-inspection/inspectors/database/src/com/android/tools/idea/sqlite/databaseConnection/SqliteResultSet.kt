@@ -15,11 +15,13 @@
  */
 package com.android.tools.idea.sqlite.databaseConnection
 
+import com.android.tools.idea.lang.androidSql.parser.AndroidSqlLexer
 import com.android.tools.idea.sqlite.model.ResultSetSqliteColumn
 import com.android.tools.idea.sqlite.model.SqliteRow
 import com.android.tools.idea.sqlite.model.SqliteStatement
 import com.android.tools.idea.sqlite.model.SqliteStatementType
 import com.android.tools.idea.sqlite.model.transform
+import com.google.common.util.concurrent.Futures
 import com.google.common.util.concurrent.ListenableFuture
 import com.intellij.openapi.Disposable
 
@@ -39,6 +41,17 @@ interface SqliteResultSet : Disposable {
     this.transform(SqliteStatementType.SELECT) {
       "SELECT * FROM ($it) LIMIT $rowOffset, $rowBatchSize"
     }
+  fun SqliteStatement.toSelectAfterKey(
+    keyColumnName: String,
+    afterKey: Long?,
+    rowOffset: Int,
+    rowBatchSize: Int
+  ) =
+    this.transform(SqliteStatementType.SELECT) {
+      val keyColumn = AndroidSqlLexer.getValidName(keyColumnName)
+      val whereClause = if (afterKey != null) " WHERE $keyColumn > $afterKey" else ""
+      "SELECT * FROM ($it)$whereClause ORDER BY $keyColumn LIMIT $rowOffset, $rowBatchSize"
+    }
 
   val columns: ListenableFuture<List<ResultSetSqliteColumn>>
 
@@ -55,6 +68,36 @@ interface SqliteResultSet : Disposable {
    * @param rowBatchSize The maximum amount of rows returned. Must be > 0
    */
   fun getRowBatch(rowOffset: Int, rowBatchSize: Int): ListenableFuture<List<SqliteRow>>
+
+  /**
+   * True if this result set supports [getRowBatchAfterKey]. Callers use [getRowBatch] otherwise.
+   */
+  val supportsKeysetPagination: Boolean
+    get() = false
+
+  /**
+   * Returns a list of [SqliteRow]s ordered by the integer column [keyColumnName], e.g. the rowid of
+   * a table. Unlike [getRowBatch], the database can seek directly to [afterKey] using the index of
+   * the key, instead of stepping over all the rows that come before [rowOffset].
+   *
+   * @param keyColumnName The name of a column of this result set with unique, non-null values.
+   * @param afterKey Only the rows with a key greater than [afterKey] are returned, or all of them if
+   *   null.
+   * @param rowOffset The row, relative to [afterKey], from which the returned list of rows should
+   *   start. Must be >= 0
+   * @param rowBatchSize The maximum amount of rows returned. Must be > 0
+   * @return a future that fails with [UnsupportedOperationException] if [supportsKeysetPagination]
+   *   is false.
+   */
+  fun getRowBatchAfterKey(
+    keyColumnName: String,
+    afterKey: Long?,
+    rowOffset: Int,
+    rowBatchSize: Int
+  ): ListenableFuture<List<SqliteRow>> =
+    Futures.immediateFailedFuture(
+      UnsupportedOperationException("Keyset pagination is not supported by this result set.")
+    )
 }
 
 /** Checks that [rowOffset] is >= 0 and [rowBatchSize] is > 0. */
@@ -35,11 +35,28 @@ class PagedJdbcSqliteResultSet(
         count
       }
 
+  override val supportsKeysetPagination: Boolean
+    get() = true
+
   override fun getRowBatch(rowOffset: Int, rowBatchSize: Int): ListenableFuture<List<SqliteRow>> {
     checkOffsetAndSize(rowOffset, rowBatchSize)
-    return getRowBatch(sqliteStatement.toSelectLimitOffset(rowOffset, rowBatchSize)) {
-      resultSet,
-      columns ->
+    return getRows(sqliteStatement.toSelectLimitOffset(rowOffset, rowBatchSize))
+  }
+
+  override fun getRowBatchAfterKey(
+    keyColumnName: String,
+    afterKey: Long?,
+    rowOffset: Int,
+    rowBatchSize: Int
+  ): ListenableFuture<List<SqliteRow>> {
+    checkOffsetAndSize(rowOffset, rowBatchSize)
+    return getRows(
+      sqliteStatement.toSelectAfterKey(keyColumnName, afterKey, rowOffset, rowBatchSize)
+    )
+  }
+
+  private fun getRows(statement: SqliteStatement): ListenableFuture<List<SqliteRow>> {
+    return getRowBatch(statement) { resultSet, columns ->
       val rows = ArrayList<SqliteRow>()
       while (resultSet.next()) {
         rows.add(createCurrentRow(resultSet, columns))
@@ -41,25 +41,48 @@ class PagedLiveSqliteResultSet(
         response.query.rowsList.firstOrNull()?.valuesList?.firstOrNull()?.longValue?.toInt() ?: 0
       }
 
+  override val supportsKeysetPagination: Boolean
+    get() = true
+
   override fun getRowBatch(
     rowOffset: Int,
     rowBatchSize: Int,
     responseSizeByteLimitHint: Long?
   ): ListenableFuture<List<SqliteRow>> {
     checkOffsetAndSize(rowOffset, rowBatchSize)
-    return sendQueryCommand(
-        sqliteStatement.toSelectLimitOffset(rowOffset, rowBatchSize),
-        responseSizeByteLimitHint
-      )
-      .transform(taskExecutor) { response ->
-        val columnNames = response.query.columnNamesList
-        response.query.rowsList.map {
-          val sqliteColumnValues =
-            it.valuesList.mapIndexed { index, cellValue ->
-              cellValue.toSqliteColumnValue(columnNames[index])
-            }
-          SqliteRow(sqliteColumnValues)
-        }
+    return getRows(
+      sqliteStatement.toSelectLimitOffset(rowOffset, rowBatchSize),
+      responseSizeByteLimitHint
+    )
+  }
+
+  override fun getRowBatchAfterKey(
+    keyColumnName: String,
+    afterKey: Long?,
+    rowOffset: Int,
+    rowBatchSize: Int
+  ): ListenableFuture<List<SqliteRow>> {
+    checkOffsetAndSize(rowOffset, rowBatchSize)
+    return getRows(
+      sqliteStatement.toSelectAfterKey(keyColumnName, afterKey, rowOffset, rowBatchSize),
+      null
+    )
+  }
+
+  private fun getRows(
+    statement: SqliteStatement,
+    responseSizeByteLimitHint: Long?
+  ): ListenableFuture<List<SqliteRow>> {
+    return sendQueryCommand(statement, responseSizeByteLimitHint).transform(taskExecutor) {
+      response ->
+      val columnNames = response.query.columnNamesList
+      response.query.rowsList.map {
+        val sqliteColumnValues =
+          it.valuesList.mapIndexed { index, cellValue ->
+            cellValue.toSqliteColumnValue(columnNames[index])
+          }
+        SqliteRow(sqliteColumnValues)
       }
+    }
   }
 }
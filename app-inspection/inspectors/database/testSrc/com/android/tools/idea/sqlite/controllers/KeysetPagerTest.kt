@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.sqlite.controllers
+
+import com.android.tools.idea.concurrency.pumpEventsAndWaitForFuture
+import com.android.tools.idea.sqlite.databaseConnection.SqliteResultSet
+import com.android.tools.idea.sqlite.model.ResultSetSqliteColumn
+import com.android.tools.idea.sqlite.model.SqliteColumnValue
+import com.android.tools.idea.sqlite.model.SqliteRow
+import com.android.tools.idea.sqlite.model.SqliteValue
+import com.google.common.util.concurrent.Futures
+import com.google.common.util.concurrent.ListenableFuture
+import com.intellij.testFramework.LightPlatformTestCase
+import com.intellij.testFramework.PlatformTestUtil
+import com.intellij.util.concurrency.EdtExecutorService
+
+class KeysetPagerTest : LightPlatformTestCase() {
+  private val edtExecutor = EdtExecutorService.getInstance()
+
+  fun testRowsAreFetchedAfterTheKeyOfThePreviousBatch() {
+    // Prepare
+    val resultSet = KeyedResultSet(100)
+    val pager = KeysetPager(resultSet, "id", 10, edtExecutor)
+
+    // Act
+    val firstRows = pumpEventsAndWaitForFuture(pager.getRowBatch(0))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    val secondRows = pumpEventsAndWaitForFuture(pager.getRowBatch(10))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Assert
+    assertEquals((0 until 10).map { it * 2L }, firstRows.map { it.key })
+    assertEquals((10 until 20).map { it * 2L }, secondRows.map { it.key })
+    // The first batch is fetched by offset, the following ones after the key of the previous one.
+    assertEquals(KeysetQuery(null, 0), resultSet.queries[0])
+    assertTrue(resultSet.queries.drop(1).all { it.rowOffset == 0 && it.afterKey != null })
+  }
+
+  fun testCachedBatchesAreNotFetchedAgain() {
+    // Prepare
+    val resultSet = KeyedResultSet(100)
+    val pager = KeysetPager(resultSet, "id", 10, edtExecutor)
+
+    // Act
+    pumpEventsAndWaitForFuture(pager.getRowBatch(0))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    pumpEventsAndWaitForFuture(pager.getRowBatch(10))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    val queryCount = resultSet.queries.size
+    val rows = pumpEventsAndWaitForFuture(pager.getRowBatch(0))
+
+    // Assert
+    assertEquals(queryCount, resultSet.queries.size)
+    assertEquals((0 until 10).map { it * 2L }, rows.map { it.key })
+  }
+
+  fun testReadAheadGrowsWhilePagingInTheSameDirection() {
+    // Prepare
+    val resultSet = KeyedResultSet(1000)
+    val pager = KeysetPager(resultSet, "id", 10, edtExecutor)
+
+    // Act
+    pumpEventsAndWaitForFuture(pager.getRowBatch(0))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    // Offset 10 is read ahead after the first batch.
+    assertEquals(2, resultSet.queries.size)
+
+    pumpEventsAndWaitForFuture(pager.getRowBatch(10))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    // Offsets 20 and 30.
+    assertEquals(4, resultSet.queries.size)
+
+    pumpEventsAndWaitForFuture(pager.getRowBatch(20))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    // Offsets 40, 50 and 60 (30 is cached).
+    assertEquals(7, resultSet.queries.size)
+
+    // Assert
+    assertTrue(resultSet.queries.all { it.afterKey == null || it.rowOffset == 0 })
+  }
+
+  fun testReadAheadStopsAtTheEndOfTheRows() {
+    // Prepare
+    val resultSet = KeyedResultSet(15)
+    val pager = KeysetPager(resultSet, "id", 10, edtExecutor)
+
+    // Act
+    pumpEventsAndWaitForFuture(pager.getRowBatch(0))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    val lastRows = pumpEventsAndWaitForFuture(pager.getRowBatch(10))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Assert
+    assertEquals(5, lastRows.size)
+    assertEquals(2, resultSet.queries.size)
+  }
+
+  fun testDiscardStopsReadAhead() {
+    // Prepare
+    val resultSet = KeyedResultSet(100)
+    val pager = KeysetPager(resultSet, "id", 10, edtExecutor)
+
+    // Act
+    pager.getRowBatch(0)
+    pager.discard()
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Assert
+    assertEquals(1, resultSet.queries.size)
+  }
+
+  fun testRowsAreFetchedByOffsetWithoutKeysetPagination() {
+    // Prepare
+    val resultSet = KeyedResultSet(100, supportsKeysetPagination = false)
+    val pager = KeysetPager(resultSet, "id", 10, edtExecutor)
+
+    // Act
+    pumpEventsAndWaitForFuture(pager.getRowBatch(0))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    val secondRows = pumpEventsAndWaitForFuture(pager.getRowBatch(10))
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Assert
+    assertEquals((10 until 20).map { it * 2L }, secondRows.map { it.key })
+    assertTrue(resultSet.queries.isEmpty())
+    assertEquals(listOf(0, 10, 20, 30), resultSet.offsetQueries)
+  }
+
+  private data class KeysetQuery(val afterKey: Long?, val rowOffset: Int)
+
+  /** Result set of [size] rows with an even `id`. */
+  private class KeyedResultSet(size: Int, override val supportsKeysetPagination: Boolean = true) :
+    SqliteResultSet {
+    private val rows =
+      (0 until size).map {
+        SqliteRow(listOf(SqliteColumnValue("id", SqliteValue.fromAny(it * 2L))))
+      }
+
+    val queries = mutableListOf<KeysetQuery>()
+    val offsetQueries = mutableListOf<Int>()
+
+    override val columns: ListenableFuture<List<ResultSetSqliteColumn>>
+      get() = Futures.immediateFuture(listOf(ResultSetSqliteColumn("id")))
+
+    override val totalRowCount: ListenableFuture<Int>
+      get() = Futures.immediateFuture(rows.size)
+
+    override fun getRowBatch(rowOffset: Int, rowBatchSize: Int): ListenableFuture<List<SqliteRow>> {
+      offsetQueries.add(rowOffset)
+      return Futures.immediateFuture(rows.drop(rowOffset).take(rowBatchSize))
+    }
+
+    override fun getRowBatchAfterKey(
+      keyColumnName: String,
+      afterKey: Long?,
+      rowOffset: Int,
+      rowBatchSize: Int
+    ): ListenableFuture<List<SqliteRow>> {
+      queries.add(KeysetQuery(afterKey, rowOffset))
+      val rowsAfterKey = rows.filter { afterKey == null || it.key > afterKey }
+      return Futures.immediateFuture(rowsAfterKey.drop(rowOffset).take(rowBatchSize))
+    }
+
+    override fun dispose() {}
+  }
+}
+
+private val SqliteRow.key
+  get() = (values.first().value as SqliteValue.StringValue).value.toLong()
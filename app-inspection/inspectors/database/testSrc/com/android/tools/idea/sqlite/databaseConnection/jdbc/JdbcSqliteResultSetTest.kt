@@ -22,6 +22,7 @@ import com.android.tools.idea.sqlite.databaseConnection.DatabaseConnection
 import com.android.tools.idea.sqlite.fileType.SqliteTestUtil
 import com.android.tools.idea.sqlite.model.SqliteStatement
 import com.android.tools.idea.sqlite.model.SqliteStatementType
+import com.android.tools.idea.sqlite.model.SqliteValue
 import com.android.tools.idea.sqlite.utils.getJdbcDatabaseConnection
 import com.intellij.openapi.util.Disposer
 import com.intellij.testFramework.LightPlatformTestCase
@@ -235,4 +236,48 @@ class JdbcSqliteResultSetTest : LightPlatformTestCase() {
     Disposer.dispose(customConnection!!)
     pumpEventsAndWaitForFutureCancellation(resultSet.getRowBatch(0, 10))
   }
+
+  fun testGetRowBatchAfterKey() {
+    // Prepare
+    val customSqliteFile =
+      sqliteUtil.createAdHocSqliteDatabase(
+        createStatement = "CREATE TABLE t1 (id INTEGER PRIMARY KEY, c1 INT)",
+        insertStatement =
+          "INSERT INTO t1 (id, c1) VALUES " + (1..19 step 2).joinToString { "($it, ${it * 10})" }
+      )
+    customConnection =
+      pumpEventsAndWaitForFuture(
+        getJdbcDatabaseConnection(
+          testRootDisposable,
+          customSqliteFile,
+          FutureCallbackExecutor.wrap(EdtExecutorService.getInstance())
+        )
+      )
+    val resultSet =
+      pumpEventsAndWaitForFuture(
+        customConnection!!.query(SqliteStatement(SqliteStatementType.SELECT, "SELECT * FROM t1"))
+      )
+
+    // Act
+    val firstRows = pumpEventsAndWaitForFuture(resultSet.getRowBatchAfterKey("id", null, 0, 3))
+    val rowsAfterKey = pumpEventsAndWaitForFuture(resultSet.getRowBatchAfterKey("id", 5, 0, 3))
+    val rowsAfterKeyWithOffset =
+      pumpEventsAndWaitForFuture(resultSet.getRowBatchAfterKey("id", 5, 1, 3))
+    val lastRows = pumpEventsAndWaitForFuture(resultSet.getRowBatchAfterKey("id", 15, 0, 3))
+
+    // Assert
+    assertTrue(resultSet.supportsKeysetPagination)
+    assertEquals(listOf("1", "3", "5"), firstRows.map { it.values.first().value.toStringValue() })
+    assertEquals(
+      listOf("7", "9", "11"),
+      rowsAfterKey.map { it.values.first().value.toStringValue() }
+    )
+    assertEquals(
+      listOf("9", "11", "13"),
+      rowsAfterKeyWithOffset.map { it.values.first().value.toStringValue() }
+    )
+    assertEquals(listOf("17", "19"), lastRows.map { it.values.first().value.toStringValue() })
+  }
+
+  private fun SqliteValue.toStringValue() = (this as SqliteValue.StringValue).value
 }
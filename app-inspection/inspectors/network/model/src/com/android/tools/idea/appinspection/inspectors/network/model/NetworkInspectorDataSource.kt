@@ -17,7 +17,12 @@ package com.android.tools.idea.appinspection.inspectors.network.model
 
 import com.android.tools.adtui.model.Range
 import com.android.tools.idea.appinspection.inspector.api.AppInspectorMessenger
+import com.android.tools.idea.appinspection.inspectors.network.model.httpdata.Payload
+import com.android.tools.idea.appinspection.inspectors.network.model.httpdata.PayloadStore
 import com.android.tools.idea.concurrency.createChildScope
+import com.intellij.openapi.diagnostic.Logger
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CompletableDeferred
@@ -168,6 +173,19 @@ interface NetworkInspectorDataSource {
   val connectionEventFlow: Flow<HttpConnectionEvent>
   suspend fun queryForHttpData(range: Range): List<Event>
   suspend fun queryForSpeedData(range: Range): List<Event>
+
+  /**
+   * Returns the payload of a request or response payload event returned by [queryForHttpData], or
+   * an empty payload for other events.
+   */
+  fun getPayload(event: Event): Payload =
+    when (event.httpConnectionEvent.unionCase) {
+      HttpConnectionEvent.UnionCase.REQUEST_PAYLOAD ->
+        Payload.InMemory(event.httpConnectionEvent.requestPayload.payload)
+      HttpConnectionEvent.UnionCase.RESPONSE_PAYLOAD ->
+        Payload.InMemory(event.httpConnectionEvent.responsePayload.payload)
+      else -> Payload.EMPTY
+    }
 }
 
 class NetworkInspectorDataSourceImpl(
@@ -179,8 +197,23 @@ class NetworkInspectorDataSourceImpl(
   private val channel = Channel<Intention>()
   override val connectionEventFlow: Flow<HttpConnectionEvent>
 
+  // Payloads are moved out of the events into a session file, and looked up by connection id.
+  private val payloadStore: PayloadStore? =
+    try {
+      PayloadStore.createTemporary()
+    } catch (e: IOException) {
+      Logger.getInstance(NetworkInspectorDataSourceImpl::class.java)
+        .warn("Failed to create the payload file, payloads will be kept in memory", e)
+      null
+    }
+  private val requestPayloads = ConcurrentHashMap<Long, Payload>()
+  private val responsePayloads = ConcurrentHashMap<Long, Payload>()
+
   init {
-    scope.coroutineContext[Job]!!.invokeOnCompletion { e -> channel.close(e) }
+    scope.coroutineContext[Job]!!.invokeOnCompletion { e ->
+      channel.close(e)
+      payloadStore?.close()
+    }
     scope.launch {
       try {
         processEvents(channel)
@@ -190,12 +223,61 @@ class NetworkInspectorDataSourceImpl(
     }
     connectionEventFlow =
       messenger.eventFlow
-        .map { data -> Event.parseFrom(data) }
+        .map { data -> storePayload(Event.parseFrom(data)) }
         .onEach { data -> channel.send(Intention.InsertData(data)) }
         .mapNotNull { if (it.hasHttpConnectionEvent()) it.httpConnectionEvent else null }
         .shareIn(scope, SharingStarted.Eagerly, replayCacheSize)
   }
 
+  /**
+   * Appends the payload carried by [event] to the [payloadStore], and returns the event without
+   * it.
+   */
+  private fun storePayload(event: Event): Event {
+    val store = payloadStore ?: return event
+    val connectionEvent = event.httpConnectionEvent
+    val (payloads, bytes) =
+      when (connectionEvent.unionCase) {
+        HttpConnectionEvent.UnionCase.REQUEST_PAYLOAD ->
+          requestPayloads to connectionEvent.requestPayload.payload
+        HttpConnectionEvent.UnionCase.RESPONSE_PAYLOAD ->
+          responsePayloads to connectionEvent.responsePayload.payload
+        else -> return event
+      }
+    // Only the first payload of a connection is used, see HttpDataModel.
+    if (payloads.containsKey(connectionEvent.connectionId)) {
+      return event
+    }
+    val payload =
+      try {
+        store.append(bytes)
+      } catch (e: IOException) {
+        return event
+      }
+    payloads[connectionEvent.connectionId] = payload
+    return event
+      .toBuilder()
+      .apply {
+        if (connectionEvent.hasRequestPayload()) {
+          httpConnectionEventBuilder.requestPayloadBuilder.clearPayload()
+        } else {
+          httpConnectionEventBuilder.responsePayloadBuilder.clearPayload()
+        }
+      }
+      .build()
+  }
+
+  override fun getPayload(event: Event): Payload {
+    val connectionEvent = event.httpConnectionEvent
+    val stored =
+      when (connectionEvent.unionCase) {
+        HttpConnectionEvent.UnionCase.REQUEST_PAYLOAD -> requestPayloads[connectionEvent.connectionId]
+        HttpConnectionEvent.UnionCase.RESPONSE_PAYLOAD -> responsePayloads[connectionEvent.connectionId]
+        else -> null
+      }
+    return stored ?: super.getPayload(event)
+  }
+
   override suspend fun queryForHttpData(range: Range) =
     withContext(scope.coroutineContext) {
       val deferred = CompletableDeferred<List<Event>>()
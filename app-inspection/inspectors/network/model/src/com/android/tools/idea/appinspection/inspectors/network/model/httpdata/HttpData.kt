@@ -18,7 +18,6 @@ package com.android.tools.idea.appinspection.inspectors.network.model.httpdata
 import com.android.tools.idea.protobuf.ByteString
 import com.intellij.openapi.vfs.CharsetToolkit
 import com.intellij.util.io.URLUtil
-import java.io.ByteArrayInputStream
 import java.io.IOException
 import java.io.UnsupportedEncodingException
 import java.net.URI
@@ -44,9 +43,9 @@ data class HttpData(
   val method: String,
   val trace: String,
   val requestFields: String,
-  val requestPayload: ByteString,
+  private val requestPayloadData: Payload,
   val responseFields: String,
-  private val rawResponsePayload: ByteString
+  private val rawResponsePayloadData: Payload
 ) {
 
   /**
@@ -56,31 +55,32 @@ data class HttpData(
   val requestHeader = RequestHeader(requestFields)
   val responseHeader = ResponseHeader(responseFields)
 
+  val requestPayload: ByteString
+    get() = requestPayloadData.bytes
+
   // The unzipped version of the response payload. Note not all response payloads are zipped,
-  // so this could be the same as the rawResponsePayload.
-  private lateinit var unzippedResponsePayload: ByteString
+  // so this could be the same as the raw response payload. It is read and unzipped on demand.
   val responsePayload: ByteString
-    get() {
-      if (this::unzippedResponsePayload.isInitialized) {
-        return unzippedResponsePayload
-      } else {
-        if (responseHeader.getField("content-encoding").lowercase().contains("gzip")) {
-          try {
-            GZIPInputStream(ByteArrayInputStream(rawResponsePayload.toByteArray())).use {
-              inputStream ->
-              unzippedResponsePayload = ByteString.copyFrom(inputStream.readBytes())
-            }
-          } catch (ignored: IOException) {
-            // If we got here, it means we failed to unzip data that was supposedly zipped. Just
-            // fallback and return the content directly.
-            unzippedResponsePayload = rawResponsePayload
-          }
-        } else {
-          unzippedResponsePayload = rawResponsePayload
-        }
-        return unzippedResponsePayload
+    get() = rawResponsePayloadData.decoded(::unzipResponsePayload)
+
+  /** The size of [responsePayload], which is remembered once the payload was unzipped. */
+  val responsePayloadSize: Int
+    get() = rawResponsePayloadData.decodedSize(::unzipResponsePayload)
+
+  private fun unzipResponsePayload(rawResponsePayload: ByteString): ByteString {
+    if (!responseHeader.getField("content-encoding").lowercase().contains("gzip")) {
+      return rawResponsePayload
+    }
+    return try {
+      GZIPInputStream(rawResponsePayload.newInput()).use { inputStream ->
+        ByteString.copyFrom(inputStream.readBytes())
       }
+    } catch (ignored: IOException) {
+      // If we got here, it means we failed to unzip data that was supposedly zipped. Just
+      // fallback and return the content directly.
+      rawResponsePayload
     }
+  }
 
   class ContentType(private val contentType: String) {
     val isEmpty = contentType.isEmpty()
@@ -114,6 +114,39 @@ data class HttpData(
       requestPayload: ByteString = ByteString.EMPTY,
       responseFields: String = "",
       responsePayload: ByteString = ByteString.EMPTY
+    ) =
+      createHttpData(
+        id,
+        requestStartTimeUs,
+        requestCompleteTimeUs,
+        responseStartTimeUs,
+        responseCompleteTimeUs,
+        connectionEndTimeUs,
+        threads,
+        url,
+        method,
+        trace,
+        requestFields,
+        Payload.InMemory(requestPayload),
+        responseFields,
+        Payload.InMemory(responsePayload)
+      )
+
+    fun createHttpData(
+      id: Long,
+      requestStartTimeUs: Long,
+      requestCompleteTimeUs: Long,
+      responseStartTimeUs: Long,
+      responseCompleteTimeUs: Long,
+      connectionEndTimeUs: Long,
+      threads: List<JavaThread>,
+      url: String,
+      method: String,
+      trace: String,
+      requestFields: String,
+      requestPayload: Payload,
+      responseFields: String,
+      responsePayload: Payload
     ): HttpData {
       assert(threads.isNotEmpty()) { "HttpData must be initialized with at least one thread" }
       return HttpData(
@@ -121,9 +121,9 @@ class HttpDataModelImpl(
           requestStartData.method,
           requestStartData.trace,
           requestStartData.fields,
-          requestPayloadEvent.httpConnectionEvent.requestPayload.payload,
+          dataSource.getPayload(requestPayloadEvent),
           responseStartEvent.httpConnectionEvent.httpResponseStarted.fields,
-          responsePayloadEvent.httpConnectionEvent.responsePayload.payload
+          dataSource.getPayload(responsePayloadEvent)
         )
       }
   }
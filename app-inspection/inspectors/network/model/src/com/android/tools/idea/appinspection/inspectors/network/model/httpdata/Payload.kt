@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model.httpdata
+
+import com.android.tools.idea.protobuf.ByteString
+
+/**
+ * The body of a request or a response of a connection.
+ *
+ * Payloads received from the inspector are kept in the [PayloadStore] of the session rather than in memory, and are only read when
+ * [bytes] is called.
+ */
+sealed class Payload {
+  abstract val bytes: ByteString
+
+  /**
+   * Returns the payload transformed by [decoder], e.g. unzipped. [decoder] has to return the same result for the same payload.
+   */
+  internal abstract fun decoded(decoder: (ByteString) -> ByteString): ByteString
+
+  /**
+   * Returns the size of the payload transformed by [decoder].
+   */
+  internal abstract fun decodedSize(decoder: (ByteString) -> ByteString): Int
+
+  data class InMemory(override val bytes: ByteString) : Payload() {
+    private var decodedBytes: ByteString? = null
+
+    override fun decoded(decoder: (ByteString) -> ByteString) = decodedBytes ?: decoder(bytes).also { decodedBytes = it }
+
+    override fun decodedSize(decoder: (ByteString) -> ByteString) = decoded(decoder).size()
+  }
+
+  class Stored internal constructor(private val store: PayloadStore, internal val offset: Long, val size: Int) : Payload() {
+    override val bytes: ByteString
+      get() = store.read(this)
+
+    override fun decoded(decoder: (ByteString) -> ByteString) = store.decoded(this, decoder)
+
+    override fun decodedSize(decoder: (ByteString) -> ByteString) = store.decodedSize(this, decoder)
+
+    override fun equals(other: Any?) = other is Stored && other.store === store && other.offset == offset
+
+    override fun hashCode() = offset.hashCode()
+
+    override fun toString() = "Stored(offset=$offset, size=$size)"
+  }
+
+  companion object {
+    val EMPTY = InMemory(ByteString.EMPTY)
+  }
+}
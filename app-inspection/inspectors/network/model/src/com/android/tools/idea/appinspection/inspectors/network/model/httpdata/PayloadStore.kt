@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model.httpdata
+
+import com.android.tools.idea.protobuf.ByteString
+import com.android.tools.idea.protobuf.UnsafeByteOperations
+import com.intellij.openapi.diagnostic.Logger
+import java.io.Closeable
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+private const val DEFAULT_DECODED_CACHE_BYTES = 16 * 1024 * 1024
+
+/**
+ * An append-only file holding the payloads of a Network Inspector session, so that they don't stay in memory for the whole session.
+ *
+ * The payloads are read back when they are displayed. The most recently used decoded payloads are kept in memory up to
+ * [decodedCacheBytes], since the connections are rebuilt from the events on each update of the views, and the sizes of all the decoded
+ * payloads are remembered for the connections table.
+ */
+class PayloadStore(private val file: Path, private val decodedCacheBytes: Int = DEFAULT_DECODED_CACHE_BYTES) : Closeable {
+  private val channel =
+    FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)
+  private var end = 0L
+
+  /** Decoded payloads by offset, from the least to the most recently used. */
+  private val decodedPayloads = LinkedHashMap<Long, ByteString>(16, 0.75f, true)
+  private var decodedBytes = 0L
+  private val decodedSizes = HashMap<Long, Int>()
+
+  /**
+   * Appends [bytes] to the file and returns a [Payload] reading them back.
+   */
+  @Synchronized
+  @Throws(IOException::class)
+  fun append(bytes: ByteString): Payload {
+    if (bytes.isEmpty) {
+      return Payload.EMPTY
+    }
+    val offset = end
+    val buffer = bytes.asReadOnlyByteBuffer()
+    while (buffer.hasRemaining()) {
+      end += channel.write(buffer, end)
+    }
+    return Payload.Stored(this, offset, bytes.size())
+  }
+
+  @Synchronized
+  internal fun read(payload: Payload.Stored): ByteString {
+    val buffer = ByteBuffer.allocate(payload.size)
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, payload.offset + buffer.position()) < 0) {
+          throw IOException("Unexpected end of $file")
+        }
+      }
+    }
+    catch (e: IOException) {
+      // The store is closed once the session ends.
+      LOG.warn("Failed to read a payload of ${payload.size} bytes", e)
+      return ByteString.EMPTY
+    }
+    buffer.flip()
+    return UnsafeByteOperations.unsafeWrap(buffer)
+  }
+
+  @Synchronized
+  internal fun decoded(payload: Payload.Stored, decoder: (ByteString) -> ByteString): ByteString {
+    decodedPayloads[payload.offset]?.let { return it }
+    val decoded = decoder(read(payload))
+    decodedSizes[payload.offset] = decoded.size()
+    if (decoded.size() <= decodedCacheBytes) {
+      decodedPayloads[payload.offset] = decoded
+      decodedBytes += decoded.size()
+      val iterator = decodedPayloads.values.iterator()
+      while (decodedBytes > decodedCacheBytes) {
+        decodedBytes -= iterator.next().size()
+        iterator.remove()
+      }
+    }
+    return decoded
+  }
+
+  @Synchronized
+  internal fun decodedSize(payload: Payload.Stored, decoder: (ByteString) -> ByteString): Int =
+    decodedSizes[payload.offset] ?: decoded(payload, decoder).size()
+
+  /**
+   * Closes and deletes the file. Payloads cannot be read anymore after this.
+   */
+  @Synchronized
+  override fun close() {
+    channel.close()
+    decodedPayloads.clear()
+    decodedBytes = 0
+  }
+
+  companion object {
+    private val LOG = Logger.getInstance(PayloadStore::class.java)
+
+    /**
+     * Creates a store in a new temporary file.
+     */
+    @Throws(IOException::class)
+    fun createTemporary() = PayloadStore(Files.createTempFile("network-inspector", ".payloads"))
+  }
+}
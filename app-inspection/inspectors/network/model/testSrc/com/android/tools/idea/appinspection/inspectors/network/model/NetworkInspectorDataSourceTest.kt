@@ -17,6 +17,8 @@ package com.android.tools.idea.appinspection.inspectors.network.model
 
 import com.android.tools.adtui.model.Range
 import com.android.tools.idea.appinspection.inspector.api.AppInspectorMessenger
+import com.android.tools.idea.appinspection.inspectors.network.model.httpdata.Payload
+import com.android.tools.idea.protobuf.ByteString
 import com.google.common.truth.Truth.assertThat
 import java.util.concurrent.Executors
 import kotlin.test.fail
@@ -287,6 +289,32 @@ class NetworkInspectorDataSourceTest {
     assertThat(httpEvents).containsNoneOf(httpEvent7, httpEvent8)
   }
 
+  @Test
+  fun payloadsAreMovedOutOfEvents() = runBlocking {
+    val payloadEvent =
+      Event.newBuilder()
+        .setTimestamp(1002)
+        .setHttpConnectionEvent(
+          HttpConnectionEvent.newBuilder()
+            .setConnectionId(1)
+            .setResponsePayload(
+              HttpConnectionEvent.Payload.newBuilder()
+                .setPayload(ByteString.copyFromUtf8("RESPONSE_CONTENT"))
+            )
+        )
+        .build()
+    val testMessenger = TestMessenger(scope, flowOf(payloadEvent.toByteArray()))
+    val dataSource = NetworkInspectorDataSourceImpl(testMessenger, scope)
+    testMessenger.await()
+
+    val httpEvents = dataSource.queryForHttpData(Range(1.0, 2.0))
+    assertThat(httpEvents).hasSize(1)
+    assertThat(httpEvents[0].httpConnectionEvent.responsePayload.payload).isEqualTo(ByteString.EMPTY)
+    val payload = dataSource.getPayload(httpEvents[0])
+    assertThat(payload).isInstanceOf(Payload.Stored::class.java)
+    assertThat(payload.bytes).isEqualTo(ByteString.copyFromUtf8("RESPONSE_CONTENT"))
+  }
+
   @Test
   fun cleanUpChannelOnDispose() =
     runBlocking {
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model.httpdata
+
+import com.android.tools.idea.protobuf.ByteString
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class PayloadStoreTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
+  private val store by lazy { PayloadStore(temporaryFolder.root.toPath().resolve("payloads"), decodedCacheBytes = 10) }
+
+  @After
+  fun tearDown() {
+    store.close()
+  }
+
+  @Test
+  fun appendedPayloadsAreReadBack() {
+    val first = store.append(ByteString.copyFromUtf8("first"))
+    val second = store.append(ByteString.copyFromUtf8("second").substring(1))
+
+    assertThat(first.bytes.toStringUtf8()).isEqualTo("first")
+    assertThat(second.bytes.toStringUtf8()).isEqualTo("econd")
+    assertThat(first).isNotEqualTo(second)
+    assertThat(store.append(ByteString.EMPTY)).isSameAs(Payload.EMPTY)
+  }
+
+  @Test
+  fun decodedPayloadsAreCached() {
+    val payload = store.append(ByteString.copyFromUtf8("abc"))
+    var decodeCount = 0
+    val decoder = { bytes: ByteString ->
+      decodeCount++
+      bytes.concat(bytes)
+    }
+
+    assertThat(payload.decoded(decoder).toStringUtf8()).isEqualTo("abcabc")
+    assertThat(payload.decoded(decoder).toStringUtf8()).isEqualTo("abcabc")
+    assertThat(payload.decodedSize(decoder)).isEqualTo(6)
+    assertThat(decodeCount).isEqualTo(1)
+
+    // Evicts the first decoded payload, but its size is remembered.
+    store.append(ByteString.copyFromUtf8("defgh")).decoded(decoder)
+    assertThat(payload.decodedSize(decoder)).isEqualTo(6)
+    assertThat(decodeCount).isEqualTo(2)
+    assertThat(payload.decoded(decoder).toStringUtf8()).isEqualTo("abcabc")
+    assertThat(decodeCount).isEqualTo(3)
+  }
+
+  @Test
+  fun closedStoreReturnsEmptyPayloads() {
+    val payload = store.append(ByteString.copyFromUtf8("abc"))
+    store.close()
+
+    assertThat(payload.bytes).isEqualTo(ByteString.EMPTY)
+  }
+}
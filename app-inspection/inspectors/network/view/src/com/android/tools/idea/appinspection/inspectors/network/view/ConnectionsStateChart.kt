@@ -18,7 +18,7 @@ package com.android.tools.idea.appinspection.inspectors.network.view
 import com.android.tools.adtui.chart.statechart.StateChart
 import com.android.tools.adtui.chart.statechart.StateChartColorProvider
 import com.android.tools.adtui.common.EnumColors
-import com.android.tools.adtui.model.DefaultDataSeries
+import com.android.tools.adtui.model.LongObjectDataSeries
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.RangedSeries
 import com.android.tools.adtui.model.StateChartModel
@@ -53,7 +53,7 @@ class ConnectionsStateChart(dataList: List<HttpData>, range: Range) {
   }
 
   private fun createChart(dataList: Collection<HttpData>, range: Range): StateChart<NetworkState> {
-    val series = DefaultDataSeries<NetworkState>()
+    val series = LongObjectDataSeries<NetworkState>()
     series.add(0, NetworkState.NONE)
     for (data in dataList) {
       if (data.connectionEndTimeUs == 0L) {
@@ -74,7 +74,7 @@ class ConnectionsView(
     },
     SIZE(0.25 / 4, java.lang.Integer::class.java) {
       override fun getValueFrom(data: HttpData): Any {
-        return data.responsePayload.size()
+        return data.responsePayloadSize
       }
     },
     TYPE(0.25 / 4, String::class.java) {
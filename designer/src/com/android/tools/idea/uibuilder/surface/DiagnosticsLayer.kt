@@ -70,7 +70,8 @@ class DiagnosticsLayer(val surface: DesignSurface<*>) : Layer() {
     val bucketStats = poolStats?.bucketStats?.joinToString("\n") {
       " (${it.minWidth}x${it.minHeight} s=${it.maxSize()}) " +
       "lastAccess=${TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - it.lastAccessTimeMs)}s ago " +
-      "hits=${it.bucketHits()} misses=${it.bucketMisses()} wasFull=${it.bucketWasFull()} hadSpace=${it.imageWasReturned()}"
+      "hits=${it.bucketHits()} misses=${it.bucketMisses()} wasFull=${it.bucketWasFull()} hadSpace=${it.imageWasReturned()} " +
+      "evictions=${it.bucketEvictions()}"
     } ?: ""
 
     return """
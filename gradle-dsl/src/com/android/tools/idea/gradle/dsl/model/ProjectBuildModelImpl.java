@@ -19,23 +19,39 @@ import com.android.tools.idea.gradle.dsl.api.GradleBuildModel;
 import com.android.tools.idea.gradle.dsl.api.GradleSettingsModel;
 import com.android.tools.idea.gradle.dsl.api.GradleVersionCatalogsModel;
 import com.android.tools.idea.gradle.dsl.api.ProjectBuildModel;
+import com.android.tools.idea.gradle.dsl.parser.GradleReferenceInjection;
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslElement;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleBuildFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleDslFile;
+import com.android.tools.idea.gradle.dsl.parser.files.GradleScriptFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleSettingsFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleVersionCatalogFile;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -43,6 +59,14 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class ProjectBuildModelImpl implements ProjectBuildModel {
+  private static final Logger LOG = Logger.getInstance(ProjectBuildModelImpl.class);
+
+  /**
+   * Parses the PSI of module build files ahead of building their models, which has to be done one file at a time.
+   */
+  private static final ExecutorService PSI_LOADER =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("ProjectBuildModel PSI loader", Runtime.getRuntime().availableProcessors());
+
   @NotNull private final BuildModelContext myBuildModelContext;
   @Nullable private final GradleBuildFile myProjectBuildFile;
 
@@ -140,7 +164,57 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
   @Override
   public void reparse() {
     List<GradleDslFile> files = myBuildModelContext.getAllRequestedFiles();
-    files.forEach(GradleDslFile::reparse);
+    Set<GradleDslFile> changedFiles = files.stream().filter(GradleDslFile::isChangedSinceParsed).collect(Collectors.toSet());
+    if (changedFiles.isEmpty()) {
+      return;
+    }
+    // Settings, properties and version catalog files can change the meaning of any build file.
+    if (!changedFiles.stream().allMatch(GradleBuildFile.class::isInstance)) {
+      files.forEach(GradleDslFile::reparse);
+      return;
+    }
+    Set<GradleDslFile> affectedFiles = getAffectedFiles(changedFiles, files);
+    files.stream().filter(affectedFiles::contains).forEach(GradleDslFile::reparse);
+    // References from files that were not reparsed to elements that were removed are left unresolved.
+    myBuildModelContext.getDependencyManager().resolveAll();
+  }
+
+  /**
+   * Returns the files whose model depends on one of the given files: the files themselves, the files applying them, the build files of
+   * their child modules, and the files with references resolved to their elements, transitively.
+   */
+  @NotNull
+  private static Set<GradleDslFile> getAffectedFiles(@NotNull Set<GradleDslFile> changedFiles, @NotNull List<GradleDslFile> files) {
+    Set<GradleDslFile> affectedFiles = new HashSet<>(changedFiles);
+    Deque<GradleDslFile> queue = new ArrayDeque<>(changedFiles);
+    while (!queue.isEmpty()) {
+      GradleDslFile file = queue.remove();
+      List<GradleDslFile> dependentFiles = new ArrayList<>();
+      collectReferencingFiles(file, dependentFiles);
+      for (GradleDslFile otherFile : files) {
+        if (otherFile instanceof GradleBuildFile && ((GradleBuildFile)otherFile).getParentModuleBuildFile() == file) {
+          dependentFiles.add(otherFile);
+        }
+        if (otherFile instanceof GradleScriptFile && ((GradleScriptFile)otherFile).getApplyDslElement().contains(file)) {
+          dependentFiles.add(otherFile);
+        }
+      }
+      for (GradleDslFile dependentFile : dependentFiles) {
+        if (affectedFiles.add(dependentFile)) {
+          queue.add(dependentFile);
+        }
+      }
+    }
+    return affectedFiles;
+  }
+
+  private static void collectReferencingFiles(@NotNull GradleDslElement element, @NotNull List<GradleDslFile> files) {
+    for (GradleReferenceInjection injection : element.getDependents()) {
+      files.add(injection.getOriginElement().getDslFile());
+    }
+    for (GradleDslElement child : element.getChildren()) {
+      collectReferencingFiles(child, files);
+    }
   }
 
   @NotNull
@@ -177,24 +251,70 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
     Set<String> modulePaths = settingsModel.modulePaths();
     Integer nModelsToConsider = nModelsSeen[0] + modulePaths.size();
 
-    allModels.addAll(modulePaths.stream().map((modulePath) -> {
-      GradleBuildModel model = null;
+    List<VirtualFile> moduleFiles = modulePaths.stream().map((modulePath) -> {
       // This should have already been added above
       if (!modulePath.equals(":")) {
         File moduleDir = settingsModel.moduleDirectory(modulePath);
         if (moduleDir != null) {
-          VirtualFile file = myBuildModelContext.getGradleBuildFile(moduleDir);
-          if (file != null) {
-            model = getModuleBuildModel(file);
-          }
+          return myBuildModelContext.getGradleBuildFile(moduleDir);
         }
       }
+      return null;
+    }).collect(Collectors.toList());
+    loadPsiInParallel(moduleFiles);
+
+    allModels.addAll(moduleFiles.stream().map((file) -> {
+      GradleBuildModel model = file == null ? null : getModuleBuildModel(file);
       func.accept(++nModelsSeen[0], nModelsToConsider);
       return model;
     }).filter(Objects::nonNull).collect(Collectors.toList()));
     return allModels;
   }
 
+  /**
+   * Parses the PSI of the given files in parallel, so that the models built from them afterwards find it cached.
+   *
+   * The models themselves are built one at a time since their references are resolved across files. This is skipped when the caller
+   * holds read access, as the pending read actions could then be blocked by a write action waiting for the caller.
+   */
+  private void loadPsiInParallel(@NotNull List<VirtualFile> files) {
+    if (files.size() < 2 || ApplicationManager.getApplication().isReadAccessAllowed()) {
+      return;
+    }
+    PsiManager psiManager = PsiManager.getInstance(myBuildModelContext.getProject());
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (VirtualFile file : files) {
+      if (file != null) {
+        tasks.add(() -> {
+          ApplicationManager.getApplication().runReadAction(() -> {
+            if (file.isValid()) {
+              PsiFile psiFile = psiManager.findFile(file);
+              if (psiFile != null) {
+                psiFile.getNode().getFirstChildNode();
+              }
+            }
+          });
+          return null;
+        });
+      }
+    }
+    try {
+      for (Future<Void> future : PSI_LOADER.invokeAll(tasks)) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof ProcessCanceledException) {
+        throw (ProcessCanceledException)e.getCause();
+      }
+      // The files are parsed again when their models are built, and any failure is reported then.
+      LOG.warn("Failed to load the PSI of module build files", e.getCause());
+    }
+  }
+
   @Override
   public @NotNull GradleVersionCatalogsModel getVersionCatalogsModel() {
     Collection<GradleVersionCatalogFile> files;
@@ -63,6 +63,7 @@ public abstract class GradleDslFile extends GradlePropertiesDslElement {
   @NotNull private final GradleDslWriter myGradleDslWriter;
   @NotNull protected final GradleDslParser myGradleDslParser;
   @NotNull private final BuildModelContext myBuildModelContext;
+  private long myParsedModificationStamp;
 
   protected GradleDslFile(@NotNull VirtualFile file,
                           @NotNull Project project,
@@ -105,6 +106,7 @@ public abstract class GradleDslFile extends GradlePropertiesDslElement {
     myGradleDslWriter = dslWriter;
     myGradleDslParser = dslParser;
     populateGlobalProperties();
+    myParsedModificationStamp = getModificationStamp();
   }
 
   private void populateGlobalProperties() {
@@ -153,12 +155,27 @@ public abstract class GradleDslFile extends GradlePropertiesDslElement {
   }
 
   public void parse() {
+    myParsedModificationStamp = getModificationStamp();
     myGradleDslParser.parse();
     // we might have textually-forward references that are nevertheless valid because of the prioritization of the buildscript block:
     // attempt resolution once more after the whole of the file is parsed.
     getContext().getDependencyManager().resolveAllIn(this, true);
   }
 
+  /**
+   * Returns whether the file was changed since it was last parsed, either through PSI or through this model, in which case
+   * {@link #reparse()} would produce a different result.
+   */
+  public boolean isChangedSinceParsed() {
+    return isModified() || getModificationStamp() != myParsedModificationStamp;
+  }
+
+  private long getModificationStamp() {
+    PsiElement psiFile = getPsiElement();
+    // Properties files do not have PsiElements, and are read from the VirtualFile.
+    return psiFile instanceof PsiFile ? ((PsiFile)psiFile).getModificationStamp() : myFile.getModificationStamp();
+  }
+
   @NotNull
   public Project getProject() {
     return myProject;
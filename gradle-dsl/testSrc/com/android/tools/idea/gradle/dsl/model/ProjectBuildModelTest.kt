@@ -344,6 +344,31 @@ class ProjectBuildModelTest : GradleFileModelTestCase() {
     verifyPropertyModel("foo2", gbm2.ext().findProperty("foo"), "baz")
   }
 
+  @Test
+  fun testReparseOnlyChangedFiles() {
+    writeToBuildFile("")
+    writeToSubModuleBuildFile("")
+    writeToSettingsFile(subModuleSettingsText)
+    val pbm = projectBuildModel
+    val mainBuildModel = pbm.getModuleBuildModel(myModule)!!
+    val subBuildModel = pbm.getModuleBuildModel(mySubModule)!!
+    mainBuildModel.ext().findProperty("foo").setValue("bar")
+    subBuildModel.ext().findProperty("foo").setValue("bar")
+
+    applyChanges(pbm)
+    pbm.reparse()
+    val mainElement = mainBuildModel.ext().findProperty("foo").rawElement
+    assertNotNull(mainElement)
+
+    subBuildModel.ext().findProperty("foo").setValue("baz")
+    applyChanges(pbm)
+    pbm.reparse()
+    // The main build file does not depend on its sub-module, so it is not parsed again.
+    assertSame(mainElement, mainBuildModel.ext().findProperty("foo").rawElement)
+    verifyPropertyModel("main", mainBuildModel.ext().findProperty("foo"), "bar")
+    verifyPropertyModel("sub", subBuildModel.ext().findProperty("foo"), "baz")
+  }
+
   @Test
   fun testBuildSrcModel() {
     writeToBuildFile("")
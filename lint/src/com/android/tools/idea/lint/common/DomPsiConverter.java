@@ -19,6 +19,7 @@ import com.android.annotations.NonNull;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.utils.PositionXmlParser;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.TextRange;
@@ -34,6 +35,8 @@ import com.intellij.psi.xml.XmlElement;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.psi.xml.XmlText;
+import com.intellij.psi.xml.XmlToken;
+import com.intellij.xml.util.XmlTagUtil;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -70,6 +73,10 @@ import org.w3c.dom.UserDataHandler;
  * converter only attempts to make the DOM correct as far as Lint cares (meaning that it
  * only worries about the details Lint cares about; currently this means it only wraps elements,
  * text and comment nodes.)
+ * <p>
+ * The tree returned by {@link #convert(XmlFile)} is built lazily and reads PSI, in a read action,
+ * every time a node is queried. The tree returned by {@link #snapshot(XmlFile)} is built and read
+ * from PSI up front instead, so it can be traversed from any thread without read actions.
  */
 public class DomPsiConverter {
   private DomPsiConverter() {
@@ -108,6 +115,44 @@ public class DomPsiConverter {
     }
   }
 
+  /**
+   * Returns an immutable DOM tree for the given {@link XmlFile}. The whole tree is converted
+   * under a single read action and then never touches PSI again, except to look up namespace
+   * prefixes. The tree holds a copy of every value lint reads, so it is not cached: it can be
+   * collected as soon as the caller, e.g. a lint run, drops it.
+   *
+   * @param xmlFile the file to be converted
+   * @return a corresponding W3C DOM tree
+   */
+  @Nullable
+  public static Document snapshot(@NotNull XmlFile xmlFile) {
+    try {
+      return ReadAction.compute(() -> createSnapshot(xmlFile));
+    }
+    catch (ProcessCanceledException e) {
+      // See convert(XmlFile)
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Document createSnapshot(@NotNull XmlFile xmlFile) {
+    XmlDocument xmlDocument = xmlFile.getDocument();
+    if (xmlDocument == null) {
+      return null;
+    }
+    DomDocument document = new DomDocument(xmlDocument, xmlFile);
+    document.freeze();
+    return document;
+  }
+
+  /**
+   * Returns the value stored when the tree was frozen, or else reads it from PSI.
+   */
+  private static <T> T frozenOrRead(@Nullable T frozen, @NotNull Computable<T> read) {
+    return frozen != null ? frozen : ApplicationManager.getApplication().runReadAction(read);
+  }
+
   /**
    * Convert the given {@link XmlDocument} to a DOM tree
    *
@@ -171,7 +216,7 @@ public class DomPsiConverter {
   /** Trims the whitespace from the given node range (which must correspond to the full range of the node) */
   public static TextRange trim(@NonNull Node node, TextRange range) {
     if (node.getNodeType() == Node.TEXT_NODE && node instanceof DomText) {
-      String text = ((DomNode)node).myElement.getText();
+      String text = node.getNodeValue();
       if (text != null) {
         for (int i = 0; i < text.length(); i++) {
           if (!Character.isWhitespace(text.charAt(i))) {
@@ -216,6 +261,9 @@ public class DomPsiConverter {
     }
 
     DomNode domNode = (DomNode)node;
+    if (domNode.myNameRange != null) {
+      return domNode.myNameRange;
+    }
     XmlElement element = domNode.myElement;
 
     // For elements and attributes, don't highlight the entire element range; instead, just
@@ -236,7 +284,7 @@ public class DomPsiConverter {
       }
     }
 
-    return element.getTextRange();
+    return domNode.getTextRange();
   }
 
   /**
@@ -258,8 +306,11 @@ public class DomPsiConverter {
     }
 
     DomNode domNode = (DomNode)node;
+    if (domNode.myValueRange != null) {
+      return domNode.myValueRange;
+    }
     XmlElement element = domNode.myElement;
-    TextRange textRange = element.getTextRange();
+    TextRange textRange = domNode.getTextRange();
 
     // For attributes, don't highlight the entire element range; instead, just
     // highlight the value range
@@ -469,6 +520,10 @@ public class DomPsiConverter {
     @Nullable protected DomNodeList myChildren;
     @Nullable protected DomNode myNext;
     @Nullable protected DomNode myPrevious;
+    // Only set once the tree is frozen
+    @Nullable protected TextRange myTextRange;
+    @Nullable protected TextRange myNameRange;
+    @Nullable protected TextRange myValueRange;
 
     protected DomNode(@Nullable Document owner, @Nullable DomNode parent, @NotNull XmlElement element) {
       myOwner = owner;
@@ -650,9 +705,22 @@ public class DomPsiConverter {
 
     @Override
     public String getTextContent() throws DOMException {
+      String fileText = getFrozenFileText();
+      if (fileText != null && myTextRange != null) {
+        return myTextRange.substring(fileText);
+      }
       return myElement.getText();
     }
 
+    /**
+     * Returns the text of the file stored when the tree was frozen, which the text content of every node is read from.
+     */
+    @Nullable
+    private String getFrozenFileText() {
+      Object document = myOwner != null ? myOwner : this;
+      return document instanceof DomDocument ? ((DomDocument)document).myFileText : null;
+    }
+
     @Override
     public void setTextContent(String s) throws DOMException {
       throw new UnsupportedOperationException(); // Read-only bridge
@@ -740,7 +808,18 @@ public class DomPsiConverter {
     }
 
     public TextRange getTextRange() {
-      return myElement.getTextRange();
+      return myTextRange != null ? myTextRange : myElement.getTextRange();
+    }
+
+    /**
+     * Builds the child nodes and reads from PSI everything lint may ask of this node and its
+     * descendants. Must be called under a read action, before the tree is shared.
+     */
+    void freeze() {
+      myTextRange = myElement.getTextRange();
+      for (DomNode child : getChildNodes().myChildren) {
+        child.freeze();
+      }
     }
   }
 
@@ -748,6 +827,8 @@ public class DomPsiConverter {
     @NotNull private final XmlDocument myPsiDocument;
     private final XmlFile myFile;
     @Nullable private DomElement myRoot;
+    // Only set once the tree is frozen
+    @Nullable private String myFileText;
 
     private DomDocument(@NotNull XmlDocument document, @NotNull XmlFile file) {
       super(null, null, document);
@@ -828,6 +909,14 @@ public class DomPsiConverter {
       return null;
     }
 
+    @Override
+    void freeze() {
+      myFileText = myFile.getText();
+      // Creates the root first so that the child nodes include it.
+      getDocumentElement();
+      super.freeze();
+    }
+
     // From org.w3c.dom.Document:
 
     @NotNull
@@ -1024,6 +1113,11 @@ public class DomPsiConverter {
   private static class DomElement extends DomNode implements Element {
     private final XmlTag myTag;
     @Nullable private NamedNodeMap myAttributes;
+    // Only set once the tree is frozen
+    @Nullable private String myTagName;
+    @Nullable private String myLocalName;
+    @Nullable private String myPrefix;
+    @Nullable private String myNamespace;
 
     private DomElement(@NotNull Document owner, @NotNull DomNode parent, @NotNull XmlTag tag) {
       super(owner, parent, tag);
@@ -1052,19 +1146,19 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public String getPrefix() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myTag::getNamespacePrefix);
+      return frozenOrRead(myPrefix, myTag::getNamespacePrefix);
     }
 
     @NotNull
     @Override
     public String getNamespaceURI() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myTag::getNamespace);
+      return frozenOrRead(myNamespace, myTag::getNamespace);
     }
 
     @NotNull
     @Override
     public NamedNodeMap getAttributes() {
-      return ApplicationManager.getApplication().runReadAction((Computable<NamedNodeMap>)() -> {
+      return frozenOrRead(myAttributes, () -> {
         if (myAttributes == null) {
           XmlAttribute[] attributes = myTag.getAttributes();
           myAttributes = attributes.length == 0 ? EMPTY_ATTRIBUTES : new DomNamedNodeMap(this, attributes);
@@ -1078,13 +1172,32 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public String getTagName() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myTag::getName);
+      return frozenOrRead(myTagName, myTag::getName);
     }
 
     @Nullable
     @Override
     public String getLocalName() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myTag::getLocalName);
+      return frozenOrRead(myLocalName, myTag::getLocalName);
+    }
+
+    @Override
+    void freeze() {
+      myTagName = myTag.getName();
+      myLocalName = myTag.getLocalName();
+      myPrefix = myTag.getNamespacePrefix();
+      myNamespace = myTag.getNamespace();
+      XmlToken nameElement = XmlTagUtil.getStartTagNameElement(myTag);
+      if (nameElement != null) {
+        myNameRange = nameElement.getTextRange();
+      }
+      NamedNodeMap attributes = getAttributes();
+      if (attributes instanceof DomNamedNodeMap) {
+        for (DomNode attribute : ((DomNamedNodeMap)attributes).mItems) {
+          attribute.freeze();
+        }
+      }
+      super.freeze();
     }
 
     @NotNull
@@ -1223,6 +1336,8 @@ public class DomPsiConverter {
 
   private static class DomText extends DomNode implements Text {
     @NotNull private final XmlText myText;
+    // Only set once the tree is frozen
+    @Nullable private String myValue;
 
     private DomText(@NotNull Document owner, @NotNull DomNode parent, @NotNull XmlText text) {
       super(owner, parent, text);
@@ -1240,7 +1355,19 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public String getNodeValue() throws DOMException {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myText::getText);
+      return frozenOrRead(myValue, myText::getText);
+    }
+
+    @NotNull
+    @Override
+    public String getTextContent() throws DOMException {
+      return getNodeValue();
+    }
+
+    @Override
+    void freeze() {
+      myValue = myText.getText();
+      super.freeze();
     }
 
     @Override
@@ -1258,7 +1385,7 @@ public class DomPsiConverter {
 
     @Override
     public boolean isElementContentWhitespace() {
-      String s = myText.getText();
+      String s = getNodeValue();
       for (int i = 0, n = s.length(); i < n; i++) {
         if (!Character.isWhitespace(s.charAt(i))) {
           return false;
@@ -1288,6 +1415,8 @@ public class DomPsiConverter {
 
   private static class DomComment extends DomNode implements Comment {
     @NotNull private final XmlComment myComment;
+    // Only set once the tree is frozen
+    @Nullable private String myValue;
 
     private DomComment(@NotNull Document owner, @NotNull DomNode parent, @NotNull XmlComment comment) {
       super(owner, parent, comment);
@@ -1305,7 +1434,13 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public String getNodeValue() throws DOMException {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myComment::getCommentText);
+      return frozenOrRead(myValue, myComment::getCommentText);
+    }
+
+    @Override
+    void freeze() {
+      myValue = myComment.getCommentText();
+      super.freeze();
     }
 
     @Override
@@ -1328,6 +1463,12 @@ public class DomPsiConverter {
   private static class DomAttr extends DomNode implements Attr {
     @NotNull private final DomElement myOwner;
     @NotNull private final XmlAttribute myAttribute;
+    // Only set once the tree is frozen
+    @Nullable private String myName;
+    @Nullable private String myValue;
+    @Nullable private String myLocalName;
+    @Nullable private String myPrefix;
+    @Nullable private String myNamespace;
 
     private DomAttr(@NotNull Document document, @NotNull DomElement owner, @NotNull XmlAttribute attribute) {
       super(document, null, attribute);
@@ -1359,7 +1500,7 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public String getName() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myAttribute::getName);
+      return frozenOrRead(myName, myAttribute::getName);
     }
 
     @Override
@@ -1370,7 +1511,7 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public String getValue() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)() -> {
+      return frozenOrRead(myValue, () -> {
         String value = myAttribute.getDisplayValue();
         return value == null ? "" : value;
       });
@@ -1379,19 +1520,36 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public String getLocalName() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myAttribute::getLocalName);
+      return frozenOrRead(myLocalName, myAttribute::getLocalName);
     }
 
     @NotNull
     @Override
     public String getPrefix() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myAttribute::getNamespacePrefix);
+      return frozenOrRead(myPrefix, myAttribute::getNamespacePrefix);
     }
 
     @NotNull
     @Override
     public String getNamespaceURI() {
-      return ApplicationManager.getApplication().runReadAction((Computable<String>)myAttribute::getNamespace);
+      return frozenOrRead(myNamespace, myAttribute::getNamespace);
+    }
+
+    @Override
+    void freeze() {
+      myName = myAttribute.getName();
+      String value = myAttribute.getDisplayValue();
+      myValue = value == null ? "" : value;
+      myLocalName = myAttribute.getLocalName();
+      myPrefix = myAttribute.getNamespacePrefix();
+      myNamespace = myAttribute.getNamespace();
+      XmlElement nameElement = myAttribute.getNameElement();
+      if (nameElement != null) {
+        myNameRange = nameElement.getTextRange();
+      }
+      XmlAttributeValue valueElement = myAttribute.getValueElement();
+      myValueRange = valueElement != null ? valueElement.getValueTextRange() : myAttribute.getTextRange();
+      super.freeze();
     }
 
     @Override
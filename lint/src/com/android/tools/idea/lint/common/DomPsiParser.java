@@ -97,7 +97,7 @@ class DomPsiParser extends XmlParser {
     XmlFile xmlFile = (XmlFile)psiFile;
 
     try {
-      return DomPsiConverter.convert(xmlFile);
+      return DomPsiConverter.snapshot(xmlFile);
     }
     catch (Throwable t) {
       myClient.log(t, "Failed converting PSI parse tree to DOM for file %1$s",
@@ -129,7 +129,7 @@ class DomPsiParser extends XmlParser {
     XmlFile xmlFile = (XmlFile)psiFile;
 
     try {
-      return DomPsiConverter.convert(xmlFile);
+      return DomPsiConverter.snapshot(xmlFile);
     }
     catch (Throwable t) {
       myClient.log(t, null);
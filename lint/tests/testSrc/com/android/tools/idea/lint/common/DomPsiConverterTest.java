@@ -23,8 +23,10 @@ import com.android.utils.PositionXmlParser;
 import com.android.utils.XmlUtils;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.testFramework.UsefulTestCase;
 import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
@@ -179,6 +181,59 @@ public class DomPsiConverterTest extends UsefulTestCase {
     assertEquals("@drawable/icon", elementsByTagName.item(0).getAttributes().getNamedItemNS(ANDROID_URI, "icon").getNodeValue());
   }
 
+  public void testSnapshot() throws InterruptedException {
+    XmlFile xmlFile = (XmlFile)myFixture.configureByText("AndroidManifest.xml", MANIFEST);
+    final Document snapshot = DomPsiConverter.snapshot(xmlFile);
+    assertNotNull(snapshot);
+    @SuppressWarnings("ConstantConditions")
+    String applicationText = xmlFile.getRootTag().findFirstSubTag("application").getText();
+
+    // Perform iteration on a different thread, this time without taking a read action
+    final AtomicReference<String> formattedHolder = new AtomicReference<>();
+    final AtomicReference<String> textContentHolder = new AtomicReference<>();
+    Thread thread = new Thread("dom psi snapshot") {
+      @Override
+      public void run() {
+        assertFalse(ApplicationManager.getApplication().isReadAccessAllowed());
+        formattedHolder.set(XmlPrettyPrinter.prettyPrint(snapshot, true));
+        textContentHolder.set(snapshot.getElementsByTagName("application").item(0).getTextContent());
+      }
+    };
+    thread.start();
+    thread.join();
+
+    @SuppressWarnings("ConstantConditions")
+    String expected = XmlPrettyPrinter.prettyPrint(XmlUtils.parseDocumentSilently(xmlFile.getText(), true), true);
+    assertEquals(expected, formattedHolder.get());
+    assertEquals(applicationText, textContentHolder.get());
+
+    // Ranges match the ones of the lazily converted tree
+    Document document = DomPsiConverter.convert(xmlFile);
+    assertNotNull(document);
+    Element element = (Element)document.getElementsByTagName("application").item(0);
+    Element snapshotElement = (Element)snapshot.getElementsByTagName("application").item(0);
+    Node attribute = element.getAttributeNodeNS(ANDROID_URI, "icon");
+    Node snapshotAttribute = snapshotElement.getAttributeNodeNS(ANDROID_URI, "icon");
+    for (Node[] nodes : List.of(new Node[]{element, snapshotElement}, new Node[]{attribute, snapshotAttribute})) {
+      assertEquals(DomPsiConverter.getTextRange(nodes[0]), DomPsiConverter.getTextRange(nodes[1]));
+      assertEquals(DomPsiConverter.getTextNameRange(nodes[0]), DomPsiConverter.getTextNameRange(nodes[1]));
+      assertEquals(DomPsiConverter.getTextValueRange(nodes[0]), DomPsiConverter.getTextValueRange(nodes[1]));
+    }
+
+    // A snapshot taken after an edit reflects it, while the earlier one is unchanged
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      com.intellij.openapi.editor.Document editorDocument = PsiDocumentManager.getInstance(getProject()).getDocument(xmlFile);
+      assertNotNull(editorDocument);
+      editorDocument.replaceString(0, editorDocument.getTextLength(), MANIFEST.replace("@drawable/icon", "@drawable/other"));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(editorDocument);
+    });
+    Document updated = DomPsiConverter.snapshot(xmlFile);
+    assertNotNull(updated);
+    assertEquals("@drawable/icon", snapshotElement.getAttributeNodeNS(ANDROID_URI, "icon").getNodeValue());
+    Node updatedApplication = updated.getElementsByTagName("application").item(0);
+    assertEquals("@drawable/other", updatedApplication.getAttributes().getNamedItemNS(ANDROID_URI, "icon").getNodeValue());
+  }
+
   public void testNonDomNodeRange() throws Exception {
     // Checks that the position computations are correct when the
     // document is NOT backed by PSI. This is relevant when a lint
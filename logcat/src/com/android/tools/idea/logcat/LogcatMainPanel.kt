@@ -303,7 +303,7 @@ internal class LogcatMainPanel @TestOnly constructor(
         val column = editor.xyToLogicalPosition(Point(width, 0)).column
         if (editorWidth != column) {
           editorWidth = column
-          if (messageBacklog.get().messages.isNotEmpty()) {
+          if (!messageBacklog.get().isEmpty()) {
             reloadMessages()
           }
         }
@@ -543,7 +543,7 @@ internal class LogcatMainPanel @TestOnly constructor(
 
   private fun isLogsMissing(): Boolean {
     return document.immutableCharSequence.isEmpty()
-           && messageBacklog.get().messages.isNotEmpty()
+           && !messageBacklog.get().isEmpty()
            && !isMissingApplicationIds()
            && headerPanel.filter.isNotEmpty()
   }
@@ -552,7 +552,7 @@ internal class LogcatMainPanel @TestOnly constructor(
   override fun reloadMessages() {
     document.setText("")
     coroutineScope.launch(workerThread) {
-      messageProcessor.appendMessages(messageBacklog.get().messages)
+      messageProcessor.appendMessages(messageBacklog.get())
       withContext(uiThread) {
         noLogsBanner.isVisible = isLogsMissing()
       }
@@ -564,7 +564,7 @@ internal class LogcatMainPanel @TestOnly constructor(
   override fun getSelectedDevice() = headerPanel.getSelectedDevice()
 
   override fun countFilterMatches(filter: LogcatFilter?): Int {
-    return LogcatMasterFilter(filter).filter(messageBacklog.get().messages).size
+    return LogcatMasterFilter(filter).filter(messageBacklog.get()).size
   }
 
   override fun getTags(): Set<String> = tags
@@ -674,7 +674,7 @@ internal class LogcatMainPanel @TestOnly constructor(
     }
   }
 
-  override fun isLogcatEmpty() = messageBacklog.get().messages.isEmpty()
+  override fun isLogcatEmpty() = messageBacklog.get().isEmpty()
 
   override fun isShowing(): Boolean {
     // Return true in tests, so we can test the LogcatEvent flow
@@ -23,12 +23,18 @@ import com.android.tools.idea.logcat.SYSTEM_HEADER
 import com.android.tools.idea.logcat.message.LogLevel
 import com.android.tools.idea.logcat.message.LogLevel.ASSERT
 import com.android.tools.idea.logcat.message.LogLevel.ERROR
+import com.android.tools.idea.logcat.message.LogcatHeader
 import com.android.tools.idea.logcat.message.LogcatMessage
+import com.android.tools.idea.logcat.messages.MessageBacklog
 import com.android.tools.idea.logcat.settings.AndroidLogcatSettings
 import com.intellij.openapi.util.TextRange
 import com.intellij.openapi.util.TextRange.EMPTY_RANGE
 import com.intellij.openapi.util.text.Strings
 import com.intellij.psi.impl.source.tree.PsiErrorElementImpl
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
 import org.jetbrains.annotations.PropertyKey
 import org.jetbrains.annotations.VisibleForTesting
 import java.time.Clock
@@ -48,16 +54,55 @@ internal class LogcatMasterFilter(private val logcatFilter: LogcatFilter?) {
 
   fun filter(messages: List<LogcatMessage>, zoneId: ZoneId = ZoneId.systemDefault()): List<LogcatMessage> {
     if (logcatFilter == null) {
-      return messages.filter { !it.isSpam() }
+      return messages.filter { !it.header.isSpam() }
     }
     logcatFilter.prepare()
-    return messages.filter {
-      it.header === SYSTEM_HEADER || (logcatFilter.matches(LogcatMessageWrapper(it, zoneId)) && !it.isSpam())
+    return messages.filter { logcatFilter.matches(it, zoneId) }
+  }
+
+  /**
+   * Filters the messages in partitions of [partitionSize] that run concurrently on [dispatcher], keeping them in order.
+   */
+  suspend fun filter(
+    messages: List<LogcatMessage>,
+    dispatcher: CoroutineDispatcher,
+    partitionSize: Int,
+    zoneId: ZoneId = ZoneId.systemDefault(),
+  ): List<LogcatMessage> {
+    if (messages.size <= partitionSize) {
+      return filter(messages, zoneId)
+    }
+    // Filters are prepared once, and only read their state while matching.
+    logcatFilter?.prepare()
+    return coroutineScope {
+      messages.chunked(partitionSize).map { partition ->
+        async(dispatcher) { partition.filter { logcatFilter?.matches(it, zoneId) ?: !it.header.isSpam() } }
+      }.awaitAll().flatten()
     }
   }
 
-  private fun LogcatMessage.isSpam() =
-    settings.ignoredTags.contains(header.tag) || (ignoreSpam && header.tag.startsWith(STUDIO_SPAM_PREFIX))
+  /**
+   * Filters the messages of a [MessageBacklog].
+   *
+   * Only the matching messages are kept. When the filter only looks at headers, the text of the messages that do not match is not even
+   * decoded from the backlog.
+   */
+  fun filter(backlog: MessageBacklog, zoneId: ZoneId = ZoneId.systemDefault()): List<LogcatMessage> {
+    if (logcatFilter == null) {
+      return backlog.filterByHeader { !it.isSpam() }
+    }
+    logcatFilter.prepare()
+    if (!logcatFilter.isHeaderOnly) {
+      return backlog.filter { logcatFilter.matches(it, zoneId) }
+    }
+    return backlog.filterByHeader { logcatFilter.matches(LogcatMessage(it, ""), zoneId) }
+  }
+
+  private fun LogcatFilter.matches(message: LogcatMessage, zoneId: ZoneId) =
+    message.header === SYSTEM_HEADER || (matches(LogcatMessageWrapper(message, zoneId)) && !message.header.isSpam())
+
+  private fun LogcatHeader.isSpam() =
+    settings.ignoredTags.contains(tag) || (ignoreSpam && tag.startsWith(STUDIO_SPAM_PREFIX))
 }
 /**
  * Matches a [LogcatMessage]
@@ -67,6 +112,11 @@ internal abstract class LogcatFilter(open val textRange: TextRange) {
 
   abstract val displayText: String
 
+  /**
+   * Whether the filter only looks at the [LogcatHeader] of a message.
+   */
+  open val isHeaderOnly: Boolean = false
+
   /**
    * Prepare the filter.
    *
@@ -92,6 +142,8 @@ internal abstract class ParentFilter(children: List<LogcatFilter>)
 
   override val filterName: String? = children.mapNotNull { it.filterName }.lastOrNull()
 
+  override val isHeaderOnly: Boolean = children.all { it.isHeaderOnly }
+
   override val displayText: String = ""
 
   override fun prepare() {
@@ -115,11 +167,11 @@ internal data class OrLogcatFilter(override val filters: List<LogcatFilter>) : P
   override fun matches(message: LogcatMessageWrapper) = filters.any { it.matches(message) }
 }
 
-internal enum class LogcatFilterField(val displayName: String) {
-  TAG(message("logcat.filter.completion.hint.key.tag")) {
+internal enum class LogcatFilterField(val displayName: String, val isHeaderField: Boolean = false) {
+  TAG(message("logcat.filter.completion.hint.key.tag"), isHeaderField = true) {
     override fun getValue(message: LogcatMessageWrapper) = message.logcatMessage.header.tag
   },
-  APP(message("logcat.filter.completion.hint.key.package")) {
+  APP(message("logcat.filter.completion.hint.key.package"), isHeaderField = true) {
     override fun getValue(message: LogcatMessageWrapper) = message.logcatMessage.header.applicationId
   },
   MESSAGE(message("logcat.filter.completion.hint.key.message")) {
@@ -131,7 +183,7 @@ internal enum class LogcatFilterField(val displayName: String) {
   IMPLICIT_LINE(message("logcat.filter.completion.hint.key.line")) {
     override fun getValue(message: LogcatMessageWrapper) = message.logLine
   },
-  PROCESS(message("logcat.filter.completion.hint.key.process")) {
+  PROCESS(message("logcat.filter.completion.hint.key.process"), isHeaderField = true) {
     override fun getValue(message: LogcatMessageWrapper) = message.logcatMessage.header.processName
   },
   ;
@@ -147,6 +199,8 @@ internal abstract class FieldFilter(
 ) : LogcatFilter(textRange) {
   override val displayText: String = message(stringResource, field.displayName, "'${string}'")
 
+  override val isHeaderOnly: Boolean = field.isHeaderField
+
 }
 
 internal data class StringFilter(
@@ -187,7 +241,7 @@ internal data class RegexFilter(
   override val textRange: TextRange,
 ) : FieldFilter(string, field, textRange, "logcat.filter.completion.hint.key.regex") {
   private val regex = try {
-    string.toRegex()
+    PrefilteredRegex(string)
   }
   catch (e: PatternSyntaxException) {
     throw LogcatFilterParseException(PsiErrorElementImpl("Invalid regular expression: $string"))
@@ -202,7 +256,7 @@ internal data class NegatedRegexFilter(
   override val textRange: TextRange,
 ) : FieldFilter(string, field, textRange, "logcat.filter.completion.hint.key.regex.negated") {
   private val regex = try {
-    string.toRegex()
+    PrefilteredRegex(string)
   }
   catch (e: PatternSyntaxException) {
     throw LogcatFilterParseException(PsiErrorElementImpl("Invalid regular expression: $string"))
@@ -216,6 +270,7 @@ internal data class LevelFilter(
   override val textRange: TextRange,
 ) : LogcatFilter(textRange) {
   override val displayText: String = message("logcat.filter.completion.hint.level.value", level.name)
+  override val isHeaderOnly: Boolean = true
   override fun matches(message: LogcatMessageWrapper) = message.logcatMessage.header.logLevel >= level
 }
 
@@ -229,6 +284,8 @@ internal data class AgeFilter(
 
   override val displayText: String
 
+  override val isHeaderOnly: Boolean = true
+
   init {
     if (!text.isValidLogAge()) {
       throw IllegalArgumentException("Invalid age: $text")
@@ -331,6 +388,8 @@ internal data class NameFilter(
 
   override val displayText: String = message("logcat.filter.completion.hint.name.value", name)
 
+  override val isHeaderOnly: Boolean = true
+
   override fun matches(message: LogcatMessageWrapper): Boolean = true
 }
 
@@ -345,5 +404,7 @@ internal data class StackTraceFilter(override val textRange: TextRange) : Logcat
 internal object EmptyFilter: LogcatFilter(EMPTY_RANGE) {
   override val displayText: String = ""
 
+  override val isHeaderOnly: Boolean = true
+
   override fun matches(message: LogcatMessageWrapper): Boolean = true
 }
\ No newline at end of file
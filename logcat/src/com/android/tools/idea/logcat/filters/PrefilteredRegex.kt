@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.filters
+
+private const val ESCAPES_WITH_ARGUMENTS = "xucpPNk"
+
+/**
+ * A [Regex] that is only run on text containing the longest literal that every match of the pattern contains.
+ *
+ * Regex filters are usually mostly literal text, so the regex engine is skipped for most lines, and a pattern without any special
+ * characters is not run through it at all.
+ */
+internal class PrefilteredRegex(pattern: String) {
+  private val regex = pattern.toRegex()
+  private val literal = requiredLiteral(pattern)
+  private val isLiteral = literal == pattern
+
+  fun containsMatchIn(text: CharSequence): Boolean = when {
+    literal.isEmpty() -> regex.containsMatchIn(text)
+    !text.contains(literal) -> false
+    else -> isLiteral || regex.containsMatchIn(text)
+  }
+}
+
+/**
+ * Returns the longest run of literal characters that every match of [pattern] contains, or an empty string if none is found.
+ *
+ * This is conservative: only characters outside of groups and classes are considered, and patterns with alternations, inline flags or
+ * quoting are not analyzed at all.
+ */
+internal fun requiredLiteral(pattern: String): String {
+  if (pattern.contains('|') || pattern.contains("(?") || pattern.contains("\\Q")) {
+    return ""
+  }
+  var longest = ""
+  val run = StringBuilder()
+  fun endRun() {
+    if (run.length > longest.length) {
+      longest = run.toString()
+    }
+    run.clear()
+  }
+
+  var depth = 0
+  var i = 0
+  while (i < pattern.length) {
+    when (val c = pattern[i]) {
+      '\\' -> {
+        val escaped = pattern.getOrNull(++i) ?: return ""
+        // Escaped letters are classes or anchors, and the ones followed by arguments (like \x41 or \p{L}) are not worth parsing.
+        // Anything else stands for itself.
+        when {
+          escaped.isDigit() || escaped in ESCAPES_WITH_ARGUMENTS -> return ""
+          depth == 0 && !escaped.isLetter() -> run.append(escaped)
+          else -> endRun()
+        }
+      }
+      '[' -> {
+        endRun()
+        i = classEnd(pattern, i) ?: return ""
+      }
+      '(' -> {
+        endRun()
+        depth++
+      }
+      ')' -> depth--
+      // The quantified character is optional, and the characters after it are not adjacent to the run.
+      '*', '?', '{' -> {
+        if (run.isNotEmpty()) {
+          run.setLength(run.length - 1)
+        }
+        endRun()
+        if (c == '{') {
+          i = pattern.indexOf('}', i).takeIf { it >= 0 } ?: return ""
+        }
+      }
+      '+', '.', '^', '$' -> endRun()
+      else -> if (depth == 0) run.append(c) else endRun()
+    }
+    i++
+  }
+  endRun()
+  return longest
+}
+
+/**
+ * Returns the index of the bracket closing the character class that starts at [start], or null for classes that are not simple.
+ */
+private fun classEnd(pattern: String, start: Int): Int? {
+  var i = start + 1
+  if (pattern.getOrNull(i) == '^') i++
+  // A bracket right after the opening one is part of the class.
+  if (pattern.getOrNull(i) == ']') i++
+  while (i < pattern.length) {
+    when (pattern[i]) {
+      '\\' -> i++
+      '[' -> return null
+      ']' -> return i
+    }
+    i++
+  }
+  return null
+}
@@ -15,8 +15,18 @@
  */
 package com.android.tools.idea.logcat.messages
 
+import com.android.tools.idea.logcat.SYSTEM_HEADER
+import com.android.tools.idea.logcat.message.LogLevel
+import com.android.tools.idea.logcat.message.LogcatHeader
 import com.android.tools.idea.logcat.message.LogcatMessage
+import org.jetbrains.annotations.TestOnly
+import java.time.Instant
 import java.util.Collections
+import kotlin.math.max
+
+private const val CHUNK_SIZE = 64 * 1024
+private const val SYSTEM_LEVEL: Byte = -1
+private val LOG_LEVELS = LogLevel.values()
 
 /**
  * Manages a cyclic collection of [LogcatMessage]s that is limited by the size in bytes of the payload.
@@ -29,21 +39,60 @@ import java.util.Collections
  * than the minimal size required to render a message. Therefore, the backlog will contain more messages than the actual displayed window,
  * even if no filters are applied and the formatting options are at their minimum.
  *
+ * Messages are not kept as objects. The header fields are stored in parallel primitive arrays used as a ring, with the tag, application id
+ * and process name interned, and the message text is appended in UTF-8 to a list of byte chunks that are dropped once all their messages
+ * have been evicted. Interned strings are reference counted and dropped with the last message that uses them. [LogcatMessage]s are
+ * rebuilt when they are read. [filter] rebuilds them one at a time and only keeps the ones that match, and [filterByHeader] only decodes
+ * the text of the messages whose header matches.
+ *
  * TODO(aalbert): Maybe pass in the current formatting options setting and calculate the size more accurately.
  */
 internal class MessageBacklog(private var maxSize: Int) {
+  private var size = 0
 
-  // The internal messages collection is exposed as a read-only list
-  private val _messages = ArrayDeque<LogcatMessage>()
-  val messages: List<LogcatMessage>
-    get() = Collections.unmodifiableList(_messages)
+  /** Index of the oldest message in the columns below, which are used as a ring of [count] messages. */
+  private var head = 0
+  private var count = 0
+  private var levels = ByteArray(0)
+  private var pids = IntArray(0)
+  private var tids = IntArray(0)
+  private var epochSeconds = LongArray(0)
+  private var nanos = IntArray(0)
+  private var applicationIds = IntArray(0)
+  private var processNames = IntArray(0)
+  private var tags = IntArray(0)
+  /** The length of the message text, which is what [maxSize] limits. */
+  private var lengths = IntArray(0)
+  private var textChunks = IntArray(0)
+  private var textOffsets = IntArray(0)
+  private var textSizes = IntArray(0)
 
-  private var size = 0
+  /** Interned strings by id. The ids of dropped strings are reused from [freeStringIds]. */
+  private val strings = mutableListOf<String?>()
+  private val stringIds = HashMap<String, Int>()
+  /** The number of messages in the backlog that use each interned string. */
+  private var stringReferences = IntArray(0)
+  private val freeStringIds = ArrayDeque<Int>()
+
+  /** The chunks holding the message text. The first one has number [firstChunk], and text is appended to the last one. */
+  private val chunks = ArrayDeque<ByteArray>()
+  private var firstChunk = 0
+  private var chunkPosition = 0
+
+  /**
+   * A read-only copy of the messages.
+   */
+  val messages: List<LogcatMessage>
+    @Synchronized get() = Collections.unmodifiableList(List(count) { messageAt(slot(it)) })
 
   init {
     assert(maxSize > 0)
   }
 
+  @Synchronized
+  fun isEmpty() = count == 0
+
+  @Synchronized
   fun addAll(collection: List<LogcatMessage>) {
     val addedSize = collection.sumOf { it.message.length }
 
@@ -53,35 +102,203 @@ internal class MessageBacklog(private var maxSize: Int) {
     // It would be simpler to just add the messages and then remove the overflowing ones but this way is slightly more efficient in terms of
     // memory thrashing.
     if (addedSize >= maxSize) {
-      _messages.clear()
+      clear()
       size = addedSize
       val i = collection.indexOfFirst {
         size -= it.message.length
         size <= maxSize
       }
-      _messages.addAll(collection.subList(i + 1, collection.size))
+      collection.subList(i + 1, collection.size).forEach(::append)
     }
     else {
       size += addedSize
       while (size > maxSize) {
-        size -= _messages.removeFirst().message.length
+        size -= removeFirst()
       }
-      _messages.addAll(collection)
+      collection.forEach(::append)
     }
   }
 
+  @Synchronized
   fun setMaxSize(newSize: Int) {
     if (newSize < maxSize) {
       while (size > newSize) {
-        size -= _messages.removeFirst().message.length
+        size -= removeFirst()
       }
     }
     maxSize = newSize
 
   }
 
+  @Synchronized
   fun clear() {
-    _messages.clear()
+    head = 0
+    count = 0
     size = 0
+    strings.clear()
+    stringIds.clear()
+    stringReferences = IntArray(0)
+    freeStringIds.clear()
+    chunks.clear()
+    firstChunk = 0
+    chunkPosition = 0
+  }
+
+  /**
+   * Returns the messages that match the predicate. Messages are rebuilt one at a time, so only the matching ones are kept.
+   */
+  @Synchronized
+  fun filter(predicate: (LogcatMessage) -> Boolean): List<LogcatMessage> {
+    val filtered = mutableListOf<LogcatMessage>()
+    for (i in 0 until count) {
+      val message = messageAt(slot(i))
+      if (predicate(message)) {
+        filtered.add(message)
+      }
+    }
+    return filtered
+  }
+
+  /**
+   * Returns the messages whose header matches the predicate, without decoding the text of the other ones.
+   */
+  @Synchronized
+  fun filterByHeader(predicate: (LogcatHeader) -> Boolean): List<LogcatMessage> {
+    val filtered = mutableListOf<LogcatMessage>()
+    for (i in 0 until count) {
+      val slot = slot(i)
+      val header = headerAt(slot)
+      if (predicate(header)) {
+        filtered.add(LogcatMessage(header, textAt(slot)))
+      }
+    }
+    return filtered
+  }
+
+  private fun slot(index: Int) = (head + index) % levels.size
+
+  private fun messageAt(slot: Int) = LogcatMessage(headerAt(slot), textAt(slot))
+
+  private fun headerAt(slot: Int): LogcatHeader = when (levels[slot]) {
+    SYSTEM_LEVEL -> SYSTEM_HEADER
+    else -> LogcatHeader(
+      LOG_LEVELS[levels[slot].toInt()],
+      pids[slot],
+      tids[slot],
+      strings[applicationIds[slot]]!!,
+      strings[processNames[slot]]!!,
+      strings[tags[slot]]!!,
+      Instant.ofEpochSecond(epochSeconds[slot], nanos[slot].toLong()))
+  }
+
+  private fun textAt(slot: Int) = String(chunks[textChunks[slot] - firstChunk], textOffsets[slot], textSizes[slot], Charsets.UTF_8)
+
+  private fun append(message: LogcatMessage) {
+    if (count == levels.size) {
+      grow()
+    }
+    val slot = slot(count)
+    val header = message.header
+    // The system header is compared by identity, so it is marked rather than stored.
+    levels[slot] = if (header === SYSTEM_HEADER) SYSTEM_LEVEL else header.logLevel.ordinal.toByte()
+    pids[slot] = header.pid
+    tids[slot] = header.tid
+    epochSeconds[slot] = header.timestamp.epochSecond
+    nanos[slot] = header.timestamp.nano
+    applicationIds[slot] = intern(header.applicationId)
+    processNames[slot] = intern(header.processName)
+    tags[slot] = intern(header.tag)
+    lengths[slot] = message.message.length
+
+    val text = message.message.toByteArray(Charsets.UTF_8)
+    if (chunks.isEmpty() || chunkPosition + text.size > chunks.last().size) {
+      chunks.addLast(ByteArray(max(CHUNK_SIZE, text.size)))
+      chunkPosition = 0
+    }
+    text.copyInto(chunks.last(), chunkPosition)
+    textChunks[slot] = firstChunk + chunks.size - 1
+    textOffsets[slot] = chunkPosition
+    textSizes[slot] = text.size
+    chunkPosition += text.size
+    count++
+  }
+
+  /**
+   * Removes the oldest message and returns its length.
+   */
+  private fun removeFirst(): Int {
+    if (count == 0) {
+      throw NoSuchElementException("MessageBacklog is empty.")
+    }
+    val length = lengths[head]
+    release(applicationIds[head])
+    release(processNames[head])
+    release(tags[head])
+    head = (head + 1) % levels.size
+    count--
+    // Drop the chunks that only hold text of removed messages. The last chunk is kept for the messages to come.
+    val firstNeededChunk = if (count == 0) firstChunk + chunks.size - 1 else textChunks[head]
+    while (firstChunk < firstNeededChunk) {
+      chunks.removeFirst()
+      firstChunk++
+    }
+    return length
+  }
+
+  private fun intern(string: String): Int {
+    val id = stringIds.getOrPut(string) {
+      val freeId = freeStringIds.removeLastOrNull()
+      if (freeId == null) {
+        strings.add(string)
+        if (strings.size > stringReferences.size) {
+          stringReferences = stringReferences.copyOf(max(16, stringReferences.size * 2))
+        }
+        strings.size - 1
+      }
+      else {
+        strings[freeId] = string
+        freeId
+      }
+    }
+    stringReferences[id]++
+    return id
+  }
+
+  private fun release(id: Int) {
+    if (--stringReferences[id] == 0) {
+      stringIds.remove(strings[id])
+      strings[id] = null
+      freeStringIds.addLast(id)
+    }
+  }
+
+  @TestOnly
+  internal fun internedStringCount(): Int = stringIds.size
+
+  /**
+   * Doubles the capacity of the columns, moving the oldest message to the first slot.
+   */
+  private fun grow() {
+    val oldCapacity = levels.size
+    val capacity = max(16, oldCapacity * 2)
+    levels = ByteArray(capacity).also { copyRing(levels, it, oldCapacity) }
+    pids = IntArray(capacity).also { copyRing(pids, it, oldCapacity) }
+    tids = IntArray(capacity).also { copyRing(tids, it, oldCapacity) }
+    epochSeconds = LongArray(capacity).also { copyRing(epochSeconds, it, oldCapacity) }
+    nanos = IntArray(capacity).also { copyRing(nanos, it, oldCapacity) }
+    applicationIds = IntArray(capacity).also { copyRing(applicationIds, it, oldCapacity) }
+    processNames = IntArray(capacity).also { copyRing(processNames, it, oldCapacity) }
+    tags = IntArray(capacity).also { copyRing(tags, it, oldCapacity) }
+    lengths = IntArray(capacity).also { copyRing(lengths, it, oldCapacity) }
+    textChunks = IntArray(capacity).also { copyRing(textChunks, it, oldCapacity) }
+    textOffsets = IntArray(capacity).also { copyRing(textOffsets, it, oldCapacity) }
+    textSizes = IntArray(capacity).also { copyRing(textSizes, it, oldCapacity) }
+    head = 0
+  }
+
+  private fun copyRing(from: Any, to: Any, oldCapacity: Int) {
+    val firstPart = minOf(count, oldCapacity - head)
+    System.arraycopy(from, head, to, 0, firstPart)
+    System.arraycopy(from, 0, to, firstPart, count - firstPart)
   }
-}
\ No newline at end of file
+}
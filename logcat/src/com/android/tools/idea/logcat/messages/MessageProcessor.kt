@@ -30,6 +30,8 @@ import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.launch
 import org.jetbrains.annotations.TestOnly
 import java.time.Clock
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.system.measureTimeMillis
 
 const val CHANNEL_CAPACITY = 10
@@ -45,6 +47,7 @@ internal class MessageProcessor @TestOnly constructor(
   private val clock: Clock,
   private val maxTimePerBatchMs: Int,
   private val maxMessagesPerBatch: Int,
+  private val filterPartitionSize: Int,
   autoStart: Boolean,
 ) {
   constructor(
@@ -58,9 +61,18 @@ internal class MessageProcessor @TestOnly constructor(
     Clock.systemDefaultZone(),
     MAX_TIME_PER_BATCH_MS,
     StudioFlags.LOGCAT_MAX_MESSAGES_PER_BATCH.get(),
+    StudioFlags.LOGCAT_FILTER_PARTITION_SIZE.get(),
     autoStart = true)
 
   private val messageChannel = Channel<List<LogcatMessage>>(CHANNEL_CAPACITY)
+  private val filteredMessageCount = AtomicLong()
+  private val filterTimeNs = AtomicLong()
+
+  /**
+   * The number of messages filtered per second spent filtering. There is one processor per Logcat panel.
+   */
+  internal val filterThroughput: Double
+    get() = filterTimeNs.get().let { if (it == 0L) 0.0 else filteredMessageCount.get() * 1e9 / it }
 
   init {
     if (autoStart) {
@@ -69,7 +81,30 @@ internal class MessageProcessor @TestOnly constructor(
   }
 
   internal suspend fun appendMessages(messages: List<LogcatMessage>): List<LogcatMessage> {
-    val filteredMessages = LogcatMasterFilter(logcatFilter).filter(messages)
+    val startNs = System.nanoTime()
+    val filteredMessages = LogcatMasterFilter(logcatFilter).filter(messages, workerThread, filterPartitionSize)
+    recordFilterTime(messages.size, startNs)
+    return sendMessages(filteredMessages)
+  }
+
+  internal suspend fun appendMessages(backlog: MessageBacklog): List<LogcatMessage> {
+    val startNs = System.nanoTime()
+    val filteredMessages = LogcatMasterFilter(logcatFilter).filter(backlog)
+    recordFilterTime(filteredMessages.size, startNs)
+    return sendMessages(filteredMessages)
+  }
+
+  private fun recordFilterTime(numMessages: Int, startNs: Long) {
+    val timeNs = System.nanoTime() - startNs
+    filteredMessageCount.addAndGet(numMessages.toLong())
+    filterTimeNs.addAndGet(timeNs)
+    LOGGER.debug {
+      "Filtered $numMessages messages in ${TimeUnit.NANOSECONDS.toMillis(timeNs)} ms " +
+      "filterThroughput (messages/s): ${filterThroughput.toLong()}"
+    }
+  }
+
+  private suspend fun sendMessages(filteredMessages: List<LogcatMessage>): List<LogcatMessage> {
     if (filteredMessages.isNotEmpty()) {
       LOGGER.debug { "Sending ${filteredMessages.size} messages to messageChannel" }
       messageChannel.send(filteredMessages)
@@ -33,6 +33,7 @@ import com.android.tools.idea.logcat.message.LogLevel.INFO
 import com.android.tools.idea.logcat.message.LogLevel.VERBOSE
 import com.android.tools.idea.logcat.message.LogLevel.WARN
 import com.android.tools.idea.logcat.message.LogcatMessage
+import com.android.tools.idea.logcat.messages.MessageBacklog
 import com.android.tools.idea.logcat.settings.AndroidLogcatSettings
 import com.android.tools.idea.logcat.util.logcatMessage
 import com.google.common.truth.Truth.assertThat
@@ -147,6 +148,27 @@ class LogcatFilterTest {
     assertThat(LogcatMasterFilter(null).filter(messages)).isEqualTo(listOf(MESSAGE2))
   }
 
+  @Test
+  fun logcatMasterFilter_backlog() {
+    val backlog = MessageBacklog(1000)
+    val systemMessage = LogcatMessage(SYSTEM_HEADER, "message")
+    backlog.addAll(listOf(MESSAGE1, systemMessage, MESSAGE2))
+    logcatSettings.ignoredTags = setOf(MESSAGE2.header.tag)
+
+    assertThat(LogcatMasterFilter(null).filter(backlog)).containsExactly(MESSAGE1, systemMessage).inOrder()
+    assertThat(LogcatMasterFilter(StringFilter("Tag", TAG, EMPTY_RANGE)).filter(backlog))
+      .containsExactly(MESSAGE1, systemMessage).inOrder()
+    assertThat(LogcatMasterFilter(StringFilter("message2", MESSAGE, EMPTY_RANGE)).filter(backlog)).containsExactly(systemMessage)
+  }
+
+  @Test
+  fun isHeaderOnly() {
+    assertThat(AndLogcatFilter(StringFilter("foo", TAG, EMPTY_RANGE), LevelFilter(WARN, EMPTY_RANGE)).isHeaderOnly).isTrue()
+    assertThat(OrLogcatFilter(StringFilter("foo", APP, EMPTY_RANGE), StringFilter("foo", MESSAGE, EMPTY_RANGE)).isHeaderOnly).isFalse()
+    assertThat(RegexFilter("foo", LINE, EMPTY_RANGE).isHeaderOnly).isFalse()
+    assertThat(CrashFilter(EMPTY_RANGE).isHeaderOnly).isFalse()
+  }
+
   @Test
   fun andLogcatFilter_allTrue() {
     assertThat(
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.filters
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.regex.PatternSyntaxException
+import kotlin.random.Random
+
+/**
+ * Tests for [PrefilteredRegex]
+ */
+class PrefilteredRegexTest {
+  @Test
+  fun requiredLiteral() {
+    assertThat(requiredLiteral("foo")).isEqualTo("foo")
+    assertThat(requiredLiteral("foo.*barbaz")).isEqualTo("barbaz")
+    assertThat(requiredLiteral("ab+c")).isEqualTo("ab")
+    assertThat(requiredLiteral("abc?d")).isEqualTo("ab")
+    assertThat(requiredLiteral("abc{2}d")).isEqualTo("ab")
+    assertThat(requiredLiteral("a\\.b")).isEqualTo("a.b")
+    assertThat(requiredLiteral("(xy)z")).isEqualTo("z")
+    assertThat(requiredLiteral("[abc]defg")).isEqualTo("defg")
+    assertThat(requiredLiteral("a\\db")).isEqualTo("a")
+  }
+
+  @Test
+  fun requiredLiteral_notAnalyzed() {
+    assertThat(requiredLiteral("foo|bar")).isEmpty()
+    assertThat(requiredLiteral("(?i)foo")).isEmpty()
+    assertThat(requiredLiteral("\\Qfoo\\E")).isEmpty()
+    assertThat(requiredLiteral("\\x41foo")).isEmpty()
+    assertThat(requiredLiteral("\\p{L}foo")).isEmpty()
+    assertThat(requiredLiteral("(a)\\1")).isEmpty()
+  }
+
+  @Test
+  fun containsMatchIn_sameAsRegex() {
+    val atoms = listOf("a", "b", "c", "ab", ".", "\\.", "[ab]", "[^a]", "(ab)", "(a|c)", "a?", "b*", "c+", "a{2}", "b{0,2}", "^", "$", "\\d")
+    val random = Random(1)
+    repeat(5000) {
+      val pattern = List(random.nextInt(1, 6)) { atoms.random(random) }.joinToString("")
+      val regex = try {
+        PrefilteredRegex(pattern)
+      }
+      catch (e: PatternSyntaxException) {
+        return@repeat
+      }
+      repeat(20) {
+        val text = List(random.nextInt(0, 11)) { "abcx. 12".random(random) }.joinToString("")
+        assertThat(regex.containsMatchIn(text)).named("'$pattern' in '$text'").isEqualTo(pattern.toRegex().containsMatchIn(text))
+      }
+    }
+  }
+}
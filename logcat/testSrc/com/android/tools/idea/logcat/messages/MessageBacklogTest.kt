@@ -15,11 +15,15 @@
  */
 package com.android.tools.idea.logcat.messages
 
+import com.android.tools.idea.logcat.SYSTEM_HEADER
+import com.android.tools.idea.logcat.message.LogLevel.ERROR
+import com.android.tools.idea.logcat.message.LogLevel.WARN
 import com.android.tools.idea.logcat.message.LogcatMessage
 import com.android.tools.idea.logcat.util.logcatMessage
 import com.google.common.truth.Truth.assertThat
 import com.intellij.testFramework.UsefulTestCase.assertThrows
 import org.junit.Test
+import java.time.Instant
 
 /**
  * Tests for [MessageBacklog]
@@ -101,4 +105,78 @@ class MessageBacklogTest {
 
     assertThrows(UnsupportedOperationException::class.java, mutableList::clear)
   }
+
+  @Test
+  fun messages_restoresHeaderAndText() {
+    val messageBacklog = MessageBacklog(1000)
+    val messages = listOf(
+      logcatMessage(ERROR, pid = 10, tid = 11, appId = "app1", processName = "process1", tag = "tag1",
+                    timestamp = Instant.ofEpochSecond(100, 123_456_789), message = "Ünïcödé 日本語 \uD83D\uDE00"),
+      LogcatMessage(SYSTEM_HEADER, "System message"),
+      logcatMessage(WARN, appId = "app1", tag = "tag2", message = ""),
+    )
+
+    messageBacklog.addAll(messages)
+
+    assertThat(messageBacklog.messages).containsExactlyElementsIn(messages).inOrder()
+    assertThat(messageBacklog.messages[1].header).isSameAs(SYSTEM_HEADER)
+  }
+
+  @Test
+  fun addAll_evictsAcrossChunks() {
+    val messageBacklog = MessageBacklog(200_000)
+    val messages = List(1000) { logcatMessage(tag = "tag${it % 10}", message = "$it".padEnd(if (it % 100 == 0) 70_000 else 500, '.')) }
+
+    messages.chunked(7).forEach(messageBacklog::addAll)
+
+    var size = 0
+    val expected = messages.takeLastWhile {
+      size += it.message.length
+      size <= 200_000
+    }
+    assertThat(messageBacklog.messages).containsExactlyElementsIn(expected).inOrder()
+  }
+
+  @Test
+  fun filterByHeader() {
+    val messageBacklog = MessageBacklog(1000)
+    val warning = logcatMessage(WARN, message = "Warning")
+    messageBacklog.addAll(listOf(message1, warning, message2))
+
+    assertThat(messageBacklog.filterByHeader { it.logLevel == WARN }).containsExactly(warning)
+  }
+
+  @Test
+  fun filter() {
+    val messageBacklog = MessageBacklog(1000)
+    val warning = logcatMessage(WARN, message = "Warning")
+    messageBacklog.addAll(listOf(message1, warning, message2))
+
+    assertThat(messageBacklog.filter { it.message.startsWith("Warn") }).containsExactly(warning)
+  }
+
+  @Test
+  fun addAll_releasesStringsOfEvictedMessages() {
+    val messageBacklog = MessageBacklog(20)
+
+    repeat(100) {
+      messageBacklog.addAll(listOf(logcatMessage(appId = "app", processName = "process", tag = "tag$it", message = "0123456789")))
+    }
+
+    // The 2 remaining messages share the application id and process name, and have their own tag
+    assertThat(messageBacklog.internedStringCount()).isEqualTo(4)
+    assertThat(messageBacklog.messages.map { it.header.tag }).containsExactly("tag98", "tag99").inOrder()
+  }
+
+  @Test
+  fun isEmpty() {
+    val messageBacklog = MessageBacklog(20)
+    assertThat(messageBacklog.isEmpty()).isTrue()
+
+    messageBacklog.addAll(listOf(message1))
+    assertThat(messageBacklog.isEmpty()).isFalse()
+
+    messageBacklog.clear()
+    assertThat(messageBacklog.isEmpty()).isTrue()
+  }
 }
\ No newline at end of file
@@ -182,12 +182,25 @@ class MessageProcessorTest {
     }
   }
 
+  @Test
+  fun appendMessages_filtersPartitionsInOrder() = runBlocking {
+    val messages = List(100) { LogcatMessage(LogcatHeader(WARN, 1, 2, "app1", "", "tag${it % 3}", timestamp), "message$it") }
+    val messageProcessor = messageProcessor(fakeLogcatPresenter, filterPartitionSize = 7)
+    messageProcessor.logcatFilter = StringFilter("tag1", LINE, EMPTY_RANGE)
+
+    val filteredMessages = messageProcessor.appendMessages(messages)
+
+    assertThat(filteredMessages).containsExactlyElementsIn(messages.filter { it.header.tag == "tag1" }).inOrder()
+    assertThat(messageProcessor.filterThroughput).isGreaterThan(0.0)
+  }
+
   private fun messageProcessor(
     logcatPresenter: LogcatPresenter = fakeLogcatPresenter,
     formatMessagesInto: (TextAccumulator, List<LogcatMessage>) -> Unit = messageFormatter,
     clock: Clock = Clock.systemDefaultZone(),
     maxTimePerBatchMs: Int = MAX_TIME_PER_BATCH_MS,
     maxMessagesPerBatch: Int = StudioFlags.LOGCAT_MAX_MESSAGES_PER_BATCH.get(),
+    filterPartitionSize: Int = StudioFlags.LOGCAT_FILTER_PARTITION_SIZE.get(),
     autoStart: Boolean = true,
   ) = MessageProcessor(
     logcatPresenter,
@@ -196,6 +209,7 @@ class MessageProcessorTest {
     clock,
     maxTimePerBatchMs,
     maxMessagesPerBatch,
+    filterPartitionSize,
     autoStart)
 }
 
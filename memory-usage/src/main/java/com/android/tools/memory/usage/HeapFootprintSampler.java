@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.memory.usage;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically samples the memory footprint of registered components, e.g. the services or class loaders of IDE plugins, so that
+ * memory regressions can be spotted in production without taking a heap dump.
+ * <p>
+ * A full {@link LightweightHeapTraverse#collectReport} pauses the VM for a traversal of the whole heap. Instead, each tick of the
+ * sampler runs a time slice in which components are sampled one at a time, round robin, with
+ * {@link LightweightHeapTraverse#collectComponentReport}. A component is only charged for the objects reachable from its root, and
+ * at most its object budget of them is visited, so the pause caused by a single sample is bounded.
+ * <p>
+ * The last {@code historySize} samples of each component are kept in a ring buffer. {@link #getDeltas()} reports the growth of each
+ * component over that window, and the {@link Listener} is notified of a component that grew in every one of its last samples.
+ */
+public class HeapFootprintSampler {
+  private final ScheduledExecutorService executor;
+  private final int historySize;
+  private final long sliceNanos;
+  private final Listener listener;
+
+  private final List<Component> components = new ArrayList<>();
+  private int nextComponent;
+  private ScheduledFuture<?> samplingTask;
+
+  public interface Listener {
+    /**
+     * Called on the sampling thread when the footprint of a component has grown in each of its last {@code historySize} samples.
+     */
+    void componentGrowing(ComponentDelta delta);
+  }
+
+  /**
+   * @param executor the executor running the sampling ticks
+   * @param historySize the number of samples kept for each component
+   * @param sliceMillis the time after which a tick stops sampling further components
+   * @param listener notified of components that keep growing
+   */
+  public HeapFootprintSampler(ScheduledExecutorService executor, int historySize, long sliceMillis, Listener listener) {
+    if (historySize < 2) {
+      throw new IllegalArgumentException("historySize has to be at least 2, got " + historySize);
+    }
+    this.executor = executor;
+    this.historySize = historySize;
+    this.sliceNanos = TimeUnit.MILLISECONDS.toNanos(sliceMillis);
+    this.listener = listener;
+  }
+
+  /**
+   * Registers a component to be sampled. The root is held weakly; a component whose root has been collected is dropped.
+   *
+   * @param name the name the component is reported under
+   * @param root the object the footprint of the component is computed from
+   * @param maxObjects the maximum number of objects visited when sampling the component
+   */
+  public synchronized void registerComponent(String name, Object root, int maxObjects) {
+    components.add(new Component(name, root, maxObjects, historySize));
+  }
+
+  public synchronized void unregisterComponent(String name) {
+    components.removeIf(component -> component.name.equals(name));
+  }
+
+  /**
+   * Starts sampling with the given period between ticks.
+   */
+  public synchronized void start(long periodMillis) {
+    if (samplingTask == null) {
+      samplingTask = executor.scheduleWithFixedDelay(this::sampleSlice, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public synchronized void stop() {
+    if (samplingTask != null) {
+      samplingTask.cancel(false);
+      samplingTask = null;
+    }
+  }
+
+  /**
+   * Samples components, starting with the one following the last sampled one, until either the time slice is used up or every
+   * component has been sampled once. At least one component is sampled if there is any.
+   */
+  public synchronized void sampleSlice() {
+    long start = System.nanoTime();
+    for (int i = 0; i < components.size(); i++) {
+      if (nextComponent >= components.size()) {
+        nextComponent = 0;
+      }
+      Component component = components.get(nextComponent);
+      Object root = component.root.get();
+      if (root == null) {
+        components.remove(nextComponent);
+        i--;
+        continue;
+      }
+      LightweightTraverseResult result = LightweightHeapTraverse.collectComponentReport(root, component.maxObjects);
+      root = null;
+      component.add(result);
+      nextComponent++;
+      if (component.isGrowing()) {
+        listener.componentGrowing(component.getDelta());
+      }
+      if (System.nanoTime() - start >= sliceNanos) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns the change of footprint of each component between its oldest and its latest retained samples.
+   */
+  public synchronized List<ComponentDelta> getDeltas() {
+    List<ComponentDelta> deltas = new ArrayList<>(components.size());
+    for (Component component : components) {
+      if (component.size > 0) {
+        deltas.add(component.getDelta());
+      }
+    }
+    return deltas;
+  }
+
+  /**
+   * Returns the retained samples of the given component, oldest first.
+   */
+  public synchronized List<LightweightTraverseResult> getSnapshots(String name) {
+    List<LightweightTraverseResult> snapshots = new ArrayList<>();
+    for (Component component : components) {
+      if (component.name.equals(name)) {
+        for (int i = 0; i < component.size; i++) {
+          snapshots.add(component.get(i));
+        }
+      }
+    }
+    return snapshots;
+  }
+
+  public static class ComponentDelta {
+    private final String name;
+    private final int sampleCount;
+    private final long objectsNumberDelta;
+    private final long objectsSizeDeltaBytes;
+    private final long latestObjectsSizeBytes;
+    private final boolean budgetExceeded;
+
+    ComponentDelta(String name,
+                   int sampleCount,
+                   long objectsNumberDelta,
+                   long objectsSizeDeltaBytes,
+                   long latestObjectsSizeBytes,
+                   boolean budgetExceeded) {
+      this.name = name;
+      this.sampleCount = sampleCount;
+      this.objectsNumberDelta = objectsNumberDelta;
+      this.objectsSizeDeltaBytes = objectsSizeDeltaBytes;
+      this.latestObjectsSizeBytes = latestObjectsSizeBytes;
+      this.budgetExceeded = budgetExceeded;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getSampleCount() {
+      return sampleCount;
+    }
+
+    public long getObjectsNumberDelta() {
+      return objectsNumberDelta;
+    }
+
+    public long getObjectsSizeDeltaBytes() {
+      return objectsSizeDeltaBytes;
+    }
+
+    public long getLatestObjectsSizeBytes() {
+      return latestObjectsSizeBytes;
+    }
+
+    /**
+     * Returns true if the latest sample stopped at the object budget of the component, in which case its footprint is only a lower
+     * bound and the deltas may understate the growth.
+     */
+    public boolean isBudgetExceeded() {
+      return budgetExceeded;
+    }
+  }
+
+  private static class Component {
+    private final String name;
+    private final WeakReference<Object> root;
+    private final int maxObjects;
+    private final LightweightTraverseResult[] samples;
+    private int head;
+    private int size;
+
+    Component(String name, Object root, int maxObjects, int historySize) {
+      this.name = name;
+      this.root = new WeakReference<>(root);
+      this.maxObjects = maxObjects;
+      this.samples = new LightweightTraverseResult[historySize];
+    }
+
+    void add(LightweightTraverseResult result) {
+      samples[(head + size) % samples.length] = result;
+      if (size < samples.length) {
+        size++;
+      }
+      else {
+        head = (head + 1) % samples.length;
+      }
+    }
+
+    /**
+     * Returns the i-th retained sample, 0 being the oldest.
+     */
+    LightweightTraverseResult get(int i) {
+      return samples[(head + i) % samples.length];
+    }
+
+    boolean isGrowing() {
+      if (size < samples.length) {
+        return false;
+      }
+      for (int i = 1; i < size; i++) {
+        if (get(i).getTotalReachableObjectsSizeBytes() <= get(i - 1).getTotalReachableObjectsSizeBytes()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    ComponentDelta getDelta() {
+      LightweightTraverseResult oldest = get(0);
+      LightweightTraverseResult latest = get(size - 1);
+      return new ComponentDelta(name,
+                                size,
+                                (long)latest.getTotalReachableObjectsNumber() - oldest.getTotalReachableObjectsNumber(),
+                                latest.getTotalReachableObjectsSizeBytes() - oldest.getTotalReachableObjectsSizeBytes(),
+                                latest.getTotalReachableObjectsSizeBytes(),
+                                latest.getTotalReachableObjectsNumber() >= maxObjects);
+    }
+  }
+}
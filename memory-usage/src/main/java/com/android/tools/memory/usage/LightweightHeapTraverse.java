@@ -17,12 +17,24 @@ package com.android.tools.memory.usage;
 
 public class LightweightHeapTraverse {
 
-  public static LightweightTraverseResult collectReport(LightweightHeapTraverseConfig config) {
+  public static synchronized LightweightTraverseResult collectReport(LightweightHeapTraverseConfig config) {
     return collectReport(config.shouldCollectHeapObjectInfo(), config.shouldCollectReachableObjectsInfo(),
                          config.shouldCollectStrongReferencedObjectsInfo());
   }
 
+  /**
+   * Collects the number and the size of the objects strongly reachable from the given root through fields, array elements and, for
+   * classes, static fields, not counting the root itself. The referents of soft and weak references are not followed, nor are the
+   * references from an object to its class. The traversal stops after visiting {@code maxObjects} objects, so its cost is bounded by
+   * the size of the component rather than by the size of the heap. Only the reachable objects fields of the result are populated.
+   */
+  public static synchronized LightweightTraverseResult collectComponentReport(Object root, int maxObjects) {
+    return collectComponentReportNative(root, maxObjects);
+  }
+
   private static native LightweightTraverseResult collectReport(boolean collectHeapObjectInfo,
                                                                 boolean collectReachableObjectsInfo,
                                                                 boolean collectStrongReferencedObjectsInfo);
+
+  private static native LightweightTraverseResult collectComponentReportNative(Object root, int maxObjects);
 }
@@ -2,6 +2,7 @@
 #include <iostream>
 #include <jvmti.h>
 #include <cstring>
+#include <vector>
 
 jvmtiEnv *jvmti;
 
@@ -92,6 +93,80 @@ static jint JNICALL traverseStrongReferencesCallback(jvmtiHeapReferenceKind refe
   return JVMTI_VISIT_OBJECTS;
 }
 
+/* Global references to the soft and weak reference classes, guarded by reference_classes_lock. */
+static std::vector<jclass> reference_classes;
+static jrawMonitorID reference_classes_lock = NULL;
+static jclass soft_reference_class = NULL;
+static jclass weak_reference_class = NULL;
+
+static void addIfReferenceClass(JNIEnv *env, jclass klass) {
+  if (env->IsAssignableFrom(klass, soft_reference_class) != JNI_TRUE &&
+      env->IsAssignableFrom(klass, weak_reference_class) != JNI_TRUE) {
+    return;
+  }
+  jvmti->RawMonitorEnter(reference_classes_lock);
+  for (jclass known : reference_classes) {
+    if (env->IsSameObject(known, klass) == JNI_TRUE) {
+      jvmti->RawMonitorExit(reference_classes_lock);
+      return;
+    }
+  }
+  reference_classes.push_back(reinterpret_cast<jclass>(env->NewGlobalRef(klass)));
+  jvmti->RawMonitorExit(reference_classes_lock);
+}
+
+static void JNICALL onClassPrepare(jvmtiEnv *jvmti_env, JNIEnv *env, jthread thread, jclass klass) {
+  addIfReferenceClass(env, klass);
+}
+
+/*
+ * Finds the soft and weak reference classes the first time it is called. Classes loaded afterwards are added when they are prepared,
+ * so that later samples do not have to walk all the loaded classes again.
+ */
+static void initReferenceClasses(JNIEnv *env) {
+  if (reference_classes_lock != NULL) {
+    return;
+  }
+  jvmti->CreateRawMonitor("reference classes", &reference_classes_lock);
+  soft_reference_class = reinterpret_cast<jclass>(env->NewGlobalRef(env->FindClass("java/lang/ref/SoftReference")));
+  weak_reference_class = reinterpret_cast<jclass>(env->NewGlobalRef(env->FindClass("java/lang/ref/WeakReference")));
+
+  // Enabled before walking the loaded classes so that no class is missed, classes seen twice are only added once.
+  jvmtiEventCallbacks callbacks;
+  std::memset(&callbacks, 0, sizeof(jvmtiEventCallbacks));
+  callbacks.ClassPrepare = &onClassPrepare;
+  jvmtiError err = jvmti->SetEventCallbacks(&callbacks, sizeof(jvmtiEventCallbacks));
+  if (err == JVMTI_ERROR_NONE) {
+    err = jvmti->SetEventNotificationMode(JVMTI_ENABLE, JVMTI_EVENT_CLASS_PREPARE, NULL);
+  }
+  if (err != JVMTI_ERROR_NONE) {
+    printf("Jvmti error enabling class prepare events: %d\n", err);
+  }
+
+  jint nclasses;
+  jclass *classes;
+  jint class_status;
+  jvmti->GetLoadedClasses(&nclasses, &classes);
+  for (int i=0; i < nclasses; i++) {
+    jvmti->GetClassStatus(classes[i], &class_status);
+    if (((class_status & JVMTI_CLASS_STATUS_PREPARED) != 0) && ((class_status & JVMTI_CLASS_STATUS_ERROR) == 0)) {
+      addIfReferenceClass(env, classes[i]);
+    }
+    env->DeleteLocalRef(classes[i]);
+  }
+  jvmti->Deallocate((unsigned char *)classes);
+}
+
+/* Sets the tag of all soft and weak reference classes so that the traversal callbacks can skip their instances. */
+static void setReferenceClassesTag(JNIEnv *env, jlong tag) {
+  initReferenceClasses(env);
+  jvmti->RawMonitorEnter(reference_classes_lock);
+  for (jclass klass : reference_classes) {
+    jvmti->SetTag(klass, tag);
+  }
+  jvmti->RawMonitorExit(reference_classes_lock);
+}
+
 JNIEXPORT jobject JNICALL Java_com_android_tools_memory_usage_LightweightHeapTraverse_collectReport
   (JNIEnv *env, jclass klass, jboolean collectHeapObjectInfo,
                               jboolean collectReachableObjectsInfo,
@@ -131,27 +206,7 @@ JNIEXPORT jobject JNICALL Java_com_android_tools_memory_usage_LightweightHeapTra
   }
 
   if (collectStrongReferencedObjectsInfo == JNI_TRUE) {
-    jint nclasses;
-    jclass *classes;
-    jint class_status;
-    jclass soft_reference_class = env->FindClass("java/lang/ref/SoftReference");
-    jclass weak_reference_class = env->FindClass("java/lang/ref/WeakReference");
-
-    jvmti->GetLoadedClasses(&nclasses, &classes);
-
-    for (int i=0; i < nclasses; i++) {
-      jvmti->GetClassStatus(classes[i], &class_status);
-      if (((class_status & JVMTI_CLASS_STATUS_VERIFIED) == 0) || ((class_status & JVMTI_CLASS_STATUS_PREPARED) == 0) ||
-        ((class_status & JVMTI_CLASS_STATUS_INITIALIZED) == 0) || ((class_status & JVMTI_CLASS_STATUS_ERROR) != 0)) {
-        continue;
-      }
-      if (env->IsAssignableFrom(classes[i], soft_reference_class) == JNI_TRUE ||
-          env->IsAssignableFrom(classes[i], weak_reference_class) == JNI_TRUE) {
-        jvmti->SetTag(classes[i], IGNORE_CLASS_TAG);
-      }
-      env->DeleteLocalRef(classes[i]);
-    }
-    jvmti->Deallocate((unsigned char *)classes);
+    setReferenceClassesTag(env, IGNORE_CLASS_TAG);
 
     cb.heap_reference_callback = reinterpret_cast<jvmtiHeapReferenceCallback>(&traverseStrongReferencesCallback);
     err = jvmti->FollowReferences(0, NULL, NULL, &cb, &result);
@@ -174,6 +229,95 @@ JNIEXPORT jobject JNICALL Java_com_android_tools_memory_usage_LightweightHeapTra
                         result.total_strong_referenced_objects_size);
 }
 
+struct ComponentTraverseState {
+  TraverseResult result;
+  jlong tag;
+  jint max_objects;
+};
+
+static jint JNICALL traverseComponentCallback(jvmtiHeapReferenceKind reference_kind,
+                                              const jvmtiHeapReferenceInfo* reference_info,
+                                              jlong class_tag,
+                                              jlong referrer_class_tag,
+                                              jlong size,
+                                              jlong* tag_ptr,
+                                              jlong* referrer_tag_ptr,
+                                              jint length,
+                                              void* user_data) {
+  auto *state = reinterpret_cast<ComponentTraverseState *>(user_data);
+
+  switch (reference_kind) {
+    case JVMTI_HEAP_REFERENCE_FIELD:
+    case JVMTI_HEAP_REFERENCE_ARRAY_ELEMENT:
+    case JVMTI_HEAP_REFERENCE_STATIC_FIELD:
+    case JVMTI_HEAP_REFERENCE_CONSTANT_POOL:
+      break;
+    default:
+      // Class metadata edges, e.g. from an instance to its class or from a class to its class loader, would charge
+      // the component for most of the loaded classes and their static state.
+      return 0;
+  }
+  if (*tag_ptr != 0) {
+    // Either already visited by this traversal or one of the reference classes tagged with IGNORE_CLASS_TAG.
+    return 0;
+  }
+  if (state->result.total_reachable_objects_number >= state->max_objects) {
+    return JVMTI_VISIT_ABORT;
+  }
+  *tag_ptr = state->tag;
+
+  state->result.total_reachable_objects_size += size;
+  state->result.total_reachable_objects_number++;
+  // Soft and weak references are counted, but their referents are not.
+  return class_tag == IGNORE_CLASS_TAG ? 0 : JVMTI_VISIT_OBJECTS;
+}
+
+JNIEXPORT jobject JNICALL Java_com_android_tools_memory_usage_LightweightHeapTraverse_collectComponentReportNative
+  (JNIEnv *env, jclass klass, jobject root, jint maxObjects) {
+  static jlong next_component_tag = -1000;
+
+  ComponentTraverseState state;
+  std::memset(&state, 0, sizeof(ComponentTraverseState));
+  // A fresh tag for each traversal lets the cleanup below find the visited objects without iterating over the whole heap.
+  state.tag = next_component_tag--;
+  state.max_objects = maxObjects;
+
+  setReferenceClassesTag(env, IGNORE_CLASS_TAG);
+
+  jvmtiHeapCallbacks cb;
+  std::memset(&cb, 0, sizeof(jvmtiHeapCallbacks));
+  cb.heap_reference_callback = reinterpret_cast<jvmtiHeapReferenceCallback>(&traverseComponentCallback);
+  // Only the objects reachable from the root are visited, so the cost of a sample is bounded by maxObjects
+  // rather than by the size of the heap.
+  jvmtiError err = jvmti->FollowReferences(0, NULL, root, &cb, &state);
+  if (err != JVMTI_ERROR_NONE) {
+    printf("Jvmti error during the iteration over references: %d\n", err);
+  }
+
+  jint count = 0;
+  jobject *objects = NULL;
+  err = jvmti->GetObjectsWithTags(1, &state.tag, &count, &objects, NULL);
+  if (err != JVMTI_ERROR_NONE) {
+    printf("Jvmti error during tags cleanup: %d\n", err);
+  }
+  for (int i = 0; i < count; i++) {
+    jvmti->SetTag(objects[i], 0);
+    env->DeleteLocalRef(objects[i]);
+  }
+  if (objects != NULL) {
+    jvmti->Deallocate((unsigned char *)objects);
+  }
+  setReferenceClassesTag(env, 0);
+
+  jclass result_class = env->FindClass("com/android/tools/memory/usage/LightweightTraverseResult");
+  jmethodID result_constructor = env->GetMethodID(result_class, "<init>", "(IJIJIJ)V");
+  return env->NewObject(result_class, result_constructor,
+                        0, (jlong) 0,
+                        state.result.total_reachable_objects_number,
+                        state.result.total_reachable_objects_size,
+                        0, (jlong) 0);
+}
+
 JNIEXPORT jint JNICALL Agent_OnAttach(JavaVM *vm, char *options, void *reserved) {
   vm->GetEnv((void **) &jvmti, JVMTI_VERSION_1_0);
   jvmtiCapabilities capa;
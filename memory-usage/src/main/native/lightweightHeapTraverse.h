@@ -16,6 +16,13 @@ JNIEXPORT jobject JNICALL Java_com_android_tools_memory_usage_LightweightHeapTra
                      jboolean collectReachableObjectsInfo,
                      jboolean collectStrongReferencedObjectsInfo);
 
+/*
+ * Class:     com_android_tools_memory_usage_LightweightHeapTraverse
+ * Method:    collectComponentReportNative
+ */
+JNIEXPORT jobject JNICALL Java_com_android_tools_memory_usage_LightweightHeapTraverse_collectComponentReportNative
+  (JNIEnv *, jclass, jobject root, jint maxObjects);
+
 #ifdef __cplusplus
 }
 #endif
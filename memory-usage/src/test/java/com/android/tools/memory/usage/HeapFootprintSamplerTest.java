@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.memory.usage;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeapFootprintSamplerTest {
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final List<HeapFootprintSampler.ComponentDelta> growingComponents = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testComponentReport() {
+    List<Object> component = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      component.add(new byte[1000]);
+    }
+    LightweightTraverseResult result = LightweightHeapTraverse.collectComponentReport(component, 100000);
+    // The backing array of the list and the 100 byte arrays.
+    Assert.assertTrue(result.getTotalReachableObjectsNumber() >= 101);
+    Assert.assertTrue(result.getTotalReachableObjectsSizeBytes() >= 100 * 1000);
+    Assert.assertEquals(0, result.getTotalObjectsNumber());
+  }
+
+  @Test
+  public void testComponentReportBudget() {
+    List<Object> component = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      component.add(new Object());
+    }
+    LightweightTraverseResult result = LightweightHeapTraverse.collectComponentReport(component, 10);
+    Assert.assertEquals(10, result.getTotalReachableObjectsNumber());
+  }
+
+  @Test
+  public void testComponentReportSkipsWeakReferences() {
+    List<Object> component = new ArrayList<>();
+    byte[] referent = new byte[100000];
+    component.add(new WeakReference<>(referent));
+    LightweightTraverseResult result = LightweightHeapTraverse.collectComponentReport(component, 100000);
+    Assert.assertTrue(result.getTotalReachableObjectsSizeBytes() < 100000);
+  }
+
+  @Test
+  public void testGrowingComponentIsReported() {
+    HeapFootprintSampler sampler = new HeapFootprintSampler(executor, 3, 1000, growingComponents::add);
+    List<Object> leaking = new ArrayList<>();
+    List<Object> stable = new ArrayList<>();
+    stable.add(new byte[1000]);
+    sampler.registerComponent("leaking", leaking, 100000);
+    sampler.registerComponent("stable", stable, 100000);
+
+    for (int i = 0; i < 3; i++) {
+      leaking.add(new byte[1000]);
+      sampler.sampleSlice();
+    }
+
+    Assert.assertEquals(1, growingComponents.size());
+    HeapFootprintSampler.ComponentDelta delta = growingComponents.get(0);
+    Assert.assertEquals("leaking", delta.getName());
+    Assert.assertEquals(3, delta.getSampleCount());
+    Assert.assertTrue(delta.getObjectsSizeDeltaBytes() >= 2000);
+    Assert.assertFalse(delta.isBudgetExceeded());
+
+    Assert.assertEquals(3, sampler.getSnapshots("stable").size());
+    for (HeapFootprintSampler.ComponentDelta componentDelta : sampler.getDeltas()) {
+      if (componentDelta.getName().equals("stable")) {
+        Assert.assertEquals(0, componentDelta.getObjectsSizeDeltaBytes());
+      }
+    }
+  }
+
+  @Test
+  public void testSnapshotsAreKeptInRingBuffer() {
+    HeapFootprintSampler sampler = new HeapFootprintSampler(executor, 2, 1000, growingComponents::add);
+    List<Object> component = new ArrayList<>();
+    sampler.registerComponent("component", component, 100000);
+
+    for (int i = 0; i < 5; i++) {
+      component.add(new Object());
+      sampler.sampleSlice();
+    }
+
+    List<LightweightTraverseResult> snapshots = sampler.getSnapshots("component");
+    Assert.assertEquals(2, snapshots.size());
+    Assert.assertEquals(1, snapshots.get(1).getTotalReachableObjectsNumber() - snapshots.get(0).getTotalReachableObjectsNumber());
+  }
+}
@@ -380,6 +380,16 @@ public class IntellijProfilerServices implements IdeProfilerServices, Disposable
       return StudioFlags.PROFILER_MEMORY_CSV_EXPORT.get();
     }
 
+    @Override
+    public boolean isMemoryMappedHprofLoadingEnabled() {
+      return StudioFlags.PROFILER_MEMORY_MAPPED_HPROF_LOADING.get();
+    }
+
+    @Override
+    public boolean isParallelArtTraceParsingEnabled() {
+      return StudioFlags.PROFILER_PARALLEL_ART_TRACE_PARSING.get();
+    }
+
     @Override
     public boolean isPerformanceMonitoringEnabled() {
       return StudioFlags.PROFILER_PERFORMANCE_MONITORING.get();
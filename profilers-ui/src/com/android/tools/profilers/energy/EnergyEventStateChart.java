@@ -24,7 +24,7 @@ import com.android.tools.adtui.chart.statechart.StateChart;
 import com.android.tools.adtui.chart.statechart.StateChartColorProvider;
 import com.android.tools.adtui.chart.statechart.StateChartConfig;
 import com.android.tools.adtui.common.EnumColors;
-import com.android.tools.adtui.model.DefaultDataSeries;
+import com.android.tools.adtui.model.LongObjectDataSeries;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedSeries;
 import com.android.tools.adtui.model.StateChartModel;
@@ -60,7 +60,7 @@ public final class EnergyEventStateChart {
 
   @NotNull
   public static StateChart<Common.Event> create(@NotNull EnergyDuration duration, @NotNull Range range) {
-    DefaultDataSeries<Common.Event> series = new DefaultDataSeries<>();
+    LongObjectDataSeries<Common.Event> series = new LongObjectDataSeries<>();
     duration.getEventList().forEach(evt -> series.add(TimeUnit.NANOSECONDS.toMicros(evt.getTimestamp()), evt));
 
     StateChartModel<Common.Event> model = new StateChartModel<>();
@@ -27,6 +27,8 @@ public interface FeatureConfig {
   boolean isEnergyProfilerEnabled();
   boolean isJankDetectionUiEnabled();
   boolean isMemoryCSVExportEnabled();
+  boolean isMemoryMappedHprofLoadingEnabled();
+  boolean isParallelArtTraceParsingEnabled();
   boolean isPerformanceMonitoringEnabled();
   boolean isProfileableBuildsEnabled();
   boolean isVerboseLoggingEnabled();
@@ -66,6 +66,8 @@ open class BaseCpuCapture @JvmOverloads constructor(/**
     // If the trace is empty, use [NO_THREAD_ID].
     mainThreadId = (availableThreads.find { it.isMainThread } ?: captureTrees.maxByOrNull { it.value.duration }?.key)?.id ?: NO_THREAD_ID
     clockType = threadIdToNode[mainThreadId]?.clockType ?: ClockType.GLOBAL
+    // The trees are complete by now, so let go of the spare capacity left over from building them.
+    captureTrees.values.forEach(CaptureNode::trimToSize)
     unabbreviatedTrees = threadIdToNode.values.associateWith { it.children.toList() }
   }
 
@@ -23,9 +23,12 @@ import com.android.tools.perflib.vmtrace.ClockType
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
 import com.google.common.annotations.VisibleForTesting
 import java.util.PriorityQueue
+import java.util.RandomAccess
 import java.util.function.Predicate
 import java.util.stream.Stream
+import kotlin.math.max
 import kotlin.reflect.KMutableProperty1
+import kotlin.streams.asStream
 
 open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : HNode<CaptureNode> {
 
@@ -51,8 +54,13 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
    * End time with THREAD clock.
    */
   var endThread = 0L
-  @JvmField
-  protected val childrenList = mutableListOf<CaptureNode>()
+
+  /**
+   * The children are kept in the first [numChildren] slots of a plain array rather than in a list object per node. Leaves, which make up
+   * most of a call tree, share an empty array, and [trimToSize] drops the spare capacity once a tree has been built.
+   */
+  private var childArray = NO_CHILDREN
+  private var numChildren = 0
 
   /**
    * The parent of its child is set to it when it is added [.addChild]
@@ -75,8 +83,11 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
    */
   private var aspectModelPlaceHolder: AspectModel<Aspect>? = null
 
+  /**
+   * A live, read-only view of the children.
+   */
   val children: List<CaptureNode>
-    get() = childrenList
+    get() = if (numChildren == 0) emptyList() else ChildrenView()
 
   val isUnmatched: Boolean
     get() = filterType == FilterType.UNMATCH
@@ -85,20 +96,69 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
    * @return all descendants in pre-order (i.e. node, left, right) as a stream.
    */
   val descendantsStream: Stream<CaptureNode>
-    get() = Stream.concat(Stream.of(this), children.stream().flatMap { it.descendantsStream })
+    get() = sequence {
+      // Walk the tree with an explicit stack, as call stacks can be deep enough for nested streams to overflow the thread's stack.
+      val stack = ArrayList<CaptureNode>().apply { add(this@CaptureNode) }
+      while (stack.isNotEmpty()) {
+        val node = stack.removeAt(stack.size - 1)
+        yield(node)
+        for (i in node.numChildren - 1 downTo 0) {
+          stack.add(node.childArray[i]!!)
+        }
+      }
+    }.asStream()
 
   open fun addChild(node: CaptureNode) {
-    childrenList.add(node)
+    appendChild(node)
     node.parent = this
   }
 
+  /**
+   * Adds the node to the children without changing its parent.
+   */
+  protected fun appendChild(node: CaptureNode) {
+    if (numChildren == childArray.size) {
+      childArray = childArray.copyOf(max(1, numChildren * 2))
+    }
+    childArray[numChildren++] = node
+  }
+
   fun addChildren(nodes: Collection<CaptureNode>) = nodes.forEach(::addChild)
-  fun clearChildren() = childrenList.clear()
+  fun clearChildren() {
+    childArray = NO_CHILDREN
+    numChildren = 0
+  }
 
-  override fun getChildCount() = childrenList.size
-  override fun getChildAt(index: Int) = childrenList[index]
+  /**
+   * Releases the spare capacity of the children of every node in this subtree. Meant to be called once the tree has been built.
+   */
+  fun trimToSize() {
+    val stack = ArrayList<CaptureNode>().apply { add(this@CaptureNode) }
+    while (stack.isNotEmpty()) {
+      val node = stack.removeAt(stack.size - 1)
+      if (node.childArray.size != node.numChildren) {
+        node.childArray = if (node.numChildren == 0) NO_CHILDREN else node.childArray.copyOf(node.numChildren)
+      }
+      for (i in 0 until node.numChildren) {
+        stack.add(node.childArray[i]!!)
+      }
+    }
+  }
+
+  override fun getChildCount() = numChildren
+  override fun getChildAt(index: Int): CaptureNode {
+    if (index < 0 || index >= numChildren) {
+      throw IndexOutOfBoundsException("Index: $index, Size: $numChildren")
+    }
+    return childArray[index]!!
+  }
   override fun getParent() = parent
 
+  /**
+   * The calls made by a method follow each other, so the children are sorted by time and do not overlap.
+   */
+  override fun hasSequentialChildren() = true
+
   /**
    * @return root node of this node. If this node doesn't have a parent, return this node.
    */
@@ -232,6 +292,11 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
                    CaptureNode::startThread, CaptureNode::endThread)
   }
 
+  private inner class ChildrenView : AbstractList<CaptureNode>(), RandomAccess {
+    override val size get() = numChildren
+    override fun get(index: Int) = getChildAt(index)
+  }
+
   enum class FilterType {
     /**
      * This [CaptureNode] matches to the filter.
@@ -255,6 +320,10 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
      */
     FILTER_APPLIED
   }
+
+  private companion object {
+    val NO_CHILDREN = arrayOfNulls<CaptureNode>(0)
+  }
 }
 
 private fun<T> T.copyFrom(that: T, vararg properties: KMutableProperty1<T, *>) {
@@ -373,7 +373,8 @@ public class CpuCaptureParser {
     private final IdeProfilerServices services;
 
     // Parsers used by parseToCapture
-    private static final Supplier<TraceParser> ART_PARSER_SUPPLIER = () -> new ArtTraceParser();
+    private final Supplier<TraceParser> ART_PARSER_SUPPLIER =
+      () -> new ArtTraceParser(getProfilerServices().getFeatureConfig().isParallelArtTraceParsingEnabled());
     private static final Supplier<TraceParser> SIMPLEPERF_PARSER_SUPPLIER = () -> new SimpleperfTraceParser();
     private final Supplier<TraceParser> ATRACE_PARSER_SUPPLIER = () -> new AtraceParser(getMainProcessSelector());
     private final Supplier<TraceParser> PERFETTO_PARSER_SUPPLIER =
@@ -620,7 +621,7 @@ public class CpuCaptureParser {
         var node = queue.removeFirst();
         var data = node.getData();
         if (data instanceof SystemTraceNodeModel && pattern.matcher(data.getFullName()).find()) return true;
-        for (CaptureNode child : node.childrenList) if (seen.add(child)) queue.addLast(child);
+        for (CaptureNode child : node.getChildren()) if (seen.add(child)) queue.addLast(child);
       }
 
       return false;
@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.cpu;
 
+import com.android.tools.adtui.model.CachedLongDataSeries;
 import com.android.tools.adtui.model.DataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
@@ -54,6 +55,10 @@ public class CpuUsage extends LineChartModel {
   public CpuUsage(@NotNull StudioProfilers profilers, @NotNull Range viewRange, @NotNull Range dataRange, @Nullable CpuCapture cpuCapture) {
     myCpuRange = new Range(0, 100);
     DataSeries<Long> series = buildDataSeries(profilers.getClient().getTransportClient(), profilers.getSession(), cpuCapture);
+    if (cpuCapture == null) {
+      // The usage only grows while the session is alive, so keep it in memory instead of querying it again on every repaint.
+      series = new CachedLongDataSeries(series);
+    }
     myCpuSeries = new RangedContinuousSeries(getCpuSeriesLabel(), viewRange, myCpuRange, series, dataRange);
     add(myCpuSeries);
   }
@@ -34,6 +34,14 @@ public class VisualNodeCaptureNode extends CaptureNode {
    */
   @Override
   public void addChild(CaptureNode node) {
-    childrenList.add(node);
+    appendChild(node);
+  }
+
+  /**
+   * The children of a visual node come from unrelated parents, so they are not ordered by time.
+   */
+  @Override
+  public boolean hasSequentialChildren() {
+    return false;
   }
 }
@@ -24,12 +24,23 @@ import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Builds the call tree of each thread of an ART method trace from the events reported by a
+ * {@link com.android.tools.perflib.vmtrace.VmTraceParser}.
+ * <p>
+ * In parallel mode, the events are only recorded into compact per-thread buffers while the trace is decoded, and the call trees of the
+ * different threads, which are independent of each other, are built concurrently once the whole trace has been read.
+ */
 public class ArtTraceHandler implements VmTraceHandler {
   private static final String MAIN_THREAD_NAME = "main";
   private static final String KEY_ELAPSED_TIME_US = "elapsed-time-usec";
@@ -42,18 +53,37 @@ public class ArtTraceHandler implements VmTraceHandler {
   private final Map<Integer, String> myThreads = new HashMap<>();
 
   /**
-   * Map from method id to method model.
+   * Map from method id to method model. Methods missing from the trace header are added while the call trees are built, which can happen
+   * concurrently in parallel mode.
    */
-  private final Map<Long, CaptureNodeModel> myMethods = new HashMap<>();
+  private final Map<Long, CaptureNodeModel> myMethods = new ConcurrentHashMap<>();
 
   /**
    * Map from thread id to per thread stack call constructor.
    */
   private final Map<Integer, CaptureNodeConstructor> myNodeConstructors = new HashMap<>();
 
+  /**
+   * Map from thread id to the method actions not yet passed to the thread's constructor, in parallel mode.
+   */
+  private final Map<Integer, MethodActionBuffer> myPendingActions = new HashMap<>();
+
+  private final boolean myParallel;
+
   @Nullable
   private Map<CpuThreadInfo, CaptureNode> myThreadsGraph;
 
+  public ArtTraceHandler() {
+    this(false);
+  }
+
+  /**
+   * @param parallel whether the call trees of the threads are built concurrently after the trace has been read
+   */
+  public ArtTraceHandler(boolean parallel) {
+    myParallel = parallel;
+  }
+
   @Override
   public void addThread(int id, String name) {
     myThreads.put(id, name);
@@ -67,23 +97,38 @@ public class ArtTraceHandler implements VmTraceHandler {
   @Override
   public void addMethodAction(int threadId, long methodId, TraceAction methodAction,
                               int threadTime, int globalTime) {
-    // create thread info if it doesn't exist
-    if (!myThreads.containsKey(threadId)) {
-      myThreads.put(threadId, String.format("Thread id: %1$d", threadId));
-    }
-
-    // create method info if it doesn't exist
-    if (!myMethods.containsKey(methodId)) {
-      myMethods.put(methodId, new SingleNameModel("unknown"));
+    if (myParallel) {
+      MethodActionBuffer actions = myPendingActions.get(threadId);
+      if (actions == null) {
+        getOrCreateConstructor(threadId);
+        actions = new MethodActionBuffer();
+        myPendingActions.put(threadId, actions);
+      }
+      actions.add(methodId, methodAction, threadTime, globalTime);
+      return;
     }
+    getOrCreateConstructor(threadId).addTraceAction(getOrCreateMethod(methodId), methodAction, threadTime, globalTime);
+  }
 
+  @NotNull
+  private CaptureNodeConstructor getOrCreateConstructor(int threadId) {
     CaptureNodeConstructor constructor = myNodeConstructors.get(threadId);
     if (constructor == null) {
+      // create thread info if it doesn't exist
+      if (!myThreads.containsKey(threadId)) {
+        myThreads.put(threadId, String.format("Thread id: %1$d", threadId));
+      }
       CaptureNodeModel topLevelModel = createUniqueMethodForThread(threadId);
       constructor = new CaptureNodeConstructor(topLevelModel);
       myNodeConstructors.put(threadId, constructor);
     }
-    constructor.addTraceAction(myMethods.get(methodId), methodAction, threadTime, globalTime);
+    return constructor;
+  }
+
+  @NotNull
+  private CaptureNodeModel getOrCreateMethod(long methodId) {
+    // create method info if it doesn't exist
+    return myMethods.computeIfAbsent(methodId, id -> new SingleNameModel("unknown"));
   }
 
   private CaptureNodeModel createUniqueMethodForThread(int threadId) {
@@ -104,28 +149,35 @@ public class ArtTraceHandler implements VmTraceHandler {
 
   @NotNull
   private Map<CpuThreadInfo, CaptureNode> createThreadsGraph() {
-    Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(myThreads.size());
-
-    for (Map.Entry<Integer, String> entry : myThreads.entrySet()) {
-      final int id = entry.getKey();
-      final String name = entry.getValue();
+    Stream<Map.Entry<Integer, String>> threads =
+      myThreads.entrySet().stream().filter(entry -> myNodeConstructors.containsKey(entry.getKey()));
+    Map<CpuThreadInfo, CaptureNode> threadsGraph = (myParallel ? threads.parallel() : threads).collect(Collectors.toMap(
+      entry -> new CpuThreadInfo(entry.getKey(), entry.getValue(), entry.getValue().equals(MAIN_THREAD_NAME)),
+      entry -> createThreadGraph(entry.getKey())));
+    myPendingActions.clear();
+    return threadsGraph;
+  }
 
-      CaptureNodeConstructor constructor = myNodeConstructors.get(id);
-      if (constructor == null) {
-        continue;
+  /**
+   * Builds the call tree of a thread, which only touches the state of that thread and can run concurrently for different threads.
+   */
+  @NotNull
+  private CaptureNode createThreadGraph(int threadId) {
+    CaptureNodeConstructor constructor = myNodeConstructors.get(threadId);
+    MethodActionBuffer actions = myPendingActions.get(threadId);
+    if (actions != null) {
+      for (int i = 0; i < actions.mySize; i++) {
+        constructor.addTraceAction(getOrCreateMethod(actions.myMethodIds[i]), TRACE_ACTIONS[actions.myActions[i]], actions.myThreadTimes[i],
+                                   actions.myGlobalTimes[i]);
       }
-
-      CaptureNode topLevelCall = constructor.getTopLevel();
-      assert topLevelCall != null;
-      CpuThreadInfo info = new CpuThreadInfo(id, name, name.equals(MAIN_THREAD_NAME));
-
-      long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
-      adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart);
-
-      threadsGraph.put(info, topLevelCall);
     }
 
-    return threadsGraph;
+    CaptureNode topLevelCall = constructor.getTopLevel();
+    assert topLevelCall != null;
+
+    long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
+    adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart);
+    return topLevelCall;
   }
 
   /**
@@ -178,4 +230,32 @@ public class ArtTraceHandler implements VmTraceHandler {
   public void setVersion(int version) {
     // We don't need this information
   }
+
+  private static final TraceAction[] TRACE_ACTIONS = TraceAction.values();
+
+  /**
+   * The method actions of a thread, kept in parallel arrays until its call tree is built.
+   */
+  private static final class MethodActionBuffer {
+    @NotNull private long[] myMethodIds = new long[16];
+    @NotNull private byte[] myActions = new byte[16];
+    @NotNull private int[] myThreadTimes = new int[16];
+    @NotNull private int[] myGlobalTimes = new int[16];
+    private int mySize;
+
+    private void add(long methodId, @NotNull TraceAction action, int threadTime, int globalTime) {
+      if (mySize == myMethodIds.length) {
+        int capacity = mySize * 2;
+        myMethodIds = Arrays.copyOf(myMethodIds, capacity);
+        myActions = Arrays.copyOf(myActions, capacity);
+        myThreadTimes = Arrays.copyOf(myThreadTimes, capacity);
+        myGlobalTimes = Arrays.copyOf(myGlobalTimes, capacity);
+      }
+      myMethodIds[mySize] = methodId;
+      myActions[mySize] = (byte)action.ordinal();
+      myThreadTimes[mySize] = threadTime;
+      myGlobalTimes[mySize] = globalTime;
+      mySize++;
+    }
+  }
 }
@@ -30,7 +30,18 @@ import org.jetbrains.annotations.NotNull;
  */
 public class ArtTraceParser implements TraceParser {
 
-  private final ArtTraceHandler myTraceHandler = new ArtTraceHandler();
+  private final ArtTraceHandler myTraceHandler;
+
+  public ArtTraceParser() {
+    this(false);
+  }
+
+  /**
+   * @param parallel whether the call trees of the different threads are built concurrently, see {@link ArtTraceHandler}
+   */
+  public ArtTraceParser(boolean parallel) {
+    myTraceHandler = new ArtTraceHandler(parallel);
+  }
 
   @Override
   public CpuCapture parse(@NotNull File trace, long traceId) throws IOException {
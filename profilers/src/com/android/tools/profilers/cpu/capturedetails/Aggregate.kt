@@ -20,6 +20,7 @@ import com.android.tools.perflib.vmtrace.ClockType
 import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel
+import java.util.EnumMap
 import java.util.IdentityHashMap
 import java.util.Stack
 
@@ -35,9 +36,15 @@ abstract class Aggregate<T: Aggregate<T>> {
   abstract val filterType: CaptureNode.FilterType
   val isUnmatched get() = filterType == CaptureNode.FilterType.UNMATCH
   abstract fun totalOver(clockType: ClockType, range: Range): Summary
-  fun overlapsWith(range: Range) = nodes.any { it.start < range.max && range.min < it.end }
+  fun overlapsWith(range: Range) = nodes.isNotEmpty() && nodeDurations.overlaps(nodes[0].clockType, range)
   data class Summary(val total: Double, val childrenTotal: Double)
 
+  /**
+   * The durations of [nodes] and of their children, indexed so that totals over the selection range do not require visiting every node.
+   */
+  internal val nodeDurations by lazy { DurationIndex(nodes) }
+  internal val childDurations by lazy { DurationIndex(nodes.flatMap(CaptureNode::children)) }
+
   class TopDown private constructor(override val id: String, override val nodes: List<CaptureNode>): Aggregate<TopDown>() {
     override val methodModel: CaptureNodeModel get() = nodes[0].data
     override val filterType: CaptureNode.FilterType get() = nodes[0].filterType
@@ -50,17 +57,8 @@ abstract class Aggregate<T: Aggregate<T>> {
       { nodes.all { it.childCount == 0 } }
     )
 
-    override fun totalOver(clockType: ClockType, range: Range): Summary {
-      var total = 0.0
-      var childrenTotal = 0.0
-      for (node in nodes) {
-        total += getIntersection(range, node, clockType)
-        for (child in node.children) {
-          childrenTotal += getIntersection(range, child, clockType)
-        }
-      }
-      return Summary(total, childrenTotal)
-    }
+    override fun totalOver(clockType: ClockType, range: Range) =
+      Summary(nodeDurations.intersectionLength(clockType, range), childDurations.intersectionLength(clockType, range))
 
     companion object {
       @JvmStatic fun rootAt(node: CaptureNode) = TopDown(node.data.id, listOf(node))
@@ -89,44 +87,43 @@ abstract class Aggregate<T: Aggregate<T>> {
       )
     }
 
+    /**
+     * The durations of the nodes at the top of the call stack, by clock type.
+     */
+    private val outerDurations = EnumMap<ClockType, DurationIndex>(ClockType::class.java)
+
     override fun totalOver(clockType: ClockType, range: Range): Summary {
       // how much time was spent in this call stack path, and in the functions it called
-      var total = 0.0
+      val total = synchronized(outerDurations) { outerDurations.getOrPut(clockType) { DurationIndex(outerNodes(clockType)) } }
+        .intersectionLength(clockType, range)
+      // how much time was spent doing work directly in this call stack path
+      val self = nodeDurations.intersectionLength(clockType, range) - childDurations.intersectionLength(clockType, range)
+      val childrenTotal = total - self
+      return Summary(total, childrenTotal)
+    }
 
-      // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
-      // then the second method can't be outerSoFarByParent.
-      // It's used to exclude nodes which aren't at the top of the
-      // call stack from the total time calculation.
+    /**
+     * Returns the nodes that are at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20], the second
+     * method is excluded from the total time calculation. Which nodes these are does not depend on the range.
+     */
+    private fun outerNodes(clockType: ClockType): List<CaptureNode> {
       // When multiple threads with the same ID are selected, the nodes are merged. When this happens nodes may be interlaced between
       // each of the threads. As such we keep a mapping of outer so far by parents to keep the book keeping done properly.
       val outerSoFarByParent = IdentityHashMap<CaptureNode, CaptureNode>()
-
-      // how much time was spent doing work directly in this call stack path
-      var self = 0.0
+      val outerNodes = mutableListOf<CaptureNode>()
       // myNodes is sorted by CaptureNode#getStart() in increasing order,
       // if they are equal then ancestor comes first
       for (node in nodes) {
         // We use the root node to distinguish if two nodes share the same tree. In the event of multi-select we want to compute the bottom
         // up calculation independently for each tree then sum them after the fact.
-        // TODO(153306735): Cache the root calculation, otherwise our update algorithm is going to be O(n*depth) instead of O(n)
         val root = node.findRootNode()
         val outerSoFar = outerSoFarByParent[root]
-        if (outerSoFar == null || node.end > outerSoFar.end) {
-          if (outerSoFar != null) {
-            // |outerSoFarByParent| is at the top of the call stack
-            total += getIntersection(range, outerSoFar, clockType)
-          }
+        if (outerSoFar == null || end(node, clockType) > end(outerSoFar, clockType)) {
           outerSoFarByParent[root] = node
+          outerNodes.add(node)
         }
-        self += getIntersection(range, node, clockType) -
-                node.children.sumOf { getIntersection(range, it, clockType) }
       }
-      for (outerSoFar in outerSoFarByParent.values) {
-        // |outerSoFarByParent| is at the top of the call stack
-        total += getIntersection(range, outerSoFar, clockType)
-      }
-      val childrenTotal = total - self
-      return Summary(total, childrenTotal)
+      return outerNodes
     }
 
     companion object {
@@ -160,6 +157,11 @@ abstract class Aggregate<T: Aggregate<T>> {
       ClockType.GLOBAL -> range.getIntersectionLength(node.startGlobal.toDouble(), node.endGlobal.toDouble())
       ClockType.THREAD -> range.getIntersectionLength(node.startThread.toDouble(), node.endThread.toDouble())
     }
+
+    private fun end(node: CaptureNode, type: ClockType) = when (type) {
+      ClockType.GLOBAL -> node.endGlobal
+      ClockType.THREAD -> node.endThread
+    }
   }
 }
 
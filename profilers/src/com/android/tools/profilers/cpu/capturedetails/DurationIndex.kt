@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.cpu.CaptureNode
+import java.util.EnumMap
+
+/**
+ * Answers how long a fixed list of nodes overlaps with a range, and whether any of them does.
+ *
+ * The overlap of a node [s, e] with a range [a, b] is clamp(e) - clamp(s), where clamp(x) = min(max(x, a), b), so the total overlap is
+ * the sum of the clamped ends minus the sum of the clamped starts. Once there are enough nodes for it to pay off, the starts and ends are
+ * sorted along with their prefix sums the first time a clock type is queried, and each sum is then answered with two binary searches
+ * instead of a pass over all the nodes.
+ */
+internal class DurationIndex(private val nodes: List<CaptureNode>) {
+  private val intervals = EnumMap<ClockType, SortedIntervals>(ClockType::class.java)
+
+  /**
+   * Returns the sum of the lengths of the intersections of the nodes with the range.
+   */
+  fun intersectionLength(clockType: ClockType, range: Range): Double = when (val sorted = sortedIntervals(clockType)) {
+    null -> nodes.sumOf { Aggregate.getIntersection(range, it, clockType) }
+    else -> if (range.min < range.max) sorted.intersectionLength(range.min, range.max) else 0.0
+  }
+
+  /**
+   * Returns whether a node starts before the end of the range and ends after its start.
+   */
+  fun overlaps(clockType: ClockType, range: Range): Boolean {
+    val sorted = sortedIntervals(clockType)
+    return when {
+      sorted != null && !sorted.hasInvertedNodes && range.min < range.max -> sorted.countOverlapping(range.min, range.max) > 0
+      else -> nodes.any { start(it, clockType) < range.max && range.min < end(it, clockType) }
+    }
+  }
+
+  private fun sortedIntervals(clockType: ClockType): SortedIntervals? =
+    if (nodes.size < INDEX_THRESHOLD) null else synchronized(intervals) { intervals.getOrPut(clockType) { SortedIntervals(clockType) } }
+
+  /**
+   * The starts and ends of the nodes, each sorted and relative to the earliest start so that their prefix sums cannot overflow.
+   */
+  private inner class SortedIntervals(clockType: ClockType) {
+    private val base = nodes.minOf { start(it, clockType) }
+    val hasInvertedNodes = nodes.any { end(it, clockType) < start(it, clockType) }
+    private val starts = LongArray(nodes.size) { start(nodes[it], clockType) - base }.apply { sort() }
+    // A node that ends before it starts does not overlap with anything.
+    private val ends = LongArray(nodes.size) { maxOf(start(nodes[it], clockType), end(nodes[it], clockType)) - base }.apply { sort() }
+    private val startSums = prefixSums(starts)
+    private val endSums = prefixSums(ends)
+
+    fun intersectionLength(min: Double, max: Double) =
+      clampedSum(ends, endSums, min - base, max - base) - clampedSum(starts, startSums, min - base, max - base)
+
+    /**
+     * Returns the number of nodes that start before [max] and end after [min]. As [min] is less than [max] and no node ends before it
+     * starts, every node that ends at or before [min] also starts before [max].
+     */
+    fun countOverlapping(min: Double, max: Double) = countBelow(starts, max - base) - countAtMost(ends, min - base)
+
+    private fun clampedSum(values: LongArray, sums: LongArray, min: Double, max: Double): Double {
+      val low = countAtMost(values, min)
+      val high = countBelow(values, max)
+      return low * min + (sums[high] - sums[low]) + (values.size - high) * max
+    }
+  }
+
+  companion object {
+    private const val INDEX_THRESHOLD = 64
+
+    private fun start(node: CaptureNode, clockType: ClockType) = when (clockType) {
+      ClockType.GLOBAL -> node.startGlobal
+      ClockType.THREAD -> node.startThread
+    }
+
+    private fun end(node: CaptureNode, clockType: ClockType) = when (clockType) {
+      ClockType.GLOBAL -> node.endGlobal
+      ClockType.THREAD -> node.endThread
+    }
+
+    private fun prefixSums(values: LongArray) = LongArray(values.size + 1).also { sums ->
+      for (i in values.indices) {
+        sums[i + 1] = sums[i] + values[i]
+      }
+    }
+
+    /**
+     * Returns the number of sorted values less than [x].
+     */
+    private fun countBelow(values: LongArray, x: Double): Int {
+      var low = 0
+      var high = values.size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (values[mid] < x) low = mid + 1 else high = mid
+      }
+      return low
+    }
+
+    /**
+     * Returns the number of sorted values less than or equal to [x].
+     */
+    private fun countAtMost(values: LongArray, x: Double): Int {
+      var low = 0
+      var high = values.size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (values[mid] <= x) low = mid + 1 else high = mid
+      }
+      return low
+    }
+  }
+}
@@ -99,6 +99,13 @@ abstract class BaseMemoryProfilerStage(profilers: StudioProfilers, protected val
             val loadedCaptureObject = future.get()
             if (captureSelection.finishSelectingCaptureObject(loadedCaptureObject)) {
               captureSelection.selectHeapSet((loadedCaptureObject.heapSets).getDefault())
+              loadedCaptureObject.addDeferredAttributeListener(
+                {
+                  if (captureSelection.selectedCapture === loadedCaptureObject) {
+                    captureSelection.refreshSelectedHeap()
+                  }
+                },
+                joiner ?: MoreExecutors.directExecutor())
             }
             else {
               // Capture loading failed.
@@ -15,6 +15,7 @@
  */
 package com.android.tools.profilers.memory;
 
+import com.android.tools.adtui.model.CachedLongDataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
@@ -56,7 +57,9 @@ public class MemoryUsage extends LineChartModel {
                                                                        Common.Event.Kind.MEMORY_USAGE,
                                                                        groupId,
                                                                        dataExtractor);
-    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, series, profilers.getTimeline().getDataRange());
+    // The samples only grow while the session is alive, so keep them in memory instead of querying them again on every repaint.
+    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, new CachedLongDataSeries(series),
+                                      profilers.getTimeline().getDataRange());
   }
 
   @NotNull
@@ -247,6 +247,13 @@ public interface CaptureObject extends MemoryObject {
     return true;
   }
 
+  /**
+   * Adds a listener to run on the given executor whenever attributes that are computed in the background after loading, e.g. the
+   * retained sizes of a heap dump, make progress or become available. The heap sets are up to date by the time the listener runs.
+   */
+  default void addDeferredAttributeListener(@NotNull Runnable listener, @NotNull Executor executor) {
+  }
+
   class Utils {
     static ListenableFutureTask<Void> makeEmptyTask() {
       return ListenableFutureTask.create(() -> null);
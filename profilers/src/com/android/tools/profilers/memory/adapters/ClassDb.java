@@ -16,9 +16,12 @@
 package com.android.tools.profilers.memory.adapters;
 
 import com.intellij.util.ArrayUtil;
-import java.util.HashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import org.jetbrains.annotations.NotNull;
@@ -32,7 +35,7 @@ public final class ClassDb {
   public static final String JAVA_LANG_CLASS = "java.lang.Class";
 
   // class id to class mapping.
-  private final Map<Long, ClassEntry> myClassEntries = new HashMap<>();
+  private final Long2ObjectMap<ClassEntry> myClassEntries = new Long2ObjectOpenHashMap<>();
   private boolean myResolvedSubclasses = false;
 
   public void clear() {
@@ -102,8 +105,8 @@ public final class ClassDb {
     while (!searchStack.isEmpty()) {
       ClassEntry searchEntry = searchStack.pop();
       descendants.add(searchEntry);
-      for (long subClassId : searchEntry.getSubClassIds()) {
-        searchStack.push(getEntry(subClassId));
+      for (LongIterator iterator = searchEntry.getSubClassIds().iterator(); iterator.hasNext(); ) {
+        searchStack.push(getEntry(iterator.nextLong()));
       }
     }
     return descendants;
@@ -130,15 +133,15 @@ public final class ClassDb {
   }
 
   public static class ClassEntry {
-    @NotNull private final Set<Long> mySubClassIds = new HashSet<>();
+    @NotNull private final LongSet mySubClassIds = new LongOpenHashSet();
 
     @NotNull private final long myClassId;
     @NotNull private final long mySuperClassId;
     @NotNull private final String myClassName;
     @NotNull private final String[] mySplitPackageName;
 
-    // known exact retained size, or -1 if not know (e.g. for live allocations)
-    private final long myRetainedSize;
+    // known exact retained size, or -1 if not know (e.g. for live allocations or until computed for heap dumps)
+    private volatile long myRetainedSize;
 
     /**=
      * @param classId       unique identifier for the class.
@@ -173,7 +176,8 @@ public final class ClassDb {
     /**
      * @return Ids of the immediate children classes. Note that the set is only valid after {@link ClassDb#resolveSubClasses()} is called.
      */
-    public Set<Long> getSubClassIds() {
+    @NotNull
+    public LongSet getSubClassIds() {
       return mySubClassIds;
     }
 
@@ -202,6 +206,10 @@ public final class ClassDb {
       return myRetainedSize;
     }
 
+    void setRetainedSize(long retainedSize) {
+      myRetainedSize = retainedSize;
+    }
+
     @Override
     public int hashCode() {
       return myClassName.hashCode();
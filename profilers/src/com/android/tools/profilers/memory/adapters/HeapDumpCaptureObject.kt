@@ -23,7 +23,9 @@ import com.android.tools.perflib.heap.ClassObj
 import com.android.tools.perflib.heap.Instance
 import com.android.tools.perflib.heap.Snapshot
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor
+import com.android.tools.perflib.heap.io.HprofBuffer
 import com.android.tools.perflib.heap.io.InMemoryBuffer
+import com.android.tools.perflib.heap.io.MemoryMappedFileBuffer
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Memory.HeapDumpInfo
 import com.android.tools.profiler.proto.Transport
@@ -48,11 +50,18 @@ import com.android.tools.proguard.ProguardMap
 import com.google.common.annotations.VisibleForTesting
 import com.google.common.util.concurrent.ListenableFuture
 import com.google.common.util.concurrent.MoreExecutors
+import com.google.common.util.concurrent.SettableFuture
 import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.google.wireless.android.sdk.stats.AndroidProfilerEvent.Loading
+import com.intellij.openapi.diagnostic.Logger
 import gnu.trove.TObjectProcedure
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import java.io.IOException
 import java.io.OutputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
 import java.util.stream.Collectors
@@ -67,6 +76,31 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   private val _heapSets: MutableMap<Int, HeapSet> = HashMap()
   private val instanceIndex = Long2ObjectOpenHashMap<InstanceObject>()
 
+  /**
+   * The instances of the snapshot, indexed by their node in the [HeapGraph] depths and retained sizes are computed from.
+   */
+  private val nodes = ArrayList<Instance>()
+  private val nodeIndex = Long2IntOpenHashMap().apply { defaultReturnValue(-1) }
+
+  @Volatile
+  private var depths: IntArray? = null
+
+  /**
+   * Retained sizes are computed in the background once the heap sets have been built, so that shallow sizes can be browsed meanwhile.
+   */
+  @Volatile
+  private var retainedSizes: LongArray? = null
+
+  @Volatile
+  private var retainedSizeProgress = 0.0
+  private val deferredAttributeListeners = CopyOnWriteArrayList<Pair<Runnable, Executor>>()
+
+  /**
+   * Completes once [computeRetainedSizes] has stored the retained sizes, which is when the deferred attribute listeners are notified.
+   */
+  @get:VisibleForTesting
+  val retainedSizesFuture: SettableFuture<Void?> = SettableFuture.create()
+
   @get:VisibleForTesting
   val classDb = ClassDb()
 
@@ -75,6 +109,13 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
 
   @Volatile
   private var isLoadingError = false
+
+  /**
+   * The file the heap dump was spooled to when loaded through a memory mapping. It backs the instances of the snapshot, so it is kept
+   * until the capture is unloaded.
+   */
+  private var spoolFile: Path? = null
+
   var hasNativeAllocations = false
     private set
   private val activityFragmentLeakFilter = ActivityFragmentLeakInstanceFilter(classDb)
@@ -88,6 +129,10 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   private val allInstances: Set<InstanceObject>
     get() = HashSet<InstanceObject>(instanceIndex.size).also { instanceIndex.values.forEach(it::add) }
 
+  private val retainedSizeExecutorService = MoreExecutors.listeningDecorator(
+    Executors.newSingleThreadExecutor(ThreadFactoryBuilder().setNameFormat("memory-heapdump-retainedsizes").build())
+  )
+
   @VisibleForTesting
   val instanceFilterExecutor get() = executorService
 
@@ -103,23 +148,65 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   override fun getEndTimeNs() = heapDumpInfo.endTime
   override fun getClassDatabase() = classDb
   override fun getSession() = _session
+  override fun getInfoMessage() =
+    if (!hasLoaded || retainedSizesFuture.isDone) null else "Computing retained sizes: ${(retainedSizeProgress * 100).toInt()}%"
 
-  override fun load(queryRange: Range?, queryJoiner: Executor?) = doGetBytesRequest().let { response ->
-    if (response.contents === ByteString.EMPTY) false.also { isLoadingError = true }
-    else true.also {
-      ideProfilerServices.featureTracker.trackLoading(Loading.Type.HPROF,
-                                                      sizeKb = countBytes() / 1024,
-                                                      measure = { instanceIndex.size.toLong() }) {
-        load(InMemoryBuffer(response.contents.asReadOnlyByteBuffer()))
-      }
+  override fun load(queryRange: Range?, queryJoiner: Executor?): Boolean {
+    val (buffer, sizeKb) = fetchHeapDump() ?: return false.also { isLoadingError = true }
+    ideProfilerServices.featureTracker.trackLoading(Loading.Type.HPROF,
+                                                    sizeKb = sizeKb,
+                                                    measure = { instanceIndex.size.toLong() }) {
+      load(buffer)
+    }
+    return true
+  }
+
+  /**
+   * Returns the buffer to parse the heap dump from along with its size in KB, or null if there is no heap dump. The fetched bytes are
+   * not referenced from the caller, so when the dump is memory-mapped they can be collected before parsing starts.
+   */
+  private fun fetchHeapDump(): Pair<HprofBuffer, Int>? {
+    val contents = doGetBytesRequest().contents
+    if (contents === ByteString.EMPTY) {
+      return null
+    }
+    val mapped = if (ideProfilerServices.featureConfig.isMemoryMappedHprofLoadingEnabled) spoolToMappedBuffer(contents) else null
+    return Pair(mapped ?: InMemoryBuffer(contents.asReadOnlyByteBuffer()), contents.size() / 1024)
+  }
+
+  /**
+   * Writes the heap dump to a temporary file and maps it into memory, so that the snapshot reads the dump from the page cache instead
+   * of keeping it on the IDE heap. Returns null if the file cannot be written, in which case the dump is parsed from memory.
+   */
+  private fun spoolToMappedBuffer(contents: ByteString): MemoryMappedFileBuffer? {
+    try {
+      val file = Files.createTempFile("heapdump", ".hprof")
+      spoolFile = file
+      Files.newOutputStream(file).use { contents.writeTo(it) }
+      return MemoryMappedFileBuffer(file.toFile())
+    }
+    catch (e: IOException) {
+      Logger.getInstance(HeapDumpCaptureObject::class.java).warn("Unable to spool the heap dump to disk, loading it in memory", e)
+      spoolFile?.let { deleteSpoolFile(it) }
+      spoolFile = null
+      return null
+    }
+  }
+
+  private fun deleteSpoolFile(file: Path) {
+    try {
+      Files.deleteIfExists(file)
+    }
+    catch (e: IOException) {
+      // The file may still be mapped, e.g. on Windows. Leave it to the JVM to remove it on exit.
+      file.toFile().deleteOnExit()
     }
   }
 
   @VisibleForTesting
-  fun load(buffer: InMemoryBuffer) {
+  fun load(buffer: HprofBuffer) {
     val nativeRegistryPostProcessor = NativeRegistryPostProcessor()
     val snapshot = Snapshot.createSnapshot(buffer, proguardMap ?: ProguardMap(), listOf(nativeRegistryPostProcessor))
-    snapshot.computeRetainedSizes()
     hasNativeAllocations = nativeRegistryPostProcessor.hasNativeAllocations
     hasLoaded = true
     val javaLangClassObject = snapshot.heaps.stream()
@@ -127,19 +214,19 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
       .map { createClassObjectInstance(null, it) }
       .findAny().orElse(null)
     val heapSetMappings = snapshot.heaps.associateWith { HeapSet(this, it.name, it.id) }
-    val addInstanceToRightHeap: (HeapSet, Long, InstanceObject) -> Unit =
+    val addInstanceToRightHeap: (HeapSet, Instance, InstanceObject) -> Unit =
       AllHeapSet(this, heapSetMappings.values.toTypedArray()).let { superHeap ->
         superHeap.clearClassifierSets() // forces sub-classifier creation
         _heapSets[superHeap.id] = superHeap
-        { _, id, classInst -> addInstance(superHeap, id, classInst) }
+        { _, instance, classInst -> addInstance(superHeap, instance, classInst) }
       }
     heapSetMappings.forEach { (heap, heapSet) ->
-      heap.classes.forEach { addInstanceToRightHeap(heapSet, it.id, createClassObjectInstance(javaLangClassObject, it)) }
+      heap.classes.forEach { addInstanceToRightHeap(heapSet, it, createClassObjectInstance(javaLangClassObject, it)) }
       heap.forEachInstance(object : TObjectProcedure<Instance> {
         override fun execute(instance: Instance): Boolean {
           assert(ClassDb.JAVA_LANG_CLASS != instance.classObj!!.className)
           val classEntry = instance.classObj!!.makeEntry()
-          addInstanceToRightHeap(heapSet, instance.id, HeapDumpInstanceObject(this@HeapDumpCaptureObject, instance, classEntry, null))
+          addInstanceToRightHeap(heapSet, instance, HeapDumpInstanceObject(this@HeapDumpCaptureObject, instance, classEntry, null))
           return true
         }
       })
@@ -147,18 +234,98 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
         _heapSets.put(heap.id, heapSet)
       }
     }
+
+    val graph = buildHeapGraph(snapshot)
+    // Depths are needed right away, e.g. by the leak filter, but are cheap to compute compared to retained sizes.
+    depths = graph.computeDepths()
+    val shallowSizes = LongArray(nodes.size) { nodes[it].size.toLong() }
+    retainedSizeExecutorService.execute {
+      try {
+        computeRetainedSizes(graph, shallowSizes)
+        retainedSizesFuture.set(null)
+      }
+      catch (t: Throwable) {
+        retainedSizesFuture.setException(t)
+      }
+    }
   }
 
-  private fun addInstance(heapSet: HeapSet, id: Long, instObj: InstanceObject) {
-    assert(!instanceIndex.containsKey(id))
-    instanceIndex.put(id, instObj)
+  private fun addInstance(heapSet: HeapSet, instance: Instance, instObj: InstanceObject) {
+    assert(!instanceIndex.containsKey(instance.id))
+    instanceIndex.put(instance.id, instObj)
+    nodeIndex.put(instance.id, nodes.size)
+    nodes.add(instance)
     heapSet.addDeltaInstanceObject(instObj)
   }
 
+  private fun buildHeapGraph(snapshot: Snapshot): HeapGraph {
+    val roots = snapshot.gcRoots.asSequence()
+      .mapNotNull { it.referredInstance }
+      .map { nodeIndex.get(it.id) }
+      .filter { it >= 0 }
+      .toList().toIntArray()
+    return HeapGraph.build(nodes.size, roots) { node, consumer ->
+      nodes[node].hardReverseReferences.forEach { referrer ->
+        val referrerNode = nodeIndex.get(referrer.id)
+        if (referrerNode >= 0) {
+          consumer.accept(referrerNode)
+        }
+      }
+    }
+  }
+
+  private fun computeRetainedSizes(graph: HeapGraph, shallowSizes: LongArray) {
+    var reportedStep = 0
+    val sizes = graph.computeRetainedSizes(shallowSizes) { fraction ->
+      retainedSizeProgress = fraction
+      val step = (fraction * PROGRESS_STEPS).toInt()
+      if (step > reportedStep && step < PROGRESS_STEPS) {
+        reportedStep = step
+        deferredAttributeListeners.forEach { (listener, executor) -> executor.execute(listener) }
+      }
+    }
+    nodes.forEachIndexed { node, instance ->
+      if (instance is ClassObj) {
+        classDb.getEntry(instance.id).setRetainedSize(sizes[node])
+      }
+    }
+    retainedSizes = sizes
+  }
+
+  /**
+   * Returns the distance of the instance to the nearest GC root, or [Integer.MAX_VALUE] if it is unreachable.
+   */
+  fun depthOf(instance: Instance): Int {
+    val node = nodeIndex.get(instance.id)
+    return depths?.takeIf { node >= 0 }?.get(node) ?: instance.distanceToGcRoot
+  }
+
+  /**
+   * Returns the retained size of the instance, or 0 while retained sizes are being computed.
+   */
+  fun retainedSizeOf(instance: Instance): Long {
+    val node = nodeIndex.get(instance.id)
+    return retainedSizes?.takeIf { node >= 0 }?.get(node) ?: instance.totalRetainedSize
+  }
+
+  override fun addDeferredAttributeListener(listener: Runnable, executor: Executor) {
+    deferredAttributeListeners.add(Pair(listener, executor))
+    retainedSizesFuture.addListener({
+      _heapSets.values.forEach { it.invalidateRetainedSizes() }
+      listener.run()
+    }, executor)
+  }
+
   override fun isDoneLoading() = hasLoaded || isLoadingError
   override fun isError() = isLoadingError
   override fun unload() {
     executorService.shutdownNow()
+    retainedSizeExecutorService.shutdownNow()
+    deferredAttributeListeners.clear()
+    // The mapping is not disposed explicitly since running tasks and the UI may still read instances from it. It is released when the
+    // snapshot is garbage collected. A mapped file can be deleted on Unix, otherwise it is deleted on exit.
+    spoolFile?.let { deleteSpoolFile(it) }
+    spoolFile = null
   }
 
   override fun getClassifierAttributes() =
@@ -237,7 +404,12 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
 
   private fun countBytes() = doGetBytesRequest().serializedSize
 
+  // The retained size of the class is set once retained sizes have been computed.
   private fun ClassObj.makeEntry(name: String = this.className) =
-    if (superClassObj != null) classDb.registerClass(id, superClassObj!!.id, name, totalRetainedSize)
-    else classDb.registerClass(id, name, totalRetainedSize)
+    if (superClassObj != null) classDb.registerClass(id, superClassObj!!.id, name)
+    else classDb.registerClass(id, name)
+
+  companion object {
+    private const val PROGRESS_STEPS = 10
+  }
 }
\ No newline at end of file
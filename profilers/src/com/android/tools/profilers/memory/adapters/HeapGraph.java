@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A compact copy of the hard references between the instances of a heap dump, from which the depth and the retained size of every
+ * instance are computed.
+ * <p>
+ * Instances are identified by dense node indices, and the references are kept in compressed sparse row form in both directions: the
+ * referrers of node {@code v} are {@code myPredecessors[myPredecessorStarts[v]]} up to {@code myPredecessors[myPredecessorStarts[v + 1]]},
+ * and likewise for the referenced nodes. Building the graph and computing depths run on all cores. Retained sizes are derived from the
+ * dominator tree, computed with the Semi-NCA algorithm over a virtual root that references every GC root.
+ */
+final class HeapGraph {
+  static final int UNREACHABLE = Integer.MAX_VALUE;
+
+  private static final int NO_NODE = -1;
+  private static final int PROGRESS_INTERVAL = 1 << 16;
+  private static final int FRONTIER_CHUNK_SIZE = 1 << 12;
+
+  private final int myNodeCount;
+  @NotNull private final int[] myRoots;
+  @NotNull private final int[] myPredecessorStarts;
+  @NotNull private final int[] myPredecessors;
+  @NotNull private final int[] mySuccessorStarts;
+  @NotNull private final int[] mySuccessors;
+
+  interface ReferenceSource {
+    /**
+     * Calls the consumer with the node of every instance holding a hard reference to the given node. It is called concurrently for
+     * different nodes, and twice for each node, which must report the same referrers both times.
+     */
+    void forEachReferrer(int node, @NotNull IntConsumer consumer);
+  }
+
+  private HeapGraph(int nodeCount, @NotNull int[] roots, @NotNull int[] predecessorStarts, @NotNull int[] predecessors) {
+    myNodeCount = nodeCount;
+    myRoots = roots;
+    myPredecessorStarts = predecessorStarts;
+    myPredecessors = predecessors;
+
+    // Transpose the referrers into the referenced nodes.
+    AtomicIntegerArray cursors = new AtomicIntegerArray(nodeCount + 1);
+    IntStream.range(0, nodeCount).parallel().forEach(v -> {
+      for (int i = predecessorStarts[v]; i < predecessorStarts[v + 1]; i++) {
+        cursors.incrementAndGet(predecessors[i] + 1);
+      }
+    });
+    mySuccessorStarts = new int[nodeCount + 1];
+    for (int v = 0; v < nodeCount; v++) {
+      mySuccessorStarts[v + 1] = mySuccessorStarts[v] + cursors.get(v + 1);
+      cursors.set(v, mySuccessorStarts[v]);
+    }
+    mySuccessors = new int[predecessors.length];
+    IntStream.range(0, nodeCount).parallel().forEach(v -> {
+      for (int i = predecessorStarts[v]; i < predecessorStarts[v + 1]; i++) {
+        mySuccessors[cursors.getAndIncrement(predecessors[i])] = v;
+      }
+    });
+  }
+
+  /**
+   * @param nodeCount the number of instances
+   * @param roots the nodes referenced from GC roots
+   * @param source the referrers of each node
+   */
+  @NotNull
+  static HeapGraph build(int nodeCount, @NotNull int[] roots, @NotNull ReferenceSource source) {
+    int[] starts = new int[nodeCount + 1];
+    IntStream.range(0, nodeCount).parallel().forEach(v -> {
+      int[] count = new int[1];
+      source.forEachReferrer(v, referrer -> count[0]++);
+      starts[v + 1] = count[0];
+    });
+    Arrays.parallelPrefix(starts, Integer::sum);
+    int[] predecessors = new int[starts[nodeCount]];
+    IntStream.range(0, nodeCount).parallel().forEach(v -> {
+      int[] cursor = {starts[v]};
+      source.forEachReferrer(v, referrer -> predecessors[cursor[0]++] = referrer);
+    });
+    return new HeapGraph(nodeCount, roots, starts, predecessors);
+  }
+
+  /**
+   * Returns the length of the shortest path from a GC root to each node, 0 for the nodes referenced by GC roots and {@link #UNREACHABLE}
+   * for the nodes that cannot be reached. Each level of the breadth-first search is expanded in parallel.
+   */
+  @NotNull
+  int[] computeDepths() {
+    AtomicIntegerArray depths = new AtomicIntegerArray(myNodeCount);
+    for (int v = 0; v < myNodeCount; v++) {
+      depths.set(v, UNREACHABLE);
+    }
+    int[] frontier = Arrays.stream(myRoots).filter(root -> depths.compareAndSet(root, UNREACHABLE, 0)).toArray();
+    for (int depth = 1; frontier.length > 0; depth++) {
+      int[] current = frontier;
+      int nextDepth = depth;
+      int chunkCount = (current.length + FRONTIER_CHUNK_SIZE - 1) / FRONTIER_CHUNK_SIZE;
+      int[][] chunks = IntStream.range(0, chunkCount).parallel()
+        .mapToObj(chunk -> expand(current, chunk * FRONTIER_CHUNK_SIZE, Math.min(current.length, (chunk + 1) * FRONTIER_CHUNK_SIZE),
+                                  depths, nextDepth))
+        .toArray(int[][]::new);
+      frontier = chunks.length == 1 ? chunks[0] : Arrays.stream(chunks).flatMapToInt(Arrays::stream).toArray();
+    }
+    int[] result = new int[myNodeCount];
+    for (int v = 0; v < myNodeCount; v++) {
+      result[v] = depths.get(v);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the nodes first reached from {@code frontier[from]} up to {@code frontier[to]}, after setting their depth.
+   */
+  @NotNull
+  private int[] expand(@NotNull int[] frontier, int from, int to, @NotNull AtomicIntegerArray depths, int depth) {
+    int[] reached = new int[16];
+    int size = 0;
+    for (int i = from; i < to; i++) {
+      int v = frontier[i];
+      for (int j = mySuccessorStarts[v]; j < mySuccessorStarts[v + 1]; j++) {
+        int w = mySuccessors[j];
+        // Most references lead to nodes reached already, which a plain read is enough to skip.
+        if (depths.get(w) == UNREACHABLE && depths.compareAndSet(w, UNREACHABLE, depth)) {
+          if (size == reached.length) {
+            reached = Arrays.copyOf(reached, size * 2);
+          }
+          reached[size++] = w;
+        }
+      }
+    }
+    return Arrays.copyOf(reached, size);
+  }
+
+  /**
+   * Returns the retained size of each node, which is the sum of the shallow sizes of the nodes it dominates, itself included. Nodes that
+   * cannot be reached from a GC root retain nothing.
+   *
+   * @param shallowSizes the shallow size of each node
+   * @param progress called with the fraction of the work done so far
+   * @throws CancellationException if the calling thread is interrupted
+   */
+  @NotNull
+  long[] computeRetainedSizes(@NotNull long[] shallowSizes, @NotNull DoubleConsumer progress) {
+    // All arrays below are indexed by depth-first preorder number, 0 being the virtual root.
+    int[] preorder = new int[myNodeCount];
+    Arrays.fill(preorder, NO_NODE);
+    int[] vertex = new int[myNodeCount + 1];
+    int[] parent = new int[myNodeCount + 1];
+    int count = depthFirstSearch(preorder, vertex, parent);
+    reportProgress(progress, 0.2);
+
+    boolean[] isRoot = new boolean[myNodeCount];
+    for (int root : myRoots) {
+      isRoot[root] = true;
+    }
+    int[] semi = new int[count];
+    int[] label = new int[count];
+    int[] ancestor = new int[count];
+    for (int i = 0; i < count; i++) {
+      semi[i] = i;
+      label[i] = i;
+      ancestor[i] = NO_NODE;
+    }
+    int[] path = new int[count];
+    for (int i = count - 1; i > 0; i--) {
+      int v = vertex[i];
+      int s = isRoot[v] ? 0 : parent[i];
+      for (int j = myPredecessorStarts[v]; j < myPredecessorStarts[v + 1] && s > 0; j++) {
+        int predecessor = preorder[myPredecessors[j]];
+        if (predecessor != NO_NODE) {
+          // A referrer numbered before v has not been processed yet and is its own semidominator.
+          s = Math.min(s, predecessor < i ? predecessor : semi[eval(predecessor, ancestor, label, semi, path)]);
+        }
+      }
+      semi[i] = s;
+      ancestor[i] = parent[i];
+      if (i % PROGRESS_INTERVAL == 0) {
+        reportProgress(progress, 0.2 + 0.7 * (count - i) / count);
+      }
+    }
+
+    // The immediate dominator of a node is its nearest ancestor in the depth-first tree that is not below its semidominator.
+    int[] dominator = ancestor;
+    dominator[0] = 0;
+    for (int i = 1; i < count; i++) {
+      int d = parent[i];
+      while (d > semi[i]) {
+        d = dominator[d];
+      }
+      dominator[i] = d;
+    }
+    reportProgress(progress, 0.95);
+
+    // A node is numbered after its immediate dominator, so sizes can be accumulated in reverse preorder.
+    long[] retained = new long[count];
+    for (int i = 1; i < count; i++) {
+      retained[i] = shallowSizes[vertex[i]];
+    }
+    for (int i = count - 1; i > 0; i--) {
+      retained[dominator[i]] += retained[i];
+    }
+    long[] result = new long[myNodeCount];
+    for (int i = 1; i < count; i++) {
+      result[vertex[i]] = retained[i];
+    }
+    reportProgress(progress, 1);
+    return result;
+  }
+
+  /**
+   * Numbers the nodes reachable from the virtual root in depth-first preorder. Returns the number of numbered nodes, the virtual root
+   * included.
+   */
+  private int depthFirstSearch(@NotNull int[] preorder, @NotNull int[] vertex, @NotNull int[] parent) {
+    int[] stack = new int[myNodeCount];
+    int[] cursors = new int[myNodeCount];
+    vertex[0] = NO_NODE;
+    parent[0] = 0;
+    int count = 1;
+    for (int root : myRoots) {
+      if (preorder[root] != NO_NODE) {
+        continue;
+      }
+      preorder[root] = count;
+      vertex[count] = root;
+      parent[count] = 0;
+      count++;
+      int top = 0;
+      stack[0] = root;
+      cursors[0] = mySuccessorStarts[root];
+      while (top >= 0) {
+        int v = stack[top];
+        if (cursors[top] == mySuccessorStarts[v + 1]) {
+          top--;
+          continue;
+        }
+        int w = mySuccessors[cursors[top]++];
+        if (preorder[w] == NO_NODE) {
+          preorder[w] = count;
+          vertex[count] = w;
+          parent[count] = preorder[v];
+          count++;
+          top++;
+          stack[top] = w;
+          cursors[top] = mySuccessorStarts[w];
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the node with the smallest semidominator on the path from {@code v} up to, but excluding, the root of its tree in the forest
+   * of processed nodes, compressing the path on the way.
+   */
+  private static int eval(int v, @NotNull int[] ancestor, @NotNull int[] label, @NotNull int[] semi, @NotNull int[] path) {
+    if (ancestor[v] == NO_NODE) {
+      return v;
+    }
+    int size = 0;
+    for (int u = v; ancestor[ancestor[u]] != NO_NODE; u = ancestor[u]) {
+      path[size++] = u;
+    }
+    while (size > 0) {
+      int u = path[--size];
+      int a = ancestor[u];
+      if (semi[label[a]] < semi[label[u]]) {
+        label[u] = label[a];
+      }
+      ancestor[u] = ancestor[a];
+    }
+    return label[v];
+  }
+
+  private static void reportProgress(@NotNull DoubleConsumer progress, double fraction) {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException();
+    }
+    progress.accept(fraction);
+  }
+}
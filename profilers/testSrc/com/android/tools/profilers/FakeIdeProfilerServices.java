@@ -114,6 +114,16 @@ public class FakeIdeProfilerServices implements IdeProfilerServices {
    */
   private boolean myCustomEventVisualizationEnabled = false;
 
+  /**
+   * Whether heap dumps are spooled to disk and parsed through a memory mapping.
+   */
+  private boolean myMemoryMappedHprofLoadingEnabled = false;
+
+  /**
+   * Whether the call trees of ART traces are built on several threads.
+   */
+  private boolean myParallelArtTraceParsingEnabled = false;
+
   /**
    * Whether we support profileable builds.
    */
@@ -241,6 +251,16 @@ public class FakeIdeProfilerServices implements IdeProfilerServices {
         return false;
       }
 
+      @Override
+      public boolean isMemoryMappedHprofLoadingEnabled() {
+        return myMemoryMappedHprofLoadingEnabled;
+      }
+
+      @Override
+      public boolean isParallelArtTraceParsingEnabled() {
+        return myParallelArtTraceParsingEnabled;
+      }
+
       @Override
       public boolean isPerformanceMonitoringEnabled() {
         return false;
@@ -419,6 +439,14 @@ public class FakeIdeProfilerServices implements IdeProfilerServices {
 
   public void enableCustomEventVisualization(boolean enabled) { myCustomEventVisualizationEnabled = enabled; }
 
+  public void enableMemoryMappedHprofLoading(boolean enabled) {
+    myMemoryMappedHprofLoadingEnabled = enabled;
+  }
+
+  public void enableParallelArtTraceParsing(boolean enabled) {
+    myParallelArtTraceParsingEnabled = enabled;
+  }
+
   public void setSystemTracePowerProfilerDisplayMode(PowerProfilerDisplayMode mode) {
     mySystemTracePowerProfilerDisplayMode = mode;
   }
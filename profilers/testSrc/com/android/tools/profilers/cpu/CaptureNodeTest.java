@@ -90,6 +90,41 @@ public class CaptureNodeTest {
     assertThat(childA.getParent()).isEqualTo(realParent);
     assertThat(realParent.getChildAt(0)).isEqualTo(childA);
     assertThat(visualParent.getChildAt(0)).isEqualTo(childA);
+    assertThat(realParent.hasSequentialChildren()).isTrue();
+    assertThat(visualParent.hasSequentialChildren()).isFalse();
+  }
+
+  @Test
+  public void childrenKeepInsertionOrderAcrossGrowthAndTrimming() {
+    CaptureNode parent = new CaptureNode(new StubCaptureNodeModel());
+    assertThat(parent.getChildren()).isEmpty();
+    CaptureNode[] children = new CaptureNode[5];
+    for (int i = 0; i < children.length; i++) {
+      children[i] = new CaptureNode(new StubCaptureNodeModel());
+      parent.addChild(children[i]);
+    }
+    assertThat(parent.getChildren()).containsExactlyElementsIn(children).inOrder();
+
+    parent.trimToSize();
+    assertThat(parent.getChildCount()).isEqualTo(children.length);
+    assertThat(parent.getChildren()).containsExactlyElementsIn(children).inOrder();
+    assertThat(parent.getLastChild()).isSameAs(children[children.length - 1]);
+
+    parent.clearChildren();
+    assertThat(parent.getChildCount()).isEqualTo(0);
+    assertThat(parent.getChildren()).isEmpty();
+  }
+
+  @Test
+  public void descendantsStreamHandlesDeepTrees() {
+    CaptureNode root = new CaptureNode(new StubCaptureNodeModel());
+    CaptureNode node = root;
+    for (int i = 0; i < 100_000; i++) {
+      CaptureNode child = new CaptureNode(new StubCaptureNodeModel());
+      node.addChild(child);
+      node = child;
+    }
+    assertThat(root.getDescendantsStream().count()).isEqualTo(100_001L);
   }
 
   @Test
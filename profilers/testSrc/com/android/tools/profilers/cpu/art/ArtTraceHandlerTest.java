@@ -22,11 +22,13 @@ import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
+import java.util.TreeMap;
 import org.junit.Test;
 
 public class ArtTraceHandlerTest {
@@ -97,6 +99,32 @@ public class ArtTraceHandlerTest {
     }
   }
 
+  @Test
+  public void parallelModeBuildsTheSameTrees() throws IOException {
+    for (String trace : new String[]{"basic.trace", "valid_trace.trace"}) {
+      File file = CpuProfilerTestUtils.getTraceFile(trace);
+      assertEquals(describeTrees(file, false), describeTrees(file, true));
+    }
+  }
+
+  /**
+   * Returns a description of every node of every thread, in pre-order and by thread id.
+   */
+  private static Map<Integer, String> describeTrees(File trace, boolean parallel) throws IOException {
+    ArtTraceHandler handler = new ArtTraceHandler(parallel);
+    new VmTraceParser(trace, handler).parse();
+
+    Map<Integer, String> descriptions = new TreeMap<>();
+    for (Map.Entry<CpuThreadInfo, CaptureNode> entry : handler.getThreadsGraph().entrySet()) {
+      StringBuilder description = new StringBuilder(entry.getKey().getName()).append('\n');
+      entry.getValue().getDescendantsStream().forEach(
+        node -> description.append(String.format("%d %s global: %d-%d, thread: %d-%d\n", node.getDepth(), node.getData().getId(),
+                                                 node.getStartGlobal(), node.getEndGlobal(), node.getStartThread(), node.getEndThread())));
+      descriptions.put(entry.getKey().getId(), description.toString());
+    }
+    return descriptions;
+  }
+
   private static CaptureNode parseCaptureNode() throws IOException {
     ArtTraceHandler handler = new ArtTraceHandler();
     VmTraceParser parser = new VmTraceParser(CpuProfilerTestUtils.getTraceFile("basic.trace"), handler);
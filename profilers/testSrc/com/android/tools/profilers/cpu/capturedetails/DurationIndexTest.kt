@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.cpu.CaptureNode
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.random.Random
+
+class DurationIndexTest {
+  private val random = Random(7)
+
+  @Test
+  fun indexedTotalsMatchSumOverNodes() {
+    // Enough overlapping and nested nodes for the index to be used.
+    val nodes = List(500) {
+      val start = random.nextLong(1_000_000_000L, 1_000_010_000L)
+      newNode("method", start, start + random.nextLong(0, 500), start + random.nextLong(0, 300))
+    }
+    val index = DurationIndex(nodes)
+    repeat(1000) {
+      val min = random.nextDouble(999_999_000.0, 1_000_011_000.0)
+      val range = Range(min, min + random.nextDouble(0.0, 3000.0))
+      for (clockType in ClockType.values()) {
+        assertThat(index.intersectionLength(clockType, range))
+          .isWithin(1e-3).of(nodes.sumOf { Aggregate.getIntersection(range, it, clockType) })
+      }
+      assertThat(index.overlaps(ClockType.GLOBAL, range)).isEqualTo(nodes.any { it.start < range.max && range.min < it.end })
+    }
+  }
+
+  @Test
+  fun emptyRangeHasNoDuration() {
+    val nodes = List(100) { newNode("method", it * 10L, it * 10L + 5, it * 10L + 5) }
+    val index = DurationIndex(nodes)
+    assertThat(index.intersectionLength(ClockType.GLOBAL, Range(42.0, 42.0))).isEqualTo(0.0)
+    assertThat(index.intersectionLength(ClockType.GLOBAL, Range())).isEqualTo(0.0)
+    assertThat(index.overlaps(ClockType.GLOBAL, Range(42.0, 42.0))).isTrue()
+    assertThat(index.overlaps(ClockType.GLOBAL, Range(46.0, 46.0))).isFalse()
+  }
+
+  @Test
+  fun bottomUpTotalsCountRecursiveCallsOnce() {
+    // A -> B -> B -> ... with 100 nested calls to B, each 1 shorter on both sides.
+    val root = newNode("A", 0, 1000, 1000)
+    var parent = root
+    for (depth in 1..100) {
+      val child = newNode("B", depth.toLong(), 1000L - depth, 1000L - depth)
+      parent.addChild(child)
+      parent = child
+    }
+    val b = Aggregate.BottomUp.rootAt(root).children.single { it.nodes.size == 100 }
+    val summary = b.totalOver(ClockType.GLOBAL, Range(0.0, 500.0))
+    assertThat(summary.total).isEqualTo(499.0)
+    // Every moment of [1, 500] is spent in the code of one of the calls to B.
+    assertThat(summary.childrenTotal).isEqualTo(0.0)
+  }
+
+  private fun newNode(method: String, start: Long, end: Long, endThread: Long) = CaptureNode(SingleNameModel(method)).apply {
+    startGlobal = start
+    endGlobal = end
+    startThread = start
+    this.endThread = endThread
+  }
+}
@@ -44,6 +44,7 @@ import com.android.tools.profilers.memory.adapters.instancefilters.CaptureObject
 import com.google.common.truth.Truth;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Collection;
@@ -247,6 +248,96 @@ public class HeapDumpCaptureObjectTest {
     Truth.assertThat(capture.getInstances().count()).isEqualTo(allInstanceCount);
   }
 
+  @Test
+  public void testRetainedSizesAreComputedAfterLoading() throws Exception {
+    // - 1 holds reference to 2
+    // - single root object in default heap
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(0), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    HeapDumpCaptureObject capture = loadHeapDump();
+
+    CountDownLatch listenerLatch = new CountDownLatch(1);
+    capture.addDeferredAttributeListener(listenerLatch::countDown, Runnable::run);
+    capture.getRetainedSizesFuture().get();
+    listenerLatch.await();
+    assertNull(capture.getInfoMessage());
+
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    Classifier classClassifier = ClassSet.createDefaultClassifier();
+    classClassifier.partition(
+      Collections.emptyList(), testHeap.getInstancesStream().collect(HashSet::new, HashSet::add, HashSet::addAll));
+    InstanceObject instance0 = findChildClassSetWithName(classClassifier, "Class0").getInstancesStream().findFirst().orElse(null);
+    InstanceObject instance1 = findChildClassSetWithName(classClassifier, "Class1").getInstancesStream().findFirst().orElse(null);
+    assertEquals(instance1.getShallowSize(), instance1.getRetainedSize());
+    assertEquals(instance0.getShallowSize() + instance1.getShallowSize(), instance0.getRetainedSize());
+    assertEquals(0, instance0.getDepth());
+    assertEquals(1, instance1.getDepth());
+    capture.unload();
+  }
+
+  @Test
+  public void testMemoryMappedLoadingMatchesInMemoryLoading() throws Exception {
+    Path hprof = resolveWorkspacePath("tools/adt/idea/profilers/testData/hprofs/displayingbitmaps_leakedActivity.hprof");
+    myTransportService.addFile(Long.toString(0), ByteString.copyFrom(Files.readAllBytes(hprof)));
+
+    HeapDumpCaptureObject inMemoryCapture = loadHeapDump();
+    myIdeProfilerServices.enableMemoryMappedHprofLoading(true);
+    HeapDumpCaptureObject mappedCapture = loadHeapDump();
+
+    assertFalse(mappedCapture.isError());
+    Truth.assertThat(mappedCapture.getInstances().count()).isEqualTo(inMemoryCapture.getInstances().count());
+    Truth.assertThat(mappedCapture.getHeapSets().stream().map(HeapSet::getName).collect(Collectors.toSet()))
+      .isEqualTo(inMemoryCapture.getHeapSets().stream().map(HeapSet::getName).collect(Collectors.toSet()));
+    // Instance fields are read from the mapped file on demand.
+    Truth.assertThat(mappedCapture.getInstances().mapToInt(instance -> instance.getFields().size()).sum())
+      .isEqualTo(inMemoryCapture.getInstances().mapToInt(instance -> instance.getFields().size()).sum());
+
+    inMemoryCapture.unload();
+    mappedCapture.unload();
+  }
+
+  @NotNull
+  @Test
+  public void testDeferredAttributeListenerAddedBeforeLoadingWaitsForRetainedSizes() throws Exception {
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(0), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(0).setEndTime(1).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getChannel()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(),
+                                myStage.getStudioProfilers().getIdeServices());
+
+    CountDownLatch listenerLatch = new CountDownLatch(1);
+    capture.addDeferredAttributeListener(listenerLatch::countDown, Runnable::run);
+    assertEquals(1, listenerLatch.getCount());
+
+    capture.load(null, null);
+    listenerLatch.await();
+    assertTrue(capture.getRetainedSizesFuture().isDone());
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    Classifier classClassifier = ClassSet.createDefaultClassifier();
+    classClassifier.partition(
+      Collections.emptyList(), testHeap.getInstancesStream().collect(HashSet::new, HashSet::add, HashSet::addAll));
+    InstanceObject instance0 = findChildClassSetWithName(classClassifier, "Class0").getInstancesStream().findFirst().orElse(null);
+    InstanceObject instance1 = findChildClassSetWithName(classClassifier, "Class1").getInstancesStream().findFirst().orElse(null);
+    assertEquals(instance0.getShallowSize() + instance1.getShallowSize(), instance0.getRetainedSize());
+  }
+
+  private HeapDumpCaptureObject loadHeapDump() {
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(0).setEndTime(1).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getChannel()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(),
+                                myStage.getStudioProfilers().getIdeServices());
+    capture.load(null, null);
+    assertTrue(capture.isDoneLoading());
+    return capture;
+  }
+
   private static void verifyInstance(@NotNull InstanceObject instance,
                                      @NotNull String valueText,
                                      int depth,
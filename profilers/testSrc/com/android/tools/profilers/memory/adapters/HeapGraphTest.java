@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class HeapGraphTest {
+  @Test
+  public void chainIsRetainedByItsHead() {
+    // 0 -> 1 -> 2 -> 3
+    HeapGraph graph = buildGraph(4, new int[]{0}, 0, 1, 1, 2, 2, 3);
+    assertThat(graph.computeRetainedSizes(new long[]{1, 2, 4, 8}, fraction -> {})).asList().containsExactly(15L, 14L, 12L, 8L).inOrder();
+    assertThat(graph.computeDepths()).asList().containsExactly(0, 1, 2, 3).inOrder();
+  }
+
+  @Test
+  public void sharedNodeIsRetainedByCommonDominator() {
+    // 0 -> 1 -> 3, 0 -> 2 -> 3: neither 1 nor 2 retains 3.
+    HeapGraph graph = buildGraph(4, new int[]{0}, 0, 1, 0, 2, 1, 3, 2, 3);
+    assertThat(graph.computeRetainedSizes(new long[]{1, 2, 4, 8}, fraction -> {})).asList().containsExactly(15L, 2L, 4L, 8L).inOrder();
+    assertThat(graph.computeDepths()).asList().containsExactly(0, 1, 1, 2).inOrder();
+  }
+
+  @Test
+  public void nodeReferencedFromSeveralRootsIsRetainedByNone() {
+    // Roots 0 and 1 both reference 2, which references 3 in a cycle.
+    HeapGraph graph = buildGraph(4, new int[]{0, 1}, 0, 2, 1, 2, 2, 3, 3, 2);
+    assertThat(graph.computeRetainedSizes(new long[]{1, 2, 4, 8}, fraction -> {})).asList().containsExactly(1L, 2L, 12L, 8L).inOrder();
+    assertThat(graph.computeDepths()).asList().containsExactly(0, 0, 1, 2).inOrder();
+  }
+
+  @Test
+  public void unreachableNodesRetainNothing() {
+    // 2 -> 0 but nothing reaches 2.
+    HeapGraph graph = buildGraph(3, new int[]{0}, 0, 1, 2, 0);
+    assertThat(graph.computeRetainedSizes(new long[]{1, 2, 4}, fraction -> {})).asList().containsExactly(3L, 2L, 0L).inOrder();
+    assertThat(graph.computeDepths()).asList().containsExactly(0, 1, HeapGraph.UNREACHABLE).inOrder();
+  }
+
+  @Test
+  public void progressIsReportedUntilDone() {
+    HeapGraph graph = buildGraph(2, new int[]{0}, 0, 1);
+    List<Double> progress = new ArrayList<>();
+    graph.computeRetainedSizes(new long[]{1, 1}, progress::add);
+    assertThat(progress).isInOrder();
+    assertThat(progress.get(progress.size() - 1)).isEqualTo(1.0);
+  }
+
+  /**
+   * @param edges pairs of referrer and referenced nodes
+   */
+  @NotNull
+  private static HeapGraph buildGraph(int nodeCount, @NotNull int[] roots, int... edges) {
+    return HeapGraph.build(nodeCount, roots, (node, consumer) -> {
+      for (int i = 0; i < edges.length; i += 2) {
+        if (edges[i + 1] == node) {
+          consumer.accept(edges[i]);
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.testutils.TestUtils
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.profilers.cpu.CaptureNode
+import com.android.tools.profilers.cpu.art.ArtTraceParser
+import com.google.common.truth.Truth.assertThat
+import org.junit.BeforeClass
+import org.junit.Test
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import kotlin.random.Random
+
+/**
+ * Measures how fast ART method traces are turned into call trees, using a synthetic trace that is large enough for the parsing
+ * throughput to dominate.
+ */
+class ArtTraceParserPerformanceTest {
+  companion object {
+    private const val THREAD_COUNT = 8
+    private const val METHOD_COUNT = 1000
+    private const val RECORD_COUNT = 2_000_000
+    private const val MAX_DEPTH = 64
+    private const val RECORD_SIZE = 14
+    private const val WARM_UP_RUNS = 2
+    private const val MEASURED_RUNS = 5
+
+    private lateinit var trace: File
+
+    @JvmStatic
+    @BeforeClass
+    fun generateTrace() {
+      trace = File(TestUtils.createTempDirDeletedOnExit().toFile(), "synthetic.trace")
+      writeSyntheticTrace(trace)
+    }
+
+    /**
+     * Writes a dual clock, version 3 trace whose threads make random nested calls, interleaved as they would be in a real recording.
+     */
+    private fun writeSyntheticTrace(file: File) {
+      val header = buildString {
+        append("*version\n3\n")
+        append("data-file-overflow=false\nclock=dual\nelapsed-time-usec=$RECORD_COUNT\nnum-method-calls=${RECORD_COUNT / 2}\n")
+        append("clock-call-overhead-nsec=0\nvm=art\n")
+        append("*threads\n")
+        for (thread in 1..THREAD_COUNT) {
+          append("$thread\t${if (thread == 1) "main" else "Thread-$thread"}\n")
+        }
+        append("*methods\n")
+        for (method in 0 until METHOD_COUNT) {
+          append("0x${Integer.toHexString(methodId(method))}\tcom/example/Synthetic\tmethod$method\t()V\tSynthetic.java\t$method\n")
+        }
+        append("*end\n")
+      }.toByteArray()
+
+      val random = Random(42)
+      val stacks = List(THREAD_COUNT) { ArrayList<Int>() }
+      val threadTimes = IntArray(THREAD_COUNT)
+      val data = ByteBuffer.allocate(32 + RECORD_COUNT * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+      data.putInt(0x574f4c53).putShort(3).putShort(32).putLong(1_000_000L).putShort(RECORD_SIZE.toShort())
+      data.position(32)
+      for (record in 0 until RECORD_COUNT) {
+        val thread = random.nextInt(THREAD_COUNT)
+        val stack = stacks[thread]
+        // Calls still open at the end of the trace are closed by the parser.
+        val enter = stack.isEmpty() || (stack.size < MAX_DEPTH && random.nextBoolean())
+        val methodValue = if (enter) {
+          methodId(random.nextInt(METHOD_COUNT)).also { stack.add(it) }
+        }
+        else {
+          stack.removeAt(stack.size - 1) or 1
+        }
+        threadTimes[thread] += 1 + random.nextInt(3)
+        data.putShort((thread + 1).toShort()).putInt(methodValue).putInt(threadTimes[thread]).putInt(record)
+      }
+      data.flip()
+
+      FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE).use { channel ->
+        channel.write(ByteBuffer.wrap(header))
+        channel.write(data)
+      }
+    }
+
+    private fun methodId(method: Int) = 0x1000 + (method shl 2)
+  }
+
+  private val benchmark = Benchmark.Builder("ART Trace Parsing Throughput (MB per second)").setProject("Android Studio Profilers").build()
+
+  @Test
+  fun sequentialParsing() = measureThroughput("Sequential", parallel = false)
+
+  @Test
+  fun parallelParsing() = measureThroughput("Parallel", parallel = true)
+
+  @Test
+  fun parallelAndSequentialParsingBuildSameCallTrees() {
+    val sequential = ArtTraceParser(false).parse(trace, 1)
+    val parallel = ArtTraceParser(true).parse(trace, 1)
+    assertThat(parallel.threads.map { it.id to it.name }).containsExactlyElementsIn(sequential.threads.map { it.id to it.name })
+    for (thread in sequential.threads) {
+      assertSameTree(sequential.getCaptureNode(thread.id)!!, parallel.getCaptureNode(thread.id)!!)
+    }
+  }
+
+  private fun measureThroughput(name: String, parallel: Boolean) {
+    repeat(WARM_UP_RUNS) { parse(parallel) }
+    val elapsedNs = (1..MEASURED_RUNS).minOf {
+      val start = System.nanoTime()
+      parse(parallel)
+      System.nanoTime() - start
+    }
+    benchmark.log("$name-Parse", trace.length() * 1_000_000_000L / (elapsedNs * 1024 * 1024))
+  }
+
+  private fun assertSameTree(expected: CaptureNode, actual: CaptureNode) {
+    assertThat(actual.describe()).isEqualTo(expected.describe())
+    assertThat(actual.childCount).isEqualTo(expected.childCount)
+    for (i in 0 until expected.childCount) {
+      assertSameTree(expected.getChildAt(i), actual.getChildAt(i))
+    }
+  }
+
+  private fun CaptureNode.describe() = listOf(data.fullName, startGlobal, endGlobal, startThread, endThread, depth)
+
+  private fun parse(parallel: Boolean) {
+    val capture = ArtTraceParser(parallel).parse(trace, 1)
+    assertThat(capture.threads).hasSize(THREAD_COUNT)
+  }
+}
@@ -158,6 +158,26 @@ public final class AttributeDefinition implements Cloneable {
     return description != null && StringUtil.containsIgnoreCase(description, "deprecated");
   }
 
+  @Nullable
+  String getGlobalDescription() {
+    return myGlobalDescription;
+  }
+
+  @NotNull
+  Map<String, Integer> getValueMappings() {
+    return myValueMappings;
+  }
+
+  @NotNull
+  Map<String, String> getValueDescriptions() {
+    return myValueDescriptions;
+  }
+
+  @NotNull
+  Map<ResourceReference, String> getDescriptionsInStyleableContexts() {
+    return myDescriptionsInStyleableContexts == null ? Collections.emptyMap() : myDescriptionsInStyleableContexts;
+  }
+
   void addFormats(@NotNull Collection<AttributeFormat> formats) {
     myFormats.addAll(formats);
   }
@@ -35,6 +35,7 @@ import com.android.ide.common.rendering.api.StyleableResourceValue;
 import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.resources.ResourceType;
+import com.android.resources.aar.CachingData;
 import com.android.resources.base.CommentTrackingXmlPullParser;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Maps;
@@ -68,7 +69,7 @@ public final class AttributeDefinitionsImpl implements AttributeDefinitions {
 
   @Nullable private final AttributeDefinitions myFrameworkAttributeDefinitions;
 
-  private AttributeDefinitionsImpl(@Nullable AttributeDefinitions frameworkAttributeDefinitions) {
+  AttributeDefinitionsImpl(@Nullable AttributeDefinitions frameworkAttributeDefinitions) {
     myFrameworkAttributeDefinitions = frameworkAttributeDefinitions;
   }
 
@@ -87,6 +88,30 @@ public final class AttributeDefinitionsImpl implements AttributeDefinitions {
     return attributeDefinitions;
   }
 
+  /**
+   * Creates framework attribute definitions by loading them from the cache file of the given caching data if it is up-to-date, or by
+   * parsing XML files defining them otherwise. In the latter case, the cache file is written in the background.
+   *
+   * @param cachingData the cache file and versions to check it against, or null to always parse the files
+   * @param files the files to parse
+   * @return the framework attribute definitions
+   */
+  @NotNull
+  public static AttributeDefinitions loadFrameworkFiles(@Nullable CachingData cachingData, @NotNull File... files) {
+    if (cachingData == null) {
+      return parseFrameworkFiles(files);
+    }
+    AttributeDefinitionsImpl attributeDefinitions = AttributeDefinitionsSnapshot.read(cachingData);
+    if (attributeDefinitions == null) {
+      attributeDefinitions = new AttributeDefinitionsImpl(null);
+      for (File file : files) {
+        attributeDefinitions.addAttrsFromFile(file);
+      }
+      AttributeDefinitionsSnapshot.write(attributeDefinitions, cachingData);
+    }
+    return attributeDefinitions;
+  }
+
   /**
    * Creates application attribute definitions based on the given framework attribute definitions
    * and the application resource repository.
@@ -131,6 +156,24 @@ public final class AttributeDefinitionsImpl implements AttributeDefinitions {
     }
   }
 
+  @NotNull
+  Collection<AttributeDefinition> getAttributeDefinitions() {
+    return myAttrs.values();
+  }
+
+  @NotNull
+  Collection<StyleableDefinitionImpl> getStyleableDefinitions() {
+    return myStyleables.values();
+  }
+
+  void addAttributeDefinition(@NotNull AttributeDefinition attr) {
+    myAttrs.put(attr.getResourceReference(), attr);
+  }
+
+  void addStyleableDefinition(@NotNull StyleableDefinitionImpl styleable) {
+    myStyleables.put(styleable.getResourceReference(), styleable);
+  }
+
   private void createOrUpdateAttributeDefinition(@NotNull AttrResourceValue attrValue, @Nullable StyleableDefinitionImpl parentStyleable) {
     ResourceReference attrRef = attrValue.asReference();
     AttributeDefinition attr = myAttrs.get(attrRef);
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.dom.attrs;
+
+import com.android.ide.common.rendering.api.AttributeFormat;
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.rendering.api.ResourceReference;
+import com.android.resources.aar.CachingData;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads and writes framework attribute definitions in a binary file, so that the framework attrs.xml files don't have to be parsed again
+ * on each start.
+ *
+ * The file starts with a header holding the code and content versions of the {@link CachingData}, followed by a table of all strings,
+ * and by the attr and styleable records referring to the strings by their index in the table and to the attrs by their index among the
+ * attr records. The file is read into memory as a whole, so that it is not kept open while it may be replaced by a new version.
+ */
+final class AttributeDefinitionsSnapshot {
+  private static final Logger LOG = Logger.getInstance(AttributeDefinitionsSnapshot.class);
+
+  private static final int MAGIC = 0x41545452; // "ATTR"
+  /** Has to be incremented whenever the format of the file changes. */
+  private static final int FORMAT_VERSION = 1;
+  private static final int NO_STRING = -1;
+  /** The minimum sizes in bytes of the serialized items, used to validate the counts read from the file. */
+  private static final int MIN_STRING_SIZE = 4;
+  private static final int MIN_ATTR_SIZE = 28;
+  private static final int MIN_STYLEABLE_SIZE = 8;
+  private static final int VALUE_MAPPING_SIZE = 9;
+  private static final int INDEX_PAIR_SIZE = 8;
+  private static final int INDEX_SIZE = 4;
+  private static final AttributeFormat[] FORMATS = AttributeFormat.values();
+
+  private AttributeDefinitionsSnapshot() {}
+
+  /**
+   * Returns the framework attribute definitions stored in the cache file, or null if the file doesn't exist, cannot be read, or was
+   * created by a different version of the code or from different content.
+   */
+  @Nullable
+  static AttributeDefinitionsImpl read(@NotNull CachingData cachingData) {
+    Path cacheFile = cachingData.getCacheFile();
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION ||
+          !readString(buffer).equals(cachingData.getCodeVersion()) || !readString(buffer).equals(cachingData.getContentVersion())) {
+        return null;
+      }
+
+      String[] strings = new String[readCount(buffer, MIN_STRING_SIZE)];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = readString(buffer);
+      }
+
+      AttributeDefinitionsImpl attributeDefinitions = new AttributeDefinitionsImpl(null);
+      AttributeDefinition[] attrs = new AttributeDefinition[readCount(buffer, MIN_ATTR_SIZE)];
+      for (int i = 0; i < attrs.length; i++) {
+        attrs[i] = readAttr(buffer, strings);
+        attributeDefinitions.addAttributeDefinition(attrs[i]);
+      }
+      int styleableCount = readCount(buffer, MIN_STYLEABLE_SIZE);
+      for (int i = 0; i < styleableCount; i++) {
+        StyleableDefinitionImpl styleable = new StyleableDefinitionImpl(ResourceNamespace.ANDROID, strings[buffer.getInt()]);
+        int attrCount = readCount(buffer, INDEX_SIZE);
+        for (int j = 0; j < attrCount; j++) {
+          styleable.addAttribute(attrs[buffer.getInt()]);
+        }
+        attributeDefinitions.addStyleableDefinition(styleable);
+      }
+      return attributeDefinitions;
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+    catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+      LOG.warn("Failed to load attribute definitions from " + cacheFile, e);
+      return null;
+    }
+  }
+
+  @NotNull
+  private static AttributeDefinition readAttr(@NotNull ByteBuffer buffer, @NotNull String[] strings) throws IOException {
+    AttributeDefinition attr = new AttributeDefinition(ResourceNamespace.ANDROID, strings[buffer.getInt()]);
+    attr.setGroupName(getString(strings, buffer.getInt()));
+    String globalDescription = getString(strings, buffer.getInt());
+    if (globalDescription != null) {
+      attr.setDescription(globalDescription, null);
+    }
+
+    int formatBits = buffer.getInt();
+    Set<AttributeFormat> formats = EnumSet.noneOf(AttributeFormat.class);
+    for (AttributeFormat format : FORMATS) {
+      if ((formatBits & (1 << format.ordinal())) != 0) {
+        formats.add(format);
+      }
+    }
+    attr.addFormats(formats);
+
+    int mappingCount = readCount(buffer, VALUE_MAPPING_SIZE);
+    if (mappingCount != 0) {
+      // Keep the order in which the values were written, which is the one they were listed in.
+      Map<String, Integer> valueMappings = new LinkedHashMap<>(mappingCount * 2);
+      for (int i = 0; i < mappingCount; i++) {
+        String name = strings[buffer.getInt()];
+        boolean hasValue = buffer.get() != 0;
+        int value = buffer.getInt();
+        valueMappings.put(name, hasValue ? value : null);
+      }
+      attr.setValueMappings(valueMappings);
+    }
+
+    int valueDescriptionCount = readCount(buffer, INDEX_PAIR_SIZE);
+    if (valueDescriptionCount != 0) {
+      Map<String, String> valueDescriptions = new HashMap<>(valueDescriptionCount * 2);
+      for (int i = 0; i < valueDescriptionCount; i++) {
+        valueDescriptions.put(strings[buffer.getInt()], strings[buffer.getInt()]);
+      }
+      attr.setValueDescriptions(valueDescriptions);
+    }
+
+    int styleableDescriptionCount = readCount(buffer, INDEX_PAIR_SIZE);
+    for (int i = 0; i < styleableDescriptionCount; i++) {
+      ResourceReference styleable = ResourceReference.styleable(ResourceNamespace.ANDROID, strings[buffer.getInt()]);
+      attr.setDescription(strings[buffer.getInt()], styleable);
+    }
+    return attr;
+  }
+
+  @Nullable
+  private static String getString(@NotNull String[] strings, int index) {
+    return index == NO_STRING ? null : strings[index];
+  }
+
+  @NotNull
+  private static String readString(@NotNull ByteBuffer buffer) throws IOException {
+    byte[] bytes = new byte[readCount(buffer, 1)];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the number of items that follow, each taking at least {@code minItemSize} bytes. Throws an exception if the file is too short
+   * to contain them, so that a corrupt file doesn't cause huge or negative allocations.
+   */
+  private static int readCount(@NotNull ByteBuffer buffer, int minItemSize) throws IOException {
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining() / minItemSize) {
+      throw new IOException("Invalid item count " + count + " at offset " + (buffer.position() - 4));
+    }
+    return count;
+  }
+
+  /**
+   * Serializes the framework attribute definitions in the calling thread and writes them to the cache file using the executor of the
+   * {@link CachingData}. Nothing is written if the caching data has no executor.
+   */
+  static void write(@NotNull AttributeDefinitionsImpl attributeDefinitions, @NotNull CachingData cachingData) {
+    Executor executor = cachingData.getCacheCreationExecutor();
+    if (executor == null) {
+      return;
+    }
+    byte[] contents;
+    try {
+      contents = serialize(attributeDefinitions, cachingData);
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to serialize attribute definitions", e);
+      return;
+    }
+    executor.execute(() -> {
+      Path cacheFile = cachingData.getCacheFile();
+      try {
+        Files.createDirectories(cacheFile.getParent());
+        // Write to a temporary file first, so that a concurrent reader never sees a partially written file.
+        Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+        try {
+          Files.write(tempFile, contents);
+          Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+          Files.deleteIfExists(tempFile);
+        }
+      }
+      catch (IOException e) {
+        LOG.warn("Failed to write attribute definitions to " + cacheFile, e);
+      }
+    });
+  }
+
+  @NotNull
+  private static byte[] serialize(@NotNull AttributeDefinitionsImpl attributeDefinitions, @NotNull CachingData cachingData)
+      throws IOException {
+    Collection<AttributeDefinition> attrs = attributeDefinitions.getAttributeDefinitions();
+    Collection<StyleableDefinitionImpl> styleables = attributeDefinitions.getStyleableDefinitions();
+
+    StringTable strings = new StringTable();
+    Map<AttributeDefinition, Integer> attrIndexes = new HashMap<>(attrs.size() * 2);
+    ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    DataOutputStream records = new DataOutputStream(recordBytes);
+    records.writeInt(attrs.size());
+    for (AttributeDefinition attr : attrs) {
+      attrIndexes.put(attr, attrIndexes.size());
+      writeAttr(attr, records, strings);
+    }
+    records.writeInt(styleables.size());
+    for (StyleableDefinitionImpl styleable : styleables) {
+      records.writeInt(strings.indexOf(styleable.getName()));
+      List<AttributeDefinition> styleableAttrs = styleable.getAttributes();
+      records.writeInt(styleableAttrs.size());
+      for (AttributeDefinition attr : styleableAttrs) {
+        records.writeInt(attrIndexes.get(attr));
+      }
+    }
+    records.flush();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(recordBytes.size() * 4);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    writeString(cachingData.getCodeVersion(), out);
+    writeString(cachingData.getContentVersion(), out);
+    out.writeInt(strings.myStrings.size());
+    for (String string : strings.myStrings) {
+      writeString(string, out);
+    }
+    recordBytes.writeTo(out);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void writeAttr(@NotNull AttributeDefinition attr, @NotNull DataOutputStream out, @NotNull StringTable strings)
+      throws IOException {
+    out.writeInt(strings.indexOf(attr.getName()));
+    out.writeInt(strings.indexOf(attr.getGroupName()));
+    out.writeInt(strings.indexOf(attr.getGlobalDescription()));
+
+    int formatBits = 0;
+    for (AttributeFormat format : attr.getFormats()) {
+      formatBits |= 1 << format.ordinal();
+    }
+    out.writeInt(formatBits);
+
+    Map<String, Integer> valueMappings = attr.getValueMappings();
+    out.writeInt(valueMappings.size());
+    for (Map.Entry<String, Integer> entry : valueMappings.entrySet()) {
+      out.writeInt(strings.indexOf(entry.getKey()));
+      Integer value = entry.getValue();
+      out.writeBoolean(value != null);
+      out.writeInt(value == null ? 0 : value);
+    }
+
+    Map<String, String> valueDescriptions = attr.getValueDescriptions();
+    out.writeInt(valueDescriptions.size());
+    for (Map.Entry<String, String> entry : valueDescriptions.entrySet()) {
+      out.writeInt(strings.indexOf(entry.getKey()));
+      out.writeInt(strings.indexOf(entry.getValue()));
+    }
+
+    Map<ResourceReference, String> styleableDescriptions = attr.getDescriptionsInStyleableContexts();
+    out.writeInt(styleableDescriptions.size());
+    for (Map.Entry<ResourceReference, String> entry : styleableDescriptions.entrySet()) {
+      out.writeInt(strings.indexOf(entry.getKey().getName()));
+      out.writeInt(strings.indexOf(entry.getValue()));
+    }
+  }
+
+  private static void writeString(@NotNull String string, @NotNull DataOutputStream out) throws IOException {
+    // DataOutputStream.writeUTF is limited to 64K bytes, which some descriptions could exceed.
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static class StringTable {
+    private final List<String> myStrings = new ArrayList<>();
+    private final Map<String, Integer> myIndexes = new HashMap<>();
+
+    int indexOf(@Nullable String string) {
+      if (string == null) {
+        return NO_STRING;
+      }
+      return myIndexes.computeIfAbsent(string, s -> {
+        myStrings.add(s);
+        return myStrings.size() - 1;
+      });
+    }
+  }
+}
@@ -27,17 +27,23 @@ import com.android.ide.common.resources.ResourceItemWithVisibility;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.resources.ResourceType;
 import com.android.resources.ResourceVisibility;
+import com.android.resources.aar.CachingData;
 import com.android.sdklib.IAndroidTarget;
+import com.android.tools.concurrency.AndroidIoManager;
 import com.android.tools.dom.attrs.AttributeDefinitions;
 import com.android.tools.dom.attrs.AttributeDefinitionsImpl;
 import com.android.tools.dom.attrs.FilteredAttributeDefinitions;
 import com.android.tools.idea.layoutlib.LayoutLibrary;
 import com.android.tools.idea.layoutlib.LayoutLibraryLoader;
 import com.android.tools.idea.layoutlib.RenderingException;
+import com.android.tools.res.AndroidPluginVersion;
 import com.android.tools.res.FrameworkResourceRepositoryManager;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
@@ -47,6 +53,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -55,12 +62,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class AndroidTargetData {
   private static final Logger LOG = Logger.getInstance(AndroidTargetData.class);
+  private static final String ATTR_DEFS_CACHE_DIRECTORY = "caches/attribute_definitions";
 
   private final AndroidSdkData mySdkData;
   private final IAndroidTarget myTarget;
@@ -97,12 +106,38 @@ public class AndroidTargetData {
       if (myAttrDefs == null) {
         String attrsPath = FileUtil.toSystemIndependentName(myTarget.getPath(IAndroidTarget.ATTRIBUTES).toString());
         String attrsManifestPath = FileUtil.toSystemIndependentName(myTarget.getPath(IAndroidTarget.MANIFEST_ATTRIBUTES).toString());
-        myAttrDefs = AttributeDefinitionsImpl.parseFrameworkFiles(new File(attrsPath), new File(attrsManifestPath));
+        File attrsFile = new File(attrsPath);
+        File attrsManifestFile = new File(attrsManifestPath);
+        myAttrDefs = AttributeDefinitionsImpl.loadFrameworkFiles(createAttrDefsCachingData(attrsFile, attrsManifestFile),
+                                                                 attrsFile, attrsManifestFile);
       }
       return myAttrDefs;
     }
   }
 
+  /**
+   * Returns the caching data for the framework attribute definitions, which are shared by all projects using the same platform.
+   */
+  @Nullable
+  private CachingData createAttrDefsCachingData(@NotNull File... files) {
+    String codeVersion = AndroidPluginVersion.getAndroidPluginVersion();
+    if (codeVersion == null) {
+      return null;
+    }
+    StringBuilder contentVersion = new StringBuilder();
+    for (File file : files) {
+      contentVersion.append(file.lastModified()).append(':').append(file.length()).append(';');
+    }
+    String platformPath = myTarget.getLocation();
+    String pathHash = Hashing.farmHashFingerprint64().hashUnencodedChars(platformPath).toString();
+    String filename = String.format("attrs_%s_%s.dat", new File(platformPath).getName(), pathHash);
+    Path cacheFile = Paths.get(PathManager.getSystemPath(), ATTR_DEFS_CACHE_DIRECTORY, filename);
+    // Don't create a persistent cache in tests to avoid unnecessary overhead.
+    Executor executor = ApplicationManager.getApplication().isUnitTestMode() ?
+                        command -> {} : AndroidIoManager.getInstance().getBackgroundDiskIoExecutor();
+    return new CachingData(cacheFile, contentVersion.toString(), codeVersion, executor);
+  }
+
   public boolean isResourcePublic(@NotNull ResourceType type, @NotNull String name) {
     ResourceRepository frameworkResources = getFrameworkResources(Collections.emptySet());
     if (frameworkResources == null) {
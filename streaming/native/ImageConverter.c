@@ -91,76 +91,129 @@ JNIEXPORT void JNICALL Java_com_android_emulator_ImageConverter_initNative(JNIEn
 }
 
 /*
- * Class:  com.android,emulator.ImageConverter
- * Method: static native void unpackRgb888(byte[] imageBytes, int offset, int length, int[] pixels)
+ * Unpacks 'numPixels' pixels dispatching to the fastest function available on the current CPU.
+ * The 'alignment' parameter is the position of 'bytes' relative to an 8-byte boundary.
  */
-JNIEXPORT void JNICALL Java_com_android_emulator_ImageConverter_unpackRgb888(
-    JNIEnv* env, jclass thisClass, jbyteArray byteArray, jint offset, jint length, jintArray pixelArray) {
-  if (length == 0) {
-    return;
+static void unpackRgb888Pixels(const uint8_t* bytes, uint32_t alignment, uint32_t numPixels, uint32_t* pixels) {
+#if defined(__x86_64__)
+  if (hasMovbe) {
+    if (alignment != 0) {
+      uint32_t headLength = alignmentAdjusters[alignment];
+      if (headLength > numPixels) {
+        headLength = numPixels;
+      }
+      unpackRgb888Universal(bytes, headLength, pixels);
+      if ((numPixels -= headLength) == 0) {
+        return;
+      }
+      bytes += headLength * 3;
+      pixels += headLength;
+    }
+    uint32_t tailLength = numPixels & 0x07;
+    uint32_t numPixelsRounded = numPixels - tailLength;
+    if (numPixelsRounded != 0) {
+      unpackRgb888Movbe(bytes, numPixelsRounded, pixels);
+    }
+    if (tailLength != 0) {
+      unpackRgb888Universal(bytes + numPixelsRounded * 3, tailLength, pixels + numPixelsRounded);
+    }
+  } else {
+    unpackRgb888Universal(bytes, numPixels, pixels);
   }
+#else // !defined(__x86_64__)
+  unpackRgb888Universal(bytes, numPixels, pixels);
+#endif // !defined(__x86_64__)
+}
+
+/*
+ * Checks the arguments of the unpackRgb888 methods. Returns false and throws a Java exception if they are invalid.
+ */
+static bool checkArguments(JNIEnv* env, jint offset, jint length, jlong inputSize, jintArray pixelArray) {
   if (offset < 0) {
     throwException(env, "java/lang/IllegalArgumentException", "The offset is negative");
+    return false;
   }
   if (length < 0) {
     throwException(env, "java/lang/IllegalArgumentException", "The number of bytes is negative");
+    return false;
   }
   if (length % 3 != 0) {
     throwException(env, "java/lang/IllegalArgumentException", "The number of bytes is not a multiple of 3");
+    return false;
   }
-  if (offset + length > (*env)->GetArrayLength(env, byteArray)) {
+  if ((jlong) offset + length > inputSize) {
     throwException(env, "java/lang/ArrayIndexOutOfBoundsException", "Data outside if the input array");
+    return false;
   }
-  uint32_t numPixels = length / 3;
-  if (numPixels > (*env)->GetArrayLength(env, pixelArray)) {
+  if (length / 3 > (*env)->GetArrayLength(env, pixelArray)) {
     throwException(env, "java/lang/ArrayIndexOutOfBoundsException", "The output array is too small");
+    return false;
+  }
+  return true;
+}
+
+/*
+ * Class:  com.android,emulator.ImageConverter
+ * Method: static native void unpackRgb888(byte[] imageBytes, int offset, int length, int[] pixels)
+ */
+JNIEXPORT void JNICALL Java_com_android_emulator_ImageConverter_unpackRgb888(
+    JNIEnv* env, jclass thisClass, jbyteArray byteArray, jint offset, jint length, jintArray pixelArray) {
+  if (length == 0) {
+    return;
+  }
+  if (!checkArguments(env, offset, length, (*env)->GetArrayLength(env, byteArray), pixelArray)) {
+    return;
   }
   jboolean isCopy;
   uint8_t* bytes = (*env)->GetPrimitiveArrayCritical(env, byteArray, &isCopy);
   if (bytes == NULL || isCopy) {
     (*env)->ReleasePrimitiveArrayCritical(env, byteArray, bytes, 0);
     throwException(env, "java/lang/IllegalStateException", "The input array cannot be pinned in memory");
+    return;
   }
   uint32_t* pixels = (*env)->GetPrimitiveArrayCritical(env, pixelArray, &isCopy);
   if (pixels == NULL || isCopy) {
     (*env)->ReleasePrimitiveArrayCritical(env, pixelArray, pixels, 0);
     (*env)->ReleasePrimitiveArrayCritical(env, byteArray, bytes, 0);
     throwException(env, "java/lang/IllegalStateException", "The output array cannot be pinned in memory");
+    return;
   }
 
-  bytes += offset;
+  unpackRgb888Pixels(bytes + offset, offset & 0x07, length / 3, pixels);
 
-#if defined(__x86_64__)
-  if (hasMovbe) {
-    uint32_t alignment = offset & 0x07;
-    if (alignment != 0) {
-      uint32_t headLength = alignmentAdjusters[alignment];
-      if (headLength > numPixels) {
-        headLength = numPixels;
-      }
-      unpackRgb888Universal(bytes, headLength, pixels);
-      if ((numPixels -= headLength) == 0) {
-        goto release_arrays;
-      }
-      bytes += headLength * 3;
-      pixels += headLength;
-    }
-    uint32_t tailLength = numPixels & 0x07;
-    uint32_t numPixelsRounded = numPixels - tailLength;
-    if (numPixelsRounded != 0) {
-      unpackRgb888Movbe(bytes, numPixelsRounded, pixels);
-    }
-    if (tailLength != 0) {
-      unpackRgb888Universal(bytes + numPixelsRounded * 3, tailLength, pixels + numPixelsRounded);
-    }
-  } else {
-    unpackRgb888Universal(bytes, numPixels, pixels);
+  (*env)->ReleasePrimitiveArrayCritical(env, pixelArray, pixels, 0);
+  (*env)->ReleasePrimitiveArrayCritical(env, byteArray, bytes, 0);
+}
+
+/*
+ * Class:  com.android,emulator.ImageConverter
+ * Method: static native void unpackRgb888Direct(ByteBuffer imageBytes, int offset, int length, int[] pixels)
+ *
+ * Same as unpackRgb888, but reads the pixel values directly from the memory of a direct ByteBuffer.
+ */
+JNIEXPORT void JNICALL Java_com_android_emulator_ImageConverter_unpackRgb888Direct(
+    JNIEnv* env, jclass thisClass, jobject buffer, jint offset, jint length, jintArray pixelArray) {
+  if (length == 0) {
+    return;
+  }
+  uint8_t* bytes = (*env)->GetDirectBufferAddress(env, buffer);
+  if (bytes == NULL) {
+    throwException(env, "java/lang/IllegalArgumentException", "The buffer is not direct");
+    return;
+  }
+  if (!checkArguments(env, offset, length, (*env)->GetDirectBufferCapacity(env, buffer), pixelArray)) {
+    return;
+  }
+  jboolean isCopy;
+  uint32_t* pixels = (*env)->GetPrimitiveArrayCritical(env, pixelArray, &isCopy);
+  if (pixels == NULL || isCopy) {
+    (*env)->ReleasePrimitiveArrayCritical(env, pixelArray, pixels, 0);
+    throwException(env, "java/lang/IllegalStateException", "The output array cannot be pinned in memory");
+    return;
   }
-#else // !defined(__x86_64__)
-  unpackRgb888Universal(bytes, numPixels, pixels);
-#endif // !defined(__x86_64__)
 
-release_arrays:
+  bytes += offset;
+  unpackRgb888Pixels(bytes, (uintptr_t) bytes & 0x07, length / 3, pixels);
+
   (*env)->ReleasePrimitiveArrayCritical(env, pixelArray, pixels, 0);
-  (*env)->ReleasePrimitiveArrayCritical(env, byteArray, bytes, 0);
 }
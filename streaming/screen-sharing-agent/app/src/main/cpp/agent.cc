@@ -155,6 +155,10 @@ void Agent::SetMaxVideoResolution(Size max_video_resolution) {
   display_streamer_->SetMaxVideoResolution(max_video_resolution);
 }
 
+void Agent::SetMaxFrameRate(int32_t max_frame_rate) {
+  display_streamer_->SetMaxFrameRate(max_frame_rate);
+}
+
 DisplayInfo Agent::GetDisplayInfo() {
   if (display_streamer_ == nullptr) {
     Log::Fatal("Display information has not been obtained yet");
@@ -47,6 +47,8 @@ public:
   // the app-level orientation according to the previously set display orientation.
   static void SetVideoOrientation(int32_t orientation);
   static void SetMaxVideoResolution(Size max_video_resolution);
+  // Sets the maximum frame rate of the video stream. Zero means no limit.
+  static void SetMaxFrameRate(int32_t max_frame_rate);
   static DisplayInfo GetDisplayInfo();
 
   // Modifies system settings for the screen sharing session. May be called on any thread.
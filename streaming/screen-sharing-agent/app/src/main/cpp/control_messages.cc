@@ -59,6 +59,9 @@ unique_ptr<ControlMessage> ControlMessage::Deserialize(int32_t type, Base128Inpu
     case ClipboardChangedNotification::TYPE:
       return unique_ptr<ControlMessage>(ClipboardChangedNotification::Deserialize(stream));
 
+    case SetMaxFrameRateMessage::TYPE:
+      return unique_ptr<ControlMessage>(SetMaxFrameRateMessage::Deserialize(stream));
+
     default:
       Log::Fatal("Unexpected message type %d", type);
   }
@@ -136,6 +139,11 @@ StopClipboardSyncMessage* StopClipboardSyncMessage::Deserialize(Base128InputStre
   return new StopClipboardSyncMessage();
 }
 
+SetMaxFrameRateMessage* SetMaxFrameRateMessage::Deserialize(Base128InputStream& stream) {
+  int32_t max_frame_rate = stream.ReadInt32();
+  return new SetMaxFrameRateMessage(max_frame_rate);
+}
+
 void ClipboardChangedNotification::Serialize(Base128OutputStream& stream) const {
   ControlMessage::Serialize(stream);
   stream.WriteBytes(text_);
@@ -319,4 +319,29 @@ private:
   DISALLOW_COPY_AND_ASSIGN(ClipboardChangedNotification);
 };
 
+// Sets the maximum frame rate of the display video stream. Sent by the host when it is not able to
+// display all the frames it receives.
+class SetMaxFrameRateMessage : ControlMessage {
+public:
+  SetMaxFrameRateMessage(int32_t max_frame_rate)
+      : ControlMessage(TYPE),
+        max_frame_rate_(max_frame_rate) {
+  }
+  virtual ~SetMaxFrameRateMessage() {};
+
+  // The maximum number of frames per second, zero means no limit.
+  int32_t max_frame_rate() const { return max_frame_rate_; }
+
+  static constexpr int TYPE = 11;
+
+private:
+  friend class ControlMessage;
+
+  static SetMaxFrameRateMessage* Deserialize(Base128InputStream& stream);
+
+  int32_t max_frame_rate_;
+
+  DISALLOW_COPY_AND_ASSIGN(SetMaxFrameRateMessage);
+};
+
 }  // namespace screensharing
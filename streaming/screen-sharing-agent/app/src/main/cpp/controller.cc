@@ -203,6 +203,10 @@ void Controller::ProcessMessage(const ControlMessage& message) {
       StopClipboardSync();
       break;
 
+    case SetMaxFrameRateMessage::TYPE:
+      ProcessSetMaxFrameRate((const SetMaxFrameRateMessage&) message);
+      break;
+
     default:
       Log::E("Unexpected message type %d", message.type());
       break;
@@ -332,6 +336,14 @@ void Controller::ProcessSetMaxVideoResolution(const SetMaxVideoResolutionMessage
   Agent::SetMaxVideoResolution(Size(message.width(), message.height()));
 }
 
+void Controller::ProcessSetMaxFrameRate(const SetMaxFrameRateMessage& message) {
+  if (message.max_frame_rate() < 0) {
+    Log::E("An attempt to set an invalid frame rate: %d", message.max_frame_rate());
+    return;
+  }
+  Agent::SetMaxFrameRate(message.max_frame_rate());
+}
+
 void Controller::StopVideoStream() {
   Agent::StopVideoStream();
 }
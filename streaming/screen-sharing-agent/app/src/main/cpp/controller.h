@@ -61,6 +61,7 @@ private:
   void ProcessTextInput(const TextInputMessage& message);
   static void ProcessSetDeviceOrientation(const SetDeviceOrientationMessage& message);
   static void ProcessSetMaxVideoResolution(const SetMaxVideoResolutionMessage& message);
+  static void ProcessSetMaxFrameRate(const SetMaxFrameRateMessage& message);
   static void StopVideoStream();
   void StartVideoStream();
   void StartClipboardSync(const StartClipboardSyncMessage& message);
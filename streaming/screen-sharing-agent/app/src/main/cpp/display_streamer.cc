@@ -25,6 +25,7 @@
 #include <cerrno>
 #include <chrono>
 #include <cmath>
+#include <cstdlib>
 
 #include "accessors/surface_control.h"
 #include "agent.h"
@@ -57,13 +58,36 @@ constexpr double MIN_VIDEO_RESOLUTION = 128;
 constexpr int COLOR_FormatSurface = 0x7F000789;  // See android.media.MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface.
 constexpr int BIT_RATE = 8000000;
 constexpr int BIT_RATE_REDUCED = 1000000;
+constexpr int FRAME_RATE = 60;
 constexpr int I_FRAME_INTERVAL_SECONDS = 10;
 constexpr int REPEAT_FRAME_DELAY_MILLIS = 100;
 constexpr int CHANNEL_HEADER_LENGTH = 20;
 constexpr char const* AMEDIACODEC_KEY_REQUEST_SYNC_FRAME = "request-sync";  // Introduced in API 31.
+constexpr char const* AMEDIACODEC_KEY_VIDEO_BITRATE = "video-bitrate";  // Introduced in API 26.
 constexpr char const* AMEDIAFORMAT_KEY_COLOR_STANDARD = "color-standard";  // Introduced in API 28.
+constexpr char const* AMEDIAFORMAT_KEY_MAX_FPS_TO_ENCODER = "max-fps-to-encoder";  // Introduced in API 29.
 constexpr int COLOR_STANDARD_BT601_NTSC = 4;  // See android.media.MediaFormat.COLOR_STANDARD_BT601_NTSC.
 
+bool IsFrameRateLimited(int32_t max_frame_rate) {
+  return max_frame_rate > 0 && max_frame_rate < FRAME_RATE;
+}
+
+// Frames dropped by the host are not worth their bits, so the bit rate is scaled down with the maximum frame rate.
+int32_t FrameRateLimitedBitRate(int32_t bit_rate, int32_t max_frame_rate) {
+  if (!IsFrameRateLimited(max_frame_rate)) {
+    return bit_rate;
+  }
+  auto proportional_bit_rate = static_cast<int32_t>(static_cast<int64_t>(bit_rate) * max_frame_rate / FRAME_RATE);
+  return max(min(bit_rate, BIT_RATE_REDUCED), proportional_bit_rate);
+}
+
+// Restarting the encoder costs a key frame, so it is only done when the maximum frame rate changes by at least a quarter.
+bool IsSignificantFrameRateChange(int32_t old_max_frame_rate, int32_t new_max_frame_rate) {
+  int32_t old_frame_rate = IsFrameRateLimited(old_max_frame_rate) ? old_max_frame_rate : FRAME_RATE;
+  int32_t new_frame_rate = IsFrameRateLimited(new_max_frame_rate) ? new_max_frame_rate : FRAME_RATE;
+  return abs(new_frame_rate - old_frame_rate) * 4 >= old_frame_rate;
+}
+
 struct CodecOutputBuffer {
   explicit CodecOutputBuffer(AMediaCodec* codec)
       : index(-1),
@@ -122,7 +146,7 @@ AMediaFormat* CreateMediaFormat(const string& mime_type) {
   AMediaFormat_setString(media_format, AMEDIAFORMAT_KEY_MIME, mime_type.c_str());
   AMediaFormat_setInt32(media_format, AMEDIAFORMAT_KEY_COLOR_FORMAT, COLOR_FormatSurface);
   // Does not affect the actual frame rate, but must be present.
-  AMediaFormat_setInt32(media_format, AMEDIAFORMAT_KEY_FRAME_RATE, 60);
+  AMediaFormat_setInt32(media_format, AMEDIAFORMAT_KEY_FRAME_RATE, FRAME_RATE);
   AMediaFormat_setInt32(media_format, AMEDIAFORMAT_KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_SECONDS);
   AMediaFormat_setInt64(media_format, AMEDIAFORMAT_KEY_REPEAT_PREVIOUS_FRAME_AFTER, REPEAT_FRAME_DELAY_MILLIS * 1000);
   if (mime_type == "video/x-vnd.on2.vp8") {
@@ -278,7 +302,6 @@ void DisplayStreamer::Run() {
 
   Log::D("Using %s video encoder with %dx%d max resolution",
          codec_info_->name.c_str(), codec_info_->max_resolution.width, codec_info_->max_resolution.height);
-  AMediaFormat* media_format = CreateMediaFormat(codec_info_->mime_type);
 
   WindowManager::WatchRotation(jni, &display_rotation_watcher_);
   DisplayManager::RegisterDisplayListener(jni, this);
@@ -291,6 +314,7 @@ void DisplayStreamer::Run() {
     if (codec == nullptr) {
       Log::Fatal("Unable to create a %s video encoder", codec_info_->name.c_str());
     }
+    AMediaFormat* media_format = CreateMediaFormat(codec_info_->mime_type);
     DisplayInfo display_info = DisplayManager::GetDisplayInfo(jni, display_id_);
     Log::D("display_info: %s", display_info.ToDebugString().c_str());
     VirtualDisplay virtual_display;
@@ -311,11 +335,20 @@ void DisplayStreamer::Run() {
     if (max_bit_rate_ > 0 && bit_rate > max_bit_rate_) {
       bit_rate = max_bit_rate_;
     }
-    AMediaFormat_setInt32(media_format, AMEDIAFORMAT_KEY_BIT_RATE, bit_rate);
     ANativeWindow* surface = nullptr;
     {
       scoped_lock lock(mutex_);
       display_info_ = display_info;
+      unlimited_bit_rate_ = bit_rate;
+      encoder_max_frame_rate_ = max_frame_rate_;
+      if (IsFrameRateLimited(max_frame_rate_)) {
+        bit_rate = FrameRateLimitedBitRate(bit_rate, max_frame_rate_);
+        if (Agent::api_level() >= 29) {
+          AMediaFormat_setFloat(media_format, AMEDIAFORMAT_KEY_MAX_FPS_TO_ENCODER, static_cast<float>(max_frame_rate_));
+        }
+        Log::D("max_frame_rate = %d bit_rate = %d", max_frame_rate_, bit_rate);
+      }
+      AMediaFormat_setInt32(media_format, AMEDIAFORMAT_KEY_BIT_RATE, bit_rate);
       int32_t rotation_correction = video_orientation_ >= 0 ? NormalizeRotation(video_orientation_ - display_info.rotation) : 0;
       Size video_size = ConfigureCodec(codec, *codec_info_, max_video_resolution_, media_format, display_info);
       Log::D("rotation_correction = %d video_size = %dx%d", rotation_correction, video_size.width, video_size.height);
@@ -349,10 +382,10 @@ void DisplayStreamer::Run() {
       SurfaceControl::DestroyDisplay(jni, display_token);
     }
     AMediaCodec_delete(codec);
+    AMediaFormat_delete(media_format);
     ANativeWindow_release(surface);
   }
 
-  AMediaFormat_delete(media_format);
   WindowManager::RemoveRotationWatcher(jni, &display_rotation_watcher_);
   DisplayManager::UnregisterDisplayListener(jni, this);
 
@@ -455,6 +488,34 @@ void DisplayStreamer::SetMaxVideoResolution(Size max_video_resolution) {
   }
 }
 
+void DisplayStreamer::SetMaxFrameRate(int32_t max_frame_rate) {
+  scoped_lock lock(mutex_);
+  max_frame_rate_ = max_frame_rate;
+  if (running_codec_ == nullptr || max_frame_rate == encoder_max_frame_rate_) {
+    return;
+  }
+  if (Agent::api_level() >= 29) {
+    // Change the limit of the running encoder, which doesn't require a key frame.
+    AMediaFormat* parameters = AMediaFormat_new();
+    // A negative value removes the limit.
+    AMediaFormat_setFloat(parameters, AMEDIAFORMAT_KEY_MAX_FPS_TO_ENCODER,
+                          IsFrameRateLimited(max_frame_rate) ? static_cast<float>(max_frame_rate) : -1.0F);
+    AMediaFormat_setInt32(parameters, AMEDIACODEC_KEY_VIDEO_BITRATE, FrameRateLimitedBitRate(unlimited_bit_rate_, max_frame_rate));
+    media_status_t status = AMediaCodec_setParameters(running_codec_, parameters);
+    AMediaFormat_delete(parameters);
+    if (status == AMEDIA_OK) {
+      Log::D("DisplayStreamer::SetMaxFrameRate: max_frame_rate changed from %d to %d", encoder_max_frame_rate_, max_frame_rate);
+      encoder_max_frame_rate_ = max_frame_rate;
+      return;
+    }
+    Log::W("AMediaCodec_setParameters returned %d for max_frame_rate = %d", status, max_frame_rate);
+  }
+  // The new limit is otherwise applied when the encoder is restarted, which is only worth doing for a significant change.
+  if (IsSignificantFrameRateChange(encoder_max_frame_rate_, max_frame_rate)) {
+    StopCodecUnlocked();
+  }
+}
+
 DisplayInfo DisplayStreamer::GetDisplayInfo() {
   scoped_lock lock(mutex_);
   return display_info_;
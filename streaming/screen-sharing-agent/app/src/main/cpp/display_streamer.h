@@ -57,6 +57,10 @@ public:
   // Sets the maximum resolution of the display video stream.
   void SetMaxVideoResolution(Size max_video_resolution);
 
+  // Sets the maximum frame rate of the display video stream. Zero means no limit. The limit of the running
+  // encoder is changed in place when possible, otherwise the encoder is restarted if the change is significant.
+  void SetMaxFrameRate(int32_t max_frame_rate);
+
   // Returns the cached version of DisplayInfo.
   DisplayInfo GetDisplayInfo();
 
@@ -99,6 +103,9 @@ private:
   DisplayInfo display_info_;  // GUARDED_BY(mutex_)
   Size max_video_resolution_;  // GUARDED_BY(mutex_)
   int32_t video_orientation_;  // GUARDED_BY(mutex_)
+  int32_t max_frame_rate_ = 0;  // GUARDED_BY(mutex_)
+  int32_t encoder_max_frame_rate_ = 0;  // Maximum frame rate of the running codec, GUARDED_BY(mutex_)
+  int32_t unlimited_bit_rate_ = 0;  // Bit rate of the running codec before scaling for the frame rate, GUARDED_BY(mutex_)
   AMediaCodec* running_codec_ = nullptr;  // GUARDED_BY(mutex_)
 
   DISALLOW_COPY_AND_ASSIGN(DisplayStreamer);
@@ -25,6 +25,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.util.system.CpuArch;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -32,6 +33,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.VisibleForTesting;
 
 public class ImageConverter {
+  /** Size of the intermediate buffer used when image bytes cannot be accessed directly. Has to be a multiple of 3. */
+  private static final int CHUNK_SIZE = 3 * 4096;
+
+  private static final ThreadLocal<byte[]> chunkBuffer = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+  private static boolean nativeLibraryLoaded;
+  private static boolean directBufferSupported;
+  private static Class<?> literalByteStringClass;
+  private static Class<?> boundedByteStringClass;
+  private static final Class<?> nioByteStringClass = UnsafeByteOperations.unsafeWrap(ByteBuffer.allocateDirect(3)).getClass();
   private static Field bytesField;
   private static Field offsetField;
 
@@ -39,6 +50,8 @@ public class ImageConverter {
     try {
       loadNativeLibrary();
       initNative();
+      nativeLibraryLoaded = true;
+      directBufferSupported = isDirectBufferSupported();
       initByteStringFields();
     }
     catch (Throwable e) {
@@ -57,10 +70,11 @@ public class ImageConverter {
     if (length == 0) {
       return;
     }
-    if (bytesField != null) {
+    Class<?> byteStringClass = imageBytes.getClass();
+    if (bytesField != null && (byteStringClass == boundedByteStringClass || byteStringClass == literalByteStringClass)) {
       try {
         byte[] bytes = (byte[])bytesField.get(imageBytes);
-        int offset = offsetField.getInt(imageBytes);
+        int offset = byteStringClass == boundedByteStringClass ? offsetField.getInt(imageBytes) : 0;
         unpackRgb888(bytes, offset, length, pixels);
         return;
       }
@@ -70,9 +84,40 @@ public class ImageConverter {
         offsetField = null;
       }
     }
+    if (directBufferSupported && byteStringClass == nioByteStringClass) {
+      // A ByteString backed by a direct buffer, e.g. one produced by a zero-copy gRPC marshaller, is converted
+      // without copying its contents to the Java heap.
+      unpackRgb888(imageBytes.asReadOnlyByteBuffer(), pixels);
+      return;
+    }
     unpackRgb888Slow(imageBytes, pixels);
   }
 
+  /**
+   * Converts pixel values in RGB888 format to the 32-bit integers in the 0xAARRGGBB format. The bytes between
+   * the position and the limit of the buffer are converted. The position of the buffer is not changed.
+   * <p>
+   * Direct buffers are converted in place without copying the pixel values to the Java heap.
+   *
+   * @param imageBytes the pixel values to convert
+   * @param pixels the converted pixel values
+   */
+  public static void unpackRgb888(@NotNull ByteBuffer imageBytes, int[] pixels) {
+    int length = imageBytes.remaining();
+    if (length == 0) {
+      return;
+    }
+    if (imageBytes.isDirect() && directBufferSupported) {
+      unpackRgb888Direct(imageBytes, imageBytes.position(), length, pixels);
+      return;
+    }
+    if (imageBytes.hasArray() && nativeLibraryLoaded) {
+      unpackRgb888(imageBytes.array(), imageBytes.arrayOffset() + imageBytes.position(), length, pixels);
+      return;
+    }
+    unpackRgb888Slow(imageBytes.duplicate(), pixels);
+  }
+
   /**
    * Converts pixel values in RGB888 format to the 32-bit integers in the 0xAARRGGBB format without
    * using native code.
@@ -82,15 +127,45 @@ public class ImageConverter {
    */
   public static void unpackRgb888Slow(@NotNull ByteString imageBytes, int[] pixels) {
     int length = imageBytes.size();
+    checkArguments(length, pixels);
+    byte[] chunk = chunkBuffer.get();
+    for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+      int chunkLength = Math.min(CHUNK_SIZE, length - offset);
+      imageBytes.copyTo(chunk, offset, 0, chunkLength);
+      unpackRgb888Chunk(chunk, chunkLength, pixels, offset / 3);
+    }
+  }
+
+  /**
+   * Same as {@link #unpackRgb888Slow(ByteString, int[])} but for the remaining bytes of a buffer.
+   * The position of the buffer is advanced to its limit.
+   */
+  private static void unpackRgb888Slow(@NotNull ByteBuffer imageBytes, int[] pixels) {
+    int length = imageBytes.remaining();
+    checkArguments(length, pixels);
+    byte[] chunk = chunkBuffer.get();
+    for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+      int chunkLength = Math.min(CHUNK_SIZE, length - offset);
+      imageBytes.get(chunk, 0, chunkLength);
+      unpackRgb888Chunk(chunk, chunkLength, pixels, offset / 3);
+    }
+  }
+
+  private static void checkArguments(int length, int[] pixels) {
     if (length % 3 != 0) {
       throw new IllegalArgumentException("Number of bytes (" + length + ") is not a multiple of 3");
     }
-    int i = 0;
-    int j = 0;
-    while (i < length) {
-      int red = imageBytes.byteAt(i++) & 0xFF;
-      int green = imageBytes.byteAt(i++) & 0xFF;
-      int blue = imageBytes.byteAt(i++) & 0xFF;
+    if (length / 3 > pixels.length) {
+      throw new ArrayIndexOutOfBoundsException("The output array is too small");
+    }
+  }
+
+  private static void unpackRgb888Chunk(byte[] chunk, int chunkLength, int[] pixels, int pixelOffset) {
+    int j = pixelOffset;
+    for (int i = 0; i < chunkLength; i += 3) {
+      int red = chunk[i] & 0xFF;
+      int green = chunk[i + 1] & 0xFF;
+      int blue = chunk[i + 2] & 0xFF;
       pixels[j++] = 0xFF000000 | (red << 16) | (green << 8) | blue;
     }
   }
@@ -143,6 +218,27 @@ public class ImageConverter {
     return "";
   }
 
+  /**
+   * Checks whether the loaded native library contains a working direct buffer entry point. Prebuilt libraries predating
+   * it are still usable for the byte array conversion, and direct buffers are then converted by the Java fallback.
+   */
+  private static boolean isDirectBufferSupported() {
+    try {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+      buffer.put(new byte[] { 0, 0x12, 0x34, 0x56 });
+      int[] pixels = new int[1];
+      unpackRgb888Direct(buffer, 1, 3, pixels);
+      if (pixels[0] == 0xFF123456) {
+        return true;
+      }
+      logger().warn("Native image converter library converts direct buffers incorrectly");
+    }
+    catch (UnsatisfiedLinkError e) {
+      logger().info("Native image converter library does not support direct buffers yet");
+    }
+    return false;
+  }
+
   private static void initByteStringFields() {
     Class<? extends ByteString> byteStringClass = UnsafeByteOperations.unsafeWrap(new byte[4], 1, 2).getClass();
     try {
@@ -150,6 +246,8 @@ public class ImageConverter {
       bytesField.setAccessible(true);
       offsetField = byteStringClass.getDeclaredField("bytesOffset");
       offsetField.setAccessible(true);
+      boundedByteStringClass = byteStringClass;
+      literalByteStringClass = byteStringClass.getSuperclass();
     }
     catch (ReflectiveOperationException | RuntimeException e) {
       bytesField = null;
@@ -175,6 +273,16 @@ public class ImageConverter {
    */
   private static native void unpackRgb888(byte[] imageBytes, int offset, int length, int[] pixels);
 
+  /**
+   * Converts pixel values in RGB888 format stored in a direct buffer to the 32-bit integers in the 0xAARRGGBB format.
+   *
+   * @param imageBytes the direct buffer containing pixel values to convert
+   * @param offset the offset of the first image byte relative to the start of the buffer
+   * @param length the number of image bytes; has to be a multiple of 3
+   * @param pixels the converted pixel values
+   */
+  private static native void unpackRgb888Direct(ByteBuffer imageBytes, int offset, int length, int[] pixels);
+
   // Do not instantiate. All methods are static.
   private ImageConverter() {}
 }
@@ -61,6 +61,7 @@ sealed class ControlMessage(val type: Int) {
         StartClipboardSyncMessage.TYPE -> StartClipboardSyncMessage.deserialize(stream)
         StopClipboardSyncMessage.TYPE -> StopClipboardSyncMessage.deserialize(stream)
         ClipboardChangedNotification.TYPE -> ClipboardChangedNotification.deserialize(stream)
+        SetMaxFrameRateMessage.TYPE -> SetMaxFrameRateMessage.deserialize(stream)
         else -> throw StreamFormatException("Unrecognized control message type $type")
       }
     }
@@ -346,4 +347,26 @@ internal data class ClipboardChangedNotification(val text: String) : ControlMess
       return ClipboardChangedNotification(bytes.toString(UTF_8))
     }
   }
-}
\ No newline at end of file
+}
+
+/** Sets maximum frame rate of the display video stream, zero means no limit. */
+internal data class SetMaxFrameRateMessage(val maxFrameRate: Int) : ControlMessage(TYPE) {
+
+  override fun serialize(stream: Base128OutputStream) {
+    super.serialize(stream)
+    stream.writeInt(maxFrameRate)
+  }
+
+  override fun toString(): String {
+    return "SetMaxFrameRateMessage(maxFrameRate=$maxFrameRate)"
+  }
+
+  companion object : Deserializer {
+    const val TYPE = 11
+
+    override fun deserialize(stream: Base128InputStream): SetMaxFrameRateMessage {
+      val maxFrameRate = stream.readInt()
+      return SetMaxFrameRateMessage(maxFrameRate)
+    }
+  }
+}
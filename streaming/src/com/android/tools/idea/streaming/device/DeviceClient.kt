@@ -186,7 +186,8 @@ internal class DeviceClient(
     catch (e: IncorrectOperationException) {
       return // Already disposed.
     }
-    videoDecoder = VideoDecoder(videoChannel, clientScope, maxVideoSize).apply { start() }
+    val maxFrameRateListener = if (StudioFlags.DEVICE_MIRRORING_ADAPTIVE_FRAME_RATE.get()) ::setMaxFrameRate else null
+    videoDecoder = VideoDecoder(videoChannel, clientScope, maxVideoSize, maxFrameRateListener).apply { start() }
     videoStreamActive.set(startVideoStream)
   }
 
@@ -205,6 +206,11 @@ internal class DeviceClient(
     }
   }
 
+  private fun setMaxFrameRate(maxFrameRate: Int) {
+    logger.debug("Setting max frame rate to $maxFrameRate")
+    deviceController?.sendControlMessage(SetMaxFrameRateMessage(maxFrameRate))
+  }
+
   fun stopVideoStream() {
     if (videoStreamActive.compareAndSet(true, false)) {
       deviceController?.sendControlMessage(StopVideoStreamMessage.instance)
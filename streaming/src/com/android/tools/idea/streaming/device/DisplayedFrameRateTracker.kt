@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.streaming.device
+
+import com.android.annotations.concurrency.AnyThread
+import com.android.annotations.concurrency.GuardedBy
+
+private const val DEFAULT_MEASUREMENT_INTERVAL_MILLIS = 5000L
+private const val FRAME_RATE_STEP = 10
+private const val MAX_LIMITED_FRAME_RATE = 60
+
+/**
+ * Compares the number of decoded video frames to the number of displayed ones, and determines
+ * the maximum frame rate of the video stream that doesn't make the device encode frames that
+ * are never displayed.
+ *
+ * The frame rate is lowered to the displayed one when more than a fifth of the frames are not
+ * displayed, and raised one step at a time while all the frames are displayed and the video
+ * stream is at the limit.
+ */
+@AnyThread
+internal class DisplayedFrameRateTracker(private val measurementIntervalMillis: Long = DEFAULT_MEASUREMENT_INTERVAL_MILLIS) {
+
+  @GuardedBy("this")
+  private var intervalStart = 0L
+  @GuardedBy("this")
+  private var decodedFrames = 0
+  @GuardedBy("this")
+  private var displayedFrames = 0
+
+  /** The current maximum frame rate. Zero means no limit. */
+  @get:Synchronized
+  var maxFrameRate = 0
+    private set
+
+  @Synchronized
+  fun frameDecoded() {
+    decodedFrames++
+  }
+
+  @Synchronized
+  fun frameDisplayed() {
+    displayedFrames++
+  }
+
+  /**
+   * Returns the new maximum frame rate if it has to be changed based on the frames decoded
+   * and displayed since the end of the previous measurement interval, or null otherwise.
+   */
+  @Synchronized
+  fun update(timeMillis: Long): Int? {
+    if (intervalStart == 0L) {
+      intervalStart = timeMillis
+      return null
+    }
+    val elapsedTime = timeMillis - intervalStart
+    if (elapsedTime < measurementIntervalMillis) {
+      return null
+    }
+
+    val decoded = decodedFrames
+    val displayed = displayedFrames
+    intervalStart = timeMillis
+    decodedFrames = 0
+    displayedFrames = 0
+    if (displayed == 0) {
+      return null // Nothing is being displayed, e.g. the display view is hidden.
+    }
+
+    val newMaxFrameRate = when {
+      decoded * 4 > displayed * 5 -> roundUpFrameRate(displayed * 1000 / elapsedTime)
+      maxFrameRate != 0 && displayed >= decoded && decoded * 1000 / elapsedTime >= maxFrameRate * 9 / 10 ->
+          roundUpFrameRate(maxFrameRate.toLong() + FRAME_RATE_STEP)
+      else -> maxFrameRate
+    }
+    if (newMaxFrameRate == maxFrameRate) {
+      return null
+    }
+    maxFrameRate = newMaxFrameRate
+    return newMaxFrameRate
+  }
+
+  private fun roundUpFrameRate(frameRate: Long): Int {
+    val rounded = ((frameRate + FRAME_RATE_STEP - 1) / FRAME_RATE_STEP * FRAME_RATE_STEP).toInt().coerceAtLeast(FRAME_RATE_STEP)
+    return if (rounded >= MAX_LIMITED_FRAME_RATE) 0 else rounded
+  }
+}
@@ -19,12 +19,18 @@ import com.android.annotations.concurrency.AnyThread
 import com.android.annotations.concurrency.GuardedBy
 import com.android.tools.adtui.ImageUtils
 import com.android.tools.adtui.ImageUtils.ellipticalClip
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.streaming.coerceAtMost
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.diagnostic.thisLogger
 import com.intellij.util.containers.ContainerUtil
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.job
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import org.bytedeco.ffmpeg.avcodec.AVCodec
 import org.bytedeco.ffmpeg.avcodec.AVCodecContext
 import org.bytedeco.ffmpeg.avcodec.AVCodecParserContext
@@ -33,6 +39,8 @@ import org.bytedeco.ffmpeg.avcodec.AVPacket
 import org.bytedeco.ffmpeg.avutil.AVDictionary
 import org.bytedeco.ffmpeg.avutil.AVFrame
 import org.bytedeco.ffmpeg.global.avcodec.AV_PKT_FLAG_KEY
+import org.bytedeco.ffmpeg.global.avcodec.FF_THREAD_FRAME
+import org.bytedeco.ffmpeg.global.avcodec.FF_THREAD_SLICE
 import org.bytedeco.ffmpeg.global.avcodec.av_grow_packet
 import org.bytedeco.ffmpeg.global.avcodec.av_new_packet
 import org.bytedeco.ffmpeg.global.avcodec.av_packet_alloc
@@ -47,12 +55,15 @@ import org.bytedeco.ffmpeg.global.avcodec.avcodec_free_context
 import org.bytedeco.ffmpeg.global.avcodec.avcodec_open2
 import org.bytedeco.ffmpeg.global.avcodec.avcodec_receive_frame
 import org.bytedeco.ffmpeg.global.avcodec.avcodec_send_packet
+import org.bytedeco.ffmpeg.global.avutil.AVERROR_EAGAIN
 import org.bytedeco.ffmpeg.global.avutil.AV_NOPTS_VALUE
 import org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGRA
 import org.bytedeco.ffmpeg.global.avutil.av_frame_alloc
 import org.bytedeco.ffmpeg.global.avutil.av_frame_free
 import org.bytedeco.ffmpeg.global.avutil.av_frame_get_buffer
 import org.bytedeco.ffmpeg.global.avutil.av_frame_make_writable
+import org.bytedeco.ffmpeg.global.avutil.av_frame_move_ref
+import org.bytedeco.ffmpeg.global.avutil.av_frame_unref
 import org.bytedeco.ffmpeg.global.avutil.av_image_get_buffer_size
 import org.bytedeco.ffmpeg.global.swscale.SWS_BILINEAR
 import org.bytedeco.ffmpeg.global.swscale.sws_freeContext
@@ -64,6 +75,7 @@ import org.bytedeco.javacpp.DoublePointer
 import org.bytedeco.javacpp.IntPointer
 import org.bytedeco.javacpp.Pointer
 import org.bytedeco.javacpp.Pointer.memcpy
+import org.jetbrains.annotations.TestOnly
 import java.awt.Dimension
 import java.awt.Point
 import java.awt.color.ColorSpace
@@ -85,11 +97,23 @@ internal class VideoDecoder(
   private val videoChannel: SuspendingSocketChannel,
   private val decoderScope: CoroutineScope,
   @Volatile var maxOutputSize: Dimension,
+  private val maxFrameRateListener: ((Int) -> Unit)? = null,
 ) {
 
   private val imageLock = Any()
   @GuardedBy("imageLock")
   private var displayFrame: VideoFrame? = null
+  /** True if [displayFrame] has been consumed since it was set, or if there is no [displayFrame] yet. */
+  @GuardedBy("imageLock")
+  private var displayFrameConsumed = true
+  /** Wakes up the frame conversion when a new frame is decoded or when the display frame is consumed. */
+  private val conversionSignal = Channel<Unit>(Channel.CONFLATED)
+  private val frameRateTracker = DisplayedFrameRateTracker()
+  /** The number of the latest decoded frame, whether or not it is going to be displayed. */
+  @get:TestOnly
+  @Volatile
+  var decodedFrameNumber = 0
+    private set
   private val frameListeners = ContainerUtil.createLockFreeCopyOnWriteList<FrameListener>()
 
   fun addFrameListener(listener: FrameListener) {
@@ -103,13 +127,22 @@ internal class VideoDecoder(
   @AnyThread
   fun consumeDisplayFrame(consumer: Consumer<VideoFrame>) {
     synchronized(imageLock) {
-      displayFrame?.let { consumer.accept(it) }
+      val frame = displayFrame ?: return
+      consumer.accept(frame)
+      if (!displayFrameConsumed) {
+        displayFrameConsumed = true
+        frameRateTracker.frameDisplayed()
+      }
     }
+    conversionSignal.trySend(Unit)
   }
 
   /**
    * Starts the decoder and returns. The decoder will continue to run until the video channel
    * is disconnected or [decoderScope] is cancelled.
+   *
+   * Decoded frames are converted to images in a separate coroutine. A frame is converted only
+   * after the previous one has been consumed, frames decoded in the meantime are skipped.
    */
   fun start() {
     firstPacketArrival = 0L
@@ -118,6 +151,17 @@ internal class VideoDecoder(
       videoChannel.readFully(header)
       val codecName = String(header.array(), UTF_8).trim()
       val decodingContext = DecodingContext(codecName)
+      val decoding = coroutineContext.job
+      val converter = launch {
+        try {
+          decodingContext.convertFrames()
+        }
+        catch (e: VideoDecoderException) {
+          // Conversion would fail the same way for every frame, so the video stream is ended instead.
+          thisLogger().error(e)
+          decoding.cancel()
+        }
+      }
       try {
         while (true) {
           decodingContext.readAndProcessPacket()
@@ -128,6 +172,9 @@ internal class VideoDecoder(
       catch (_: EOFException) {
       }
       finally {
+        withContext(NonCancellable) {
+          converter.cancelAndJoin()
+        }
         decodingContext.close()
         onEndOfVideoStream()
       }
@@ -165,23 +212,29 @@ internal class VideoDecoder(
     private val codec: AVCodec
     private val codecContext: AVCodecContext
     private val decodingFrame: AVFrame
-    private var renderingFrame: AVFrame? = null
-    private var swsContext: SwsContext? = null
     private val parserContext: AVCodecParserContext
     private val headerBuffer: ByteBuffer = PacketHeader.createBuffer()
     private val packet: AVPacket = av_packet_alloc()
     private val pendingPacket: AVPacket = av_packet_alloc()
     private var hasPendingPacket = false
-
-    private val renderingSize: Dimension
-      get() {
-        val videoSize = Dimension(decodingFrame.width(), decodingFrame.height())
-        val maximumSize = maxOutputSize
-        if (maximumSize.width == 0 || maximumSize.height == 0) {
-          return videoSize
-        }
-        return videoSize.coerceAtMost(maximumSize)
-      }
+    /** Headers of the packets sent to the decoder for which no frame has been received yet. */
+    private val pendingHeaders = ArrayDeque<PacketHeader>()
+
+    private val decodedFrameLock = Any()
+    /** The latest decoded frame that hasn't been converted yet. */
+    @GuardedBy("decodedFrameLock")
+    private val decodedFrame: AVFrame
+    @GuardedBy("decodedFrameLock")
+    private var decodedFrameHeader: PacketHeader? = null
+
+    // The fields below are used only by the frame conversion.
+    private val convertingFrame: AVFrame
+    private var renderingFrame: AVFrame? = null
+    private var swsContext: SwsContext? = null
+    /** An image that is not displayed and can be reused for the next frame. */
+    private var spareImage: BufferedImage? = null
+    /** The image of [displayFrame] if it is a pooled image, i.e. if it was not rotated or clipped. */
+    private var displayedPooledImage: BufferedImage? = null
 
     init {
       thisLogger().debug { "Receiving $codecName video stream" }
@@ -196,12 +249,19 @@ internal class VideoDecoder(
         flags(flags() or PARSER_FLAG_COMPLETE_FRAMES)
       } ?: throw VideoDecoderException("Could not initialize parser")
 
+      // Slice threading doesn't delay frames, but frame threading delays each frame by up to thread_count - 1 frames.
+      codecContext.thread_count(Runtime.getRuntime().availableProcessors().coerceAtMost(MAX_DECODING_THREADS))
+      codecContext.thread_type(
+          if (StudioFlags.DEVICE_MIRRORING_FRAME_THREADED_DECODING.get()) FF_THREAD_FRAME or FF_THREAD_SLICE else FF_THREAD_SLICE)
+
       if (avcodec_open2(codecContext, codec, null as AVDictionary?) < 0) {
         avcodec_free_context(codecContext)
         throw VideoDecoderException("Could not open codec ${codec.name()}")
       }
 
       decodingFrame = av_frame_alloc()
+      decodedFrame = av_frame_alloc()
+      convertingFrame = av_frame_alloc()
     }
 
     suspend fun readAndProcessPacket() {
@@ -241,6 +301,8 @@ internal class VideoDecoder(
       avcodec_close(codecContext)
       avcodec_free_context(codecContext)
       av_frame_free(decodingFrame)
+      av_frame_free(decodedFrame)
+      av_frame_free(convertingFrame)
       renderingFrame?.let { av_frame_free(it) }
       swsContext?.let { sws_freeContext(it) }
       av_packet_free(packet)
@@ -315,12 +377,73 @@ internal class VideoDecoder(
       if (ret < 0) {
         throw VideoDecoderException("Video packet was rejected by the decoder: $ret")
       }
+      pendingHeaders.add(header)
+
+      // With frame threading, a frame may be received after a few more packets are sent to the decoder.
+      while (true) {
+        val result = avcodec_receive_frame(codecContext, decodingFrame)
+        if (result == AVERROR_EAGAIN()) {
+          break
+        }
+        if (result != 0) {
+          throw VideoDecoderException("Could not receive video frame")
+        }
+
+        val frameHeader = takePendingHeader(decodingFrame.pts()) ?: header
+        synchronized(decodedFrameLock) {
+          // A decoded frame that hasn't been converted yet is replaced since it is never going to be displayed.
+          av_frame_unref(decodedFrame)
+          av_frame_move_ref(decodedFrame, decodingFrame)
+          decodedFrameHeader = frameHeader
+        }
+        decodedFrameNumber = frameHeader.frameNumber.toInt()
+        frameRateTracker.frameDecoded()
+        conversionSignal.trySend(Unit)
+      }
 
-      if (avcodec_receive_frame(codecContext, decodingFrame) != 0) {
-        throw VideoDecoderException("Could not receive video frame")
+      if (maxFrameRateListener != null) {
+        frameRateTracker.update(System.currentTimeMillis())?.let { maxFrameRateListener.invoke(it) }
       }
+    }
 
-      val size = renderingSize
+    private fun takePendingHeader(presentationTimestamp: Long): PacketHeader? {
+      while (true) {
+        val header = pendingHeaders.removeFirstOrNull() ?: return null
+        if (presentationTimestamp == AV_NOPTS_VALUE || header.presentationTimestampUs == presentationTimestamp) {
+          return header
+        }
+      }
+    }
+
+    /** Converts decoded frames to images until cancelled or until a frame fails to be converted. */
+    suspend fun convertFrames() {
+      while (true) {
+        conversionSignal.receive()
+        if (!synchronized(imageLock) { displayFrameConsumed }) {
+          continue // The next signal comes when the display frame is consumed.
+        }
+        val header = takeDecodedFrame() ?: continue
+        try {
+          convertFrame(header)
+          onNewFrameAvailable()
+        }
+        finally {
+          av_frame_unref(convertingFrame)
+        }
+      }
+    }
+
+    private fun takeDecodedFrame(): PacketHeader? {
+      synchronized(decodedFrameLock) {
+        val header = decodedFrameHeader ?: return null
+        decodedFrameHeader = null
+        av_frame_move_ref(convertingFrame, decodedFrame)
+        return header
+      }
+    }
+
+    private fun convertFrame(header: PacketHeader) {
+      val size = getRenderingSize(convertingFrame)
       var renderingFrame = renderingFrame
       if (renderingFrame == null || renderingFrame.width() != size.width || renderingFrame.height() != size.height) {
         renderingFrame?.let { av_frame_free(it) }
@@ -333,41 +456,62 @@ internal class VideoDecoder(
         throw RuntimeException("av_frame_make_writable failed")
       }
 
-      sws_scale(getSwsContext(renderingFrame), decodingFrame.data(), decodingFrame.linesize(), 0, decodingFrame.height(),
-                renderingFrame.data(), renderingFrame.linesize())
+      sws_scale(getSwsContext(convertingFrame, renderingFrame), convertingFrame.data(), convertingFrame.linesize(), 0,
+                convertingFrame.height(), renderingFrame.data(), renderingFrame.linesize())
 
       val numBytes = av_image_get_buffer_size(renderingFrame.format(), renderingFrame.width(), renderingFrame.height(), 1)
       val framePixels = renderingFrame.data().get().asByteBufferOfSize(numBytes).asIntBuffer()
-      val imageSize = Dimension(renderingFrame.width(), renderingFrame.height())
 
+      // The pixels are copied to an image that is not displayed, so that painting doesn't have to wait for the copying.
+      val pooledImage = takeSpareImage(renderingFrame.width(), renderingFrame.height())
+      framePixels.get((pooledImage.raster.dataBuffer as DataBufferInt).data)
+      var image = ImageUtils.rotateByQuadrants(pooledImage, header.displayOrientationCorrection)
+      if (header.displayRound) {
+        image = ellipticalClip(image, null)
+      }
+
+      val frame = VideoFrame(image, header.displaySize, header.displayOrientation, header.displayOrientationCorrection,
+                             header.displayRound, header.frameNumber.toInt(), header.originationTimestampUs / 1000)
       synchronized(imageLock) {
-        var image = displayFrame?.image
-        if (image?.width == imageSize.width && image.height == imageSize.height &&
-            displayFrame?.orientationCorrection == 0 && header.displayOrientationCorrection == 0 && !header.displayRound) {
-          val imagePixels = (image.raster.dataBuffer as DataBufferInt).data
-          framePixels.get(imagePixels)
-        }
-        else {
-          val imagePixels = IntArray(imageSize.width * imageSize.height)
-          framePixels.get(imagePixels)
-          val buffer = DataBufferInt(imagePixels, imagePixels.size)
-          val sampleModel = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, imageSize.width, imageSize.height, SAMPLE_MODEL_BIT_MASKS)
-          val raster = Raster.createWritableRaster(sampleModel, buffer, ZERO_POINT)
-          image = ImageUtils.rotateByQuadrants(BufferedImage(COLOR_MODEL, raster, false, null), header.displayOrientationCorrection)
-          if (header.displayRound) {
-            image = ellipticalClip(image, null)
-          }
-        }
+        displayFrame = frame
+        displayFrameConsumed = false
+      }
 
-        displayFrame = VideoFrame(image, header.displaySize, header.displayOrientation, header.displayOrientationCorrection,
-                                  header.displayRound, header.frameNumber.toInt(), header.originationTimestampUs / 1000)
+      // The image of the previous display frame is not displayed anymore.
+      if (image === pooledImage) {
+        spareImage = displayedPooledImage
+        displayedPooledImage = pooledImage
       }
+      else {
+        spareImage = pooledImage
+        displayedPooledImage = null
+      }
+    }
+
+    private fun takeSpareImage(width: Int, height: Int): BufferedImage {
+      val image = spareImage
+      spareImage = null
+      if (image?.width == width && image.height == height) {
+        return image
+      }
+      val imagePixels = IntArray(width * height)
+      val buffer = DataBufferInt(imagePixels, imagePixels.size)
+      val sampleModel = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, SAMPLE_MODEL_BIT_MASKS)
+      val raster = Raster.createWritableRaster(sampleModel, buffer, ZERO_POINT)
+      return BufferedImage(COLOR_MODEL, raster, false, null)
+    }
 
-      onNewFrameAvailable()
+    private fun getRenderingSize(frame: AVFrame): Dimension {
+      val videoSize = Dimension(frame.width(), frame.height())
+      val maximumSize = maxOutputSize
+      if (maximumSize.width == 0 || maximumSize.height == 0) {
+        return videoSize
+      }
+      return videoSize.coerceAtMost(maximumSize)
     }
 
-    private fun getSwsContext(renderingFrame: AVFrame): SwsContext {
-      val context = sws_getCachedContext(swsContext, decodingFrame.width(), decodingFrame.height(), decodingFrame.format(),
+    private fun getSwsContext(sourceFrame: AVFrame, renderingFrame: AVFrame): SwsContext {
+      val context = sws_getCachedContext(swsContext, sourceFrame.width(), sourceFrame.height(), sourceFrame.format(),
                                          renderingFrame.width(), renderingFrame.height(), renderingFrame.format(),
                                          SWS_BILINEAR, null, null, null as DoublePointer?) ?:
              throw VideoDecoderException("Could not allocate SwsContext")
@@ -428,6 +572,7 @@ private fun AVPacket.toDebugString(): String =
   "packet size=${size()}, flags=0x${Integer.toHexString(flags())} pts=0x${toHexString(pts())} dts=${toHexString(dts())}"
 
 private const val CHANNEL_HEADER_LENGTH = 20
+private const val MAX_DECODING_THREADS = 4
 
 private val ZERO_POINT = Point()
 private const val ALPHA_MASK = 0xFF shl 24
@@ -21,6 +21,7 @@ import com.android.annotations.concurrency.UiThread
 import com.android.emulator.ImageConverter
 import com.android.emulator.control.DisplayModeValue
 import com.android.emulator.control.ImageFormat
+import com.android.emulator.control.ImageTransport
 import com.android.emulator.control.KeyboardEvent
 import com.android.emulator.control.KeyboardEvent.KeyEventType
 import com.android.emulator.control.Notification.EventType.DISPLAY_CONFIGURATIONS_CHANGED_UI
@@ -162,6 +163,8 @@ import java.awt.image.DataBufferInt
 import java.awt.image.DirectColorModel
 import java.awt.image.Raster
 import java.awt.image.SinglePixelPackedSampleModel
+import java.io.IOException
+import java.nio.ByteBuffer
 import java.util.concurrent.atomic.AtomicReference
 import javax.swing.KeyStroke
 import kotlin.math.PI
@@ -543,10 +546,33 @@ class EmulatorView(
         .setFormat(ImageFormat.ImgFormat.RGB888)
         .setWidth(maxImageSize.width)
         .setHeight(maxImageSize.height)
-        .build()
-      val receiver = ScreenshotReceiver(maxImageSize, orientationQuadrants)
+      val sharedMemory = createScreenshotSharedMemory(maxImageSize)
+      if (sharedMemory != null) {
+        imageFormat.transport = ImageTransport.newBuilder()
+          .setChannel(ImageTransport.TransportChannel.MMAP)
+          .setHandle(sharedMemory.handle)
+          .build()
+      }
+      val receiver = ScreenshotReceiver(maxImageSize, orientationQuadrants, sharedMemory)
       screenshotReceiver = receiver
-      screenshotFeed = emulator.streamScreenshot(imageFormat, receiver)
+      screenshotFeed = emulator.streamScreenshot(imageFormat.build(), receiver)
+    }
+  }
+
+  /**
+   * Creates shared memory for screenshots of up to [maxImageSize] pixels if screenshots should be received through
+   * shared memory. The Emulator always runs on the same machine because it is connected to through localhost.
+   */
+  private fun createScreenshotSharedMemory(maxImageSize: Dimension): ScreenshotSharedMemory? {
+    if (!StudioFlags.EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS.get()) {
+      return null
+    }
+    return try {
+      ScreenshotSharedMemory.create(maxImageSize.width * maxImageSize.height * 3)
+    }
+    catch (e: IOException) {
+      LOG.warn("Unable to create shared memory for screenshots, falling back to gRPC", e)
+      null
     }
   }
 
@@ -1020,7 +1046,8 @@ class EmulatorView(
 
   private inner class ScreenshotReceiver(
     val maxImageSize: Dimension,
-    val orientationQuadrants: Int
+    val orientationQuadrants: Int,
+    private val sharedMemory: ScreenshotSharedMemory?
   ) : EmptyStreamObserver<ImageMessage>(), Disposable {
     private val screenshotForProcessing = AtomicReference<Screenshot?>()
     private val screenshotForDisplay = AtomicReference<Screenshot?>()
@@ -1029,6 +1056,10 @@ class EmulatorView(
     private val alarm = Alarm(this)
     private var expectedFrameNumber = -1
 
+    init {
+      sharedMemory?.let { Disposer.register(this, it) }
+    }
+
     override fun onNext(response: ImageMessage) {
       val arrivalTime = System.currentTimeMillis()
       val imageFormat = response.format
@@ -1053,9 +1084,13 @@ class EmulatorView(
         return // Ignore empty screenshot.
       }
 
-      if (response.image.size() != imageFormat.width * imageFormat.height * 3) {
+      // When the shared memory transport is used, the message contains no pixels and only notifies that a new frame
+      // has been written into the shared memory.
+      val imageByteCount = imageFormat.width * imageFormat.height * 3
+      val sharedImageBytes = if (response.image.isEmpty) sharedMemory?.copyImageBytes(imageByteCount) else null
+      if (sharedImageBytes == null && response.image.size() != imageByteCount) {
         LOG.error("Inconsistent ImageMessage: ${imageFormat.width}x${imageFormat.width} image contains ${response.image.size()} bytes" +
-                  " instead of ${imageFormat.width * imageFormat.height * 3}")
+                  " instead of $imageByteCount")
         return
       }
 
@@ -1086,12 +1121,12 @@ class EmulatorView(
       val recycledImage = recycledImage.getAndSet(null)?.get()
       val image = if (recycledImage?.width == imageFormat.width && recycledImage.height == imageFormat.height) {
         val pixels = (recycledImage.raster.dataBuffer as DataBufferInt).data
-        ImageConverter.unpackRgb888(response.image, pixels)
+        unpackPixels(response, sharedImageBytes, pixels)
         recycledImage
       }
       else {
         val pixels = IntArray(imageFormat.width * imageFormat.height)
-        ImageConverter.unpackRgb888(response.image, pixels)
+        unpackPixels(response, sharedImageBytes, pixels)
         val buffer = DataBufferInt(pixels, pixels.size)
         val sampleModel = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, imageFormat.width, imageFormat.height, SAMPLE_MODEL_BIT_MASKS)
         val raster = Raster.createWritableRaster(sampleModel, buffer, ZERO_POINT)
@@ -1125,6 +1160,15 @@ class EmulatorView(
       }
     }
 
+    private fun unpackPixels(response: ImageMessage, sharedImageBytes: ByteBuffer?, pixels: IntArray) {
+      if (sharedImageBytes == null) {
+        ImageConverter.unpackRgb888(response.image, pixels)
+      }
+      else {
+        ImageConverter.unpackRgb888(sharedImageBytes, pixels)
+      }
+    }
+
     private fun checkAspectRatioConsistency(imageFormat: ImageFormat, displayMode: DisplayMode): Boolean {
       val imageAspectRatio = if (imageFormat.rotation.rotationValue % 2 == 0) imageFormat.width.toDouble() / imageFormat.height
                              else imageFormat.height.toDouble() / imageFormat.width
@@ -1141,7 +1185,7 @@ class EmulatorView(
     }
 
     private fun computeSkinLayoutOnPooledThread(screenshotWithoutSkin: Screenshot) {
-      screenshotForProcessing.set(screenshotWithoutSkin)
+      screenshotForProcessing.getAndSet(screenshotWithoutSkin)?.let(::recycleSupersededScreenshot)
 
       executeOnPooledThread {
         // If the screenshot feed has not been cancelled, update the skin and the display image.
@@ -1159,7 +1203,7 @@ class EmulatorView(
     }
 
     private fun updateDisplayImageOnUiThread(screenshot: Screenshot) {
-      screenshotForDisplay.set(screenshot)
+      screenshotForDisplay.getAndSet(screenshot)?.let(::recycleSupersededScreenshot)
 
       EventQueue.invokeLater { // This is safe because this code doesn't touch PSI or VFS.
         // If the screenshot feed has not been cancelled, update the display image.
@@ -1169,6 +1213,15 @@ class EmulatorView(
       }
     }
 
+    /**
+     * Makes the image of a screenshot that was replaced by a newer one before being displayed available for the next
+     * frame. When the UI falls behind, this keeps the frames converted in place into a recycled raster instead of
+     * allocating a new image for every frame. The dropped frame itself is accounted for in [updateDisplayImage].
+     */
+    private fun recycleSupersededScreenshot(screenshot: Screenshot) {
+      recycledImage.compareAndSet(null, SofterReference(screenshot.image))
+    }
+
     @UiThread
     private fun updateDisplayImage() {
       hideLongRunningOperationIndicatorInstantly()
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.streaming.emulator
+
+import com.intellij.openapi.Disposable
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.WRITE
+
+/**
+ * A memory-mapped file the Emulator writes screenshots into when they are requested with the MMAP image transport.
+ * The pixels are then read in place instead of being serialized into gRPC messages, which only notify about new frames.
+ */
+internal class ScreenshotSharedMemory private constructor(private val file: Path, private val buffer: MappedByteBuffer) : Disposable {
+
+  /** The URL of the file, as expected by the Emulator. */
+  val handle: String = file.toUri().toString()
+
+  /** Reused between frames, see [copyImageBytes]. */
+  private var imageBytes = ByteArray(0)
+
+  /**
+   * Copies the first [byteCount] bytes of the shared memory, which hold the latest frame written by the Emulator, or returns null
+   * if the shared memory is not large enough to contain them. The returned buffer is only valid until the next call.
+   *
+   * The Emulator may start writing the next frame while this one is being copied, and the shared memory contains no frame number.
+   * The copy is therefore compared with the shared memory afterwards, and taken again if the frame changed in the meantime.
+   */
+  fun copyImageBytes(byteCount: Int): ByteBuffer? {
+    if (byteCount > buffer.capacity()) {
+      return null
+    }
+    if (imageBytes.size != byteCount) {
+      imageBytes = ByteArray(byteCount)
+    }
+    val frame = buffer.duplicate()
+    frame.limit(byteCount)
+    val copy = ByteBuffer.wrap(imageBytes)
+    for (attempt in 1..MAX_COPY_ATTEMPTS) {
+      frame.rewind()
+      frame.get(imageBytes)
+      frame.rewind()
+      if (frame.mismatch(copy) < 0) {
+        break
+      }
+      // If the frames keep changing, the last copy is used. It may contain parts of two frames, which the next frame corrects.
+    }
+    return copy
+  }
+
+  override fun dispose() {
+    try {
+      // The mapping stays valid until the buffer is garbage collected.
+      Files.deleteIfExists(file)
+    }
+    catch (e: IOException) {
+      // A file that is still mapped cannot be deleted on Windows.
+      file.toFile().deleteOnExit()
+    }
+  }
+
+  companion object {
+    private const val MAX_COPY_ATTEMPTS = 3
+
+    /** Creates shared memory of [size] bytes backed by a temporary file. */
+    @Throws(IOException::class)
+    fun create(size: Int): ScreenshotSharedMemory {
+      val file = Files.createTempFile("emulator-screenshot", ".rgb")
+      try {
+        FileChannel.open(file, READ, WRITE).use { channel ->
+          return ScreenshotSharedMemory(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size.toLong()))
+        }
+      }
+      catch (e: IOException) {
+        Files.deleteIfExists(file)
+        throw e
+      }
+    }
+  }
+}
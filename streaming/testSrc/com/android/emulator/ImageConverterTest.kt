@@ -18,8 +18,10 @@ package com.android.emulator
 import com.android.tools.idea.protobuf.ByteString
 import com.android.tools.idea.protobuf.UnsafeByteOperations
 import com.intellij.testFramework.UsefulTestCase.assertThrows
+import org.junit.Assert.assertEquals
 import org.junit.Assert.fail
 import org.junit.Test
+import java.nio.ByteBuffer
 
 /**
  * Tests for [ImageConverter].
@@ -40,16 +42,42 @@ class ImageConverterTest {
     val expectedPixels = IntArray(IMAGE_SIZE)
     ImageConverter.unpackRgb888Slow(testImage, expectedPixels)
     val t = runBenchmark { ImageConverter.unpackRgb888(testImage, pixels) }
-    for (i in pixels.indices) {
-      val expected = expectedPixels[i]
-      val actual = pixels[i]
-      if (expected != actual) {
-        fail("The pixel at offset $i is ${String.format("0x%08X", actual)}, expected ${String.format("0x%08X", expected)}")
-      }
-    }
+    checkPixels(expectedPixels, pixels)
     println("unpackRgb888: ${String.format("%.5f", t)} sec")
   }
 
+  @Test
+  fun testUnpackRgb888DirectBuffer() {
+    val expectedPixels = IntArray(IMAGE_SIZE)
+    ImageConverter.unpackRgb888Slow(testImage, expectedPixels)
+    val buffer = ByteBuffer.allocateDirect(testImage.size() + 1)
+    buffer.put(0)
+    testImage.copyTo(buffer)
+    buffer.flip().position(1)
+    val pixels = IntArray(IMAGE_SIZE)
+    val t = runBenchmark { ImageConverter.unpackRgb888(buffer, pixels) }
+    checkPixels(expectedPixels, pixels)
+    assertEquals(1, buffer.position())
+    println("unpackRgb888(direct ByteBuffer): ${String.format("%.5f", t)} sec")
+
+    pixels.fill(0)
+    ImageConverter.unpackRgb888(UnsafeByteOperations.unsafeWrap(buffer), pixels)
+    checkPixels(expectedPixels, pixels)
+  }
+
+  @Test
+  fun testUnpackRgb888HeapBuffer() {
+    val expectedPixels = IntArray(IMAGE_SIZE)
+    ImageConverter.unpackRgb888Slow(testImage, expectedPixels)
+    val pixels = IntArray(IMAGE_SIZE)
+    ImageConverter.unpackRgb888(testImage.asReadOnlyByteBuffer(), pixels)
+    checkPixels(expectedPixels, pixels)
+
+    pixels.fill(0)
+    ImageConverter.unpackRgb888(ByteBuffer.wrap(testImage.toByteArray()), pixels)
+    checkPixels(expectedPixels, pixels)
+  }
+
   @Test
   fun testUnpackRgb888ErrorHandling() {
     val bytes = ByteArray(30)
@@ -60,6 +88,20 @@ class ImageConverterTest {
     assertThrows(ArrayIndexOutOfBoundsException::class.java) {
       ImageConverter.unpackRgb888(UnsafeByteOperations.unsafeWrap(bytes, 0, bytes.size), IntArray(9))
     }
+
+    assertThrows(ArrayIndexOutOfBoundsException::class.java) {
+      ImageConverter.unpackRgb888(ByteBuffer.allocateDirect(30), IntArray(9))
+    }
+  }
+
+  private fun checkPixels(expectedPixels: IntArray, pixels: IntArray) {
+    for (i in pixels.indices) {
+      val expected = expectedPixels[i]
+      val actual = pixels[i]
+      if (expected != actual) {
+        fail("The pixel at offset $i is ${String.format("0x%08X", actual)}, expected ${String.format("0x%08X", expected)}")
+      }
+    }
   }
 
   private fun runBenchmark(runnable: Runnable): Double {
@@ -180,6 +180,34 @@ internal class DeviceViewTest {
     assertThat(frameListenerCalls).isEqualTo(framesBeforeRemoving)
   }
 
+  @Test
+  fun testFramesDecodedBeforePaintingAreSkipped() {
+    if (!isFFmpegAvailableToTest()) {
+      return
+    }
+    createDeviceView(200, 300, 2.0)
+    waitForFrame()
+    val framesBefore = view.frameNumber
+    var frameListenerCalls = 0
+    view.addFrameListener(AbstractDisplayView.FrameListener { _, _, _, _ -> ++frameListenerCalls })
+
+    // Send several frames without painting the view.
+    runBlocking {
+      for (flavor in 1..4) {
+        agent.renderDisplay(flavor)
+      }
+    }
+    val decoder = view.deviceClient.videoDecoder!!
+    waitForCondition(2, TimeUnit.SECONDS) { decoder.decodedFrameNumber == agent.frameNumber }
+    waitForFrame()
+
+    // At most the frame that was converted while the previous one was still displayed and the latest frame are displayed, the frames
+    // in between are skipped.
+    assertThat(view.frameNumber).isEqualTo(agent.frameNumber)
+    assertThat(agent.frameNumber - framesBefore).isAtLeast(4)
+    assertThat(frameListenerCalls).isAtMost(2)
+  }
+
   @Test
   fun testResizingRotationAndMouseInput() {
     if (!isFFmpegAvailableToTest()) {
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.streaming.device
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+/**
+ * Tests for [DisplayedFrameRateTracker].
+ */
+class DisplayedFrameRateTrackerTest {
+  private val tracker = DisplayedFrameRateTracker(measurementIntervalMillis = 1000)
+
+  @Test
+  fun testFrameRateIsLoweredWhenFramesAreNotDisplayed() {
+    assertThat(tracker.update(1000)).isNull()
+    recordFrames(decoded = 60, displayed = 30)
+    assertThat(tracker.update(1500)).isNull() // The measurement interval hasn't elapsed yet.
+    assertThat(tracker.update(2000)).isEqualTo(30)
+    assertThat(tracker.maxFrameRate).isEqualTo(30)
+  }
+
+  @Test
+  fun testFrameRateIsRaisedWhileAllFramesAreDisplayed() {
+    tracker.update(1000)
+    recordFrames(decoded = 60, displayed = 25)
+    assertThat(tracker.update(2000)).isEqualTo(30)
+
+    recordFrames(decoded = 30, displayed = 30)
+    assertThat(tracker.update(3000)).isEqualTo(40)
+    recordFrames(decoded = 40, displayed = 40)
+    assertThat(tracker.update(4000)).isEqualTo(50)
+    recordFrames(decoded = 50, displayed = 50)
+    assertThat(tracker.update(5000)).isEqualTo(0) // No limit.
+  }
+
+  @Test
+  fun testFrameRateIsUnchangedBelowTheLimit() {
+    tracker.update(1000)
+    recordFrames(decoded = 60, displayed = 20)
+    assertThat(tracker.update(2000)).isEqualTo(20)
+
+    // The device produces fewer frames than allowed.
+    recordFrames(decoded = 5, displayed = 5)
+    assertThat(tracker.update(3000)).isNull()
+    assertThat(tracker.maxFrameRate).isEqualTo(20)
+  }
+
+  @Test
+  fun testFrameRateIsUnchangedWhenNothingIsDisplayed() {
+    tracker.update(1000)
+    recordFrames(decoded = 60, displayed = 0)
+    assertThat(tracker.update(2000)).isNull()
+    assertThat(tracker.maxFrameRate).isEqualTo(0)
+  }
+
+  private fun recordFrames(decoded: Int, displayed: Int) {
+    repeat(decoded) { tracker.frameDecoded() }
+    repeat(displayed) { tracker.frameDisplayed() }
+  }
+}
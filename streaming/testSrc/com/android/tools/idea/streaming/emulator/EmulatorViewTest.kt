@@ -16,6 +16,8 @@
 package com.android.tools.idea.streaming.emulator
 
 import com.android.emulator.control.FoldedDisplay
+import com.android.emulator.control.ImageFormat
+import com.android.emulator.control.ImageTransport
 import com.android.emulator.control.ThemingStyle
 import com.android.testutils.ImageDiffUtil
 import com.android.testutils.MockitoKt.any
@@ -30,6 +32,7 @@ import com.android.tools.adtui.swing.HeadlessRootPaneContainer
 import com.android.tools.adtui.swing.IconLoaderRule
 import com.android.tools.adtui.swing.replaceKeyboardFocusManager
 import com.android.tools.idea.concurrency.waitForCondition
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.protobuf.TextFormat.shortDebugString
 import com.android.tools.idea.streaming.emulator.FakeEmulator.GrpcCallRecord
 import com.android.tools.idea.testing.mockStatic
@@ -284,6 +287,28 @@ class EmulatorViewTest {
     assertAppearance(ui, "EmulatorView4")
   }
 
+  @Test
+  fun testSharedMemoryScreenshots() {
+    StudioFlags.EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS.override(true)
+    try {
+      val view = emulatorViewRule.newEmulatorView()
+      val container = createScrollPane(view)
+      val ui = FakeUi(container, 2.0)
+
+      container.size = Dimension(200, 300)
+      ui.layoutAndDispatchEvents()
+      val call = getStreamScreenshotCallAndWaitForFrame(ui, view, 1)
+      val request = call.request as ImageFormat
+      assertThat(request.transport.channel).isEqualTo(ImageTransport.TransportChannel.MMAP)
+      assertThat(request.transport.handle).startsWith("file:")
+      // The frame read from the shared memory looks the same as the one sent over gRPC.
+      assertAppearance(ui, "EmulatorView1")
+    }
+    finally {
+      StudioFlags.EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS.clearOverride()
+    }
+  }
+
   @Test
   fun testKeyboardInput() {
     val view = emulatorViewRule.newEmulatorView()
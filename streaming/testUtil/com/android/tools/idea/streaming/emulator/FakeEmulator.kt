@@ -26,6 +26,7 @@ import com.android.emulator.control.FoldedDisplay
 import com.android.emulator.control.Image
 import com.android.emulator.control.ImageFormat
 import com.android.emulator.control.ImageFormat.ImgFormat
+import com.android.emulator.control.ImageTransport
 import com.android.emulator.control.KeyboardEvent
 import com.android.emulator.control.MouseEvent
 import com.android.emulator.control.Notification
@@ -88,16 +89,21 @@ import java.awt.geom.Path2D
 import java.awt.image.BufferedImage
 import java.awt.image.BufferedImage.TYPE_INT_ARGB
 import java.io.ByteArrayOutputStream
+import java.net.URI
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.nio.charset.StandardCharsets.UTF_8
 import java.nio.file.CopyOption
 import java.nio.file.FileVisitResult
 import java.nio.file.Files
 import java.nio.file.NoSuchFileException
 import java.nio.file.Path
+import java.nio.file.Paths
 import java.nio.file.SimpleFileVisitor
 import java.nio.file.StandardCopyOption
 import java.nio.file.StandardOpenOption.CREATE
 import java.nio.file.StandardOpenOption.CREATE_NEW
+import java.nio.file.StandardOpenOption.WRITE
 import java.nio.file.attribute.BasicFileAttributes
 import java.util.concurrent.CancellationException
 import java.util.concurrent.ExecutorService
@@ -438,9 +444,18 @@ class FakeEmulator(val avdFolder: Path, val grpcPort: Int, registrationDirectory
     displayMode?.let { imageFormat.displayMode = it.displayModeId }
 
     val response = Image.newBuilder()
-      .setImage(ByteString.copyFrom(imageBytes))
-      .setFormat(imageFormat)
       .setSeq(++frameNumber)
+    if (request.transport.channel == ImageTransport.TransportChannel.MMAP) {
+      // Write the pixels into the shared memory file and send only the image metadata.
+      FileChannel.open(Paths.get(URI(request.transport.handle)), WRITE).use { channel ->
+        channel.write(ByteBuffer.wrap(imageBytes), 0)
+      }
+      imageFormat.transport = request.transport
+    }
+    else {
+      response.image = ByteString.copyFrom(imageBytes)
+    }
+    response.format = imageFormat.build()
     sendStreamingResponse(responseObserver, response.build())
   }
 
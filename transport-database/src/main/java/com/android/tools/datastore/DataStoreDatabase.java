@@ -19,6 +19,7 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.function.Consumer;
 import org.jetbrains.annotations.NotNull;
 
@@ -78,13 +79,19 @@ public class DataStoreDatabase {
             }
           }
           connection = DriverManager.getConnection(String.format("jdbc:sqlite:%s", dbFile.getPath()));
+          // Write-ahead logging lets readers proceed while a batch is being committed, and makes each commit a sequential append
+          // instead of a rollback journal rewrite. The journal mode can't be changed inside a transaction so this has to happen
+          // before auto-commit is disabled below.
+          try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+          }
           break;
         default:
           throw new RuntimeException("Characteristic not handled!");
       }
 
-      // Performance optimization.
-      // TODO: Create a timer and commit the database transaction every X seconds.
+      // Performance optimization. Transactions are committed in groups by UnifiedEventsWriteQueue.
       connection.setAutoCommit(false);
     }
     catch (ClassNotFoundException e) {
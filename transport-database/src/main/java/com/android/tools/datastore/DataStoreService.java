@@ -194,7 +194,7 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   public void createPollers() {
     // TODO b/73538507 shared between all services to support inserting file content into generic byte cache (e.g. importing hprof)
     // We should be able to keep this inside TransportService after legacy pipeline removal.
-    UnifiedEventsTable unifiedTable = new UnifiedEventsTable();
+    UnifiedEventsTable unifiedTable = new UnifiedEventsTable(true);
     myTransportService = new TransportService(this, unifiedTable, myFetchExecutor);
     registerService(myTransportService);
     registerService(new ProfilerService(this, myLogService));
@@ -271,6 +271,8 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       client.getChannel().shutdownNow();
     }
     myConnectedClients.clear();
+    // Commit the events that are still queued before the connections go away.
+    myTransportService.shutdown();
     myDatabases.forEach((name, db) -> db.disconnect());
     DataStoreTable.removeDataStoreErrorCallback(this);
   }
@@ -144,36 +144,67 @@ public abstract class DataStoreTable<T extends Enum> {
    * @param batchParams a list of objects to be put into the database.
    * @param paramConverter a callback that converts each object to an array of data. The array of data will be applied to the input params
    *                       of the specified statement.
+   * @return whether every element of the batch was executed. On failure, some of the elements may still have been applied.
    */
-  protected <K> void executeBatch(@NotNull T statement, @NotNull List<K> batchParams, @NotNull Function<K, Object[]> paramConverter) {
+  protected <K> boolean executeBatch(@NotNull T statement, @NotNull List<K> batchParams, @NotNull Function<K, Object[]> paramConverter) {
     if (isClosed()) {
-      return;
+      return false;
     }
     try {
       PreparedStatement stmt = getStatementMap().get(statement);
+      boolean[] success = {true};
       batchParams.forEach((object) -> {
         try {
           applyParams(stmt, paramConverter.apply(object));
           stmt.addBatch();
         } catch (SQLException ex) {
+          success[0] = false;
           onError(ex);
         }
       });
       int[] results = stmt.executeBatch();
+      // Same as execute, don't keep the last batch element's payload alive in the cached statement.
+      stmt.clearParameters();
       for(int i = 0; i < results.length; i++) {
         if (results[i] == Statement.EXECUTE_FAILED) {
           throw new SQLException(String.format("Failed to insert batch element %d with result %d", i, results[i]));
         }
       }
+      return success[0];
+    }
+    catch (SQLException ex) {
+      onError(ex);
+      return false;
+    }
+  }
+
+  /**
+   * Commits the pending transaction of the underlying connection. This is a no-op if the connection is in auto-commit mode.
+   *
+   * @return whether the transaction was committed.
+   */
+  protected boolean commit() {
+    if (isClosed()) {
+      return false;
+    }
+    try {
+      if (!myConnection.getAutoCommit()) {
+        myConnection.commit();
+      }
+      return true;
     }
     catch (SQLException ex) {
       onError(ex);
+      return false;
     }
   }
 
-  protected void execute(@NotNull T statement, Object... params) {
+  /**
+   * @return whether the statement was executed.
+   */
+  protected boolean execute(@NotNull T statement, Object... params) {
     if (isClosed()) {
-      return;
+      return false;
     }
     try {
       PreparedStatement stmt = getStatementMap().get(statement);
@@ -182,9 +213,11 @@ public abstract class DataStoreTable<T extends Enum> {
       // Clear parameters on exit so cached statements don't keep potentially large objects in memory.
       // Example: Inserting a payload into the database.
       stmt.clearParameters();
+      return true;
     }
     catch (SQLException ex) {
       onError(ex);
+      return false;
     }
   }
 
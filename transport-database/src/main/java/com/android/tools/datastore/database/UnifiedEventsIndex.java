@@ -0,0 +1,534 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.idea.protobuf.InvalidProtocolBufferException;
+import com.android.tools.profiler.proto.Common.Event;
+import com.android.tools.profiler.proto.Transport.EventGroup;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * In-memory mirror of the {@link UnifiedEventsTable} that answers {@link UnifiedEventsTable#queryUnifiedEventGroups(GetEventGroupsRequest)}
+ * without going through SQL.
+ * <p>
+ * Events are partitioned by (stream, pid, kind) and, within a partition, by group id. Each group keeps its rows sorted by timestamp in
+ * parallel primitive arrays, with the serialized {@link Event} kept in a byte arena and referenced by offset. Range queries (including the
+ * +1/-1 events around the range) are binary searches, and only the rows that are returned get decoded.
+ * <p>
+ * The memory held by the index is capped. When it goes over the cap, the kind that holds the most memory is evicted and stops being
+ * indexed, and {@link #queryEventGroups(GetEventGroupsRequest)} returns null for it so that it is queried from the database instead.
+ */
+final class UnifiedEventsIndex {
+  static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  @NotNull private final ReentrantReadWriteLock myLock = new ReentrantReadWriteLock();
+  private final long myMaxBytes;
+  /**
+   * Kind -> partitions of that kind. There are only a handful of (stream, pid) pairs per kind so they are kept in a list.
+   */
+  @NotNull private final Map<Integer, List<Partition>> myPartitionsByKind = new HashMap<>();
+  /**
+   * Insertion order of the rows, the equivalent of the ROWID the SQL queries use to break timestamp ties.
+   */
+  private long myNextSequence;
+  /**
+   * Kinds that are no longer indexed, either because they were evicted or because the index may have missed some of their rows.
+   */
+  @NotNull private final Set<Integer> myEvictedKinds = new HashSet<>();
+  /**
+   * Approximate memory held by all the partitions.
+   */
+  private long myBytes;
+
+  UnifiedEventsIndex() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  UnifiedEventsIndex(long maxBytes) {
+    myMaxBytes = maxBytes;
+  }
+
+  void clear() {
+    myLock.writeLock().lock();
+    try {
+      myPartitionsByKind.clear();
+      myEvictedKinds.clear();
+      myBytes = 0;
+      myNextSequence = 0;
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Adds an event. Like the INSERT OR IGNORE in the table, an event with the same stream, pid, kind, group, timestamp and ended state as
+   * an existing one is dropped.
+   *
+   * @param data the serialized event.
+   */
+  void add(long streamId, @NotNull Event event, @NotNull byte[] data) {
+    myLock.writeLock().lock();
+    try {
+      int kind = event.getKind().getNumber();
+      if (myEvictedKinds.contains(kind)) {
+        return;
+      }
+      List<Partition> partitions = myPartitionsByKind.computeIfAbsent(kind, k -> new ArrayList<>());
+      Partition partition = findPartition(partitions, streamId, event.getPid());
+      if (partition == null) {
+        partition = new Partition(streamId, event.getPid());
+        partitions.add(partition);
+      }
+      Series series = partition.myGroups.computeIfAbsent(event.getGroupId(), Series::new);
+      long bytes = series.getBytes();
+      if (series.add(myNextSequence, event.getCommandId(), event.getTimestamp(), event.getIsEnded(), data)) {
+        myNextSequence++;
+        updateBytes(partition, series.getBytes() - bytes);
+        while (myBytes > myMaxBytes && !myPartitionsByKind.isEmpty()) {
+          evictLargestKind();
+        }
+      }
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  void delete(long streamId, int pid, long groupId, @NotNull Event.Kind kind, long fromTimestamp, long toTimestamp) {
+    myLock.writeLock().lock();
+    try {
+      Partition partition = findPartition(myPartitionsByKind.getOrDefault(kind.getNumber(), Collections.emptyList()), streamId, pid);
+      if (partition == null) {
+        return;
+      }
+      Series series = partition.myGroups.get(groupId);
+      if (series != null) {
+        long bytes = series.getBytes();
+        series.delete(fromTimestamp, toTimestamp);
+        updateBytes(partition, series.getBytes() - bytes);
+        if (series.mySize == 0) {
+          partition.myGroups.remove(groupId);
+          updateBytes(partition, -series.getBytes());
+        }
+      }
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Stops indexing the given kind, for rows that may be in the database but not in the index, e.g. after a batch that partially failed.
+   */
+  void evict(@NotNull Event.Kind kind) {
+    myLock.writeLock().lock();
+    try {
+      evictKind(kind.getNumber());
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Same semantics as {@link UnifiedEventsTable#queryUnifiedEventGroups(GetEventGroupsRequest)}.
+   *
+   * @return the event groups, or null if the kind of the request is not indexed.
+   */
+  @Nullable
+  List<EventGroup> queryEventGroups(@NotNull GetEventGroupsRequest request) throws InvalidProtocolBufferException {
+    long fromTimestamp = request.getFromTimestamp();
+    long toTimestamp = request.getToTimestamp();
+    boolean hasFrom = fromTimestamp > 0;
+    boolean hasTo = toTimestamp > 0 && toTimestamp != Long.MAX_VALUE;
+
+    myLock.readLock().lock();
+    try {
+      if (myEvictedKinds.contains(request.getKind().getNumber())) {
+        return null;
+      }
+      List<Partition> partitions = myPartitionsByKind.get(request.getKind().getNumber());
+      if (partitions == null) {
+        return Collections.emptyList();
+      }
+
+      // Matches are merged by group id across partitions, the same way the SQL queries group rows when no stream or pid is specified.
+      Map<Long, GroupMatch> matches = new HashMap<>();
+      for (Partition partition : partitions) {
+        if ((request.getStreamId() != 0 && partition.myStreamId != request.getStreamId()) ||
+            (request.getPid() != 0 && partition.myPid != request.getPid())) {
+          continue;
+        }
+        if (request.getGroupId() != 0) {
+          Series series = partition.myGroups.get(request.getGroupId());
+          if (series != null) {
+            collect(series, request.getCommandId(), hasFrom, fromTimestamp, hasTo, toTimestamp, matches);
+          }
+        }
+        else {
+          for (Series series : partition.myGroups.values()) {
+            collect(series, request.getCommandId(), hasFrom, fromTimestamp, hasTo, toTimestamp, matches);
+          }
+        }
+      }
+
+      List<EventGroup> groups = new ArrayList<>(matches.size());
+      for (Map.Entry<Long, GroupMatch> entry : matches.entrySet()) {
+        EventGroup group = entry.getValue().build(entry.getKey());
+        if (group != null) {
+          groups.add(group);
+        }
+      }
+      return groups;
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
+  private void updateBytes(@NotNull Partition partition, long delta) {
+    partition.myBytes += delta;
+    myBytes += delta;
+  }
+
+  private void evictLargestKind() {
+    int largestKind = 0;
+    long largestBytes = -1;
+    for (Map.Entry<Integer, List<Partition>> entry : myPartitionsByKind.entrySet()) {
+      long bytes = 0;
+      for (Partition partition : entry.getValue()) {
+        bytes += partition.myBytes;
+      }
+      if (bytes > largestBytes) {
+        largestKind = entry.getKey();
+        largestBytes = bytes;
+      }
+    }
+    evictKind(largestKind);
+  }
+
+  private void evictKind(int kind) {
+    myEvictedKinds.add(kind);
+    List<Partition> partitions = myPartitionsByKind.remove(kind);
+    if (partitions != null) {
+      for (Partition partition : partitions) {
+        myBytes -= partition.myBytes;
+      }
+    }
+  }
+
+  private static void collect(@NotNull Series series,
+                              int commandId,
+                              boolean hasFrom,
+                              long fromTimestamp,
+                              boolean hasTo,
+                              long toTimestamp,
+                              @NotNull Map<Long, GroupMatch> matches) {
+    int start = hasFrom ? series.lowerBound(fromTimestamp) : 0;
+    int end = hasTo ? series.upperBound(toTimestamp) : series.mySize;
+    GroupMatch match = null;
+
+    if (hasFrom) {
+      // Latest row strictly before the range.
+      for (int row = start - 1; row >= 0; row--) {
+        if (commandId == 0 || series.myCommandIds[row] == commandId) {
+          match = matches.computeIfAbsent(series.myGroupId, id -> new GroupMatch());
+          match.offerBefore(series, row);
+          break;
+        }
+      }
+    }
+
+    for (int row = start; row < end; row++) {
+      if (commandId == 0 || series.myCommandIds[row] == commandId) {
+        if (match == null) {
+          match = matches.computeIfAbsent(series.myGroupId, id -> new GroupMatch());
+        }
+        match.myInRange.add(new RowRef(series, row));
+      }
+    }
+
+    if (hasTo) {
+      // Earliest row strictly after the range.
+      for (int row = end; row < series.mySize; row++) {
+        if (commandId == 0 || series.myCommandIds[row] == commandId) {
+          if (match == null) {
+            match = matches.computeIfAbsent(series.myGroupId, id -> new GroupMatch());
+          }
+          match.offerAfter(series, row);
+          break;
+        }
+      }
+    }
+  }
+
+  @Nullable
+  private static Partition findPartition(@NotNull List<Partition> partitions, long streamId, int pid) {
+    for (Partition partition : partitions) {
+      if (partition.myStreamId == streamId && partition.myPid == pid) {
+        return partition;
+      }
+    }
+    return null;
+  }
+
+  private static final class Partition {
+    private final long myStreamId;
+    private final int myPid;
+    @NotNull private final Map<Long, Series> myGroups = new HashMap<>();
+    private long myBytes;
+
+    private Partition(long streamId, int pid) {
+      myStreamId = streamId;
+      myPid = pid;
+    }
+  }
+
+  /**
+   * Rows of a single (stream, pid, kind, group), sorted by timestamp then insertion order.
+   */
+  private static final class Series {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int INITIAL_PAYLOAD_CAPACITY = 256;
+    /**
+     * Size of a row in the primitive arrays.
+     */
+    private static final int ROW_BYTES = 8 + 8 + 4 + 1 + 4 + 4;
+
+    private final long myGroupId;
+    private int mySize;
+    @NotNull private long[] myTimestamps = new long[INITIAL_CAPACITY];
+    @NotNull private long[] mySequences = new long[INITIAL_CAPACITY];
+    @NotNull private int[] myCommandIds = new int[INITIAL_CAPACITY];
+    @NotNull private boolean[] myIsEnded = new boolean[INITIAL_CAPACITY];
+    @NotNull private int[] myPayloadOffsets = new int[INITIAL_CAPACITY];
+    @NotNull private int[] myPayloadLengths = new int[INITIAL_CAPACITY];
+    @NotNull private byte[] myPayloads = new byte[INITIAL_PAYLOAD_CAPACITY];
+    private int myPayloadSize;
+
+    private Series(long groupId) {
+      myGroupId = groupId;
+    }
+
+    private long getBytes() {
+      return (long)myTimestamps.length * ROW_BYTES + myPayloads.length;
+    }
+
+    /**
+     * @return the index of the first row whose timestamp is >= timestamp.
+     */
+    private int lowerBound(long timestamp) {
+      int low = 0;
+      int high = mySize;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myTimestamps[mid] < timestamp) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the index of the first row whose timestamp is > timestamp.
+     */
+    private int upperBound(long timestamp) {
+      int low = 0;
+      int high = mySize;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myTimestamps[mid] <= timestamp) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private boolean add(long sequence, int commandId, long timestamp, boolean isEnded, @NotNull byte[] data) {
+      int insertAt = upperBound(timestamp);
+      for (int row = lowerBound(timestamp); row < insertAt; row++) {
+        if (myIsEnded[row] == isEnded) {
+          return false;
+        }
+      }
+
+      if (mySize == myTimestamps.length) {
+        int capacity = mySize * 2;
+        myTimestamps = Arrays.copyOf(myTimestamps, capacity);
+        mySequences = Arrays.copyOf(mySequences, capacity);
+        myCommandIds = Arrays.copyOf(myCommandIds, capacity);
+        myIsEnded = Arrays.copyOf(myIsEnded, capacity);
+        myPayloadOffsets = Arrays.copyOf(myPayloadOffsets, capacity);
+        myPayloadLengths = Arrays.copyOf(myPayloadLengths, capacity);
+      }
+      // Events mostly arrive in timestamp order, in which case there is nothing to shift.
+      int tail = mySize - insertAt;
+      if (tail > 0) {
+        System.arraycopy(myTimestamps, insertAt, myTimestamps, insertAt + 1, tail);
+        System.arraycopy(mySequences, insertAt, mySequences, insertAt + 1, tail);
+        System.arraycopy(myCommandIds, insertAt, myCommandIds, insertAt + 1, tail);
+        System.arraycopy(myIsEnded, insertAt, myIsEnded, insertAt + 1, tail);
+        System.arraycopy(myPayloadOffsets, insertAt, myPayloadOffsets, insertAt + 1, tail);
+        System.arraycopy(myPayloadLengths, insertAt, myPayloadLengths, insertAt + 1, tail);
+      }
+
+      if (myPayloadSize + data.length > myPayloads.length) {
+        myPayloads = Arrays.copyOf(myPayloads, Math.max(myPayloads.length * 2, myPayloadSize + data.length));
+      }
+      System.arraycopy(data, 0, myPayloads, myPayloadSize, data.length);
+
+      myTimestamps[insertAt] = timestamp;
+      mySequences[insertAt] = sequence;
+      myCommandIds[insertAt] = commandId;
+      myIsEnded[insertAt] = isEnded;
+      myPayloadOffsets[insertAt] = myPayloadSize;
+      myPayloadLengths[insertAt] = data.length;
+      myPayloadSize += data.length;
+      mySize++;
+      return true;
+    }
+
+    private void delete(long fromTimestamp, long toTimestamp) {
+      int start = lowerBound(fromTimestamp);
+      int end = upperBound(toTimestamp);
+      if (start >= end) {
+        return;
+      }
+      int tail = mySize - end;
+      System.arraycopy(myTimestamps, end, myTimestamps, start, tail);
+      System.arraycopy(mySequences, end, mySequences, start, tail);
+      System.arraycopy(myCommandIds, end, myCommandIds, start, tail);
+      System.arraycopy(myIsEnded, end, myIsEnded, start, tail);
+      System.arraycopy(myPayloadOffsets, end, myPayloadOffsets, start, tail);
+      System.arraycopy(myPayloadLengths, end, myPayloadLengths, start, tail);
+      mySize -= end - start;
+
+      // Compact the arena so deleted payloads don't linger for the rest of the session.
+      byte[] payloads = new byte[Math.max(INITIAL_PAYLOAD_CAPACITY, myPayloadSize)];
+      int payloadSize = 0;
+      for (int row = 0; row < mySize; row++) {
+        System.arraycopy(myPayloads, myPayloadOffsets[row], payloads, payloadSize, myPayloadLengths[row]);
+        myPayloadOffsets[row] = payloadSize;
+        payloadSize += myPayloadLengths[row];
+      }
+      myPayloads = payloads;
+      myPayloadSize = payloadSize;
+    }
+
+    @NotNull
+    private Event decode(int row) throws InvalidProtocolBufferException {
+      return Event.parser().parseFrom(myPayloads, myPayloadOffsets[row], myPayloadLengths[row]);
+    }
+  }
+
+  private static final class RowRef {
+    @NotNull private final Series mySeries;
+    private final int myRow;
+
+    private RowRef(@NotNull Series series, int row) {
+      mySeries = series;
+      myRow = row;
+    }
+
+    private long getTimestamp() {
+      return mySeries.myTimestamps[myRow];
+    }
+
+    private long getSequence() {
+      return mySeries.mySequences[myRow];
+    }
+
+    private int compareTo(@NotNull RowRef other) {
+      int result = Long.compare(getTimestamp(), other.getTimestamp());
+      return result != 0 ? result : Long.compare(getSequence(), other.getSequence());
+    }
+  }
+
+  /**
+   * Rows matched for a single group id, possibly coming from several partitions.
+   */
+  private static final class GroupMatch {
+    @Nullable private RowRef myBefore;
+    @NotNull private final List<RowRef> myInRange = new ArrayList<>();
+    @Nullable private RowRef myAfter;
+
+    private void offerBefore(@NotNull Series series, int row) {
+      RowRef candidate = new RowRef(series, row);
+      if (myBefore == null || candidate.compareTo(myBefore) > 0) {
+        myBefore = candidate;
+      }
+    }
+
+    private void offerAfter(@NotNull Series series, int row) {
+      RowRef candidate = new RowRef(series, row);
+      if (myAfter == null || candidate.compareTo(myAfter) < 0) {
+        myAfter = candidate;
+      }
+    }
+
+    @Nullable
+    private EventGroup build(long groupId) throws InvalidProtocolBufferException {
+      // An ended group before the range has no -1 event.
+      RowRef before = myBefore != null && !myBefore.mySeries.myIsEnded[myBefore.myRow] ? myBefore : null;
+      if (before == null && myInRange.isEmpty()) {
+        // The +1 event is only returned for groups that already have events.
+        return null;
+      }
+
+      EventGroup.Builder group = EventGroup.newBuilder().setGroupId(groupId);
+      if (before != null) {
+        group.addEvents(before.mySeries.decode(before.myRow));
+      }
+      if (hasMultipleSeries()) {
+        myInRange.sort(RowRef::compareTo);
+      }
+      for (RowRef row : myInRange) {
+        group.addEvents(row.mySeries.decode(row.myRow));
+      }
+      if (myAfter != null) {
+        group.addEvents(myAfter.mySeries.decode(myAfter.myRow));
+      }
+      return group.build();
+    }
+
+    private boolean hasMultipleSeries() {
+      for (int i = 1; i < myInRange.size(); i++) {
+        if (myInRange.get(i).mySeries != myInRange.get(0).mySeries) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
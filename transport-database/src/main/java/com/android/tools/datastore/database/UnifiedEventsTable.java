@@ -29,6 +29,9 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
@@ -60,6 +63,34 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     }
   }
 
+  /**
+   * Optional write-behind stage for event inserts, see {@link UnifiedEventsWriteQueue}.
+   */
+  @Nullable private volatile UnifiedEventsWriteQueue myWriteQueue;
+
+  /**
+   * Optional in-memory index used to answer {@link #queryUnifiedEventGroups(GetEventGroupsRequest)} without SQL, see
+   * {@link UnifiedEventsIndex}. The database remains the source of truth, and is queried if the index can't answer.
+   */
+  @Nullable private final UnifiedEventsIndex myIndex;
+
+  /**
+   * Guards the shared connection against committing a batch while another thread is still reading a {@link ResultSet} of this table.
+   * Queries hold the read lock until their results have been read, batch inserts hold the write lock until they are committed.
+   */
+  @NotNull private final ReadWriteLock myConnectionLock = new ReentrantReadWriteLock();
+
+  public UnifiedEventsTable() {
+    this(false);
+  }
+
+  /**
+   * @param useInMemoryIndex whether event group queries should be answered by an in-memory index instead of SQL queries.
+   */
+  public UnifiedEventsTable(boolean useInMemoryIndex) {
+    myIndex = useInMemoryIndex ? new UnifiedEventsIndex() : null;
+  }
+
   @Override
   public void prepareStatements() {
     try {
@@ -92,22 +123,83 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     catch (SQLException ex) {
       onError(ex);
     }
+    // The tables have just been recreated.
+    if (myIndex != null) {
+      myIndex.clear();
+    }
+  }
+
+  void setWriteQueue(@Nullable UnifiedEventsWriteQueue writeQueue) {
+    myWriteQueue = writeQueue;
   }
 
   public void insertUnifiedEvent(long streamId, @NotNull Event event) {
-    execute(Statements.INSERT_EVENT,
-            streamId,
-            event.getPid(),
-            event.getGroupId(),
-            event.getKind().getNumber(),
-            event.getCommandId(),
-            event.getTimestamp(),
-            event.getIsEnded() ? 1 : 0,
-            event.toByteArray());
+    // Keep the insertion order (and therefore ROWID order) consistent with events that are still queued.
+    flushWriteQueue();
+    byte[] data = event.toByteArray();
+    boolean inserted = execute(Statements.INSERT_EVENT,
+                               streamId,
+                               event.getPid(),
+                               event.getGroupId(),
+                               event.getKind().getNumber(),
+                               event.getCommandId(),
+                               event.getTimestamp(),
+                               event.getIsEnded() ? 1 : 0,
+                               data);
+    if (inserted) {
+      addToIndex(streamId, event, data);
+    }
+  }
+
+  /**
+   * Inserts all events with a single batched statement execution, then commits them as one transaction.
+   */
+  void insertUnifiedEventBatch(@NotNull List<UnifiedEventsWriteQueue.PendingEvent> events) {
+    // Serialize each event once, for both the database and the index.
+    List<byte[]> data = new ArrayList<>(events.size());
+    List<Object[]> rows = new ArrayList<>(events.size());
+    for (UnifiedEventsWriteQueue.PendingEvent pending : events) {
+      Event event = pending.myEvent;
+      byte[] bytes = event.toByteArray();
+      data.add(bytes);
+      rows.add(new Object[]{
+        pending.myStreamId,
+        event.getPid(),
+        event.getGroupId(),
+        event.getKind().getNumber(),
+        event.getCommandId(),
+        event.getTimestamp(),
+        event.getIsEnded() ? 1 : 0,
+        bytes});
+    }
+    boolean committed;
+    myConnectionLock.writeLock().lock();
+    try {
+      committed = executeBatch(Statements.INSERT_EVENT, rows, Function.identity()) && commit();
+    }
+    finally {
+      myConnectionLock.writeLock().unlock();
+    }
+    if (myIndex == null || isClosed()) {
+      return;
+    }
+    for (int i = 0; i < events.size(); i++) {
+      if (committed) {
+        myIndex.add(events.get(i).myStreamId, events.get(i).myEvent, data.get(i));
+      }
+      else {
+        // Some of the rows may have been written anyway, so the index can't tell which of these kinds' rows are in the database.
+        myIndex.evict(events.get(i).myEvent.getKind());
+      }
+    }
   }
 
   public void deleteEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
-    execute(Statements.DELETE_EVENTS, streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
+    flushWriteQueue();
+    boolean deleted = execute(Statements.DELETE_EVENTS, streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
+    if (deleted && myIndex != null) {
+      myIndex.delete(streamId, pid, groupId, kind, fromTimestamp, toTimestamp);
+    }
   }
 
   @VisibleForTesting
@@ -154,6 +246,23 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
    * @param request
    */
   public List<EventGroup> queryUnifiedEventGroups(@NotNull GetEventGroupsRequest request) {
+    flushWriteQueue();
+    if (myIndex != null && !isClosed()) {
+      try {
+        List<EventGroup> groups = myIndex.queryEventGroups(request);
+        if (groups != null) {
+          return groups;
+        }
+      }
+      catch (InvalidProtocolBufferException ex) {
+        // Fall back to the database.
+        onError(ex);
+      }
+    }
+    return queryUnifiedEventGroupsFromDatabase(request);
+  }
+
+  private List<EventGroup> queryUnifiedEventGroupsFromDatabase(@NotNull GetEventGroupsRequest request) {
     ArrayList<Object> baseParams = new ArrayList<>();
     List<Object> beforeRangeParams = null;
     List<Object> afterRangeParams = null;
@@ -247,6 +356,7 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
 
   @Nullable
   public BytesResponse getBytes(@NotNull BytesRequest request) {
+    myConnectionLock.readLock().lock();
     try {
       ResultSet results = executeQuery(Statements.GET_BYTES, request.getStreamId(), request.getId());
       if (results.next()) {
@@ -256,6 +366,9 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     catch (InvalidProtocolBufferException | SQLException ex) {
       onError(ex);
     }
+    finally {
+      myConnectionLock.readLock().unlock();
+    }
 
     return null;
   }
@@ -273,6 +386,7 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
                             List<Object> params,
                             HashMap<Long, EventGroup.Builder> builderGroups,
                             Predicate<ResultSet> filter) {
+    myConnectionLock.readLock().lock();
     try {
       ResultSet results = executeOneTimeQuery(sql, params.toArray());
       while (results.next()) {
@@ -287,10 +401,31 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     catch (SQLException | InvalidProtocolBufferException ex) {
       onError(ex);
     }
+    finally {
+      myConnectionLock.readLock().unlock();
+    }
+  }
+
+  private void addToIndex(long streamId, @NotNull Event event, @NotNull byte[] data) {
+    if (myIndex != null && !isClosed()) {
+      myIndex.add(streamId, event, data);
+    }
+  }
+
+  /**
+   * Makes the events still pending in the write queue, if any, visible to the calling thread's queries.
+   */
+  private void flushWriteQueue() {
+    UnifiedEventsWriteQueue writeQueue = myWriteQueue;
+    if (writeQueue != null) {
+      writeQueue.flush();
+    }
   }
 
   private List<Event> queryUnifiedEvents(Statements stmt, Object... args) {
+    flushWriteQueue();
     List<Event> records = new ArrayList<>();
+    myConnectionLock.readLock().lock();
     try {
       ResultSet results = executeQuery(stmt, args);
       while (results.next()) {
@@ -300,6 +435,9 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     catch (SQLException | InvalidProtocolBufferException ex) {
       onError(ex);
     }
+    finally {
+      myConnectionLock.readLock().unlock();
+    }
     return records;
   }
 }
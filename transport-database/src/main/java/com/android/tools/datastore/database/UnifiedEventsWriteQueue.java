@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common.Event;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Write-behind stage in front of {@link UnifiedEventsTable#insertUnifiedEvent(long, Event)}. Events are buffered in a bounded queue and
+ * written with a single batched prepared statement per group commit, either once {@code maxBatchSize} events are pending or once
+ * {@code maxBatchDelayMs} has elapsed, whichever comes first.
+ * <p>
+ * When the queue is full {@link #enqueue(long, Event)} blocks, which in turn stops the {@link
+ * com.android.tools.datastore.poller.UnifiedEventsDataPoller} from pulling more events off the gRPC stream.
+ * <p>
+ * Reads on the table always see the queued events: the table flushes the queue on the reading thread before running a query.
+ */
+public class UnifiedEventsWriteQueue {
+  public static final int DEFAULT_MAX_BATCH_SIZE = 512;
+  public static final long DEFAULT_MAX_BATCH_DELAY_MS = 50;
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  @NotNull private final UnifiedEventsTable myTable;
+  @NotNull private final BlockingQueue<PendingEvent> myQueue;
+  private final int myMaxBatchSize;
+  private final long myMaxBatchDelayMs;
+
+  /**
+   * Guards draining the queue so batches are committed in the order they were enqueued, regardless of which thread flushes.
+   */
+  @NotNull private final Object myFlushLock = new Object();
+  @NotNull private final Object myWakeUpLock = new Object();
+  @NotNull private final List<PendingEvent> myBatch;
+  @Nullable private Thread myWriterThread;
+  private volatile boolean myIsStopped;
+
+  @NotNull private final AtomicLong myCommittedEventCount = new AtomicLong();
+  @NotNull private final AtomicLong myCommitCount = new AtomicLong();
+  @NotNull private final AtomicLong myTotalCommitLatencyNs = new AtomicLong();
+  @NotNull private final AtomicLong myMaxCommitLatencyNs = new AtomicLong();
+  @NotNull private final AtomicLong myBlockedEnqueueCount = new AtomicLong();
+
+  public UnifiedEventsWriteQueue(@NotNull UnifiedEventsTable table) {
+    this(table, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY_MS, DEFAULT_CAPACITY);
+  }
+
+  public UnifiedEventsWriteQueue(@NotNull UnifiedEventsTable table, int maxBatchSize, long maxBatchDelayMs, int capacity) {
+    assert maxBatchSize > 0 && capacity >= maxBatchSize;
+    myTable = table;
+    myMaxBatchSize = maxBatchSize;
+    myMaxBatchDelayMs = maxBatchDelayMs;
+    myQueue = new ArrayBlockingQueue<>(capacity);
+    myBatch = new ArrayList<>(maxBatchSize);
+    table.setWriteQueue(this);
+  }
+
+  /**
+   * Starts the background thread responsible for the time based group commits.
+   */
+  public synchronized void start() {
+    if (myWriterThread != null) {
+      return;
+    }
+    myIsStopped = false;
+    myWriterThread = new Thread(this::runWriter, "UnifiedEventsWriteQueue");
+    myWriterThread.setDaemon(true);
+    myWriterThread.start();
+  }
+
+  /**
+   * Stops the background thread and writes out any event that is still pending.
+   */
+  public synchronized void stop() {
+    myIsStopped = true;
+    if (myWriterThread != null) {
+      synchronized (myWakeUpLock) {
+        myWakeUpLock.notifyAll();
+      }
+      try {
+        myWriterThread.join();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      myWriterThread = null;
+    }
+    flush();
+  }
+
+  /**
+   * Queues an event to be inserted with the next group commit. Blocks while the queue is at capacity.
+   */
+  public void enqueue(long streamId, @NotNull Event event) throws InterruptedException {
+    PendingEvent pending = new PendingEvent(streamId, event);
+    if (!myQueue.offer(pending)) {
+      myBlockedEnqueueCount.incrementAndGet();
+      myQueue.put(pending);
+    }
+    if (myQueue.size() >= myMaxBatchSize) {
+      synchronized (myWakeUpLock) {
+        myWakeUpLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Synchronously writes and commits every pending event on the calling thread. Each commit waits for the queries that are reading the
+   * table to finish, since they share its connection.
+   */
+  public void flush() {
+    synchronized (myFlushLock) {
+      while (!myQueue.isEmpty()) {
+        myQueue.drainTo(myBatch, myMaxBatchSize);
+        long startNs = System.nanoTime();
+        myTable.insertUnifiedEventBatch(myBatch);
+        long latencyNs = System.nanoTime() - startNs;
+
+        myCommittedEventCount.addAndGet(myBatch.size());
+        myCommitCount.incrementAndGet();
+        myTotalCommitLatencyNs.addAndGet(latencyNs);
+        myMaxCommitLatencyNs.accumulateAndGet(latencyNs, Math::max);
+        myBatch.clear();
+      }
+    }
+  }
+
+  /**
+   * @return the number of events waiting for the next group commit.
+   */
+  public int getQueueDepth() {
+    return myQueue.size();
+  }
+
+  public long getCommittedEventCount() {
+    return myCommittedEventCount.get();
+  }
+
+  public long getCommitCount() {
+    return myCommitCount.get();
+  }
+
+  public long getTotalCommitLatencyNs() {
+    return myTotalCommitLatencyNs.get();
+  }
+
+  public long getMaxCommitLatencyNs() {
+    return myMaxCommitLatencyNs.get();
+  }
+
+  /**
+   * @return the number of times {@link #enqueue(long, Event)} had to wait for the queue to drain.
+   */
+  public long getBlockedEnqueueCount() {
+    return myBlockedEnqueueCount.get();
+  }
+
+  private void runWriter() {
+    while (!myIsStopped) {
+      try {
+        synchronized (myWakeUpLock) {
+          // Group commit window: give the pollers a chance to fill a batch unless one is already available.
+          if (!myIsStopped && myQueue.size() < myMaxBatchSize) {
+            myWakeUpLock.wait(myMaxBatchDelayMs);
+          }
+        }
+      }
+      catch (InterruptedException e) {
+        break;
+      }
+      flush();
+    }
+  }
+
+  static final class PendingEvent {
+    final long myStreamId;
+    @NotNull final Event myEvent;
+
+    PendingEvent(long streamId, @NotNull Event event) {
+      myStreamId = streamId;
+      myEvent = event;
+    }
+  }
+}
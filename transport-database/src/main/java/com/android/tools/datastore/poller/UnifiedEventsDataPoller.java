@@ -18,6 +18,7 @@ package com.android.tools.datastore.poller;
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.database.DataStoreTable;
 import com.android.tools.datastore.database.UnifiedEventsTable;
+import com.android.tools.datastore.database.UnifiedEventsWriteQueue;
 import com.android.tools.profiler.proto.Common.Event;
 import com.android.tools.profiler.proto.Transport.GetEventsRequest;
 import com.android.tools.profiler.proto.TransportServiceGrpc;
@@ -26,6 +27,7 @@ import java.util.Iterator;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This is a thread safe class to poll events from a grpc service. This class cannot be restarted once
@@ -34,6 +36,7 @@ import org.jetbrains.annotations.NotNull;
 public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataStoreTableErrorCallback {
   private final long myStreamId;
   @NotNull private final UnifiedEventsTable myTable;
+  @Nullable private final UnifiedEventsWriteQueue myWriteQueue;
   @NotNull private final TransportServiceGrpc.TransportServiceBlockingStub myEventPollingService;
   @NotNull private final DataStoreService myDataStoreService;
   @NotNull private final CountDownLatch myRunningLatch;
@@ -43,6 +46,19 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
                                  @NotNull UnifiedEventsTable unifiedEventsTable,
                                  @NotNull TransportServiceGrpc.TransportServiceBlockingStub pollingService,
                                  @NotNull DataStoreService dataStoreService) {
+    this(streamId, unifiedEventsTable, null, pollingService, dataStoreService);
+  }
+
+  /**
+   * @param writeQueue if not null, events are handed to the queue to be inserted in batches instead of being inserted one at a time.
+   *                   The poller stops reading from the event stream while the queue is full.
+   */
+  public UnifiedEventsDataPoller(long streamId,
+                                 @NotNull UnifiedEventsTable unifiedEventsTable,
+                                 @Nullable UnifiedEventsWriteQueue writeQueue,
+                                 @NotNull TransportServiceGrpc.TransportServiceBlockingStub pollingService,
+                                 @NotNull DataStoreService dataStoreService) {
+    myWriteQueue = writeQueue;
     myEventPollingService = pollingService;
     myDataStoreService = dataStoreService;
     myStreamId = streamId;
@@ -74,7 +90,13 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
       Iterator<Event> events = myEventPollingService.getEvents(GetEventsRequest.getDefaultInstance());
       while (events.hasNext()) {
         Event event = events.next();
-        if (event != null) {
+        if (event == null) {
+          continue;
+        }
+        if (myWriteQueue != null) {
+          myWriteQueue.enqueue(myStreamId, event);
+        }
+        else {
           myTable.insertUnifiedEvent(myStreamId, event);
         }
       }
@@ -82,6 +104,9 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
     catch (StatusRuntimeException exception) {
       // device disconnect logic handle via TransportDeviceManager
     }
+    catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
     // Signal end of run.
     myRunningLatch.countDown();
   }
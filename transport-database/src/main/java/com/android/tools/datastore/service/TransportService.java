@@ -20,6 +20,7 @@ import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.DataStoreTable;
 import com.android.tools.datastore.database.DeviceProcessTable;
 import com.android.tools.datastore.database.UnifiedEventsTable;
+import com.android.tools.datastore.database.UnifiedEventsWriteQueue;
 import com.android.tools.datastore.poller.DeviceProcessPoller;
 import com.android.tools.datastore.poller.UnifiedEventsDataPoller;
 import com.android.tools.idea.io.grpc.Channel;
@@ -67,6 +68,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
   private final Map<Channel, DeviceProcessPoller> myLegacyPollers = new HashMap<>();
   private final Consumer<Runnable> myFetchExecutor;
   @NotNull private final UnifiedEventsTable myTable;
+  @NotNull private final UnifiedEventsWriteQueue myWriteQueue;
   @NotNull private final DeviceProcessTable myLegacyTable;
   @NotNull private final DataStoreService myService;
 
@@ -87,9 +89,17 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     myService = service;
     myFetchExecutor = fetchExecutor;
     myTable = unifiedTable;
+    myWriteQueue = new UnifiedEventsWriteQueue(unifiedTable);
     myLegacyTable = new DeviceProcessTable();
   }
 
+  /**
+   * Stops the batched event writer after committing any pending events.
+   */
+  public void shutdown() {
+    myWriteQueue.stop();
+  }
+
   @NotNull
   @Override
   public List<DataStoreService.BackingNamespace> getBackingNamespaces() {
@@ -100,6 +110,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
   public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
     assert namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE;
     myTable.initialize(connection);
+    myWriteQueue.start();
   }
 
   /**
@@ -111,7 +122,7 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     TransportServiceGrpc.TransportServiceBlockingStub stub = myService.getTransportClient(streamId);
     assert (stub != null);
     streamConnected(stream);
-    UnifiedEventsDataPoller unifiedPoller = new UnifiedEventsDataPoller(stream.getStreamId(), myTable, stub, myService);
+    UnifiedEventsDataPoller unifiedPoller = new UnifiedEventsDataPoller(stream.getStreamId(), myTable, myWriteQueue, stub, myService);
     myUnifiedEventsPollers.put(channel, unifiedPoller);
     myChannelToStream.put(channel, stream);
     DataStoreTable.addDataStoreErrorCallback(unifiedPoller);
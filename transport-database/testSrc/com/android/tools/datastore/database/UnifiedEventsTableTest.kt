@@ -15,12 +15,17 @@
  */
 package com.android.tools.datastore.database
 
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Transport.BytesRequest
 import com.android.tools.profiler.proto.Transport.BytesResponse
 import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest
 import com.google.common.truth.Truth.assertThat
+import com.google.common.truth.Truth.assertWithMessage
 import org.junit.Test
+import java.io.File
+import java.util.concurrent.TimeUnit
 import java.util.function.Consumer
 
 class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
@@ -131,6 +136,105 @@ class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
     assertThat(eventResult).containsExactlyElementsIn(events)
   }
 
+  @Test
+  fun queuedEventsAreFlushedBeforeQueries() {
+    // Use a window long enough that only the batch size or a query can trigger a commit.
+    val writeQueue = UnifiedEventsWriteQueue(table, 5, TimeUnit.HOURS.toMillis(1), 20)
+    events.forEach { writeQueue.enqueue(1, it) }
+    assertThat(writeQueue.queueDepth).isEqualTo(events.size)
+
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(events)
+    assertThat(writeQueue.queueDepth).isEqualTo(0)
+    assertThat(writeQueue.committedEventCount).isEqualTo(events.size.toLong())
+    // 12 events in batches of at most 5.
+    assertThat(writeQueue.commitCount).isEqualTo(3)
+  }
+
+  @Test
+  fun writerThreadCommitsQueuedEvents() {
+    val writeQueue = UnifiedEventsWriteQueue(table, 4, 10, 20)
+    writeQueue.start()
+    events.forEach { writeQueue.enqueue(1, it) }
+    val deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5)
+    while (writeQueue.committedEventCount < events.size && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10)
+    }
+    writeQueue.stop()
+    assertThat(writeQueue.committedEventCount).isEqualTo(events.size.toLong())
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(events)
+  }
+
+  @Test
+  fun inMemoryIndexMatchesDatabaseQueries() {
+    val dbFile = File.createTempFile("UnifiedEventsIndex", "mysql")
+    dbFile.deleteOnExit()
+    val database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    try {
+      val indexedTable = UnifiedEventsTable(true)
+      indexedTable.initialize(database.connection)
+      // Insert everything twice to check duplicates are dropped.
+      // Note that the first pass has to be in timestamp order: when ROWID and timestamp order disagree, which row the SQL -1 query picks
+      // is undefined.
+      (events + events.reversed()).forEach {
+        table.insertUnifiedEvent(1, it)
+        indexedTable.insertUnifiedEvent(1, it)
+      }
+
+      fun assertSameGroups(request: GetEventGroupsRequest) {
+        val expected = table.queryUnifiedEventGroups(request).associate { it.groupId to it.eventsList.toSet() }
+        val actual = indexedTable.queryUnifiedEventGroups(request).associate { it.groupId to it.eventsList.toSet() }
+        assertWithMessage(request.toString()).that(actual).isEqualTo(expected)
+      }
+
+      val timestamps = listOf(0L, 1L, 2L, 3L, 4L, 6L, 8L, 11L, Long.MAX_VALUE)
+      for (kind in listOf(Common.Event.Kind.SESSION, Common.Event.Kind.PROCESS, Common.Event.Kind.NONE)) {
+        for (pid in 0..3) {
+          for (groupId in 0L..7L) {
+            for (from in timestamps) {
+              for (to in timestamps) {
+                assertSameGroups(GetEventGroupsRequest.newBuilder().setKind(kind).setPid(pid).setGroupId(groupId)
+                                   .setFromTimestamp(from).setToTimestamp(to).build())
+              }
+            }
+          }
+        }
+      }
+      assertSameGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(1).setCommandId(4).build())
+      assertSameGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(2).build())
+
+      table.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 2, 3)
+      indexedTable.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 2, 3)
+      assertSameGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setFromTimestamp(3).setToTimestamp(3).build())
+    }
+    finally {
+      database.disconnect()
+    }
+  }
+
+  @Test
+  fun inMemoryIndexEvictsLargestKindOverCap() {
+    val index = UnifiedEventsIndex(64 * 1024)
+    val session = eventBuilder(Common.Event.Kind.SESSION, false, 1, 1, 0, 1)
+    index.add(1, session, session.toByteArray())
+    for (timestamp in 1L..2000L) {
+      val process = eventBuilder(Common.Event.Kind.PROCESS, false, 1, 1, 0, timestamp)
+      index.add(1, process, process.toByteArray())
+    }
+
+    // The process events went over the cap, so they have to be queried from the database. The session events are still indexed.
+    assertThat(index.queryEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.PROCESS).build())).isNull()
+    assertThat(index.queryEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build())!!
+                 .single().eventsList).containsExactly(session)
+
+    index.evict(Common.Event.Kind.SESSION)
+    assertThat(index.queryEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build())).isNull()
+
+    // Kinds are indexed again once the tables are recreated.
+    index.clear()
+    index.add(1, session, session.toByteArray())
+    assertThat(index.queryEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build())).hasSize(1)
+  }
+
   @Test
   fun filterNoKind() {
     insertData(5, true)